@@ -5,7 +5,8 @@
 -- Container path table (see ContainerDao)
 CREATE TABLE IF NOT EXISTS CONTAINERS(
 	ID INT AUTO_INCREMENT PRIMARY KEY,
-	PATH VARCHAR NOT NULL UNIQUE
+	PATH VARCHAR NOT NULL UNIQUE,
+	FINGERPRINT VARCHAR
 );
 
 -- Files table (see FileDao)
@@ -16,15 +16,17 @@ CREATE TABLE IF NOT EXISTS {0}(
 	QUALIFIER VARCHAR, 
 	PARENT VARCHAR, 
 	FILE_ID INT NOT NULL, 
+	NAME_KEY VARCHAR NOT NULL,
+	CC_KEY VARCHAR,
 	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE, 
 );
 
-CREATE INDEX IF NOT EXISTS IDX_CC_NAME_{0} ON {0}(CC_NAME);
+CREATE INDEX IF NOT EXISTS IDX_CC_NAME_{0} ON {0}(CC_KEY);
 CREATE INDEX IF NOT EXISTS IDX_PARENT_{0} ON {0}(PARENT);
 CREATE INDEX IF NOT EXISTS IDX_QUALIFIER_{0} ON {0}(QUALIFIER);
 CREATE INDEX IF NOT EXISTS IDX_FILE_ID_{0} ON {0}(FILE_ID);
 CREATE INDEX IF NOT EXISTS IDX_FLAGS_{0} ON {0}(FLAGS);
-CREATE INDEX IF NOT EXISTS IDX_FULL_NAME_{0} ON {0}(NAME, QUALIFIER);
+CREATE INDEX IF NOT EXISTS IDX_FULL_NAME_{0} ON {0}(NAME_KEY, QUALIFIER);
 
 CREATE OR REPLACE  VIEW {0}_TO_CONTAINER AS SELECT T.*, F.CONTAINER_ID FROM {0} AS T INNER JOIN FILES AS F ON (T.FILE_ID = F.ID);
 
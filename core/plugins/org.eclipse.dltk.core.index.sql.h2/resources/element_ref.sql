@@ -10,10 +10,11 @@ CREATE TABLE IF NOT EXISTS {0}(
 	METADATA VARCHAR,
 	QUALIFIER VARCHAR,
 	FILE_ID INT NOT NULL,
+	NAME_KEY VARCHAR NOT NULL,
 	FOREIGN KEY(FILE_ID) REFERENCES FILES(ID) ON UPDATE CASCADE ON DELETE CASCADE,
 );
 CREATE INDEX IF NOT EXISTS IDX_QUALIFIER_{0} ON {0}(QUALIFIER);
 CREATE INDEX IF NOT EXISTS IDX_FILE_ID_{0} ON {0}(FILE_ID);
-CREATE INDEX IF NOT EXISTS IDX_NAME_{0} ON {0}(NAME);
+CREATE INDEX IF NOT EXISTS IDX_NAME_{0} ON {0}(NAME_KEY);
 
 CREATE OR REPLACE  VIEW {0}_TO_CONTAINER AS SELECT T.*, F.CONTAINER_ID FROM {0} AS T INNER JOIN FILES AS F ON (T.FILE_ID = F.ID);
@@ -10,10 +10,12 @@ INSERT INTO {0}(
 	NAME_OFFSET,
 	NAME_LENGTH,
 	NAME,
+	NAME_KEY,
 	CC_NAME,
+	CC_KEY,
 	METADATA,
 	DOC,
 	QUALIFIER,
 	PARENT,FILE_ID)
 
-VALUES(?,?,?,?,?,?,?,?,?,?,?,?);
\ No newline at end of file
+VALUES(?,?,?,?,?,?,?,?,?,?,?,?,?,?);
\ No newline at end of file
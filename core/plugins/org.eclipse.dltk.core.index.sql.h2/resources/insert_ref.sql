@@ -7,8 +7,9 @@ INSERT INTO {0}(
 	OFFSET,
 	LENGTH,
 	NAME,
+	NAME_KEY,
 	METADATA,
 	QUALIFIER,
 	FILE_ID)
 
-VALUES(?,?,?,?,?,?);
\ No newline at end of file
+VALUES(?,?,?,?,?,?,?);
\ No newline at end of file
@@ -11,207 +11,195 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index.sql.h2;
 
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
-import org.eclipse.core.runtime.jobs.ILock;
-import org.eclipse.core.runtime.jobs.Job;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.eclipse.dltk.core.index.sql.Container;
 import org.eclipse.dltk.core.index.sql.File;
 
 /**
- * This is a cache layer between H2 database and model access
+ * This is a cache layer between H2 database and model access. The cache is
+ * bounded: least recently used entries are evicted and loaded again from the
+ * database on demand by {@link H2ContainerDao} and {@link H2FileDao}.
+ * <p>
+ * Containers and files are cached once, by id. The lookups by path go through
+ * an index of the ids which entries are dropped together with the cached
+ * values, so both lookups always agree.
  * 
  * @author michael
  */
 public class H2Cache {
 
-	private static final ILock containerLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Container> containerById = new HashMap<Integer, Container>();
+	/** Maximal number of cached containers */
+	private static final int CONTAINERS_CACHE_SIZE = Integer.getInteger(
+			"org.eclipse.dltk.core.index.sql.h2.containersCacheSize", 1000) //$NON-NLS-1$
+			.intValue();
+
+	/** Maximal number of cached files */
+	private static final int FILES_CACHE_SIZE = Integer.getInteger(
+			"org.eclipse.dltk.core.index.sql.h2.filesCacheSize", 20000) //$NON-NLS-1$
+			.intValue();
+
+	private static final ConcurrentMap<String, Integer> containerIdByPath = new ConcurrentHashMap<String, Integer>();
+	private static final LruCache<Integer, Container> containers = new LruCache<Integer, Container>(
+			CONTAINERS_CACHE_SIZE,
+			new LruCache.Listener<Integer, Container>() {
+				public void evicted(Integer id, Container container) {
+					containerIdByPath.remove(container.getPath(), id);
+				}
+			});
+
+	private static final ConcurrentMap<FileKey, Integer> fileIdByContainerAndPath = new ConcurrentHashMap<FileKey, Integer>();
+	private static final LruCache<Integer, File> files = new LruCache<Integer, File>(
+			FILES_CACHE_SIZE, new LruCache.Listener<Integer, File>() {
+				public void evicted(Integer id, File file) {
+					fileIdByContainerAndPath.remove(new FileKey(file), id);
+				}
+			});
+
+	/**
+	 * Key of the file in the container
+	 */
+	private static final class FileKey {
+		final int containerId;
+		final String path;
+
+		FileKey(int containerId, String path) {
+			this.containerId = containerId;
+			this.path = path;
+		}
+
+		FileKey(File file) {
+			this(file.getContainerId(), file.getPath());
+		}
 
-	private static final ILock fileLock = Job.getJobManager().newLock();
-	private static final Map<Integer, Map<Integer, File>> filesByContainer = new HashMap<Integer, Map<Integer, File>>();
-	private static final Map<Integer, Map<String, File>> filesByContainerAndPath = new HashMap<Integer, Map<String, File>>();
+		public int hashCode() {
+			return 31 * containerId + path.hashCode();
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof FileKey))
+				return false;
+			FileKey other = (FileKey) obj;
+			return containerId == other.containerId && path.equals(other.path);
+		}
+	}
 
 	public static void addContainer(Container container) {
-		containerLock.acquire();
-		try {
-			int containerId = container.getId();
-			containerById.put(containerId, container);
-		} finally {
-			containerLock.release();
+		final Integer id = container.getId();
+		final Container previous = containers.put(id, container);
+		if (previous != null
+				&& !previous.getPath().equals(container.getPath())) {
+			containerIdByPath.remove(previous.getPath(), id);
 		}
+		containerIdByPath.put(container.getPath(), id);
 	}
 
 	public static void addFile(File file) {
-		int containerId = file.getContainerId();
-
-		fileLock.acquire();
-		try {
-			Map<Integer, File> filesById = filesByContainer.get(containerId);
-			if (filesById == null) {
-				filesById = new HashMap<Integer, File>();
-				filesByContainer.put(containerId, filesById);
-			}
-			filesById.put(file.getId(), file);
-
-			Map<String, File> filesByPath = filesByContainerAndPath
-					.get(containerId);
-			if (filesByPath == null) {
-				filesByPath = new HashMap<String, File>();
-				filesByContainerAndPath.put(containerId, filesByPath);
+		final Integer id = file.getId();
+		final File previous = files.put(id, file);
+		final FileKey key = new FileKey(file);
+		if (previous != null) {
+			final FileKey previousKey = new FileKey(previous);
+			if (!previousKey.equals(key)) {
+				fileIdByContainerAndPath.remove(previousKey, id);
 			}
-			filesByPath.put(file.getPath(), file);
-		} finally {
-			fileLock.release();
 		}
+		fileIdByContainerAndPath.put(key, id);
 	}
 
 	public static void deleteContainerById(int id) {
-		containerLock.acquire();
-		try {
-			containerById.remove(id);
-			deleteFilesByContainerId(id);
-		} finally {
-			containerLock.release();
+		Container container = containers.remove(id);
+		if (container != null) {
+			containerIdByPath.remove(container.getPath(),
+					Integer.valueOf(id));
 		}
+		deleteFilesByContainerId(id);
 	}
 
 	public static void deleteContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Container container = selectContainerByPath(path);
-			if (container != null) {
-				deleteContainerById(container.getId());
-			}
-		} finally {
-			containerLock.release();
+		Integer id = containerIdByPath.remove(path);
+		if (id != null) {
+			deleteContainerById(id.intValue());
 		}
 	}
 
 	public static void deleteFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			File file = null;
-
-			Map<String, File> filesByPath = filesByContainerAndPath
-					.get(containerId);
-			if (filesByPath != null) {
-				file = filesByPath.remove(path);
-			}
-
-			if (file != null) {
-				Map<Integer, File> filesById = filesByContainer
-						.get(containerById);
-				if (filesById != null) {
-					filesById.remove(file.getId());
-				}
-			}
-		} finally {
-			fileLock.release();
+		Integer id = fileIdByContainerAndPath.remove(new FileKey(containerId,
+				path));
+		if (id != null) {
+			files.remove(id);
 		}
 	}
 
 	public static void deleteFileById(int id) {
-		fileLock.acquire();
-		try {
-			File file = null;
-
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				file = i.next().remove(id);
-			}
-
-			if (file != null) {
-				Map<String, File> filesByPath = filesByContainerAndPath
-						.get(file.getContainerId());
-				if (filesByPath != null) {
-					filesByPath.remove(file.getPath());
-				}
-			}
-		} finally {
-			fileLock.release();
+		File file = files.remove(id);
+		if (file != null) {
+			fileIdByContainerAndPath.remove(new FileKey(file),
+					Integer.valueOf(id));
 		}
 	}
 
-	public static void deleteFilesByContainerId(int id) {
-		fileLock.acquire();
-		try {
-			filesByContainer.remove(id);
-			filesByContainerAndPath.remove(id);
-		} finally {
-			fileLock.release();
+	public static void deleteFilesByContainerId(final int id) {
+		LruCache.Filter<File> filter = new LruCache.Filter<File>() {
+			public boolean accept(File file) {
+				return file.getContainerId() == id;
+			}
+		};
+		for (File file : files.removeAll(filter)) {
+			fileIdByContainerAndPath.remove(new FileKey(file),
+					Integer.valueOf(file.getId()));
 		}
 	}
 
 	public static Container selectContainerById(int id) {
-		containerLock.acquire();
-		try {
-			return containerById.get(id);
-		} finally {
-			containerLock.release();
-		}
+		return containers.get(id);
 	}
 
 	public static Container selectContainerByPath(String path) {
-		containerLock.acquire();
-		try {
-			Iterator<Container> i = containerById.values().iterator();
-			while (i.hasNext()) {
-				Container container = i.next();
-				if (container.getPath().equals(path)) {
-					return container;
-				}
-			}
+		final Integer id = containerIdByPath.get(path);
+		if (id == null) {
+			return null;
+		}
+		final Container container = containers.get(id);
+		if (container == null || !container.getPath().equals(path)) {
+			// evicted or replaced meanwhile
+			containerIdByPath.remove(path, id);
 			return null;
-		} finally {
-			containerLock.release();
 		}
+		return container;
 	}
 
 	public static File selectFileByContainerIdAndPath(int containerId,
 			String path) {
-		fileLock.acquire();
-		try {
-			Map<String, File> files = filesByContainerAndPath.get(containerId);
-			return (files == null) ? null : files.get(path);
-		} finally {
-			fileLock.release();
+		final FileKey key = new FileKey(containerId, path);
+		final Integer id = fileIdByContainerAndPath.get(key);
+		if (id == null) {
+			return null;
+		}
+		final File file = files.get(id);
+		if (file == null || !key.equals(new FileKey(file))) {
+			// evicted or replaced meanwhile
+			fileIdByContainerAndPath.remove(key, id);
+			return null;
 		}
+		return file;
 	}
 
 	public static File selectFileById(int id) {
-		fileLock.acquire();
-		try {
-			Iterator<Map<Integer, File>> i = filesByContainer.values()
-					.iterator();
-			while (i.hasNext()) {
-				File file = i.next().get(id);
-				if (file != null) {
-					return file;
-				}
-			}
-			return null;
-		} finally {
-			fileLock.release();
-		}
+		return files.get(id);
 	}
 
-	public static Collection<File> selectFilesByContainerId(int id) {
-		fileLock.acquire();
-		try {
-			Map<Integer, File> files = filesByContainer.get(id);
-			if (files != null) {
-				return files.values();
-			}
-			return Collections.emptyList();
-		} finally {
-			fileLock.release();
-		}
+	/**
+	 * Returns cache statistics (sizes, hit and miss counts) for debugging
+	 */
+	public static String getStatistics() {
+		return "containers: " + containers //$NON-NLS-1$
+				+ ", indexed by path: " + containerIdByPath.size() //$NON-NLS-1$
+				+ "; files: " + files //$NON-NLS-1$
+				+ ", indexed by path: " + fileIdByContainerAndPath.size(); //$NON-NLS-1$
 	}
 }
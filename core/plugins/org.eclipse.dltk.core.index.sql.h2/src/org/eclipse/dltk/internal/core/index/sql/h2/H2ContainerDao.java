@@ -33,6 +33,8 @@ public class H2ContainerDao implements IContainerDao {
 	private static final String Q_SELECT_BY_ID = "SELECT * FROM CONTAINERS WHERE ID=?;"; //$NON-NLS-1$
 	private static final String Q_DELETE_BY_PATH = "DELETE FROM CONTAINERS WHERE PATH=?;"; //$NON-NLS-1$
 	private static final String Q_DELETE_BY_ID = "DELETE FROM CONTAINERS WHERE ID=?;"; //$NON-NLS-1$
+	private static final String Q_SELECT_FINGERPRINT = "SELECT FINGERPRINT FROM CONTAINERS WHERE PATH=?;"; //$NON-NLS-1$
+	private static final String Q_UPDATE_FINGERPRINT = "UPDATE CONTAINERS SET FINGERPRINT=? WHERE PATH=?;"; //$NON-NLS-1$
 
 	public Container insert(Connection connection, String path)
 			throws SQLException {
@@ -139,6 +141,9 @@ public class H2ContainerDao implements IContainerDao {
 
 	public void deleteByPath(Connection connection, String path)
 			throws SQLException {
+		// make sure the container is cached, so its files are evicted too
+		selectByPath(connection, path);
+
 		PreparedStatement statement = connection
 				.prepareStatement(Q_DELETE_BY_PATH);
 		try {
@@ -151,4 +156,39 @@ public class H2ContainerDao implements IContainerDao {
 
 		H2Cache.deleteContainerByPath(path);
 	}
+
+	public String selectFingerprint(Connection connection, String path)
+			throws SQLException {
+		PreparedStatement statement = connection
+				.prepareStatement(Q_SELECT_FINGERPRINT);
+		try {
+			int param = 0;
+			statement.setString(++param, path);
+			ResultSet result = statement.executeQuery();
+			try {
+				if (result.next()) {
+					return result.getString(1);
+				}
+			} finally {
+				result.close();
+			}
+		} finally {
+			statement.close();
+		}
+		return null;
+	}
+
+	public void updateFingerprint(Connection connection, String path,
+			String fingerprint) throws SQLException {
+		PreparedStatement statement = connection
+				.prepareStatement(Q_UPDATE_FINGERPRINT);
+		try {
+			int param = 0;
+			statement.setString(++param, fingerprint);
+			statement.setString(++param, path);
+			statement.executeUpdate();
+		} finally {
+			statement.close();
+		}
+	}
 }
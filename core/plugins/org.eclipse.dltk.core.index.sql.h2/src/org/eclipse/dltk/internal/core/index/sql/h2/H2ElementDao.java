@@ -18,7 +18,9 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -45,6 +47,16 @@ public class H2ElementDao implements IElementDao {
 	private static final String Q_INSERT_DECL = Schema
 			.readSqlFile("resources/insert_decl.sql"); //$NON-NLS-1$
 
+	/** Maximum number of cached search queries */
+	private static final int SEARCH_QUERY_CACHE_SIZE = 1000;
+
+	/**
+	 * Cache of search queries texts, keyed by the table and the conditions
+	 * used. Keeping the query text stable also lets H2 reuse parsed statements
+	 * from its per-session query cache.
+	 */
+	private static final Map<String, String> SEARCH_QUERY_CACHE = new ConcurrentHashMap<String, String>();
+
 	/** Cache for insert element declaration queries */
 	private static final Map<String, String> R_INSERT_QUERY_CACHE = new HashMap<String, String>();
 
@@ -88,6 +100,7 @@ public class H2ElementDao implements IElementDao {
 			statement.setInt(++param, nameLength);
 		}
 		statement.setString(++param, name);
+		statement.setString(++param, getKey(name));
 		String camelCaseName = null;
 		if (!isReference) {
 			StringBuilder camelCaseNameBuf = new StringBuilder();
@@ -103,6 +116,8 @@ public class H2ElementDao implements IElementDao {
 			camelCaseName = camelCaseNameBuf.length() > 0 ? camelCaseNameBuf
 					.toString() : null;
 			statement.setString(++param, camelCaseName);
+			statement.setString(++param,
+					camelCaseName != null ? getKey(camelCaseName) : null);
 		}
 		statement.setString(++param, metadata);
 		if (!isReference) {
@@ -179,123 +194,50 @@ public class H2ElementDao implements IElementDao {
 		String tableName = getTableName(connection, elementType, natureId,
 				isReference);
 
-		final StringBuilder begin = new StringBuilder("SELECT T.* FROM ")
-				.append(tableName);
-
-		StringBuilder query = new StringBuilder();
-		final List<Object> parameters = new ArrayList<Object>();
-
-		if (filesId == null && containersId != null && containersId.length > 0) {
-			begin.append("_TO_CONTAINER AS T");
-			query.append(" AND T.CONTAINER_ID IN(");
-			for (int i = 0; i < containersId.length; ++i) {
-				if (i > 0) {
-					query.append(",");
-				}
-				query.append("?");
-				parameters.add(containersId[i]);
-			}
-			query.append(")");
-		} else {
-			begin.append(" AS T");
-		}
-
-		// Name patterns
 		if (pattern != null && pattern.length() > 0) {
 			if (isReference && matchRule == MatchRule.CAMEL_CASE) {
 				H2Index.warn("MatchRule.CAMEL_CASE is not supported by element references search."); //$NON-NLS-1$
 				matchRule = MatchRule.EXACT;
 			}
-
-			// Exact pattern
-			if (matchRule == MatchRule.EXACT) {
-				query.append(" AND NAME=?");
-				parameters.add(pattern);
-			}
-			// Prefix
-			else if (matchRule == MatchRule.PREFIX) {
-				query.append(" AND NAME LIKE ?");
-				parameters.add(escapeLikePattern(pattern) + "%");
-			}
-			// Camel-case
-			else if (matchRule == MatchRule.CAMEL_CASE) {
-				query.append(" AND CC_NAME LIKE ?");
-				parameters.add(escapeLikePattern(pattern) + "%");
-			}
-			// Set of names
-			else if (matchRule == MatchRule.SET) {
-				String[] patternSet = SEPARATOR_PATTERN.split(pattern);
-				query.append(" AND NAME IN (");
-				for (int i = 0; i < patternSet.length; ++i) {
-					if (i > 0) {
-						query.append(',');
-					}
-					query.append('?');
-					parameters.add(patternSet[i]);
-				}
-				query.append(')');
-			}
-			// POSIX pattern
-			else if (matchRule == MatchRule.PATTERN) {
-				query.append(" AND NAME LIKE ?");
-				parameters.add(escapeLikePattern(pattern).replace('*', '%')
-						.replace('?', '_'));
-			}
-		}
-
-		// Flags
-		if (trueFlags != 0) {
-			query.append(" AND BITAND(FLAGS, ?) <> 0");
-			parameters.add(trueFlags);
+		} else {
+			matchRule = null;
 		}
-		if (falseFlags != 0) {
-			query.append(" AND BITAND(FLAGS,?) = 0");
-			parameters.add(falseFlags);
+		if (qualifier != null && qualifier.length() == 0) {
+			qualifier = null;
 		}
-
-		// Qualifier
-		if (qualifier != null && qualifier.length() > 0) {
-			query.append(" AND QUALIFIER=?");
-			parameters.add(qualifier);
+		if (parent != null && parent.length() == 0) {
+			parent = null;
 		}
-		// Parent
-		if (parent != null && parent.length() > 0) {
-			query.append(" AND PARENT=?");
-			parameters.add(parent);
+		if (filesId != null || containersId != null
+				&& containersId.length == 0) {
+			containersId = null;
 		}
 
-		// Files or container paths
-		if (filesId != null) {
-			query.append(" AND FILE_ID IN(");
-			for (int i = 0; i < filesId.length; ++i) {
-				if (i > 0) {
-					query.append(",");
-				}
-				query.append("?");
-				parameters.add(filesId[i]);
+		final List<Object> parameters = new ArrayList<Object>();
+		final String queryKey = getSearchQueryKey(tableName, pattern,
+				matchRule, trueFlags, falseFlags, qualifier, parent, filesId,
+				containersId, limit);
+		String query = SEARCH_QUERY_CACHE.get(queryKey);
+		if (query == null) {
+			final StringBuilder buf = new StringBuilder();
+			buildSearchQuery(buf, parameters, tableName, pattern, matchRule,
+					trueFlags, falseFlags, qualifier, parent, filesId,
+					containersId, limit);
+			query = buf.toString();
+			if (SEARCH_QUERY_CACHE.size() < SEARCH_QUERY_CACHE_SIZE) {
+				SEARCH_QUERY_CACHE.put(queryKey, query);
 			}
-			query.append(")");
-		}
-
-		if (query.length() > 0) {
-			begin.append(" WHERE ").append(query.substring(4));
-			query = begin;
 		} else {
-			query = begin;
-		}
-
-		// Records limit
-		if (limit > 0) {
-			query.append(" LIMIT ").append(limit);
+			buildSearchQuery(null, parameters, tableName, pattern, matchRule,
+					trueFlags, falseFlags, qualifier, parent, filesId,
+					containersId, limit);
 		}
-		query.append(";");
 
 		if (H2Index.DEBUG) {
-			System.out.println("Query: " + query.toString());
+			System.out.println("Query: " + query);
 		}
 
-		final PreparedStatement statement = connection.prepareStatement(query
-				.toString());
+		final PreparedStatement statement = connection.prepareStatement(query);
 		try {
 			for (int i = 0; i < parameters.size(); ++i) {
 				final Object param = parameters.get(i);
@@ -371,6 +313,214 @@ public class H2ElementDao implements IElementDao {
 		}
 	}
 
+	/**
+	 * Returns the key identifying the text of the search query, the text only
+	 * depends on the table and on which of the search conditions are used.
+	 */
+	private String getSearchQueryKey(String tableName, String pattern,
+			MatchRule matchRule, int trueFlags, int falseFlags,
+			String qualifier, String parent, int[] filesId,
+			int[] containersId, int limit) {
+		final StringBuilder key = new StringBuilder(tableName).append('|');
+		if (matchRule != null) {
+			key.append(matchRule.ordinal());
+			if (matchRule == MatchRule.SET) {
+				key.append('*').append(
+						SEPARATOR_PATTERN.split(pattern).length);
+			} else if (matchRule == MatchRule.PREFIX
+					|| matchRule == MatchRule.CAMEL_CASE) {
+				key.append(getUpperBound(getKey(pattern)) != null ? 'b' : 'u');
+			}
+		}
+		key.append('|');
+		if (trueFlags != 0) {
+			key.append('t');
+		}
+		if (falseFlags != 0) {
+			key.append('f');
+		}
+		if (qualifier != null) {
+			key.append('q');
+		}
+		if (parent != null) {
+			key.append('p');
+		}
+		if (limit > 0) {
+			key.append('l');
+		}
+		key.append('|');
+		if (filesId != null) {
+			key.append(filesId.length);
+		}
+		key.append('|');
+		if (containersId != null) {
+			key.append(containersId.length);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Collects the search query parameters, and appends the query text to the
+	 * given buffer unless it is <code>null</code>. Names are looked up through
+	 * the lower-case NAME_KEY and CC_KEY columns, so that the exact, prefix and
+	 * camel-case searches can be resolved by index range scans.
+	 */
+	private void buildSearchQuery(StringBuilder query,
+			List<Object> parameters, String tableName, String pattern,
+			MatchRule matchRule, int trueFlags, int falseFlags,
+			String qualifier, String parent, int[] filesId,
+			int[] containersId, int limit) {
+
+		final StringBuilder where = query != null ? new StringBuilder()
+				: null;
+
+		if (query != null) {
+			query.append("SELECT T.* FROM ").append(tableName);
+			query.append(containersId != null ? "_TO_CONTAINER AS T" : " AS T");
+		}
+		if (containersId != null) {
+			appendIn(where, parameters, " AND T.CONTAINER_ID IN(",
+					containersId);
+		}
+
+		// Name patterns
+		if (matchRule != null) {
+			final String key = getKey(pattern);
+			// Exact pattern
+			if (matchRule == MatchRule.EXACT) {
+				append(where, " AND NAME_KEY=?");
+				parameters.add(key);
+			}
+			// Prefix
+			else if (matchRule == MatchRule.PREFIX) {
+				appendRange(where, parameters, "NAME_KEY", key);
+			}
+			// Camel-case
+			else if (matchRule == MatchRule.CAMEL_CASE) {
+				appendRange(where, parameters, "CC_KEY", key);
+			}
+			// Set of names
+			else if (matchRule == MatchRule.SET) {
+				String[] patternSet = SEPARATOR_PATTERN.split(key);
+				append(where, " AND NAME_KEY IN (");
+				for (int i = 0; i < patternSet.length; ++i) {
+					if (i > 0) {
+						append(where, ",");
+					}
+					append(where, "?");
+					parameters.add(patternSet[i]);
+				}
+				append(where, ")");
+			}
+			// POSIX pattern
+			else if (matchRule == MatchRule.PATTERN) {
+				append(where, " AND NAME_KEY LIKE ?");
+				parameters.add(escapeLikePattern(key).replace('*', '%')
+						.replace('?', '_'));
+			}
+		}
+
+		// Flags
+		if (trueFlags != 0) {
+			append(where, " AND BITAND(FLAGS, ?) <> 0");
+			parameters.add(trueFlags);
+		}
+		if (falseFlags != 0) {
+			append(where, " AND BITAND(FLAGS,?) = 0");
+			parameters.add(falseFlags);
+		}
+
+		// Qualifier
+		if (qualifier != null) {
+			append(where, " AND QUALIFIER=?");
+			parameters.add(qualifier);
+		}
+		// Parent
+		if (parent != null) {
+			append(where, " AND PARENT=?");
+			parameters.add(parent);
+		}
+
+		// Files or container paths
+		if (filesId != null) {
+			appendIn(where, parameters, " AND FILE_ID IN(", filesId);
+		}
+
+		if (query != null && where.length() > 0) {
+			query.append(" WHERE ").append(where.substring(4));
+		}
+
+		// Records limit
+		if (limit > 0) {
+			append(query, " LIMIT ?");
+			parameters.add(limit);
+		}
+		append(query, ";");
+	}
+
+	private static void append(StringBuilder query, String text) {
+		if (query != null) {
+			query.append(text);
+		}
+	}
+
+	private static void appendIn(StringBuilder query, List<Object> parameters,
+			String prefix, int[] values) {
+		append(query, prefix);
+		for (int i = 0; i < values.length; ++i) {
+			if (i > 0) {
+				append(query, ",");
+			}
+			append(query, "?");
+			parameters.add(values[i]);
+		}
+		append(query, ")");
+	}
+
+	/**
+	 * Appends the condition matching all the keys starting with the given
+	 * prefix: <code>column &gt;= prefix AND column &lt; upperBound</code>
+	 */
+	private static void appendRange(StringBuilder query,
+			List<Object> parameters, String column, String prefix) {
+		append(query, " AND ");
+		append(query, column);
+		append(query, ">=?");
+		parameters.add(prefix);
+		final String upperBound = getUpperBound(prefix);
+		if (upperBound != null) {
+			append(query, " AND ");
+			append(query, column);
+			append(query, "<?");
+			parameters.add(upperBound);
+		}
+	}
+
+	/**
+	 * Returns the smallest string which is greater than all the strings
+	 * starting with the given prefix, or <code>null</code> if there is no such
+	 * string.
+	 */
+	static String getUpperBound(String prefix) {
+		int end = prefix.length();
+		while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+			--end;
+		}
+		if (end == 0) {
+			return null;
+		}
+		final char[] chars = prefix.substring(0, end).toCharArray();
+		++chars[end - 1];
+		return new String(chars);
+	}
+
+	/**
+	 * Returns the normalized value stored in the NAME_KEY and CC_KEY columns
+	 */
+	static String getKey(String name) {
+		return name.toLowerCase(Locale.ENGLISH);
+	}
+
 	/**
 	 * @see https://bugs.eclipse.org/bugs/show_bug.cgi?id=446159
 	 * @param pattern
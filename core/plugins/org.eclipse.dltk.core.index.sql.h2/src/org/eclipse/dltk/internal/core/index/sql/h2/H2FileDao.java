@@ -16,8 +16,8 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.dltk.core.index.sql.File;
 import org.eclipse.dltk.core.index.sql.IFileDao;
@@ -95,31 +95,29 @@ public class H2FileDao implements IFileDao {
 	public File[] selectByContainerId(Connection connection, int containerId)
 			throws SQLException {
 
-		Collection<File> files = H2Cache.selectFilesByContainerId(containerId);
-		if (files == null) {
-			files = new LinkedList<File>();
+		// The cache can't tell whether it holds all the container files, and
+		// the whole listing of a large container would only evict the hot
+		// entries, so it is always read from the database and not cached.
+		List<File> files = new ArrayList<File>();
 
-			PreparedStatement statement = connection
-					.prepareStatement(Q_SELECT_BY_CONTAINER_ID);
+		PreparedStatement statement = connection
+				.prepareStatement(Q_SELECT_BY_CONTAINER_ID);
+		try {
+			int param = 0;
+			statement.setInt(++param, containerId);
+			ResultSet result = statement.executeQuery();
 			try {
-				int param = 0;
-				statement.setInt(++param, containerId);
-				ResultSet result = statement.executeQuery();
-				try {
-					while (result.next()) {
-						File file = new File(result.getInt(1),
-								result.getString(2), result.getLong(3),
-								result.getInt(4));
+				while (result.next()) {
+					File file = new File(result.getInt(1), result.getString(2),
+							result.getLong(3), result.getInt(4));
 
-						files.add(file);
-						H2Cache.addFile(file);
-					}
-				} finally {
-					result.close();
+					files.add(file);
 				}
 			} finally {
-				statement.close();
+				result.close();
 			}
+		} finally {
+			statement.close();
 		}
 		return (File[]) files.toArray(new File[files.size()]);
 	}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.index.sql.h2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache evicting least recently used entries. Entries are spread over
+ * a number of independently locked segments, so that concurrent readers and
+ * writers don't contend for a single lock; each segment evicts its own least
+ * recently used entries and reports them to the {@link Listener}, if any.
+ */
+class LruCache<K, V> {
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment<K, V>[] segments;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+		private final Listener<K, V> listener;
+
+		Segment(int capacity, Listener<K, V> listener) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+			this.listener = listener;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			if (size() > capacity) {
+				if (listener != null) {
+					listener.evicted(eldest.getKey(), eldest.getValue());
+				}
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @param capacity
+	 *            maximal number of entries
+	 */
+	LruCache(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * @param capacity
+	 *            maximal number of entries
+	 * @param listener
+	 *            notified of the evicted entries, while the segment is locked
+	 */
+	@SuppressWarnings("unchecked")
+	LruCache(int capacity, Listener<K, V> listener) {
+		segments = new Segment[SEGMENTS];
+		final int segmentCapacity = Math.max(1, (capacity + SEGMENTS - 1)
+				/ SEGMENTS);
+		for (int i = 0; i < SEGMENTS; ++i) {
+			segments[i] = new Segment<K, V>(segmentCapacity, listener);
+		}
+	}
+
+	private Segment<K, V> segmentFor(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return segments[h & (SEGMENTS - 1)];
+	}
+
+	V get(K key) {
+		final Segment<K, V> segment = segmentFor(key);
+		final V value;
+		synchronized (segment) {
+			value = segment.get(key);
+		}
+		(value != null ? hits : misses).incrementAndGet();
+		return value;
+	}
+
+	/**
+	 * @return the value previously associated with the key or
+	 *         <code>null</code>
+	 */
+	V put(K key, V value) {
+		final Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.put(key, value);
+		}
+	}
+
+	V remove(K key) {
+		final Segment<K, V> segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.remove(key);
+		}
+	}
+
+	/**
+	 * Removes all the entries which values are accepted by the given filter
+	 *
+	 * @return removed values
+	 */
+	List<V> removeAll(Filter<V> filter) {
+		final List<V> removed = new ArrayList<V>();
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				for (Iterator<V> i = segment.values().iterator(); i.hasNext();) {
+					final V value = i.next();
+					if (filter.accept(value)) {
+						i.remove();
+						removed.add(value);
+					}
+				}
+			}
+		}
+		return removed;
+	}
+
+	int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	long getHitCount() {
+		return hits.get();
+	}
+
+	long getMissCount() {
+		return misses.get();
+	}
+
+	public String toString() {
+		return "size=" + size() + ", hits=" + hits + ", misses=" + misses; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	interface Filter<V> {
+		boolean accept(V value);
+	}
+
+	interface Listener<K, V> {
+		void evicted(K key, V value);
+	}
+}
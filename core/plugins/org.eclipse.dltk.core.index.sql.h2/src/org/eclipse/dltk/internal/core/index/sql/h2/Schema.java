@@ -39,7 +39,7 @@ import org.osgi.service.prefs.BackingStoreException;
  */
 public class Schema {
 
-	public static final String VERSION = "0.8.1"; //$NON-NLS-1$
+	public static final String VERSION = "0.9.1"; //$NON-NLS-1$
 
 	/** Contains already created tables names */
 	private static final Set<String> TABLES_CACHE = new HashSet<String>();
@@ -53,12 +53,7 @@ public class Schema {
 	 */
 	public void initialize(Connection connection) throws SQLException {
 		try {
-			Statement statement = connection.createStatement();
-			try {
-				statement.executeUpdate(readSqlFile("resources/basic.sql")); //$NON-NLS-1$
-			} finally {
-				statement.close();
-			}
+			executeUpdate(connection, readSqlFile("resources/basic.sql")); //$NON-NLS-1$
 
 			// Store new schema version:
 			storeSchemaVersion(VERSION);
@@ -112,17 +107,9 @@ public class Schema {
 		synchronized (TABLES_CACHE) {
 			if (TABLES_CACHE.add(tableName)) {
 
-				String query = isReference ? readSqlFile("resources/element_ref.sql") //$NON-NLS-1$
-						: readSqlFile("resources/element_decl.sql"); //$NON-NLS-1$
-				query = NLS.bind(query, tableName);
-
 				try {
-					Statement statement = connection.createStatement();
-					try {
-						statement.executeUpdate(query);
-					} finally {
-						statement.close();
-					}
+					executeUpdate(connection,
+							getCreateTableQuery(tableName, isReference));
 				} catch (SQLException e) {
 					H2Index.error(
 							"An exception was thrown while creating elements table", //$NON-NLS-1$
@@ -133,6 +120,22 @@ public class Schema {
 		}
 	}
 
+	private String getCreateTableQuery(String tableName, boolean isReference) {
+		String query = isReference ? readSqlFile("resources/element_ref.sql") //$NON-NLS-1$
+				: readSqlFile("resources/element_decl.sql"); //$NON-NLS-1$
+		return NLS.bind(query, tableName);
+	}
+
+	private void executeUpdate(Connection connection, String query)
+			throws SQLException {
+		Statement statement = connection.createStatement();
+		try {
+			statement.executeUpdate(query);
+		} finally {
+			statement.close();
+		}
+	}
+
 	/**
 	 * Checks whether the schema version is compatible with the stored one.
 	 */
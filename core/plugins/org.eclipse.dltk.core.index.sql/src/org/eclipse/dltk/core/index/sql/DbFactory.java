@@ -107,6 +107,32 @@ public abstract class DbFactory {
 	 */
 	public abstract void dispose() throws SQLException;
 
+	/**
+	 * Prepares the given connection for loading a large number of elements.
+	 * Other connections keep reading and writing the database during the bulk
+	 * load, so implementations must not change the database wide settings or
+	 * drop the indexes. Default implementation does nothing.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @throws SQLException
+	 * @since 5.2
+	 */
+	public void beginBulkLoad(Connection connection) throws SQLException {
+	}
+
+	/**
+	 * Finishes the bulk load started with {@link #beginBulkLoad(Connection)}.
+	 * Default implementation does nothing.
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @throws SQLException
+	 * @since 5.2
+	 */
+	public void endBulkLoad(Connection connection) throws SQLException {
+	}
+
 	/**
 	 * Returns concrete DBMS implementation of element DAO
 	 * 
@@ -85,4 +85,34 @@ public interface IContainerDao {
 	public void deleteByPath(Connection connection, String path)
 			throws SQLException;
 
+	/**
+	 * Selects the fingerprint of the container contents
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param path
+	 *            Container path
+	 * @return fingerprint or <code>null</code> if the container doesn't exist
+	 *         or has no fingerprint
+	 * @throws SQLException
+	 * @since 5.2
+	 */
+	public String selectFingerprint(Connection connection, String path)
+			throws SQLException;
+
+	/**
+	 * Updates the fingerprint of the container contents
+	 * 
+	 * @param connection
+	 *            Database connection
+	 * @param path
+	 *            Container path
+	 * @param fingerprint
+	 *            New fingerprint or <code>null</code>
+	 * @throws SQLException
+	 * @since 5.2
+	 */
+	public void updateFingerprint(Connection connection, String path,
+			String fingerprint) throws SQLException;
+
 }
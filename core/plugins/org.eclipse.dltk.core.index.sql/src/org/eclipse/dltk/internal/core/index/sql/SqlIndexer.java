@@ -13,8 +13,8 @@ package org.eclipse.dltk.internal.core.index.sql;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.core.DLTKLanguageManager;
@@ -30,6 +30,8 @@ import org.eclipse.dltk.core.index.sql.File;
 import org.eclipse.dltk.core.index.sql.IElementDao;
 import org.eclipse.dltk.core.index.sql.SqlIndex;
 import org.eclipse.dltk.core.index2.AbstractIndexer;
+import org.eclipse.dltk.core.index2.IBulkIndexer;
+import org.eclipse.dltk.core.index2.IFingerprintIndexer;
 import org.eclipse.dltk.core.index2.search.ISearchEngine;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
 import org.eclipse.dltk.internal.core.SourceModule;
@@ -42,13 +44,39 @@ import org.eclipse.osgi.util.NLS;
  * @author michael
  * 
  */
-public class SqlIndexer extends AbstractIndexer {
+public class SqlIndexer extends AbstractIndexer implements IBulkIndexer,
+		IFingerprintIndexer {
+
+	/**
+	 * Number of documents indexed in a single transaction during the bulk load
+	 */
+	private static final int BULK_COMMIT_SIZE = Integer.getInteger(
+			"org.eclipse.dltk.core.index.sql.bulkCommitSize", 500).intValue(); //$NON-NLS-1$
 
 	private Connection connection;
 	private File file;
 	private String natureId;
 	private IElementDao elementDao;
 
+	/**
+	 * Bulk load in progress in the current thread, the indexer is shared by
+	 * all the indexing requests
+	 */
+	private final ThreadLocal<BulkLoad> bulkLoads = new ThreadLocal<BulkLoad>();
+
+	/**
+	 * Connection shared by all the documents of a bulk load
+	 */
+	private static class BulkLoad {
+		final Connection connection;
+		int documents;
+		boolean failed;
+
+		BulkLoad(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
 	public SqlIndexer() {
 		final DbFactory db = DbFactory.getInstance();
 		if (db == null) {
@@ -57,6 +85,17 @@ public class SqlIndexer extends AbstractIndexer {
 		elementDao = db.getElementDao();
 	}
 
+	/**
+	 * Records the failure in the bulk load of the current thread, if any, so
+	 * {@link #endBulkLoad()} reports it.
+	 */
+	private void bulkLoadFailed() {
+		final BulkLoad bulkLoad = bulkLoads.get();
+		if (bulkLoad != null) {
+			bulkLoad.failed = true;
+		}
+	}
+
 	public void addDeclaration(DeclarationInfo info) {
 
 		try {
@@ -66,6 +105,7 @@ public class SqlIndexer extends AbstractIndexer {
 					info.parent, file.getId(), natureId, false);
 
 		} catch (SQLException e) {
+			bulkLoadFailed();
 			SqlIndex.error(
 					"An exception was thrown while inserting model element declaration",
 					e);
@@ -80,6 +120,7 @@ public class SqlIndexer extends AbstractIndexer {
 					info.qualifier, null, file.getId(), natureId, true);
 
 		} catch (SQLException e) {
+			bulkLoadFailed();
 			SqlIndex.error(
 					"An exception was thrown while inserting model element reference",
 					e);
@@ -93,9 +134,13 @@ public class SqlIndexer extends AbstractIndexer {
 
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
-			connection = dbFactory.createConnection();
+			final BulkLoad bulkLoad = bulkLoads.get();
+			connection = bulkLoad != null ? bulkLoad.connection : dbFactory
+					.createConnection();
 			try {
-				connection.setAutoCommit(false);
+				if (bulkLoad == null) {
+					connection.setAutoCommit(false);
+				}
 
 				IDLTKLanguageToolkit toolkit = DLTKLanguageManager
 						.getLanguageToolkit(sourceModule);
@@ -148,14 +193,67 @@ public class SqlIndexer extends AbstractIndexer {
 
 			} finally {
 				elementDao.commitInsertions();
-				connection.commit();
-				connection.close();
+				if (bulkLoad == null) {
+					connection.commit();
+					connection.close();
+				} else if (++bulkLoad.documents % BULK_COMMIT_SIZE == 0) {
+					connection.commit();
+				}
 			}
 		} catch (Exception e) {
+			bulkLoadFailed();
 			SqlIndex.error("An exception was thrown while indexing document", e);
 		}
 	}
 
+	public void beginBulkLoad() {
+		if (bulkLoads.get() != null) {
+			return;
+		}
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				connection.setAutoCommit(false);
+				dbFactory.beginBulkLoad(connection);
+				bulkLoads.set(new BulkLoad(connection));
+			} finally {
+				if (bulkLoads.get() == null) {
+					connection.close();
+				}
+			}
+		} catch (SQLException e) {
+			SqlIndex.error("An exception was thrown while starting bulk load",
+					e);
+		}
+	}
+
+	public boolean endBulkLoad() {
+		final BulkLoad bulkLoad = bulkLoads.get();
+		if (bulkLoad == null) {
+			// not started, the documents were indexed one by one
+			return false;
+		}
+		bulkLoads.remove();
+		final Connection connection = bulkLoad.connection;
+		try {
+			try {
+				connection.commit();
+			} finally {
+				try {
+					DbFactory.getInstance().endBulkLoad(connection);
+				} finally {
+					connection.close();
+				}
+			}
+			return !bulkLoad.failed;
+		} catch (SQLException e) {
+			SqlIndex.error("An exception was thrown while finishing bulk load",
+					e);
+			return false;
+		}
+	}
+
 	public Map<String, Long> getDocuments(IPath containerPath) {
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
@@ -167,7 +265,7 @@ public class SqlIndexer extends AbstractIndexer {
 
 					File[] files = dbFactory.getFileDao().selectByContainerId(
 							connection, containerDao.getId());
-					Map<String, Long> paths = new HashMap<String, Long>();
+					Map<String, Long> paths = new TreeMap<String, Long>();
 					for (File fileDao : files) {
 						paths.put(fileDao.getPath(), fileDao.getTimestamp());
 					}
@@ -184,6 +282,46 @@ public class SqlIndexer extends AbstractIndexer {
 		return null;
 	}
 
+	public String getContainerFingerprint(IPath containerPath) {
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				return dbFactory.getContainerDao().selectFingerprint(
+						connection, containerPath.toString());
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex.error(
+					"An exception thrown while reading container fingerprint",
+					e);
+		}
+		return null;
+	}
+
+	public void setContainerFingerprint(IPath containerPath,
+			String fingerprint) {
+		try {
+			DbFactory dbFactory = DbFactory.getInstance();
+			Connection connection = dbFactory.createConnection();
+			try {
+				String path = containerPath.toString();
+				if (fingerprint != null) {
+					dbFactory.getContainerDao().insert(connection, path);
+				}
+				dbFactory.getContainerDao().updateFingerprint(connection,
+						path, fingerprint);
+			} finally {
+				connection.close();
+			}
+		} catch (SQLException e) {
+			SqlIndex.error(
+					"An exception thrown while storing container fingerprint",
+					e);
+		}
+	}
+
 	public void removeContainer(IPath containerPath) {
 		try {
 			DbFactory dbFactory = DbFactory.getInstance();
@@ -217,6 +355,7 @@ public class SqlIndexer extends AbstractIndexer {
 				connection.close();
 			}
 		} catch (SQLException e) {
+			bulkLoadFailed();
 			SqlIndex.error(
 					NLS.bind(
 							"An exception thrown while removing file ''{0}'' from index",
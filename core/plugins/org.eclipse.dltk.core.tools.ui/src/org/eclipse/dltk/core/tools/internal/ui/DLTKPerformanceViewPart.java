@@ -1,5 +1,9 @@
 package org.eclipse.dltk.core.tools.internal.ui;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -19,6 +23,7 @@ import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.TreeColumn;
 import org.eclipse.ui.IViewSite;
 import org.eclipse.ui.PartInitException;
@@ -104,6 +109,24 @@ public class DLTKPerformanceViewPart extends ViewPart {
 					}
 				}
 				break;
+			case 7:
+				if (element instanceof Map.Entry) {
+					Map.Entry entry = (Entry) element;
+					if (entry.getValue() instanceof DataEntry) {
+						DataEntry e = (DataEntry) entry.getValue();
+						return Long.toString(e.getPercentile(90));
+					}
+				}
+				break;
+			case 8:
+				if (element instanceof Map.Entry) {
+					Map.Entry entry = (Entry) element;
+					if (entry.getValue() instanceof DataEntry) {
+						DataEntry e = (DataEntry) entry.getValue();
+						return Long.toString(e.getMaxTime());
+					}
+				}
+				break;
 			}
 			return "";
 		}
@@ -214,6 +237,14 @@ public class DLTKPerformanceViewPart extends ViewPart {
 		speed.setText("Speed");
 		speed.setWidth(80);
 
+		TreeColumn p90 = new TreeColumn(viewer.getTree(), SWT.NONE);
+		p90.setText("90% Time");
+		p90.setWidth(80);
+
+		TreeColumn maxTime = new TreeColumn(viewer.getTree(), SWT.NONE);
+		maxTime.setText("Max.Time");
+		maxTime.setWidth(80);
+
 		viewer.setContentProvider(new PerformanceContentProvider());
 		viewer.setLabelProvider(new PerformanceLabelProvide());
 		viewer.setInput(new Object());
@@ -229,6 +260,17 @@ public class DLTKPerformanceViewPart extends ViewPart {
 			public void widgetDefaultSelected(SelectionEvent e) {
 			}
 		});
+		Button export = new Button(composite, SWT.PUSH);
+		export.setText("Export...");
+		export.addSelectionListener(new SelectionListener() {
+
+			public void widgetSelected(SelectionEvent e) {
+				export();
+			}
+
+			public void widgetDefaultSelected(SelectionEvent e) {
+			}
+		});
 		IContextService ctxService = (IContextService) getSite().getService(
 				IContextService.class);
 		if (ctxService != null) {
@@ -237,6 +279,34 @@ public class DLTKPerformanceViewPart extends ViewPart {
 		}
 	}
 
+	/**
+	 * Saves the collected data as tab separated text, with the percentiles
+	 * and the histograms which are not shown in the viewer.
+	 */
+	private void export() {
+		FileDialog dialog = new FileDialog(viewer.getTree().getShell(),
+				SWT.SAVE);
+		dialog.setFilterExtensions(new String[] { "*.txt", "*.*" });
+		dialog.setFileName("performance.txt");
+		String fileName = dialog.open();
+		if (fileName == null) {
+			return;
+		}
+		String text = RuntimePerformanceMonitor
+				.export(RuntimePerformanceMonitor.getAllEntries());
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(
+					fileName), "UTF-8");
+			try {
+				writer.write(text);
+			} finally {
+				writer.close();
+			}
+		} catch (IOException e) {
+			DLTKUIPlugin.log(e);
+		}
+	}
+
 	@Override
 	public void setFocus() {
 	}
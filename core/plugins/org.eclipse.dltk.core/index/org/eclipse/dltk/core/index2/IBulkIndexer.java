@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+/**
+ * Optional extension of {@link IIndexer} for indexers which can load a large
+ * number of documents more efficiently when they know it in advance. Documents
+ * indexed between {@link #beginBulkLoad()} and {@link #endBulkLoad()} may not
+ * be visible to the searches until the bulk load is finished.
+ *
+ * @since 5.2
+ */
+public interface IBulkIndexer extends IIndexer {
+
+	/**
+	 * Starts the bulk load of the documents indexed by the current thread.
+	 * Every call must be followed by a call to {@link #endBulkLoad()} from the
+	 * same thread.
+	 */
+	public void beginBulkLoad();
+
+	/**
+	 * Finishes the bulk load of the current thread and commits the pending
+	 * changes.
+	 * 
+	 * @return <code>true</code> if all the documents indexed or removed
+	 *         during the bulk load are committed, <code>false</code> if some
+	 *         of them failed
+	 */
+	public boolean endBulkLoad();
+}
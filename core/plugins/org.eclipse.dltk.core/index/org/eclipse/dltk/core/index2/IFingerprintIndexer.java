@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.index2;
+
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * Optional extension of {@link IIndexer} for indexers which can store a
+ * fingerprint of the container contents along with the container documents.
+ * When the fingerprint of the container is not changed since it was indexed,
+ * the container is not examined for changes at all.
+ * <p>
+ * The documents of a container with a fingerprint are indexed in a bulk load,
+ * the fingerprint is only stored if {@link #endBulkLoad()} reports that all of
+ * them were indexed.
+ * 
+ * @since 5.2
+ */
+public interface IFingerprintIndexer extends IBulkIndexer {
+
+	/**
+	 * Returns the container fingerprint stored by
+	 * {@link #setContainerFingerprint(IPath, String)}
+	 * 
+	 * @param containerPath
+	 *            Container path
+	 * @return fingerprint or <code>null</code> if the container has no
+	 *         fingerprint
+	 */
+	public String getContainerFingerprint(IPath containerPath);
+
+	/**
+	 * Stores the fingerprint of the container, which documents are now
+	 * completely indexed. The fingerprint is removed together with the
+	 * container.
+	 * 
+	 * @param containerPath
+	 *            Container path
+	 * @param fingerprint
+	 *            Fingerprint or <code>null</code> to remove the fingerprint
+	 */
+	public void setContainerFingerprint(IPath containerPath, String fingerprint);
+}
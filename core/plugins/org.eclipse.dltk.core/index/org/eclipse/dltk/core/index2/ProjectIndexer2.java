@@ -24,6 +24,7 @@ import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.internal.core.index2.AbstractIndexRequest;
 import org.eclipse.dltk.internal.core.index2.AddSourceModuleRequest;
 import org.eclipse.dltk.internal.core.index2.ExternalProjectFragmentRequest;
+import org.eclipse.dltk.internal.core.index2.IndexerManager;
 import org.eclipse.dltk.internal.core.index2.ProgressJob;
 import org.eclipse.dltk.internal.core.index2.ProjectRequest;
 import org.eclipse.dltk.internal.core.index2.ReconcileSourceModuleRequest;
@@ -41,6 +42,15 @@ public class ProjectIndexer2 implements IProjectIndexer {
 
 	private final ProgressJob progressJob = new ProgressJob(jobManager);
 
+	/**
+	 * Returns the indexer updated by the requests of this project indexer.
+	 * 
+	 * @since 5.2
+	 */
+	public IIndexer getIndexer() {
+		return IndexerManager.getIndexer();
+	}
+
 	public void indexLibrary(IScriptProject project, IPath path) {
 		try {
 			IProjectFragment fragment = project.findProjectFragment(path);
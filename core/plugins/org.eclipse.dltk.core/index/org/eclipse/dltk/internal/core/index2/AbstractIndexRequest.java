@@ -11,11 +11,19 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.index2;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IDLTKLanguageToolkitExtension;
@@ -26,6 +34,7 @@ import org.eclipse.dltk.core.index2.IIndexer;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
 import org.eclipse.dltk.core.search.indexing.AbstractJob;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
+import org.eclipse.dltk.internal.core.util.DaemonThreadPool;
 import org.eclipse.dltk.internal.core.util.Util;
 
 /**
@@ -36,6 +45,16 @@ import org.eclipse.dltk.internal.core.util.Util;
  */
 public abstract class AbstractIndexRequest extends AbstractJob {
 
+	/**
+	 * Number of threads used for getting timestamps of files in the remote
+	 * environments
+	 */
+	private static final int STAT_THREADS = Integer.getInteger(
+			"org.eclipse.dltk.core.index2.statThreads", 8).intValue(); //$NON-NLS-1$
+
+	private static final DaemonThreadPool statExecutor = new DaemonThreadPool(
+			"DLTK Index Stat", STAT_THREADS); //$NON-NLS-1$
+
 	ProjectIndexer2 projectIndexer;
 	ProgressJob progressJob;
 
@@ -45,6 +64,14 @@ public abstract class AbstractIndexRequest extends AbstractJob {
 		this.progressJob = progressJob;
 	}
 
+	/**
+	 * Returns the indexer updated by this request
+	 */
+	protected IIndexer getIndexer() {
+		return projectIndexer != null ? projectIndexer.getIndexer()
+				: IndexerManager.getIndexer();
+	}
+
 	protected void reportToProgress(ISourceModule sourceModule) {
 		if (progressJob != null) {
 			String path;
@@ -114,7 +141,7 @@ public abstract class AbstractIndexRequest extends AbstractJob {
 			Collection<ISourceModule> sourceModules,
 			Collection<String> toRemove, Collection<ISourceModule> toReindex) {
 
-		IIndexer indexer = IndexerManager.getIndexer();
+		IIndexer indexer = getIndexer();
 		if (indexer == null) {
 			return;
 		}
@@ -125,21 +152,107 @@ public abstract class AbstractIndexRequest extends AbstractJob {
 			return;
 		}
 
-		toRemove.addAll(documentNames.keySet());
-
+		// Walk the source modules and the indexed documents sorted by path in
+		// lockstep, collecting the modules which are in the index already
+		final int segmentCount = containerPath.segmentCount();
+		final ModulePath[] modules = new ModulePath[sourceModules.size()];
+		int count = 0;
 		for (ISourceModule sourceModule : sourceModules) {
-			String relativePath = Util.relativePath(sourceModule.getPath(),
-					containerPath.segmentCount());
-			IFileHandle handle = EnvironmentPathUtils.getFile(sourceModule,
-					false);
-
-			if (toRemove.remove(relativePath)) {
-				if (documentNames.get(relativePath) < handle.lastModified()) {
-					toReindex.add(sourceModule);
-				}
+			modules[count++] = new ModulePath(Util.relativePath(
+					sourceModule.getPath(), segmentCount), sourceModule);
+		}
+		Arrays.sort(modules);
+
+		final String[] documents = documentNames.keySet().toArray(
+				new String[documentNames.size()]);
+		if (!(documentNames instanceof SortedMap<?, ?>)
+				|| ((SortedMap<?, ?>) documentNames).comparator() != null) {
+			Arrays.sort(documents);
+		}
+
+		final List<ModulePath> existing = new ArrayList<ModulePath>();
+		int m = 0;
+		int d = 0;
+		while (m < modules.length || d < documents.length) {
+			final int c = m == modules.length ? 1 : d == documents.length ? -1
+					: modules[m].path.compareTo(documents[d]);
+			if (c < 0) {
+				toReindex.add(modules[m++].sourceModule);
+			} else if (c > 0) {
+				toRemove.add(documents[d++]);
 			} else {
-				toReindex.add(sourceModule);
+				existing.add(modules[m++]);
+				++d;
 			}
 		}
+
+		final IFileHandle[] handles = new IFileHandle[existing.size()];
+		for (int i = 0; i < handles.length; ++i) {
+			handles[i] = EnvironmentPathUtils.getFile(
+					existing.get(i).sourceModule, false);
+		}
+		final long[] timestamps = lastModified(handles);
+		for (int i = 0; i < handles.length; ++i) {
+			final ModulePath module = existing.get(i);
+			if (documentNames.get(module.path) < timestamps[i]) {
+				toReindex.add(module.sourceModule);
+			}
+		}
+	}
+
+	private static class ModulePath implements Comparable<ModulePath> {
+		final String path;
+		final ISourceModule sourceModule;
+
+		ModulePath(String path, ISourceModule sourceModule) {
+			this.path = path;
+			this.sourceModule = sourceModule;
+		}
+
+		public int compareTo(ModulePath other) {
+			return path.compareTo(other.path);
+		}
+	}
+
+	/**
+	 * Returns the modification time of the given files. Files of the remote
+	 * environments are examined concurrently in batches, since every call is a
+	 * round-trip to the remote host.
+	 */
+	private static long[] lastModified(final IFileHandle[] handles) {
+		final long[] timestamps = new long[handles.length];
+		if (STAT_THREADS > 1 && handles.length > 1
+				&& !handles[0].getEnvironment().isLocal()) {
+			final int batchSize = (handles.length + STAT_THREADS - 1)
+					/ STAT_THREADS;
+			final List<Callable<Object>> batches = new ArrayList<Callable<Object>>();
+			for (int start = 0; start < handles.length; start += batchSize) {
+				final int from = start;
+				final int to = Math.min(start + batchSize, handles.length);
+				batches.add(new Callable<Object>() {
+					public Object call() {
+						for (int i = from; i < to; ++i) {
+							timestamps[i] = handles[i].lastModified();
+						}
+						return null;
+					}
+				});
+			}
+			try {
+				for (Future<Object> batch : statExecutor.getExecutor()
+						.invokeAll(batches)) {
+					batch.get();
+				}
+				return timestamps;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				DLTKCore.error("Error getting file timestamps", e.getCause()); //$NON-NLS-1$
+			}
+		}
+		for (int i = 0; i < handles.length; ++i) {
+			timestamps[i] = handles[i].lastModified();
+		}
+		return timestamps;
 	}
 }
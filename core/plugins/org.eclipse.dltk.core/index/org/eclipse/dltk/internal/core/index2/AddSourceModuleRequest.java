@@ -39,7 +39,7 @@ public class AddSourceModuleRequest extends AbstractIndexRequest {
 	}
 
 	protected void run() throws CoreException, IOException {
-		IIndexer indexer = IndexerManager.getIndexer();
+		IIndexer indexer = getIndexer();
 		if (indexer == null) {
 			return;
 		}
@@ -12,17 +12,23 @@
 package org.eclipse.dltk.internal.core.index2;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.core.IBuildpathEntry;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IModelElementVisitor;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.environment.EnvironmentManager;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
 import org.eclipse.dltk.core.environment.IEnvironment;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.core.index2.IFingerprintIndexer;
+import org.eclipse.dltk.core.index2.IIndexer;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
 import org.eclipse.dltk.internal.core.ExternalSourceModule;
@@ -48,9 +54,48 @@ public class ExternalProjectFragmentRequest extends AbstractIndexRequest {
 	}
 
 	protected void run() throws CoreException, IOException {
+		final String fingerprint = getFingerprint();
+		if (fingerprint != null) {
+			final IIndexer indexer = getIndexer();
+			if (indexer instanceof IFingerprintIndexer
+					&& fingerprint.equals(((IFingerprintIndexer) indexer)
+							.getContainerFingerprint(fragment.getPath()))) {
+				// Archive is not changed since it was indexed
+				return;
+			}
+		}
 		final Set<ISourceModule> sourceModules = getExternalSourceModules();
 		projectIndexer.request(new SourceModulesRequest(projectIndexer,
-				fragment.getPath(), sourceModules, progressJob));
+				fragment.getPath(), sourceModules, progressJob, true,
+				fingerprint));
+	}
+
+	/**
+	 * Returns the fingerprint of the fragment contents, which is only known
+	 * for the archives: every change of the archive changes its timestamp or
+	 * size. Folders can only be checked file by file, so <code>null</code> is
+	 * returned for them.
+	 */
+	private String getFingerprint() throws ModelException {
+		if (!fragment.isArchive()) {
+			return null;
+		}
+		final IFileHandle archive = EnvironmentPathUtils.getFile(fragment);
+		if (archive == null) {
+			return null;
+		}
+		final long lastModified = archive.lastModified();
+		if (lastModified == 0) {
+			return null;
+		}
+		int filters = 0;
+		final IBuildpathEntry entry = fragment.getRawBuildpathEntry();
+		if (entry != null) {
+			filters = Arrays.hashCode(entry.getInclusionPatterns()) * 31
+					+ Arrays.hashCode(entry.getExclusionPatterns());
+		}
+		return lastModified + ":" + archive.length() + ":" //$NON-NLS-1$ //$NON-NLS-2$
+				+ Integer.toHexString(filters);
 	}
 
 	protected IEnvironment getEnvironment() {
@@ -64,7 +64,7 @@ public class ProjectRequest extends AbstractIndexRequest {
 		}
 
 		projectIndexer.request(new SourceModulesRequest(projectIndexer, project
-				.getPath(), sourceModules, progressJob));
+				.getPath(), sourceModules, progressJob, true, null));
 	}
 
 	private void getSourceModules(IProjectFragment fragment,
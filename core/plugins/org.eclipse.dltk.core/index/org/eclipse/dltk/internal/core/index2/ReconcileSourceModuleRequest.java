@@ -37,7 +37,7 @@ public class ReconcileSourceModuleRequest extends AddSourceModuleRequest {
 	}
 
 	protected void run() throws CoreException, IOException {
-		IIndexer indexer = IndexerManager.getIndexer();
+		IIndexer indexer = getIndexer();
 		if (indexer == null) {
 			return;
 		}
@@ -42,7 +42,7 @@ public class RemoveContainerRequest extends AbstractIndexRequest {
 	}
 
 	protected void run() throws CoreException, IOException {
-		IIndexer indexer = IndexerManager.getIndexer();
+		IIndexer indexer = getIndexer();
 		if (indexer == null) {
 			return;
 		}
@@ -22,6 +22,8 @@ import java.util.Set;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.IBulkIndexer;
+import org.eclipse.dltk.core.index2.IFingerprintIndexer;
 import org.eclipse.dltk.core.index2.IIndexer;
 import org.eclipse.dltk.core.index2.ProjectIndexer2;
 
@@ -35,14 +37,40 @@ import org.eclipse.dltk.core.index2.ProjectIndexer2;
  */
 public class SourceModulesRequest extends AbstractIndexRequest {
 
+	/**
+	 * Minimal number of documents to re-index for the bulk load to be used,
+	 * smaller sets are indexed document by document.
+	 */
+	private static final int BULK_LOAD_THRESHOLD = Integer.getInteger(
+			"org.eclipse.dltk.core.index2.bulkLoadThreshold", 16).intValue(); //$NON-NLS-1$
+
 	private final IPath containerPath;
 	private final Set<ISourceModule> sourceModules;
+	private final boolean bulkLoad;
+	private final String fingerprint;
 
 	public SourceModulesRequest(ProjectIndexer2 indexer, IPath containerPath,
 			Set<ISourceModule> sourceModules, ProgressJob progressJob) {
+		this(indexer, containerPath, sourceModules, progressJob, false, null);
+	}
+
+	/**
+	 * @param bulkLoad
+	 *            whether documents should be indexed in a single bulk load if
+	 *            the indexer supports it (see {@link IBulkIndexer})
+	 * @param fingerprint
+	 *            fingerprint of the container contents to store once the
+	 *            container is indexed (see {@link IFingerprintIndexer}), or
+	 *            <code>null</code>
+	 */
+	public SourceModulesRequest(ProjectIndexer2 indexer, IPath containerPath,
+			Set<ISourceModule> sourceModules, ProgressJob progressJob,
+			boolean bulkLoad, String fingerprint) {
 		super(indexer, progressJob);
 		this.containerPath = containerPath;
 		this.sourceModules = sourceModules;
+		this.bulkLoad = bulkLoad;
+		this.fingerprint = fingerprint;
 	}
 
 	protected String getName() {
@@ -51,7 +79,7 @@ public class SourceModulesRequest extends AbstractIndexRequest {
 
 	protected void run() throws CoreException, IOException {
 
-		IIndexer indexer = IndexerManager.getIndexer();
+		IIndexer indexer = getIndexer();
 		if (indexer == null) {
 			return;
 		}
@@ -62,10 +90,6 @@ public class SourceModulesRequest extends AbstractIndexRequest {
 		analyzeSourceModuleChanges(containerPath, sourceModules, toRemove,
 				toReindex);
 
-		for (final String path : toRemove) {
-			indexer.removeDocument(containerPath, path);
-		}
-
 		Collections.sort(toReindex, new Comparator<ISourceModule>() {
 			public int compare(ISourceModule m1, ISourceModule m2) {
 				return m1.getPath().toString().compareTo(
@@ -73,9 +97,35 @@ public class SourceModulesRequest extends AbstractIndexRequest {
 			}
 		});
 
-		for (final ISourceModule sourceModule : toReindex) {
-			reportToProgress(sourceModule);
-			indexer.indexDocument(sourceModule);
+		// the bulk load reports whether the whole container is indexed, so
+		// it is always used when the fingerprint is stored
+		final boolean storeFingerprint = fingerprint != null
+				&& indexer instanceof IFingerprintIndexer;
+		final IBulkIndexer bulkIndexer = (storeFingerprint || bulkLoad
+				&& toReindex.size() >= BULK_LOAD_THRESHOLD)
+				&& indexer instanceof IBulkIndexer ? (IBulkIndexer) indexer
+				: null;
+		if (bulkIndexer != null) {
+			bulkIndexer.beginBulkLoad();
+		}
+		boolean indexed = false;
+		try {
+			for (final String path : toRemove) {
+				indexer.removeDocument(containerPath, path);
+			}
+			for (final ISourceModule sourceModule : toReindex) {
+				reportToProgress(sourceModule);
+				indexer.indexDocument(sourceModule);
+			}
+		} finally {
+			if (bulkIndexer != null) {
+				indexed = bulkIndexer.endBulkLoad();
+			}
+		}
+
+		if (storeFingerprint && indexed && !isCancelled) {
+			((IFingerprintIndexer) indexer).setContainerFingerprint(
+					containerPath, fingerprint);
 		}
 	}
 
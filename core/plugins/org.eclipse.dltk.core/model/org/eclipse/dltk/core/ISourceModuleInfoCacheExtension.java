@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core;
+
+/**
+ * Optional interface of the {@link ISourceModuleInfoCache} implementations
+ * able to keep the information of some modules regardless of the capacity.
+ * 
+ * @since 5.2
+ */
+public interface ISourceModuleInfoCacheExtension extends ISourceModuleInfoCache {
+
+	/**
+	 * Keeps the information of the specified module in the cache until it is
+	 * unpinned, e.g. while the module is open in an editor. Calls must be
+	 * balanced with {@link #unpin(ISourceModule)}.
+	 */
+	void pin(ISourceModule module);
+
+	/**
+	 * Releases the module pinned with {@link #pin(ISourceModule)}
+	 */
+	void unpin(ISourceModule module);
+}
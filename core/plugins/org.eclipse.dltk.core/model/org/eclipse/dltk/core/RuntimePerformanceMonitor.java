@@ -3,9 +3,12 @@ package org.eclipse.dltk.core;
 import static org.eclipse.core.runtime.Platform.getDebugOption;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.eclipse.dltk.core.environment.IEnvironment;
 
@@ -37,10 +40,22 @@ public class RuntimePerformanceMonitor {
 		active = value;
 	}
 
+	/**
+	 * Number of histogram buckets, the bucket <code>i</code> counts the
+	 * operations which took from 2<sup>i-1</sup> to 2<sup>i</sup>-1
+	 * milliseconds, the first one the operations shorter than a millisecond
+	 * and the last one all the longer operations.
+	 *
+	 * @since 5.2
+	 */
+	public static final int BUCKETS = 20;
+
 	public static class DataEntry {
 		long count = 0;
 		long total = 0;
 		long time = 0;
+		long maxTime = 0;
+		final long[] histogram = new long[BUCKETS];
 
 		public long getCount() {
 			return count;
@@ -53,33 +68,150 @@ public class RuntimePerformanceMonitor {
 		public long getTime() {
 			return time;
 		}
+
+		/**
+		 * Returns the longest time in milliseconds
+		 *
+		 * @since 5.2
+		 */
+		public long getMaxTime() {
+			return maxTime;
+		}
+
+		/**
+		 * Returns the operation counts per duration, see {@link #BUCKETS}
+		 *
+		 * @since 5.2
+		 */
+		public long[] getHistogram() {
+			return histogram.clone();
+		}
+
+		/**
+		 * Returns the time in milliseconds which the specified percentage of
+		 * the operations did not exceed, as estimated from the histogram.
+		 *
+		 * @param percent
+		 *            from 0 to 100
+		 * @since 5.2
+		 */
+		public long getPercentile(double percent) {
+			if (count == 0) {
+				return 0;
+			}
+			final double threshold = count * percent / 100;
+			long sum = 0;
+			for (int i = 0; i < BUCKETS - 1; ++i) {
+				sum += histogram[i];
+				if (sum >= threshold) {
+					return i == 0 ? 0 : Math.min((1L << i) - 1, maxTime);
+				}
+			}
+			return maxTime;
+		}
 	}
 
-	private static final Map<String, Map<String, DataEntry>> entries = new HashMap<String, Map<String, DataEntry>>();
+	/**
+	 * Number of stripes of the counters, the threads update different stripes
+	 * so they do not contend on the same cells.
+	 */
+	private static final int STRIPES = stripes();
+
+	private static int stripes() {
+		int stripes = 1;
+		while (stripes < Runtime.getRuntime().availableProcessors()
+				&& stripes < 64) {
+			stripes <<= 1;
+		}
+		return stripes;
+	}
+
+	private static final int COUNT = 0;
+	private static final int TOTAL = 1;
+	private static final int TIME = 2;
+	private static final int HISTOGRAM = 3;
+	/**
+	 * Distance between the stripes: the cells of a stripe (count, total, time
+	 * and histogram) rounded up to whole cache lines, so the stripes do not
+	 * share any.
+	 */
+	private static final int STRIDE = (HISTOGRAM + BUCKETS + 7) & ~7;
+
+	private static class Counters {
+		final AtomicLongArray cells = new AtomicLongArray(STRIPES * STRIDE);
+		final AtomicLong maxTime = new AtomicLong();
+
+		void add(long elapsed, long value) {
+			final int stripe = (int) Thread.currentThread().getId()
+					& (STRIPES - 1);
+			final int base = stripe * STRIDE;
+			cells.incrementAndGet(base + COUNT);
+			cells.addAndGet(base + TOTAL, value);
+			cells.addAndGet(base + TIME, elapsed);
+			for (long max; elapsed > (max = maxTime.get());) {
+				if (maxTime.compareAndSet(max, elapsed)) {
+					break;
+				}
+			}
+			final int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0,
+					elapsed));
+			cells.incrementAndGet(base + HISTOGRAM
+					+ Math.min(bucket, BUCKETS - 1));
+		}
+
+		DataEntry copy(boolean clear) {
+			final DataEntry copy = new DataEntry();
+			for (int base = 0; base < STRIPES * STRIDE; base += STRIDE) {
+				copy.count += get(cells, base + COUNT, clear);
+				copy.total += get(cells, base + TOTAL, clear);
+				copy.time += get(cells, base + TIME, clear);
+				for (int i = 0; i < BUCKETS; ++i) {
+					copy.histogram[i] += get(cells, base + HISTOGRAM + i,
+							clear);
+				}
+			}
+			copy.maxTime = clear ? maxTime.getAndSet(0) : maxTime.get();
+			return copy;
+		}
+
+		private static long get(AtomicLongArray array, int index,
+				boolean clear) {
+			return clear ? array.getAndSet(index, 0) : array.get(index);
+		}
+	}
+
+	/**
+	 * Counters by language and kind. The counters are updated without locking
+	 * and are never replaced except by {@link #clear()}, so
+	 * {@link #snapshotAndClear()} takes their values away instead.
+	 */
+	private static volatile ConcurrentMap<String, ConcurrentMap<String, Counters>> entries = new ConcurrentHashMap<String, ConcurrentMap<String, Counters>>();
 
 	/**
 	 * @noreference This method is not intended to be referenced by clients.
 	 */
-	public static synchronized void updateData(String language, String kind,
-			long time, long value) {
+	public static void updateData(String language, String kind, long time,
+			long value) {
 		if (RUNTIME_PERFORMANCE) {
-			Map<String, DataEntry> attrs = internalGetEntries(language);
-			DataEntry entry = attrs.get(kind);
-			if (entry == null) {
-				entry = new DataEntry();
-				attrs.put(kind, entry);
+			final ConcurrentMap<String, Counters> attrs = internalGetEntries(
+					entries, language);
+			Counters counters = attrs.get(kind);
+			if (counters == null) {
+				final Counters newCounters = new Counters();
+				counters = attrs.putIfAbsent(kind, newCounters);
+				if (counters == null) {
+					counters = newCounters;
+				}
 			}
-			entry.count++;
-			entry.total += value;
-			entry.time += time;
+			counters.add(time, value);
 		}
 	}
 
 	/**
 	 * @noreference This method is not intended to be referenced by clients.
 	 */
-	public static synchronized void updateData(String language, String kind,
-			long time, long value, IEnvironment env) {
+	public static void updateData(String language, String kind, long time,
+			long value, IEnvironment env) {
 		if (RUNTIME_PERFORMANCE) {
 			if (env != null) {
 				updateData(language, kind + " " + env.getName(), time, value);
@@ -88,42 +220,100 @@ public class RuntimePerformanceMonitor {
 		}
 	}
 
-	private static synchronized Map<String, DataEntry> internalGetEntries(
+	private static ConcurrentMap<String, Counters> internalGetEntries(
+			ConcurrentMap<String, ConcurrentMap<String, Counters>> entries,
 			String language) {
-		Map<String, DataEntry> attrs = entries.get(language);
+		ConcurrentMap<String, Counters> attrs = entries.get(language);
 		if (attrs == null) {
-			attrs = new HashMap<String, DataEntry>();
-			entries.put(language, attrs);
+			final ConcurrentMap<String, Counters> newAttrs = new ConcurrentHashMap<String, Counters>();
+			attrs = entries.putIfAbsent(language, newAttrs);
+			if (attrs == null) {
+				attrs = newAttrs;
+			}
 		}
 		return attrs;
 	}
 
 	public static Map<String, DataEntry> getEntries(String language) {
-		Map<String, DataEntry> copy = new HashMap<String, DataEntry>();
-		Map<String, DataEntry> map = internalGetEntries(language);
-		for (Map.Entry<String, DataEntry> i : map.entrySet()) {
-			DataEntry value = i.getValue();
-			DataEntry decopy = new DataEntry();
-			decopy.count = value.count;
-			decopy.total = value.total;
-			decopy.time = value.time;
-			copy.put(i.getKey(), decopy);
+		return copy(internalGetEntries(entries, language), false);
+	}
+
+	private static Map<String, DataEntry> copy(
+			Map<String, Counters> counters, boolean clear) {
+		final Map<String, DataEntry> copy = new HashMap<String, DataEntry>();
+		for (Map.Entry<String, Counters> i : counters.entrySet()) {
+			final DataEntry entry = i.getValue().copy(clear);
+			if (!clear || entry.count != 0) {
+				copy.put(i.getKey(), entry);
+			}
 		}
 		return copy;
 	}
 
 	public static Map<String, Map<String, DataEntry>> getAllEntries() {
-		final Set<String> keySet;
-		synchronized (RuntimePerformanceMonitor.class) {
-			keySet = new HashSet<String>(entries.keySet());
-		}
-		Map<String, Map<String, DataEntry>> result = new HashMap<String, Map<String, DataEntry>>();
-		for (String key : keySet) {
-			result.put(key, getEntries(key));
+		return copyAll(false);
+	}
+
+	private static Map<String, Map<String, DataEntry>> copyAll(boolean clear) {
+		final Map<String, Map<String, DataEntry>> result = new HashMap<String, Map<String, DataEntry>>();
+		for (Map.Entry<String, ConcurrentMap<String, Counters>> entry : entries
+				.entrySet()) {
+			result.put(entry.getKey(), copy(entry.getValue(), clear));
 		}
 		return result;
 	}
 
+	/**
+	 * Returns the collected data and starts collecting from scratch. No update
+	 * is lost: each value recorded by an operation completing while this
+	 * method runs is counted either in the returned data or in the next one.
+	 * Such an operation may however be split between the two, e.g. counted in
+	 * one and have its time in the other.
+	 *
+	 * @since 5.2
+	 */
+	public static Map<String, Map<String, DataEntry>> snapshotAndClear() {
+		return copyAll(true);
+	}
+
+	/**
+	 * Exports the specified data (as returned by {@link #getAllEntries()}) as
+	 * tab separated text, one line per language and kind.
+	 *
+	 * @since 5.2
+	 */
+	public static String export(Map<String, Map<String, DataEntry>> data) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("language\tkind\tcount\ttime ms\ttotal\tmax ms\tp50 ms\tp90 ms\tp99 ms\thistogram (ms, log2)\n"); //$NON-NLS-1$
+		for (Map.Entry<String, Map<String, DataEntry>> language : new TreeMap<String, Map<String, DataEntry>>(
+				data).entrySet()) {
+			for (Map.Entry<String, DataEntry> entry : new TreeMap<String, DataEntry>(
+					language.getValue()).entrySet()) {
+				final DataEntry e = entry.getValue();
+				sb.append(language.getKey()).append('\t');
+				sb.append(entry.getKey()).append('\t').append(e.count);
+				sb.append('\t').append(e.time);
+				sb.append('\t').append(e.total);
+				sb.append('\t').append(e.maxTime);
+				sb.append('\t').append(e.getPercentile(50));
+				sb.append('\t').append(e.getPercentile(90));
+				sb.append('\t').append(e.getPercentile(99)).append('\t');
+				int last = BUCKETS - 1;
+				while (last > 0 && e.histogram[last] == 0) {
+					--last;
+				}
+				for (int i = 0; i <= last; ++i) {
+					if (i != 0) {
+						sb.append(' ');
+					}
+					sb.append(e.histogram[i]);
+				}
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+
 	public static class PerformanceNode {
 		private long start;
 		private long end;
@@ -192,7 +382,7 @@ public class RuntimePerformanceMonitor {
 		return node;
 	}
 
-	public static synchronized void clear() {
-		entries.clear();
+	public static void clear() {
+		entries = new ConcurrentHashMap<String, ConcurrentMap<String, Counters>>();
 	}
 }
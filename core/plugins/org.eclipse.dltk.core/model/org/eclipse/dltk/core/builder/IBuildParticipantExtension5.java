@@ -0,0 +1,29 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.builder;
+
+/**
+ * This interface can be optionally implemented by {@link IBuildParticipant} to
+ * allow building several modules concurrently. The modules are built
+ * concurrently only if enabled with the
+ * <code>org.eclipse.dltk.core.builder.parallelThreads</code> system property.
+ *
+ * @since 5.2
+ */
+public interface IBuildParticipantExtension5 extends IBuildParticipant {
+
+	/**
+	 * Returns <code>true</code> if {@link #build(IBuildContext)} can be called
+	 * for different modules at the same time from different threads. Such
+	 * participants must not acquire scheduling rules or the workspace lock
+	 * while building a module, problems should be reported via the
+	 * {@link IBuildContext}.
+	 */
+	boolean isThreadSafe();
+
+}
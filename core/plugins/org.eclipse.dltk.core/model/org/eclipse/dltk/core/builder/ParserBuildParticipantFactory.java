@@ -16,7 +16,6 @@ import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExecutableExtension;
 import org.eclipse.dltk.ast.parser.IModuleDeclaration;
 import org.eclipse.dltk.ast.parser.ISourceParser;
-import org.eclipse.dltk.compiler.env.IModuleSource;
 import org.eclipse.dltk.compiler.problem.ProblemCollector;
 import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IScriptProject;
@@ -34,7 +33,7 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 			final ISourceParser parser = DLTKLanguageManager.getSourceParser(
 					project.getProject(), natureId);
 			if (parser != null) {
-				return new ParserBuildParticipant(parser);
+				return new ParserBuildParticipant(project, natureId, parser);
 			}
 		}
 		return null;
@@ -47,12 +46,29 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 		natureId = config.getAttribute("nature"); //$NON-NLS-1$
 	}
 
-	private static class ParserBuildParticipant implements IBuildParticipant {
+	/**
+	 * The parsers are not required to be thread-safe, so every thread building
+	 * the modules uses its own parser.
+	 */
+	private static class ParserBuildParticipant implements
+			IBuildParticipantExtension5 {
 
-		private final ISourceParser parser;
+		private final ThreadLocal<ISourceParser> parsers;
 
-		public ParserBuildParticipant(ISourceParser parser) {
-			this.parser = parser;
+		public ParserBuildParticipant(final IScriptProject project,
+				final String natureId, ISourceParser parser) {
+			this.parsers = new ThreadLocal<ISourceParser>() {
+				@Override
+				protected ISourceParser initialValue() {
+					return DLTKLanguageManager.getSourceParser(
+							project.getProject(), natureId);
+				}
+			};
+			this.parsers.set(parser);
+		}
+
+		public boolean isThreadSafe() {
+			return true;
 		}
 
 		public void build(IBuildContext context) throws CoreException {
@@ -77,9 +93,7 @@ public class ParserBuildParticipantFactory extends AbstractBuildParticipantType
 			// create problem collector
 			final ProblemCollector problemCollector = new ProblemCollector();
 			// parse
-			moduleDeclaration = parser
-					.parse((IModuleSource) context.getSourceModule(),
-							problemCollector);
+			moduleDeclaration = parsers.get().parse(context, problemCollector);
 			// put result to the cache
 			SourceParserUtil.putModuleToCache(cacheEntry, moduleDeclaration,
 					problemCollector);
@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.caching;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.dltk.ast.ASTListNode;
+import org.eclipse.dltk.ast.ASTNode;
+import org.eclipse.dltk.ast.declarations.Argument;
+import org.eclipse.dltk.ast.declarations.Declaration;
+import org.eclipse.dltk.ast.declarations.MethodDeclaration;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.declarations.TypeDeclaration;
+import org.eclipse.dltk.ast.expressions.CallArgumentsList;
+import org.eclipse.dltk.ast.expressions.CallExpression;
+import org.eclipse.dltk.ast.expressions.StringLiteral;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.ast.statements.Block;
+
+/**
+ * {@link PersistentASTCache} encoding the ASTs built from the core node
+ * classes: {@link ModuleDeclaration}, {@link Block}, {@link ASTListNode},
+ * {@link CallArgumentsList}, {@link TypeDeclaration},
+ * {@link MethodDeclaration}, {@link Argument}, {@link SimpleReference},
+ * {@link StringLiteral} and {@link CallExpression}. Only these exact classes
+ * are supported, the modules containing other nodes (including the language
+ * specific subclasses of these) are not cached.
+ * <p>
+ * Languages which parsers build such ASTs register this class with the
+ * <code>org.eclipse.dltk.core.astCache</code> extension point.
+ *
+ * @since 5.2
+ */
+public class CoreASTCache extends PersistentASTCache {
+
+	private static final int NULL = 0;
+	private static final int MODULE = 1;
+	private static final int BLOCK = 2;
+	private static final int LIST = 3;
+	private static final int ARGUMENTS = 4;
+	private static final int EMPTY_ARGUMENTS = 5;
+	private static final int TYPE = 6;
+	private static final int METHOD = 7;
+	private static final int ARGUMENT = 8;
+	private static final int REFERENCE = 9;
+	private static final int STRING = 10;
+	private static final int CALL = 11;
+
+	@Override
+	protected String getName() {
+		return "core"; //$NON-NLS-1$
+	}
+
+	@Override
+	protected void writeModule(DataOutputStream out, IModuleDeclaration module)
+			throws IOException {
+		if (!(module instanceof ASTNode)) {
+			throw new IOException();
+		}
+		writeNode(out, (ASTNode) module);
+	}
+
+	@Override
+	protected IModuleDeclaration readModule(DataInputStream in)
+			throws IOException {
+		final ASTNode node = readNode(in);
+		if (!(node instanceof ModuleDeclaration)) {
+			throw new IOException();
+		}
+		return (ModuleDeclaration) node;
+	}
+
+	private void writeNode(DataOutputStream out, ASTNode node)
+			throws IOException {
+		if (node == null) {
+			out.writeByte(NULL);
+			return;
+		}
+		if (node == CallArgumentsList.EMPTY) {
+			out.writeByte(EMPTY_ARGUMENTS);
+			return;
+		}
+		final Class<?> clazz = node.getClass();
+		if (clazz == ModuleDeclaration.class) {
+			final ModuleDeclaration module = (ModuleDeclaration) node;
+			if (module.scope != null || !module.getTypeList().isEmpty()
+					|| !module.getFunctionList().isEmpty()
+					|| !module.getVariablesList().isEmpty()) {
+				throw new IOException();
+			}
+			out.writeByte(MODULE);
+			writeRange(out, node);
+			writeNodes(out, module.getStatements());
+		} else if (clazz == Block.class) {
+			out.writeByte(BLOCK);
+			writeRange(out, node);
+			writeNodes(out, ((Block) node).getStatements());
+		} else if (clazz == ASTListNode.class) {
+			out.writeByte(LIST);
+			writeRange(out, node);
+			writeNodes(out, ((ASTListNode) node).getChilds());
+		} else if (clazz == CallArgumentsList.class) {
+			out.writeByte(ARGUMENTS);
+			writeRange(out, node);
+			writeNodes(out, ((CallArgumentsList) node).getChilds());
+		} else if (clazz == TypeDeclaration.class) {
+			final TypeDeclaration type = (TypeDeclaration) node;
+			final String enclosingTypeName = type.getEnclosingTypeName();
+			if (type.getRef() == null || enclosingTypeName == null
+					|| enclosingTypeName.startsWith("$") //$NON-NLS-1$
+					|| type.getParentStart() != 0 || type.getParentEnd() != 0
+					|| !type.getMethodList().isEmpty()
+					|| !type.getTypeList().isEmpty()
+					|| !type.getFieldList().isEmpty()) {
+				throw new IOException();
+			}
+			out.writeByte(TYPE);
+			writeDeclaration(out, type);
+			PersistentASTCache.writeString(out, enclosingTypeName);
+			writeNode(out, type.getSuperClasses());
+			out.writeInt(type.getBodyStart());
+			out.writeInt(type.getBodyEnd());
+			writeNode(out, type.getBody());
+		} else if (clazz == MethodDeclaration.class) {
+			final MethodDeclaration method = (MethodDeclaration) node;
+			final List<?> decorators = method.getDecorators();
+			if (method.scope != null
+					|| (decorators != null && !decorators.isEmpty())) {
+				throw new IOException();
+			}
+			out.writeByte(METHOD);
+			writeRange(out, method);
+			out.writeInt(method.getModifiers());
+			PersistentASTCache.writeString(out, method.getComments());
+			out.writeBoolean(method.getRef() != null);
+			if (method.getRef() != null) {
+				writeNode(out, method.getRef());
+			}
+			out.writeBoolean(decorators != null);
+			PersistentASTCache.writeString(out, method.getDeclaringTypeName());
+			final List<?> arguments = method.getArguments();
+			if (arguments == null) {
+				throw new IOException();
+			}
+			for (Object argument : arguments) {
+				if (argument == null || argument.getClass() != Argument.class) {
+					throw new IOException();
+				}
+			}
+			writeNodes(out, arguments);
+			writeNode(out, method.getBody());
+		} else if (clazz == Argument.class) {
+			final Argument argument = (Argument) node;
+			if (argument.getRef() == null) {
+				throw new IOException();
+			}
+			out.writeByte(ARGUMENT);
+			writeDeclaration(out, argument);
+			writeNode(out, argument.getInitialization());
+		} else if (clazz == SimpleReference.class) {
+			out.writeByte(REFERENCE);
+			writeRange(out, node);
+			PersistentASTCache.writeString(out, ((SimpleReference) node)
+					.getName());
+		} else if (clazz == StringLiteral.class) {
+			out.writeByte(STRING);
+			writeRange(out, node);
+			PersistentASTCache.writeString(out, ((StringLiteral) node)
+					.getValue());
+		} else if (clazz == CallExpression.class) {
+			final CallExpression call = (CallExpression) node;
+			out.writeByte(CALL);
+			writeRange(out, node);
+			writeNode(out, call.getReceiver());
+			writeNode(out, call.getCallName());
+			writeNode(out, call.getArgs());
+		} else {
+			throw new IOException();
+		}
+	}
+
+	private ASTNode readNode(DataInputStream in) throws IOException {
+		final int tag = in.readByte();
+		switch (tag) {
+		case NULL:
+			return null;
+		case EMPTY_ARGUMENTS:
+			return CallArgumentsList.EMPTY;
+		case MODULE: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final ModuleDeclaration module = new ModuleDeclaration(end);
+			module.setStart(start);
+			module.setStatements(readNodes(in));
+			return module;
+		}
+		case BLOCK: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			return new Block(start, end, readNodes(in));
+		}
+		case LIST: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			return new ASTListNode(start, end, readNodes(in));
+		}
+		case ARGUMENTS: {
+			final CallArgumentsList arguments = new CallArgumentsList(
+					in.readInt(), in.readInt());
+			arguments.setChilds(readNodes(in));
+			return arguments;
+		}
+		case TYPE: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final int modifiers = in.readInt();
+			final String comments = PersistentASTCache.readString(in);
+			final SimpleReference name = readReference(in);
+			final TypeDeclaration type = new TypeDeclaration(name.getName(),
+					name.sourceStart(), name.sourceEnd(), start, end);
+			type.setModifiers(modifiers);
+			type.setComments(comments);
+			type.setEnclosingTypeName(PersistentASTCache.readString(in));
+			type.setSuperClasses((ASTListNode) readNode(in, ASTListNode.class));
+			final int bodyStart = in.readInt();
+			final int bodyEnd = in.readInt();
+			type.setBody(bodyStart, (Block) readNode(in, Block.class), bodyEnd);
+			return type;
+		}
+		case METHOD: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final int modifiers = in.readInt();
+			final String comments = PersistentASTCache.readString(in);
+			final MethodDeclaration method;
+			if (in.readBoolean()) {
+				final SimpleReference name = readReference(in);
+				method = new MethodDeclaration(name.getName(),
+						name.sourceStart(), name.sourceEnd(), start, end);
+			} else {
+				method = new MethodDeclaration(start, end);
+			}
+			method.setModifiers(modifiers);
+			method.setComments(comments);
+			if (in.readBoolean()) {
+				method.setDecorators(new ArrayList<ASTNode>());
+			}
+			method.setDeclaringTypeName(PersistentASTCache.readString(in));
+			final List<ASTNode> arguments = readNodes(in);
+			for (ASTNode argument : arguments) {
+				if (!(argument instanceof Argument)) {
+					throw new IOException();
+				}
+			}
+			method.acceptArguments(arguments);
+			method.acceptBody((Block) readNode(in, Block.class), false);
+			return method;
+		}
+		case ARGUMENT: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final int modifiers = in.readInt();
+			final String comments = PersistentASTCache.readString(in);
+			final SimpleReference name = readReference(in);
+			final Argument argument = new Argument();
+			argument.set(name, readNode(in));
+			argument.setStart(start);
+			argument.setEnd(end);
+			argument.setModifiers(modifiers);
+			argument.setComments(comments);
+			return argument;
+		}
+		case REFERENCE: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			return new SimpleReference(start, end,
+					PersistentASTCache.readString(in));
+		}
+		case STRING: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			return new StringLiteral(start, end,
+					PersistentASTCache.readString(in));
+		}
+		case CALL: {
+			final int start = in.readInt();
+			final int end = in.readInt();
+			final ASTNode receiver = readNode(in);
+			final SimpleReference name = readReference(in);
+			return new CallExpression(start, end, receiver, name,
+					(CallArgumentsList) readNode(in, CallArgumentsList.class));
+		}
+		default:
+			throw new IOException("Unknown node " + tag); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Reads the node, which must be <code>null</code> or an instance of the
+	 * specified class
+	 */
+	private ASTNode readNode(DataInputStream in, Class<?> clazz)
+			throws IOException {
+		final ASTNode node = readNode(in);
+		if (node != null && !clazz.isInstance(node)) {
+			throw new IOException();
+		}
+		return node;
+	}
+
+	private SimpleReference readReference(DataInputStream in)
+			throws IOException {
+		final ASTNode node = readNode(in);
+		if (!(node instanceof SimpleReference)) {
+			throw new IOException();
+		}
+		return (SimpleReference) node;
+	}
+
+	/**
+	 * Writes the range, the modifiers, the comments and the name reference of
+	 * the declaration
+	 */
+	private void writeDeclaration(DataOutputStream out, Declaration declaration)
+			throws IOException {
+		writeRange(out, declaration);
+		out.writeInt(declaration.getModifiers());
+		PersistentASTCache.writeString(out, declaration.getComments());
+		writeNode(out, declaration.getRef());
+	}
+
+	private static void writeRange(DataOutputStream out, ASTNode node)
+			throws IOException {
+		out.writeInt(node.sourceStart());
+		out.writeInt(node.sourceEnd());
+	}
+
+	private void writeNodes(DataOutputStream out, List<?> nodes)
+			throws IOException {
+		if (nodes == null) {
+			throw new IOException();
+		}
+		out.writeInt(nodes.size());
+		for (Object node : nodes) {
+			if (!(node instanceof ASTNode)) {
+				throw new IOException();
+			}
+			writeNode(out, (ASTNode) node);
+		}
+	}
+
+	private List<ASTNode> readNodes(DataInputStream in) throws IOException {
+		final int size = in.readInt();
+		if (size < 0) {
+			throw new IOException();
+		}
+		final List<ASTNode> nodes = new ArrayList<ASTNode>(Math.min(size, 1024));
+		for (int i = 0; i < size; ++i) {
+			nodes.add(readNode(in));
+		}
+		return nodes;
+	}
+}
@@ -0,0 +1,426 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.caching;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.dltk.ast.parser.IASTCache;
+import org.eclipse.dltk.ast.parser.IModuleDeclaration;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.DefaultProblemIdentifier;
+import org.eclipse.dltk.compiler.problem.IProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.environment.IFileHandle;
+import org.eclipse.dltk.internal.core.ModelManager;
+
+/**
+ * {@link IASTCache} storing the module declarations and the problems reported
+ * while parsing them as attributes of the core {@link IContentCache}, so that
+ * they survive restarts. The content cache drops the entries of the modules
+ * which are changed or removed, the entries also record the modification stamp
+ * of the module and are only returned while it is unchanged. Working copies
+ * and modules without a file are not cached.
+ * <p>
+ * The total size of the entries stored or restored since startup is limited
+ * by {@link #getMaxSize()}, the least recently used entries are removed from
+ * the content cache beyond.
+ * <p>
+ * The encoding of the AST nodes is implemented by
+ * {@link #writeModule(DataOutputStream, IModuleDeclaration)} and
+ * {@link #readModule(DataInputStream)}, see {@link CoreASTCache}. The caches
+ * are contributed with the <code>org.eclipse.dltk.core.astCache</code>
+ * extension point.
+ *
+ * @since 5.2
+ */
+public abstract class PersistentASTCache implements IASTCache {
+
+	private static final String ATTRIBUTE_PREFIX = "_ast_"; //$NON-NLS-1$
+	private static final int MAGIC = 0x44415354;
+	private static final int FORMAT_VERSION = 2;
+	private static final long NO_STAMP = -1;
+
+	private static final int MAX_SIZE = Integer.getInteger(
+			"org.eclipse.dltk.core.caching.astCacheSize", 32 * 1024 * 1024).intValue(); //$NON-NLS-1$
+
+	/**
+	 * Sizes of the entries stored or restored by this cache, the least
+	 * recently used first.
+	 */
+	private final LinkedHashMap<IFileHandle, Integer> sizes = new LinkedHashMap<IFileHandle, Integer>(
+			16, 0.75f, true);
+
+	private long totalSize = 0;
+
+	/**
+	 * Writes the module declaration. Throws {@link IOException} if the module
+	 * can't be encoded, it is not cached then.
+	 */
+	protected abstract void writeModule(DataOutputStream out,
+			IModuleDeclaration module) throws IOException;
+
+	/**
+	 * Reads the module declaration written by
+	 * {@link #writeModule(DataOutputStream, IModuleDeclaration)}
+	 */
+	protected abstract IModuleDeclaration readModule(DataInputStream in)
+			throws IOException;
+
+	/**
+	 * Returns the version of the encoding of the modules, the entries written
+	 * with another version are ignored.
+	 */
+	protected int getVersion() {
+		return 0;
+	}
+
+	/**
+	 * Returns the name of the content cache attribute of this cache, it must
+	 * be unique.
+	 */
+	protected String getName() {
+		return getClass().getName();
+	}
+
+	protected IContentCache getContentCache() {
+		return ModelManager.getModelManager().getCoreCache();
+	}
+
+	/**
+	 * Returns the maximum total size in bytes of the entries of this cache.
+	 */
+	protected int getMaxSize() {
+		return MAX_SIZE;
+	}
+
+	/**
+	 * Returns the total size in bytes of the entries stored or restored by
+	 * this cache.
+	 */
+	protected long getTotalSize() {
+		synchronized (sizes) {
+			return totalSize;
+		}
+	}
+
+	/**
+	 * Records the size of the entry and removes the least recently used
+	 * entries while the total size exceeds {@link #getMaxSize()}.
+	 */
+	private void recordSize(IContentCache cache, IFileHandle handle, int size) {
+		synchronized (sizes) {
+			final Integer previous = sizes.put(handle, Integer.valueOf(size));
+			if (previous != null) {
+				totalSize -= previous.intValue();
+			}
+			totalSize += size;
+			final int maxSize = getMaxSize();
+			for (Iterator<Map.Entry<IFileHandle, Integer>> i = sizes
+					.entrySet().iterator(); totalSize > maxSize && i.hasNext();) {
+				final Map.Entry<IFileHandle, Integer> entry = i.next();
+				totalSize -= entry.getValue().intValue();
+				i.remove();
+				cache.removeCacheEntryAttributes(entry.getKey(), getAttribute());
+			}
+		}
+	}
+
+	private void removeEntry(IContentCache cache, IFileHandle handle) {
+		synchronized (sizes) {
+			final Integer size = sizes.remove(handle);
+			if (size != null) {
+				totalSize -= size.intValue();
+			}
+			cache.removeCacheEntryAttributes(handle, getAttribute());
+		}
+	}
+
+	private String getAttribute() {
+		return ATTRIBUTE_PREFIX + getName();
+	}
+
+	public ASTCacheEntry restoreModule(ISourceModule module) {
+		final long stamp = getStamp(module);
+		if (stamp == NO_STAMP) {
+			return null;
+		}
+		final IFileHandle handle = EnvironmentPathUtils.getFile(module);
+		if (handle == null) {
+			return null;
+		}
+		final IContentCache cache = getContentCache();
+		final InputStream stream = cache.getCacheEntryAttribute(handle,
+				getAttribute(), true);
+		if (stream == null) {
+			return null;
+		}
+		try {
+			final CountingInputStream counter = new CountingInputStream(stream);
+			final DataInputStream in = new DataInputStream(
+					new BufferedInputStream(counter, 8192));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+						|| in.readInt() != getVersion() || in.readLong() != stamp) {
+					return null;
+				}
+				final ASTCacheEntry entry = new ASTCacheEntry();
+				entry.problems = readProblems(in);
+				entry.module = readModule(in);
+				if (entry.module != null) {
+					recordSize(cache, handle, counter.count);
+					return entry;
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+		} catch (RuntimeException e) {
+			DLTKCore.error("Error restoring AST of " + module.getPath(), e); //$NON-NLS-1$
+		}
+		removeEntry(cache, handle);
+		return null;
+	}
+
+	public void storeModule(ISourceModule module,
+			IModuleDeclaration moduleDeclaration, ProblemCollector problems) {
+		final long stamp = getStamp(module);
+		if (stamp == NO_STAMP || moduleDeclaration == null
+				|| !ProblemsCodec.canWrite(problems)) {
+			return;
+		}
+		final IFileHandle handle = EnvironmentPathUtils.getFile(module);
+		if (handle == null) {
+			return;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(8192);
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(getVersion());
+			out.writeLong(stamp);
+			ProblemsCodec.write(out, problems);
+			writeModule(out, moduleDeclaration);
+			out.flush();
+		} catch (IOException e) {
+			// not supported by the encoding
+			return;
+		} catch (RuntimeException e) {
+			DLTKCore.error("Error storing AST of " + module.getPath(), e); //$NON-NLS-1$
+			return;
+		}
+		final IContentCache cache = getContentCache();
+		final OutputStream stream = cache.getCacheEntryAttributeOutputStream(
+				handle, getAttribute());
+		if (stream == null) {
+			return;
+		}
+		try {
+			try {
+				bytes.writeTo(stream);
+			} finally {
+				stream.close();
+			}
+			recordSize(cache, handle, bytes.size());
+		} catch (IOException e) {
+			if (DLTKCore.DEBUG) {
+				e.printStackTrace();
+			}
+			removeEntry(cache, handle);
+		}
+	}
+
+	/**
+	 * Returns the modification stamp of the workspace file or the last
+	 * modification time of the external file, or {@link #NO_STAMP} if the
+	 * module should not be cached.
+	 */
+	private static long getStamp(ISourceModule module) {
+		if (module.isWorkingCopy()) {
+			return NO_STAMP;
+		}
+		final IResource resource = module.getResource();
+		if (resource != null) {
+			final long stamp = resource.getModificationStamp();
+			return stamp == IResource.NULL_STAMP ? NO_STAMP : stamp;
+		}
+		final IFileHandle file = EnvironmentPathUtils.getFile(module);
+		if (file != null) {
+			final long modified = file.lastModified();
+			return modified > 0 ? modified : NO_STAMP;
+		}
+		return NO_STAMP;
+	}
+
+	private static ProblemCollector readProblems(DataInputStream in)
+			throws IOException {
+		final int count = in.readInt();
+		if (count == 0) {
+			return null;
+		}
+		final ProblemCollector problems = new ProblemCollector();
+		for (int i = 0; i < count; ++i) {
+			if (in.readBoolean()) {
+				final String message = readString(in);
+				final int line = in.readInt();
+				final int priority = in.readInt();
+				final int start = in.readInt();
+				final int end = in.readInt();
+				problems.reportTask(message, line, priority, start, end);
+			} else {
+				final String fileName = readString(in);
+				final String message = readString(in);
+				final String id = in.readUTF();
+				final int argumentCount = in.readInt();
+				final String[] arguments = argumentCount >= 0 ? new String[argumentCount]
+						: null;
+				for (int j = 0; j < argumentCount; ++j) {
+					arguments[j] = readString(in);
+				}
+				final String severity = readString(in);
+				final int start = in.readInt();
+				final int end = in.readInt();
+				final int line = in.readInt();
+				final int column = in.readInt();
+				problems.reportProblem(new DefaultProblem(fileName, message,
+						DefaultProblemIdentifier.decode(id), arguments,
+						severity != null ? ProblemSeverity.valueOf(severity)
+								: null, start, end, line, column));
+			}
+		}
+		return problems;
+	}
+
+	/**
+	 * Counts the bytes read from the entry
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		int count = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			final int b = super.read();
+			if (b != -1) {
+				++count;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			final int n = super.read(b, off, len);
+			if (n > 0) {
+				count += n;
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			final long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+
+	static String readString(DataInputStream in) throws IOException {
+		return in.readBoolean() ? in.readUTF() : null;
+	}
+
+	static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		out.writeBoolean(value != null);
+		if (value != null) {
+			out.writeUTF(value);
+		}
+	}
+
+	/**
+	 * Encodes the tasks and the {@link DefaultProblem}s, extends
+	 * {@link ProblemCollector} to access the priority of the tasks.
+	 */
+	private static class ProblemsCodec extends ProblemCollector {
+
+		/**
+		 * Returns whether all the problems can be restored without loss
+		 */
+		static boolean canWrite(ProblemCollector collector) {
+			if (collector != null) {
+				for (IProblem problem : collector.getProblems()) {
+					if (!(problem instanceof TaskInfo)
+							&& problem.getClass() != DefaultProblem.class) {
+						return false;
+					}
+				}
+			}
+			return true;
+		}
+
+		static void write(DataOutputStream out, ProblemCollector collector)
+				throws IOException {
+			if (collector == null) {
+				out.writeInt(0);
+				return;
+			}
+			final List<IProblem> problems = collector.getProblems();
+			out.writeInt(problems.size());
+			for (IProblem problem : problems) {
+				if (problem instanceof TaskInfo) {
+					out.writeBoolean(true);
+					writeString(out, problem.getMessage());
+					out.writeInt(problem.getSourceLineNumber());
+					out.writeInt(((TaskInfo) problem).getPriority());
+					out.writeInt(problem.getSourceStart());
+					out.writeInt(problem.getSourceEnd());
+				} else {
+					out.writeBoolean(false);
+					writeString(out, problem.getOriginatingFileName());
+					writeString(out, problem.getMessage());
+					out.writeUTF(DefaultProblemIdentifier.encode(problem
+							.getID()));
+					final String[] arguments = problem.getArguments();
+					out.writeInt(arguments != null ? arguments.length : -1);
+					if (arguments != null) {
+						for (String argument : arguments) {
+							writeString(out, argument);
+						}
+					}
+					final ProblemSeverity severity = problem.getSeverity();
+					writeString(out, severity != null ? severity.name() : null);
+					out.writeInt(problem.getSourceStart());
+					out.writeInt(problem.getSourceEnd());
+					out.writeInt(problem.getSourceLineNumber());
+					out.writeInt(((DefaultProblem) problem).getColumn());
+				}
+			}
+		}
+	}
+}
@@ -9,6 +9,10 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.IScriptFolder;
@@ -17,10 +21,30 @@ import org.eclipse.dltk.internal.core.util.LRUCache;
 
 /**
  * An LRU cache of <code>ModelElements</code>.
+ * <p>
+ * {@link #get(Object)} and {@link #peek(Object)} can be called without
+ * locking, the other methods must be called by the thread holding the lock of
+ * the owning {@link ModelCache}. The elements read are recorded and their
+ * timestamps are updated before the next modification, so that the least
+ * recently used elements are still closed first.
  */
 public class ElementCache extends OverflowingLRUCache {
+	/**
+	 * Maximal number of reads recorded between two modifications, the reads
+	 * above it don't update the order of the entries.
+	 */
+	private static final int MAX_ACCESSED = 1024;
+
 	private IModelElement spaceLimitParent = null;
 
+	/**
+	 * Values by key, updated together with the entry table
+	 */
+	private final ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<Object, Object>();
+
+	private final ConcurrentLinkedQueue<Object> accessed = new ConcurrentLinkedQueue<Object>();
+	private final AtomicInteger accessedCount = new AtomicInteger();
+
 	/**
 	 * Constructs a new element cache of the given size.
 	 */
@@ -67,6 +91,99 @@ public class ElementCache extends OverflowingLRUCache {
 		}
 	}
 
+	@Override
+	public Object get(Object key) {
+		final Object value = values.get(key);
+		if (value != null && accessedCount.get() < MAX_ACCESSED) {
+			accessedCount.incrementAndGet();
+			accessed.add(key);
+		}
+		return value;
+	}
+
+	@Override
+	public Object peek(Object key) {
+		return values.get(key);
+	}
+
+	@Override
+	public Object put(Object key, Object value) {
+		final Object result = super.put(key, value);
+		if (fEntryTable.get(key) != null) {
+			values.put(key, value);
+		}
+		return result;
+	}
+
+	@Override
+	public void flush() {
+		super.flush();
+		values.clear();
+	}
+
+	@Override
+	protected void privateAddEntry(LRUCacheEntry entry, boolean shuffle) {
+		super.privateAddEntry(entry, shuffle);
+		if (!shuffle) {
+			values.put(entry._fKey, entry._fValue);
+		}
+	}
+
+	@Override
+	protected void privateRemoveEntry(LRUCacheEntry entry, boolean shuffle,
+			boolean external) {
+		super.privateRemoveEntry(entry, shuffle, external);
+		if (!shuffle && fEntryTable.get(entry._fKey) == null) {
+			values.remove(entry._fKey);
+		}
+	}
+
+	@Override
+	protected boolean makeSpace(int space) {
+		// timestamps are off while a call up the stack is removing entries
+		if (fTimestampsOn) {
+			updateAccessedTimestamps();
+		}
+		return super.makeSpace(space);
+	}
+
+	/*
+	 * Moves the entries read since the last modification to the head of the
+	 * queue.
+	 */
+	private void updateAccessedTimestamps() {
+		Object key;
+		while ((key = accessed.poll()) != null) {
+			accessedCount.decrementAndGet();
+			final LRUCacheEntry entry = (LRUCacheEntry) fEntryTable.get(key);
+			if (entry != null) {
+				updateTimestamp(entry);
+			}
+		}
+	}
+
+	/**
+	 * Closes the least recently used elements until the given fraction of the
+	 * current space is freed, the space limit is not changed. Returns the
+	 * amount of space freed.
+	 */
+	public int shed(double fraction) {
+		updateAccessedTimestamps();
+		final int initialSpace = fCurrentSpace;
+		final int target = (int) (fCurrentSpace * (1 - fraction));
+		LRUCacheEntry entry = fEntryQueueTail;
+		try {
+			fTimestampsOn = false;
+			while (fCurrentSpace > target && entry != null) {
+				privateRemoveEntry(entry, false, false);
+				entry = entry._fPrevious;
+			}
+		} finally {
+			fTimestampsOn = true;
+		}
+		return initialSpace - fCurrentSpace;
+	}
+
 	/*
 	 * Ensures that there is enough room for adding the given number of
 	 * children. If the space limit must be increased, record the parent that
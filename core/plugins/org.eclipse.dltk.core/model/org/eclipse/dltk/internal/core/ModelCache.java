@@ -9,15 +9,38 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
 import java.text.NumberFormat;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.IModelElement;
 
 /**
  * The cache ofscriptelements to their respective info.
+ * <p>
+ * The infos are read without locking, so that concurrent readers don't block
+ * each other. Modifications must be done while holding the lock of this
+ * cache, which also guards the sequences of modifications performed by the
+ * {@link ModelManager}.
  */
 public class ModelCache {
 	public static final int DEFAULT_PROJECT_SIZE = 5; // average 25552 bytes
@@ -39,14 +62,48 @@ public class ModelCache {
 	public static final int DEFAULT_CHILDREN_SIZE = 500 * 20; // average 20
 	// children per
 	// openable
+	/**
+	 * Memory in bytes taken by the caches sized with a ratio of 1, from the
+	 * averages above
+	 */
+	private static final long BASE_MEMORY = 4500000;
+
+	/**
+	 * Memory in megabytes the caches are sized for, <code>0</code> sizes them
+	 * from the maximum heap size.
+	 */
+	private static final int CACHE_MEMORY = Integer.getInteger(
+			"org.eclipse.dltk.core.model.cacheMemory", 0).intValue(); //$NON-NLS-1$
+
+	/**
+	 * Heap usage after a garbage collection, in percents of the maximum, above
+	 * which the least recently used elements are closed. <code>0</code>
+	 * disables it.
+	 */
+	private static final int LOW_MEMORY_THRESHOLD = Integer.getInteger(
+			"org.eclipse.dltk.core.model.lowMemoryThreshold", 85).intValue(); //$NON-NLS-1$
+
+	/**
+	 * Fraction of the cached elements closed on each low memory notification
+	 * and after each following garbage collection leaving the heap usage above
+	 * the threshold
+	 */
+	private static final double SHED_FRACTION = 0.25;
+
+	/**
+	 * Delay in milliseconds between the checks of the heap usage while it
+	 * stays above the threshold
+	 */
+	private static final long RECHECK_DELAY = 5000;
+
 	/**
 	 * Active script Model Info
 	 */
-	protected ModelInfo modelInfo;
+	protected volatile ModelInfo modelInfo;
 	/**
 	 * Cache of open projects.
 	 */
-	protected HashMap projectCache;
+	protected Map projectCache;
 	/**
 	 * Cache of open package fragment roots.
 	 */
@@ -71,7 +128,9 @@ public class ModelCache {
 		// if max memory is infinite, set the ratio to 4d which corresponds to
 		// the 256MB that Eclipse defaults to
 		// (see https://bugs.eclipse.org/bugs/show_bug.cgi?id=111299)
-		double ratio = maxMemory == Long.MAX_VALUE ? 4d : maxMemory / 64000000; // 64000000
+		double ratio = CACHE_MEMORY > 0 ? CACHE_MEMORY * 1024d * 1024d
+				/ BASE_MEMORY : maxMemory == Long.MAX_VALUE ? 4d
+				: maxMemory / 64000000; // 64000000
 		// is
 		// the
 		// base
@@ -79,7 +138,7 @@ public class ModelCache {
 		// for
 		// most
 		// JInterpreter
-		this.projectCache = new HashMap(DEFAULT_PROJECT_SIZE); // NB: Don't use
+		this.projectCache = new ConcurrentHashMap(DEFAULT_PROJECT_SIZE); // NB: Don't use
 		// a LRUCache
 		// for projects
 		// as they are
@@ -92,7 +151,8 @@ public class ModelCache {
 		this.pkgCache = new ElementCache((int) (DEFAULT_PKG_SIZE * ratio));
 		this.openableCache = new ElementCache(
 				(int) (DEFAULT_OPENABLE_SIZE * ratio));
-		this.childrenCache = new HashMap((int) (DEFAULT_CHILDREN_SIZE * ratio));
+		this.childrenCache = new ConcurrentHashMap(
+				(int) (DEFAULT_CHILDREN_SIZE * ratio));
 	}
 
 	/**
@@ -140,7 +200,7 @@ public class ModelCache {
 	/**
 	 * Remember the info for the element.
 	 */
-	protected void putInfo(IModelElement element, Object info) {
+	protected synchronized void putInfo(IModelElement element, Object info) {
 		switch (element.getElementType()) {
 		case IModelElement.SCRIPT_MODEL:
 			this.modelInfo = (ModelInfo) info;
@@ -172,7 +232,7 @@ public class ModelCache {
 	/**
 	 * Removes the info of the element from the cache.
 	 */
-	protected void removeInfo(IModelElement element) {
+	protected synchronized void removeInfo(IModelElement element) {
 		switch (element.getElementType()) {
 		case IModelElement.SCRIPT_MODEL:
 			this.modelInfo = null;
@@ -198,6 +258,200 @@ public class ModelCache {
 		}
 	}
 
+	/**
+	 * Sets the footprint of the opened source module or binary module from
+	 * the number of its children, in units of the average number of children
+	 * the cache is sized for, so that large modules take more space in the
+	 * cache.
+	 * 
+	 * @param newElements
+	 *            the infos about to be put in the cache
+	 */
+	protected void updateFootprint(IModelElement openedElement, Map newElements) {
+		final int type = openedElement.getElementType();
+		if (type != IModelElement.SOURCE_MODULE
+				&& type != IModelElement.BINARY_MODULE) {
+			return;
+		}
+		final Object info = newElements.get(openedElement);
+		if (!(info instanceof OpenableElementInfo)) {
+			return;
+		}
+		int children = 0;
+		for (Iterator i = newElements.keySet().iterator(); i.hasNext();) {
+			final IModelElement element = (IModelElement) i.next();
+			if (element != openedElement
+					&& openedElement.equals(element.getOpenable())) {
+				++children;
+			}
+		}
+		final int childrenPerOpenable = DEFAULT_CHILDREN_SIZE
+				/ DEFAULT_OPENABLE_SIZE;
+		((OpenableElementInfo) info)
+				.setCacheFootprint((children + childrenPerOpenable - 1)
+						/ childrenPerOpenable);
+	}
+
+	/**
+	 * Closes the given fraction of the least recently used source modules and
+	 * folders, without changing the space limits.
+	 */
+	public synchronized void shed(double fraction) {
+		int openables = this.openableCache.shed(fraction);
+		int folders = this.pkgCache.shed(fraction);
+		if (ModelManager.VERBOSE) {
+			System.out.println("[ModelCache] low memory, closed " + openables //$NON-NLS-1$
+					+ " openable and " + folders + " folder units\n" //$NON-NLS-1$ //$NON-NLS-2$
+					+ toStringFillingRation("-> ")); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * The JMX notification is only sent when the heap usage crosses the
+	 * threshold, not after the following collections, so while the usage
+	 * stays above the threshold this job checks it again periodically and
+	 * sheds more once another collection has run.
+	 */
+	private final Job shedJob = new Job("Model cache shedding") { //$NON-NLS-1$
+		private long shedCollectionCount = -1;
+
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			final long collectionCount = getCollectionCount();
+			if (collectionCount != shedCollectionCount) {
+				shed(SHED_FRACTION);
+				shedCollectionCount = collectionCount;
+			}
+			if (isThresholdExceeded()) {
+				schedule(RECHECK_DELAY);
+			}
+			return Status.OK_STATUS;
+		}
+	};
+
+	private static long getCollectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory
+				.getGarbageCollectorMXBeans()) {
+			count += collector.getCollectionCount();
+		}
+		return count;
+	}
+
+	private boolean isThresholdExceeded() {
+		for (ThresholdPool pool : thresholdPools) {
+			if (pool.isExceeded()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Heap pool watched by this cache, with the threshold it was given before.
+	 */
+	private static class ThresholdPool {
+		final MemoryPoolMXBean pool;
+		final long threshold;
+		final long previousThreshold;
+
+		ThresholdPool(MemoryPoolMXBean pool, long threshold,
+				long previousThreshold) {
+			this.pool = pool;
+			this.threshold = threshold;
+			this.previousThreshold = previousThreshold;
+		}
+
+		/**
+		 * Compares with the threshold of this cache, the pool may have a
+		 * lower one set by someone else.
+		 */
+		boolean isExceeded() {
+			final MemoryUsage usage = pool.getCollectionUsage();
+			return usage != null && usage.getUsed() >= threshold;
+		}
+
+		/**
+		 * Restores the previous threshold if this cache set its own, unless it
+		 * was changed by someone else in the meantime.
+		 */
+		void restore() {
+			if (previousThreshold == 0
+					&& pool.getCollectionUsageThreshold() == threshold) {
+				pool.setCollectionUsageThreshold(previousThreshold);
+			}
+		}
+	}
+
+	/**
+	 * Heap pools which collection usage is watched by this cache
+	 */
+	private final List<ThresholdPool> thresholdPools = new CopyOnWriteArrayList<ThresholdPool>();
+
+	private final NotificationListener lowMemoryListener = new NotificationListener() {
+		public void handleNotification(Notification notification,
+				Object handback) {
+			if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED
+					.equals(notification.getType())) {
+				shedJob.schedule();
+			}
+		}
+	};
+
+	/**
+	 * Starts closing the least recently used elements gradually when the heap
+	 * usage exceeds {@link #LOW_MEMORY_THRESHOLD} after a garbage collection,
+	 * and again after each following collection as long as it stays above.
+	 * The threshold of a pool is only set if it has none, a threshold set by
+	 * someone else is kept and the notifications it triggers are checked
+	 * against {@link #LOW_MEMORY_THRESHOLD}.
+	 */
+	public void installLowMemoryListener() {
+		if (LOW_MEMORY_THRESHOLD <= 0 || LOW_MEMORY_THRESHOLD >= 100) {
+			return;
+		}
+		shedJob.setSystem(true);
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP
+					&& pool.isCollectionUsageThresholdSupported()) {
+				final long max = pool.getUsage().getMax();
+				if (max > 0) {
+					final long threshold = max / 100 * LOW_MEMORY_THRESHOLD;
+					final long previous = pool.getCollectionUsageThreshold();
+					if (previous == 0) {
+						pool.setCollectionUsageThreshold(threshold);
+					}
+					thresholdPools.add(new ThresholdPool(pool, threshold,
+							previous));
+				}
+			}
+		}
+		if (!thresholdPools.isEmpty()) {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+					.addNotificationListener(lowMemoryListener, null, null);
+		}
+	}
+
+	public void uninstallLowMemoryListener() {
+		if (thresholdPools.isEmpty()) {
+			return;
+		}
+		try {
+			((NotificationEmitter) ManagementFactory.getMemoryMXBean())
+					.removeNotificationListener(lowMemoryListener);
+		} catch (ListenerNotFoundException e) {
+			// ignore
+		}
+		final ThresholdPool[] pools = thresholdPools
+				.toArray(new ThresholdPool[thresholdPools.size()]);
+		// stops the rechecks before the thresholds are restored
+		thresholdPools.clear();
+		shedJob.cancel();
+		for (ThresholdPool pool : pools) {
+			pool.restore();
+		}
+	}
+
 	public String toStringFillingRation(String prefix) {
 		final NumberFormat nf = NumberFormat.getInstance();
 		StringBuffer buffer = new StringBuffer();
@@ -93,11 +93,13 @@ import org.eclipse.dltk.core.environment.IFileHandle;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
 import org.eclipse.dltk.internal.core.builder.ScriptBuilder;
 import org.eclipse.dltk.internal.core.caching.DLTKCoreCache;
+import org.eclipse.dltk.internal.core.hierarchy.SuperTypeReferenceCache;
 import org.eclipse.dltk.internal.core.search.DLTKWorkspaceScope;
 import org.eclipse.dltk.internal.core.search.ProjectIndexerManager;
 import org.eclipse.dltk.internal.core.util.Messages;
 import org.eclipse.dltk.internal.core.util.Util;
 import org.eclipse.dltk.internal.core.util.WeakHashSet;
+import org.eclipse.dltk.ti.GoalResultCache;
 import org.eclipse.osgi.util.NLS;
 import org.osgi.service.prefs.BackingStoreException;
 
@@ -539,6 +541,32 @@ public class ModelManager implements ISaveParticipant {
 		return coreCache;
 	}
 
+	private GoalResultCache goalResultCache = null;
+
+	/**
+	 * @since 5.2
+	 */
+	public synchronized GoalResultCache getGoalResultCache() {
+		if (goalResultCache == null) {
+			goalResultCache = new GoalResultCache();
+			goalResultCache.start();
+		}
+		return goalResultCache;
+	}
+
+	private SuperTypeReferenceCache superTypeReferenceCache = null;
+
+	/**
+	 * @since 5.2
+	 */
+	public synchronized SuperTypeReferenceCache getSuperTypeReferenceCache() {
+		if (superTypeReferenceCache == null) {
+			superTypeReferenceCache = new SuperTypeReferenceCache();
+			superTypeReferenceCache.start();
+		}
+		return superTypeReferenceCache;
+	}
+
 	/**
 	 * Listener on properties changes.
 	 */
@@ -582,7 +610,7 @@ public class ModelManager implements ISaveParticipant {
 	/**
 	 * Returns the info for the element.
 	 */
-	public synchronized Object getInfo(IModelElement element) {
+	public Object getInfo(IModelElement element) {
 		HashMap tempCache = (HashMap) this.temporaryCache.get();
 		if (tempCache != null) {
 			Object result = tempCache.get(element);
@@ -596,7 +624,7 @@ public class ModelManager implements ISaveParticipant {
 	/**
 	 * Returns the info for this element without disturbing the cache ordering.
 	 */
-	protected synchronized Object peekAtInfo(IModelElement element) {
+	protected Object peekAtInfo(IModelElement element) {
 		HashMap tempCache = (HashMap) this.temporaryCache.get();
 		if (tempCache != null) {
 			Object result = tempCache.get(element);
@@ -612,59 +640,61 @@ public class ModelManager implements ISaveParticipant {
 	 * from the cache. Returns the info for the given element, or null if it was
 	 * closed.
 	 */
-	public synchronized Object removeInfoAndChildren(ModelElement element)
+	public Object removeInfoAndChildren(ModelElement element)
 			throws ModelException {
-		Object info = this.cache.peekAtInfo(element);
-		if (info != null) {
-			boolean wasVerbose = false;
-			try {
-				if (VERBOSE) {
-					String elementType;
-					switch (element.getElementType()) {
-					case IModelElement.SCRIPT_PROJECT:
-						elementType = "project"; //$NON-NLS-1$
-						break;
-					case IModelElement.PROJECT_FRAGMENT:
-						elementType = "root"; //$NON-NLS-1$
-						break;
-					case IModelElement.SCRIPT_FOLDER:
-						elementType = "folder"; //$NON-NLS-1$
-						break;
-					case IModelElement.BINARY_MODULE:
-						elementType = "binary module"; //$NON-NLS-1$
-						break;
-					case IModelElement.SOURCE_MODULE:
-						elementType = "source module"; //$NON-NLS-1$
-						break;
-					default:
-						elementType = "element"; //$NON-NLS-1$
+		synchronized (this.cache) {
+			Object info = this.cache.peekAtInfo(element);
+			if (info != null) {
+				boolean wasVerbose = false;
+				try {
+					if (VERBOSE) {
+						String elementType;
+						switch (element.getElementType()) {
+						case IModelElement.SCRIPT_PROJECT:
+							elementType = "project"; //$NON-NLS-1$
+							break;
+						case IModelElement.PROJECT_FRAGMENT:
+							elementType = "root"; //$NON-NLS-1$
+							break;
+						case IModelElement.SCRIPT_FOLDER:
+							elementType = "folder"; //$NON-NLS-1$
+							break;
+						case IModelElement.BINARY_MODULE:
+							elementType = "binary module"; //$NON-NLS-1$
+							break;
+						case IModelElement.SOURCE_MODULE:
+							elementType = "source module"; //$NON-NLS-1$
+							break;
+						default:
+							elementType = "element"; //$NON-NLS-1$
+						}
+						System.out
+								.println(Thread.currentThread()
+										+ " CLOSING " + elementType + " " + element.toStringWithAncestors()); //$NON-NLS-1$//$NON-NLS-2$
+						wasVerbose = true;
+						VERBOSE = false;
 					}
-					System.out
-							.println(Thread.currentThread()
-									+ " CLOSING " + elementType + " " + element.toStringWithAncestors()); //$NON-NLS-1$//$NON-NLS-2$
-					wasVerbose = true;
-					VERBOSE = false;
-				}
-				element.closing(info);
-				if (element instanceof IParent
-						&& info instanceof ModelElementInfo) {
-					IModelElement[] children = ((ModelElementInfo) info)
-							.getChildren();
-					for (int i = 0, size = children.length; i < size; ++i) {
-						ModelElement child = (ModelElement) children[i];
-						child.close();
+					element.closing(info);
+					if (element instanceof IParent
+							&& info instanceof ModelElementInfo) {
+						IModelElement[] children = ((ModelElementInfo) info)
+								.getChildren();
+						for (int i = 0, size = children.length; i < size; ++i) {
+							ModelElement child = (ModelElement) children[i];
+							child.close();
+						}
 					}
+					this.cache.removeInfo(element);
+					if (wasVerbose) {
+						System.out.println(this.cache.toStringFillingRation("-> ")); //$NON-NLS-1$
+					}
+				} finally {
+					ModelManager.VERBOSE = wasVerbose;
 				}
-				this.cache.removeInfo(element);
-				if (wasVerbose) {
-					System.out.println(this.cache.toStringFillingRation("-> ")); //$NON-NLS-1$
-				}
-			} finally {
-				ModelManager.VERBOSE = wasVerbose;
+				return info;
 			}
-			return info;
+			return null;
 		}
-		return null;
 	}
 
 	/*
@@ -674,51 +704,54 @@ public class ModelManager implements ISaveParticipant {
 	 * added to the cache. If it is the case, another thread has opened the
 	 * element (or one of its ancestors). So returns without updating the cache.
 	 */
-	protected synchronized void putInfos(IModelElement openedElement,
+	protected void putInfos(IModelElement openedElement,
 			Map newElements) {
-		// remove children
-		Object existingInfo = this.cache.peekAtInfo(openedElement);
-		if (openedElement instanceof IParent
-				&& existingInfo instanceof ModelElementInfo) {
-			IModelElement[] children = ((ModelElementInfo) existingInfo)
-					.getChildren();
-			for (int i = 0, size = children.length; i < size; ++i) {
-				ModelElement child = (ModelElement) children[i];
-				try {
-					child.close();
-				} catch (ModelException e) {
-					// ignore
+		synchronized (this.cache) {
+			this.cache.updateFootprint(openedElement, newElements);
+			// remove children
+			Object existingInfo = this.cache.peekAtInfo(openedElement);
+			if (openedElement instanceof IParent
+					&& existingInfo instanceof ModelElementInfo) {
+				IModelElement[] children = ((ModelElementInfo) existingInfo)
+						.getChildren();
+				for (int i = 0, size = children.length; i < size; ++i) {
+					ModelElement child = (ModelElement) children[i];
+					try {
+						child.close();
+					} catch (ModelException e) {
+						// ignore
+					}
 				}
 			}
-		}
-		// Need to put any ArchiveProjectFragment in first.
-		// This is due to the way the LRU cache flushes entries.
-		// When a BinaryFolder is flused from the LRU cache, the entire
-		// archive is flushed by removing the ArchiveProjectFragment and all of
-		// its
-		// children (see ElementCache.close()). If we flush the BinaryFolder
-		// when its ArchiveProjectFragment is not in the cache and the root is
-		// about to be
-		// added (during the 'while' loop), we will end up in an inconsist
-		// state.
-		// Subsequent resolution against package in the archive would fail as a
-		// result.
-		for (Iterator it = newElements.entrySet().iterator(); it.hasNext();) {
-			Map.Entry entry = (Map.Entry) it.next();
-			IModelElement element = (IModelElement) entry.getKey();
-			if (element instanceof ArchiveProjectFragment
-					|| element instanceof ExternalScriptFolder) {
-				Object info = entry.getValue();
-				it.remove();
+			// Need to put any ArchiveProjectFragment in first.
+			// This is due to the way the LRU cache flushes entries.
+			// When a BinaryFolder is flused from the LRU cache, the entire
+			// archive is flushed by removing the ArchiveProjectFragment and all of
+			// its
+			// children (see ElementCache.close()). If we flush the BinaryFolder
+			// when its ArchiveProjectFragment is not in the cache and the root is
+			// about to be
+			// added (during the 'while' loop), we will end up in an inconsist
+			// state.
+			// Subsequent resolution against package in the archive would fail as a
+			// result.
+			for (Iterator it = newElements.entrySet().iterator(); it.hasNext();) {
+				Map.Entry entry = (Map.Entry) it.next();
+				IModelElement element = (IModelElement) entry.getKey();
+				if (element instanceof ArchiveProjectFragment
+						|| element instanceof ExternalScriptFolder) {
+					Object info = entry.getValue();
+					it.remove();
+					this.cache.putInfo(element, info);
+				}
+			}
+			Iterator iterator = newElements.keySet().iterator();
+			while (iterator.hasNext()) {
+				IModelElement element = (IModelElement) iterator.next();
+				Object info = newElements.get(element);
 				this.cache.putInfo(element, info);
 			}
 		}
-		Iterator iterator = newElements.keySet().iterator();
-		while (iterator.hasNext()) {
-			IModelElement element = (IModelElement) iterator.next();
-			Object info = newElements.get(element);
-			this.cache.putInfo(element, info);
-		}
 	}
 
 	/**
@@ -965,6 +998,9 @@ public class ModelManager implements ISaveParticipant {
 			if (info == null && create) {
 				info = new PerWorkingCopyInfo(workingCopy, problemRequestor);
 				workingCopyToInfos.put(workingCopy, info);
+				if (sourceModuleInfoCache != null) {
+					sourceModuleInfoCache.pin(workingCopy);
+				}
 			}
 			if (info != null && recordUsage)
 				info.useCount++;
@@ -1229,6 +1265,9 @@ public class ModelManager implements ISaveParticipant {
 			if (--info.useCount == 0) {
 				// remove per working copy info
 				workingCopyToInfos.remove(workingCopy);
+				if (sourceModuleInfoCache != null) {
+					sourceModuleInfoCache.unpin(workingCopy);
+				}
 				if (workingCopyToInfos.isEmpty()) {
 					this.perWorkingCopyInfos.remove(owner);
 				}
@@ -1263,6 +1302,7 @@ public class ModelManager implements ISaveParticipant {
 		try {
 			// initialize Model model cache
 			this.cache = new ModelCache();
+			this.cache.installLowMemoryListener();
 			// request state folder creation (workaround 19885)
 			DLTKCore.getPlugin().getStateLocation();
 			// Initialize eclipse preferences
@@ -1583,6 +1623,19 @@ public class ModelManager implements ISaveParticipant {
 		if (coreCache != null) {
 			coreCache.stop();
 		}
+		if (this.cache != null) {
+			this.cache.uninstallLowMemoryListener();
+		}
+		synchronized (this) {
+			if (goalResultCache != null) {
+				goalResultCache.stop();
+				goalResultCache = null;
+			}
+			if (superTypeReferenceCache != null) {
+				superTypeReferenceCache.stop();
+				superTypeReferenceCache = null;
+			}
+		}
 		IWorkspace workspace = ResourcesPlugin.getWorkspace();
 		workspace.removeResourceChangeListener(this.deltaState);
 		DLTKContentTypeManager.uninstallListener();
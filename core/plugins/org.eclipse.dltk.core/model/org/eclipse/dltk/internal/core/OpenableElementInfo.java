@@ -10,10 +10,12 @@
 package org.eclipse.dltk.internal.core;
 
 import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.internal.core.util.ILRUCacheable;
 
 
 /** Element info for IOpenable elements. */
-public class OpenableElementInfo extends ModelElementInfo {
+public class OpenableElementInfo extends ModelElementInfo implements
+		ILRUCacheable {
 
 	/**
 	 * Is the structure of this element known
@@ -21,6 +23,12 @@ public class OpenableElementInfo extends ModelElementInfo {
 	 */
 	protected boolean isStructureKnown = false;
 
+	/**
+	 * Space taken in the element caches
+	 * @see ModelCache#updateFootprint(IModelElement, java.util.Map)
+	 */
+	protected int cacheFootprint = 1;
+
 	/**
 	 * @see IModelElement#isStructureKnown()
 	 */
@@ -35,4 +43,12 @@ public class OpenableElementInfo extends ModelElementInfo {
 	public void setIsStructureKnown(boolean newIsStructureKnown) {
 		this.isStructureKnown = newIsStructureKnown;
 	}
+
+	public int getCacheFootprint() {
+		return this.cacheFootprint;
+	}
+
+	public void setCacheFootprint(int footprint) {
+		this.cacheFootprint = Math.max(1, footprint);
+	}
 }
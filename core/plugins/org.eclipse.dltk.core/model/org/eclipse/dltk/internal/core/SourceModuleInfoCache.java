@@ -11,10 +11,18 @@ package org.eclipse.dltk.internal.core;
 
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -27,22 +35,30 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.dltk.annotations.Internal;
 import org.eclipse.dltk.core.DLTKCore;
 import org.eclipse.dltk.core.ISourceModule;
-import org.eclipse.dltk.core.ISourceModuleInfoCache;
+import org.eclipse.dltk.core.ISourceModuleInfoCacheExtension;
 
 /**
  * Used to cache some source module information. All information related to
  * source module are removed, then source module are changed.
+ * 
+ * <p>
+ * The infos are softly referenced, the infos of the most recently used modules
+ * and of the pinned modules are also strongly referenced, so that they are not
+ * collected when the memory is low. Reads don't lock the cache.
+ * </p>
  */
-public class SourceModuleInfoCache implements ISourceModuleInfoCache,
+public class SourceModuleInfoCache implements ISourceModuleInfoCacheExtension,
 		IResourceChangeListener, IResourceDeltaVisitor {
 	/**
 	 * The cache capacity. When the cache size hits the capacity the cache
 	 * starts to remove the eldest entries.
 	 * 
 	 * <p>
-	 * The capacity is calculated based on the max heap size. The formula is
-	 * exponential, so the capacity is tiny when the max heap size is small
-	 * (around 256 MB) and grows significantly on bigger heap sizes.
+	 * The capacity is calculated based on the max heap size, unless specified
+	 * with the <code>org.eclipse.dltk.core.sourceModuleInfoCache.capacity</code>
+	 * system property. The formula is exponential, so the capacity is tiny
+	 * when the max heap size is small (around 256 MB) and grows significantly
+	 * on bigger heap sizes.
 	 * </p>
 	 * 
 	 * <p>
@@ -62,25 +78,73 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 	 * </p>
 	 */
 	@Internal
-	final int capacity = (int) Math.pow(
-			Runtime.getRuntime().maxMemory() / 10000000, 2);
+	final int capacity;
+
+	/**
+	 * Number of the recently used infos which are strongly referenced,
+	 * specified with the
+	 * <code>org.eclipse.dltk.core.sourceModuleInfoCache.hotSize</code> system
+	 * property. Kept small as the infos hold the ASTs of their modules.
+	 */
+	@Internal
+	final int hotSize;
+
+	private static final int DEFAULT_HOT_SIZE = 32;
 
 	private final ReferenceQueue<ISourceModuleInfo> queue = new ReferenceQueue<ISourceModuleInfo>();
 
-	@SuppressWarnings("serial")
-	private final Map<ISourceModule, CacheReference> map = new LinkedHashMap<ISourceModule, CacheReference>(
-			16, 0.9f, true) {
-		protected boolean removeEldestEntry(
-				Map.Entry<ISourceModule, CacheReference> eldest) {
-			return size() > capacity;
-		}
-	};
+	private final ConcurrentMap<ISourceModule, CacheReference> map = new ConcurrentHashMap<ISourceModule, CacheReference>();
+
+	/**
+	 * Strong references to the infos of the last accesses, used as a ring
+	 */
+	private final AtomicReferenceArray<ISourceModuleInfo> hot;
+
+	private final AtomicInteger accessCounter = new AtomicInteger();
+
+	/**
+	 * Pin counts of the modules
+	 */
+	private final Map<ISourceModule, Integer> pinned = new HashMap<ISourceModule, Integer>();
+
+	private final Statistics statistics = new Statistics();
+
+	public SourceModuleInfoCache() {
+		this(Integer.getInteger(
+				"org.eclipse.dltk.core.sourceModuleInfoCache.capacity", //$NON-NLS-1$
+				(int) Math.pow(Runtime.getRuntime().maxMemory() / 10000000, 2))
+				.intValue(), Integer.getInteger(
+				"org.eclipse.dltk.core.sourceModuleInfoCache.hotSize", //$NON-NLS-1$
+				DEFAULT_HOT_SIZE).intValue());
+	}
+
+	/**
+	 * Creates the cache with the specified capacity and number of strongly
+	 * referenced recently used infos.
+	 */
+	@Internal
+	public SourceModuleInfoCache(int capacity, int hotSize) {
+		this.capacity = capacity;
+		this.hotSize = Math.max(1, Math.min(hotSize, capacity));
+		this.hot = new AtomicReferenceArray<ISourceModuleInfo>(this.hotSize);
+	}
 
 	private static class CacheReference extends
 			SoftReference<ISourceModuleInfo> {
 		final long modificationStamp;
 		final ISourceModule module;
 
+		/**
+		 * Value of the access counter when the info was last put in the hot
+		 * ring
+		 */
+		volatile int lastAccess;
+
+		/**
+		 * Strong reference to the info while the module is pinned
+		 */
+		volatile ISourceModuleInfo pinnedInfo;
+
 		public CacheReference(ISourceModule module, ISourceModuleInfo referent,
 				ReferenceQueue<? super ISourceModuleInfo> q) {
 			super(referent, q);
@@ -102,6 +166,29 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 
 	}
 
+	/**
+	 * Hit and miss counters of the cache, for the modules and for each key of
+	 * the infos
+	 */
+	static class Statistics {
+		final AtomicLong hits = new AtomicLong();
+		final AtomicLong misses = new AtomicLong();
+		final ConcurrentMap<String, AtomicLong[]> keys = new ConcurrentHashMap<String, AtomicLong[]>();
+
+		void update(String key, boolean hit) {
+			AtomicLong[] counters = keys.get(key);
+			if (counters == null) {
+				final AtomicLong[] newCounters = new AtomicLong[] {
+						new AtomicLong(), new AtomicLong() };
+				counters = keys.putIfAbsent(key, newCounters);
+				if (counters == null) {
+					counters = newCounters;
+				}
+			}
+			counters[hit ? 0 : 1].incrementAndGet();
+		}
+	}
+
 	public void start() {
 		DLTKCore.addPreProcessingResourceChangedListener(this,
 				IResourceChangeEvent.POST_CHANGE);
@@ -117,22 +204,137 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 				System.out.println("[Cache] expunge "
 						+ r.module.getElementName());
 			}
-			map.remove(r.module);
+			map.remove(r.module, r);
 		}
 	}
 
-	public synchronized ISourceModuleInfo get(ISourceModule module) {
+	public ISourceModuleInfo get(ISourceModule module) {
 		expungeStaleEntries();
+		for (;;) {
+			final CacheReference ref = map.get(module);
+			if (ref != null) {
+				final ISourceModuleInfo info = ref.get();
+				if (info != null && ref.isValid(module)) {
+					statistics.hits.incrementAndGet();
+					touch(ref, info);
+					return info;
+				}
+			}
+			final ISourceModuleInfo info = new SourceModuleInfo(statistics);
+			final CacheReference newRef = new CacheReference(module, info,
+					queue);
+			if (ref != null ? map.replace(module, ref, newRef) : map
+					.putIfAbsent(module, newRef) == null) {
+				if (ref != null) {
+					release(ref);
+				}
+				statistics.misses.incrementAndGet();
+				if (isPinned(module)) {
+					newRef.pinnedInfo = info;
+				}
+				touch(newRef, info);
+				if (map.size() > capacity) {
+					evict();
+				}
+				return info;
+			}
+			// another thread replaced the entry, use it
+		}
+	}
+
+	/**
+	 * Puts the info in the ring of the recently used infos, unless it was put
+	 * there recently.
+	 */
+	private void touch(CacheReference ref, ISourceModuleInfo info) {
+		final int access = accessCounter.get();
+		if (ref.lastAccess != 0 && access - ref.lastAccess < hotSize / 2) {
+			return;
+		}
+		final int index = accessCounter.incrementAndGet();
+		ref.lastAccess = index;
+		hot.set((index & Integer.MAX_VALUE) % hotSize, info);
+	}
+
+	/**
+	 * Removes the info of the entry removed from the cache from the ring of
+	 * the recently used infos.
+	 */
+	private void release(CacheReference ref) {
+		final ISourceModuleInfo info = ref.get();
+		if (info != null) {
+			for (int i = 0; i < hotSize; ++i) {
+				hot.compareAndSet(i, info, null);
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used tenth of the entries, except the pinned
+	 * ones.
+	 */
+	private synchronized void evict() {
+		if (map.size() <= capacity) {
+			return;
+		}
+		final List<CacheReference> refs = new ArrayList<CacheReference>(
+				map.values());
+		Collections.sort(refs, new Comparator<CacheReference>() {
+			public int compare(CacheReference o1, CacheReference o2) {
+				return o1.lastAccess - o2.lastAccess;
+			}
+		});
+		int count = map.size() - capacity + capacity / 10;
+		for (CacheReference ref : refs) {
+			if (count <= 0) {
+				break;
+			}
+			if (ref.pinnedInfo == null && map.remove(ref.module, ref)) {
+				release(ref);
+				--count;
+			}
+		}
+	}
+
+	/**
+	 * Keeps the info of the specified module while it is pinned, e.g. while
+	 * it is open in an editor. Calls must be balanced with
+	 * {@link #unpin(ISourceModule)}.
+	 */
+	public void pin(ISourceModule module) {
+		synchronized (pinned) {
+			final Integer count = pinned.get(module);
+			pinned.put(module, Integer.valueOf(count != null ? count
+					.intValue() + 1 : 1));
+		}
 		final CacheReference ref = map.get(module);
 		if (ref != null) {
-			final ISourceModuleInfo info = ref.get();
-			if (info != null && ref.isValid(module)) {
-				return info;
+			ref.pinnedInfo = ref.get();
+		}
+	}
+
+	public void unpin(ISourceModule module) {
+		synchronized (pinned) {
+			final Integer count = pinned.get(module);
+			if (count == null) {
+				return;
 			}
+			if (count.intValue() > 1) {
+				pinned.put(module, Integer.valueOf(count.intValue() - 1));
+				return;
+			}
+			pinned.remove(module);
+		}
+		final CacheReference ref = map.get(module);
+		if (ref != null) {
+			ref.pinnedInfo = null;
+		}
+	}
+
+	private boolean isPinned(ISourceModule module) {
+		synchronized (pinned) {
+			return pinned.containsKey(module);
 		}
-		final ISourceModuleInfo info = new SourceModuleInfo();
-		map.put(module, new CacheReference(module, info, queue));
-		return info;
 	}
 
 	public synchronized void resourceChanged(IResourceChangeEvent event) {
@@ -189,13 +391,26 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 
 	@Internal
 	static class SourceModuleInfo implements ISourceModuleInfo {
+		private final Statistics statistics;
 		private Map<Object, Object> map;
 
-		public synchronized Object get(String key) {
-			if (map == null) {
-				return null;
+		SourceModuleInfo() {
+			this(null);
+		}
+
+		SourceModuleInfo(Statistics statistics) {
+			this.statistics = statistics;
+		}
+
+		public Object get(String key) {
+			final Object value;
+			synchronized (this) {
+				value = map != null ? map.get(key) : null;
 			}
-			return map.get(key);
+			if (statistics != null) {
+				statistics.update(key, value != null);
+			}
+			return value;
 		}
 
 		public synchronized void put(String key, Object value) {
@@ -216,16 +431,12 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		}
 	}
 
-	/**
-	 * Not synchronized here, as it's called only from
-	 * {@link #resourceChanged(IResourceChangeEvent)} which is already
-	 * synchronized.
-	 */
 	private void removeByProject(IProject project) {
-		for (Iterator<ISourceModule> i = map.keySet().iterator(); i.hasNext();) {
-			final ISourceModule module = i.next();
-			if (project.equals(module.getScriptProject().getProject())) {
+		for (Iterator<CacheReference> i = map.values().iterator(); i.hasNext();) {
+			final CacheReference ref = i.next();
+			if (project.equals(ref.module.getScriptProject().getProject())) {
 				i.remove();
+				release(ref);
 			}
 		}
 	}
@@ -234,23 +445,29 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		remove(DLTKCore.createSourceModuleFrom(file));
 	}
 
-	public synchronized void remove(ISourceModule module) {
+	public void remove(ISourceModule module) {
 		if (DEBUG) {
 			System.out.println("[Cache] remove " + module.getElementName()); //$NON-NLS-1$
 		}
-		map.remove(module);
+		final CacheReference ref = map.remove(module);
+		if (ref != null) {
+			release(ref);
+		}
 	}
 
 	private static final boolean DEBUG = false;
 
-	public synchronized void clear() {
+	public void clear() {
 		// clear out reference queue.
 		while (queue.poll() != null)
 			;
 		map.clear();
+		for (int i = 0; i < hotSize; ++i) {
+			hot.set(i, null);
+		}
 	}
 
-	public synchronized int size() {
+	public int size() {
 		return map.size();
 	}
 
@@ -258,4 +475,20 @@ public class SourceModuleInfoCache implements ISourceModuleInfoCache,
 		return capacity;
 	}
 
+	/**
+	 * Returns the hit and miss counts by info key, the counts of the modules
+	 * themselves are returned with the <code>null</code> key.
+	 */
+	public Map<String, long[]> getStatistics() {
+		final Map<String, long[]> result = new HashMap<String, long[]>();
+		for (Map.Entry<String, AtomicLong[]> entry : statistics.keys
+				.entrySet()) {
+			result.put(entry.getKey(), new long[] {
+					entry.getValue()[0].get(), entry.getValue()[1].get() });
+		}
+		result.put(null, new long[] { statistics.hits.get(),
+				statistics.misses.get() });
+		return result;
+	}
+
 }
@@ -139,4 +139,16 @@ public abstract class AbstractBuildContext implements IBuildContext,
 		return getSourceModule().getElementName();
 	}
 
+	/**
+	 * Drops the contents, the line tracker and the attributes (including the
+	 * AST) once all the participants are done with the module, so they are
+	 * not retained while the remaining modules are built.
+	 */
+	public void release() {
+		attributes.clear();
+		contents = null;
+		sourceContents = null;
+		lineTracker = null;
+	}
+
 }
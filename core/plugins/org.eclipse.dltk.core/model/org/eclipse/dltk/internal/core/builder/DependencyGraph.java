@@ -0,0 +1,363 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.builder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+/**
+ * Dependencies between the files of a project. The paths are interned to int
+ * identifiers and for each file both the files depending on it and the files
+ * it depends on are kept as arrays of identifiers, so the dependents of a file
+ * are found and the dependencies of a rebuilt file are removed without walking
+ * the whole graph.
+ */
+final class DependencyGraph {
+
+	private static final int[] NO_EDGES = new int[0];
+
+	private final Map<IPath, Integer> ids;
+	private IPath[] paths;
+	private int size;
+
+	/**
+	 * (dependent, flags) pairs by dependency identifier
+	 */
+	private int[][] dependents;
+	private int[] dependentLengths;
+
+	/**
+	 * (dependency, flags) pairs by dependent identifier
+	 */
+	private int[][] dependencies;
+	private int[] dependencyLengths;
+
+	DependencyGraph() {
+		ids = new HashMap<IPath, Integer>();
+		allocate(64);
+	}
+
+	/**
+	 * Copies the specified graph, the paths without any dependency or
+	 * dependent left are dropped and the identifiers renumbered, so the
+	 * interned paths do not accumulate from build to build.
+	 */
+	DependencyGraph(DependencyGraph source) {
+		ids = new HashMap<IPath, Integer>();
+		final int[] remap = new int[source.size];
+		int count = 0;
+		for (int id = 0; id < source.size; ++id) {
+			remap[id] = source.hasEdges(id) ? count++ : -1;
+		}
+		allocate(Math.max(64, count));
+		for (int id = 0; id < source.size; ++id) {
+			if (remap[id] < 0) {
+				continue;
+			}
+			final int newId = size++;
+			paths[newId] = source.paths[id];
+			ids.put(paths[newId], Integer.valueOf(newId));
+			dependentLengths[newId] = source.dependentLengths[id];
+			dependents[newId] = copy(source.dependents[id],
+					dependentLengths[newId], remap);
+			dependencyLengths[newId] = source.dependencyLengths[id];
+			dependencies[newId] = copy(source.dependencies[id],
+					dependencyLengths[newId], remap);
+		}
+	}
+
+	private boolean hasEdges(int id) {
+		return dependentLengths[id] != 0 || dependencyLengths[id] != 0;
+	}
+
+	private static int[] copy(int[] edges, int length, int[] remap) {
+		if (length == 0) {
+			return NO_EDGES;
+		}
+		final int[] copy = new int[length];
+		for (int i = 0; i < length; i += 2) {
+			copy[i] = remap[edges[i]];
+			copy[i + 1] = edges[i + 1];
+		}
+		return copy;
+	}
+
+	private void allocate(int capacity) {
+		paths = new IPath[capacity];
+		dependents = new int[capacity][];
+		dependentLengths = new int[capacity];
+		dependencies = new int[capacity][];
+		dependencyLengths = new int[capacity];
+		Arrays.fill(dependents, NO_EDGES);
+		Arrays.fill(dependencies, NO_EDGES);
+	}
+
+	/**
+	 * Returns the identifier of the specified path or <code>-1</code> if it
+	 * is not part of the graph
+	 */
+	int idOf(IPath path) {
+		final Integer id = ids.get(path);
+		return id != null ? id.intValue() : -1;
+	}
+
+	IPath getPath(int id) {
+		return paths[id];
+	}
+
+	/**
+	 * Returns the number of the interned paths, identifiers are below it
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the (dependent, flags) pairs of the specified file, only the
+	 * first {@link #getDependentsLength(int)} values are valid. The array must
+	 * not be modified.
+	 */
+	int[] getDependents(int id) {
+		return dependents[id];
+	}
+
+	int getDependentsLength(int id) {
+		return dependentLengths[id];
+	}
+
+	private int intern(IPath path) {
+		final Integer id = ids.get(path);
+		if (id != null) {
+			return id.intValue();
+		}
+		if (size == paths.length) {
+			final int capacity = size * 2;
+			paths = Arrays.copyOf(paths, capacity);
+			dependents = Arrays.copyOf(dependents, capacity);
+			dependentLengths = Arrays.copyOf(dependentLengths, capacity);
+			dependencies = Arrays.copyOf(dependencies, capacity);
+			dependencyLengths = Arrays.copyOf(dependencyLengths, capacity);
+			Arrays.fill(dependents, size, capacity, NO_EDGES);
+			Arrays.fill(dependencies, size, capacity, NO_EDGES);
+		}
+		paths[size] = path;
+		ids.put(path, Integer.valueOf(size));
+		return size++;
+	}
+
+	/**
+	 * Records that the file <code>path</code> depends on
+	 * <code>dependency</code>, the flags are merged with the ones recorded
+	 * before.
+	 */
+	void add(IPath path, IPath dependency, int flags) {
+		final int dependent = intern(path);
+		final int target = intern(dependency);
+		final int[] edges = dependencies[dependent];
+		final int length = dependencyLengths[dependent];
+		for (int i = 0; i < length; i += 2) {
+			if (edges[i] == target) {
+				if ((edges[i + 1] | flags) != edges[i + 1]) {
+					edges[i + 1] |= flags;
+					updateFlags(target, dependent, flags);
+				}
+				return;
+			}
+		}
+		dependencies[dependent] = append(edges, length, target, flags);
+		dependencyLengths[dependent] = length + 2;
+		dependents[target] = append(dependents[target],
+				dependentLengths[target], dependent, flags);
+		dependentLengths[target] += 2;
+	}
+
+	private void updateFlags(int target, int dependent, int flags) {
+		final int[] edges = dependents[target];
+		final int length = dependentLengths[target];
+		for (int i = 0; i < length; i += 2) {
+			if (edges[i] == dependent) {
+				edges[i + 1] |= flags;
+				return;
+			}
+		}
+	}
+
+	private static int[] append(int[] edges, int length, int id, int flags) {
+		if (length + 2 > edges.length) {
+			edges = Arrays.copyOf(edges, Math.max(4, edges.length * 2));
+		}
+		edges[length] = id;
+		edges[length + 1] = flags;
+		return edges;
+	}
+
+	/**
+	 * Removes the dependencies of the specified files, the files depending on
+	 * them are kept.
+	 */
+	void removeDependencies(Collection<IPath> removedPaths) {
+		final BitSet removed = new BitSet(size);
+		final BitSet affected = new BitSet(size);
+		for (IPath path : removedPaths) {
+			final int id = idOf(path);
+			if (id < 0 || dependencyLengths[id] == 0) {
+				continue;
+			}
+			removed.set(id);
+			final int[] edges = dependencies[id];
+			final int length = dependencyLengths[id];
+			for (int i = 0; i < length; i += 2) {
+				affected.set(edges[i]);
+			}
+			dependencies[id] = NO_EDGES;
+			dependencyLengths[id] = 0;
+		}
+		for (int target = affected.nextSetBit(0); target >= 0; target = affected
+				.nextSetBit(target + 1)) {
+			final int[] edges = dependents[target];
+			final int length = dependentLengths[target];
+			int newLength = 0;
+			for (int i = 0; i < length; i += 2) {
+				if (!removed.get(edges[i])) {
+					edges[newLength] = edges[i];
+					edges[newLength + 1] = edges[i + 1];
+					newLength += 2;
+				}
+			}
+			if (newLength == 0) {
+				dependents[target] = NO_EDGES;
+			}
+			dependentLengths[target] = newLength;
+		}
+	}
+
+	void clear() {
+		ids.clear();
+		size = 0;
+		allocate(64);
+	}
+
+	/**
+	 * Writes the files with dependencies or dependents and the edges between
+	 * them, the paths left without any are dropped. Each path is written as
+	 * the length of the prefix shared with the previous one and the remaining
+	 * characters.
+	 */
+	void write(DataOutputStream out) throws IOException {
+		final int[] order = new int[size];
+		final String[] names = new String[size];
+		int count = 0;
+		for (int id = 0; id < size; ++id) {
+			if (hasEdges(id)) {
+				names[id] = paths[id].toPortableString();
+				order[count++] = id;
+			}
+		}
+		final Integer[] sorted = new Integer[count];
+		for (int i = 0; i < count; ++i) {
+			sorted[i] = Integer.valueOf(order[i]);
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			public int compare(Integer o1, Integer o2) {
+				return names[o1.intValue()].compareTo(names[o2.intValue()]);
+			}
+		});
+		final int[] index = new int[size];
+		writeVarInt(out, count);
+		String previous = ""; //$NON-NLS-1$
+		for (int i = 0; i < count; ++i) {
+			final int id = sorted[i].intValue();
+			index[id] = i;
+			final String name = names[id];
+			final int max = Math.min(previous.length(), name.length());
+			int prefix = 0;
+			while (prefix < max
+					&& previous.charAt(prefix) == name.charAt(prefix)) {
+				++prefix;
+			}
+			writeVarInt(out, prefix);
+			out.writeUTF(name.substring(prefix));
+			previous = name;
+		}
+		int targets = 0;
+		for (int i = 0; i < count; ++i) {
+			if (dependentLengths[sorted[i].intValue()] != 0) {
+				++targets;
+			}
+		}
+		writeVarInt(out, targets);
+		for (int i = 0; i < count; ++i) {
+			final int id = sorted[i].intValue();
+			final int length = dependentLengths[id];
+			if (length == 0) {
+				continue;
+			}
+			final int[] edges = dependents[id];
+			writeVarInt(out, i);
+			writeVarInt(out, length / 2);
+			for (int k = 0; k < length; k += 2) {
+				writeVarInt(out, index[edges[k]]);
+				writeVarInt(out, edges[k + 1]);
+			}
+		}
+	}
+
+	static DependencyGraph read(DataInputStream in) throws IOException {
+		final DependencyGraph graph = new DependencyGraph();
+		final int count = readVarInt(in);
+		final IPath[] paths = new IPath[count];
+		String previous = ""; //$NON-NLS-1$
+		for (int i = 0; i < count; ++i) {
+			final int prefix = readVarInt(in);
+			final String name = previous.substring(0, prefix) + in.readUTF();
+			paths[i] = Path.fromPortableString(name);
+			previous = name;
+		}
+		final int targets = readVarInt(in);
+		for (int i = 0; i < targets; ++i) {
+			final IPath dependency = paths[readVarInt(in)];
+			final int edgeCount = readVarInt(in);
+			for (int k = 0; k < edgeCount; ++k) {
+				final IPath path = paths[readVarInt(in)];
+				graph.add(path, dependency, readVarInt(in));
+			}
+		}
+		return graph;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value)
+			throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer"); //$NON-NLS-1$
+	}
+}
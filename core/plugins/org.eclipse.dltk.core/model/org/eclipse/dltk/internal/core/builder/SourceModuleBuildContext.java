@@ -52,8 +52,11 @@ public class SourceModuleBuildContext extends AbstractBuildContext {
 
 	public void recordDependency(IPath dependency, int flags) {
 		if (reporter != null) {
-			buildState.recordDependency(reporter.resource.getFullPath(),
-					dependency, flags);
+			// modules can be built concurrently
+			synchronized (buildState) {
+				buildState.recordDependency(reporter.resource.getFullPath(),
+						dependency, flags);
+			}
 		}
 	}
 }
@@ -11,8 +11,12 @@ package org.eclipse.dltk.internal.core.builder;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
@@ -33,6 +37,9 @@ import org.eclipse.dltk.core.DLTKLanguageManager;
 import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IScriptProject;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ISourceModuleInfoCache;
+import org.eclipse.dltk.core.ISourceModuleInfoCacheExtension;
+import org.eclipse.dltk.core.SourceParserUtil;
 import org.eclipse.dltk.core.builder.IBuildChange;
 import org.eclipse.dltk.core.builder.IBuildContext;
 import org.eclipse.dltk.core.builder.IBuildParticipant;
@@ -40,11 +47,14 @@ import org.eclipse.dltk.core.builder.IBuildParticipantExtension;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension2;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension3;
 import org.eclipse.dltk.core.builder.IBuildParticipantExtension4;
+import org.eclipse.dltk.core.builder.IBuildParticipantExtension5;
 import org.eclipse.dltk.core.builder.IBuildParticipantFilter;
 import org.eclipse.dltk.core.builder.IBuildState;
 import org.eclipse.dltk.core.builder.IProjectChange;
 import org.eclipse.dltk.core.builder.IScriptBuilder;
+import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.internal.core.builder.BuildParticipantManager.BuildParticipantResult;
+import org.eclipse.dltk.internal.core.util.DaemonThreadPool;
 import org.eclipse.osgi.util.NLS;
 
 public class StandardScriptBuilder implements IScriptBuilder {
@@ -52,6 +62,48 @@ public class StandardScriptBuilder implements IScriptBuilder {
 
 	private static final int WORK_BUILD = 100;
 
+	/**
+	 * Maximum number of threads building the modules concurrently, the
+	 * modules are built one at a time on the builder thread if less than 1.
+	 * Only the leading thread-safe participants (see
+	 * {@link IBuildParticipantExtension5}) of each module run on the worker
+	 * threads, the remaining ones run on the builder thread in the order of
+	 * the modules.
+	 */
+	private static final int PARALLEL_THREADS = Integer.getInteger(
+			"org.eclipse.dltk.core.builder.parallelThreads", 0).intValue(); //$NON-NLS-1$
+
+	private static int parallelThreads = PARALLEL_THREADS;
+
+	private static DaemonThreadPool buildExecutor = null;
+
+	/**
+	 * Sets the maximum number of threads building the modules concurrently,
+	 * overriding the system property. Used by the tests, returns the previous
+	 * value.
+	 */
+	public static synchronized int setParallelThreads(int threads) {
+		final int previous = parallelThreads;
+		if (threads != previous) {
+			parallelThreads = threads;
+			// the idle threads of the previous pool time out
+			buildExecutor = null;
+		}
+		return previous;
+	}
+
+	private static synchronized int getParallelThreads() {
+		return parallelThreads;
+	}
+
+	private static synchronized ExecutorService getBuildExecutor() {
+		if (buildExecutor == null) {
+			buildExecutor = new DaemonThreadPool(
+					"DLTK Build Worker", parallelThreads); //$NON-NLS-1$
+		}
+		return buildExecutor.getExecutor();
+	}
+
 	public void prepare(IBuildChange change, IBuildState state,
 			IProgressMonitor monitor) throws CoreException {
 		if (participants != null) {
@@ -158,26 +210,35 @@ public class StandardScriptBuilder implements IScriptBuilder {
 		if (participants.length == 0) {
 			return;
 		}
-		int counter = 0;
 		if (reporters == null) {
 			reporters = new ArrayList<IProblemReporter>(modules.size());
 		}
-		for (Iterator<ISourceModule> j = modules.iterator(); j.hasNext();) {
-			if (monitor.isCanceled())
+		final int threads = getParallelThreads();
+		if (threads > 0 && modules.size() > 1
+				&& isThreadSafe(participants[0])) {
+			if (!buildModulesConcurrently(modules, threads, buildType, state,
+					monitor)) {
 				return;
-			final ISourceModule module = j.next();
-			monitor.subTask(NLS.bind(
-					Messages.ValidatorBuilder_buildModuleSubTask,
-					String.valueOf(modules.size() - counter),
-					module.getElementName()));
-			final SourceModuleBuildContext context = new SourceModuleBuildContext(
-					problemFactory, module, buildType, state);
-			if (context.reporter != null) {
-				buildModule(context);
-				reporters.add(context.reporter);
 			}
-			monitor.worked(1);
-			++counter;
+		} else {
+			int counter = 0;
+			for (Iterator<ISourceModule> j = modules.iterator(); j.hasNext();) {
+				if (monitor.isCanceled())
+					return;
+				final ISourceModule module = j.next();
+				monitor.subTask(NLS.bind(
+						Messages.ValidatorBuilder_buildModuleSubTask,
+						String.valueOf(modules.size() - counter),
+						module.getElementName()));
+				final SourceModuleBuildContext context = new SourceModuleBuildContext(
+						problemFactory, module, buildType, state);
+				if (context.reporter != null) {
+					buildModule(context);
+					reporters.add(context.reporter);
+				}
+				monitor.worked(1);
+				++counter;
+			}
 		}
 		monitor.done();
 		if (DEBUG) {
@@ -187,6 +248,200 @@ public class StandardScriptBuilder implements IScriptBuilder {
 		}
 	}
 
+	private static boolean isThreadSafe(IBuildParticipant participant) {
+		return participant instanceof IBuildParticipantExtension5
+				&& ((IBuildParticipantExtension5) participant).isThreadSafe();
+	}
+
+	/**
+	 * Builds the modules with the thread-safe participants on the worker
+	 * threads, a limited number of modules ahead of the builder thread, which
+	 * runs the remaining participants in the order of the modules. Returns
+	 * <code>false</code> if cancelled.
+	 */
+	private boolean buildModulesConcurrently(List<ISourceModule> modules,
+			int threads, int buildType, IBuildState state,
+			IProgressMonitor monitor) {
+		final ExecutorService executor = getBuildExecutor();
+		final int window = threads * 4;
+		final LinkedList<ModuleBuild> pending = new LinkedList<ModuleBuild>();
+		final Iterator<ISourceModule> j = modules.iterator();
+		int counter = 0;
+		try {
+			while (j.hasNext() || !pending.isEmpty()) {
+				while (j.hasNext() && pending.size() < window) {
+					final SourceModuleBuildContext context = new SourceModuleBuildContext(
+							problemFactory, j.next(), buildType, state);
+					final ModuleBuild build = new ModuleBuild(context);
+					pending.add(build);
+					if (build.concurrentCount != 0) {
+						executor.execute(build);
+					}
+				}
+				if (monitor.isCanceled()) {
+					return false;
+				}
+				final ModuleBuild build = pending.removeFirst();
+				monitor.subTask(NLS.bind(
+						Messages.ValidatorBuilder_buildModuleSubTask,
+						String.valueOf(modules.size() - counter),
+						build.context.getSourceModule().getElementName()));
+				if (build.context.reporter != null) {
+					try {
+						build.complete();
+					} finally {
+						build.release();
+					}
+					reporters.add(build.context.reporter);
+				}
+				monitor.worked(1);
+				++counter;
+			}
+			return true;
+		} finally {
+			// participants must not be running after the modules are built
+			for (ModuleBuild build : pending) {
+				build.cancel();
+			}
+			for (ModuleBuild build : pending) {
+				try {
+					if (build.await()) {
+						afterBuild(build.context);
+					}
+				} finally {
+					build.release();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Build of a module, the leading thread-safe participants run on a worker
+	 * thread.
+	 */
+	private class ModuleBuild implements Runnable {
+		static final int PENDING = 0;
+		static final int RUNNING = 1;
+		static final int CANCELLED = 2;
+
+		final SourceModuleBuildContext context;
+		final IBuildParticipant[] selected;
+		final int concurrentCount;
+		final AtomicInteger state = new AtomicInteger(PENDING);
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile Throwable failure;
+
+		ModuleBuild(SourceModuleBuildContext context) {
+			this.context = context;
+			this.selected = context.reporter != null ? selectParticipants(context)
+					: null;
+			int count = 0;
+			if (selected != null) {
+				while (count < selected.length && isThreadSafe(selected[count])) {
+					++count;
+				}
+			}
+			this.concurrentCount = count;
+			if (selected != null) {
+				pin(context);
+			}
+		}
+
+		public void run() {
+			if (!state.compareAndSet(PENDING, RUNNING)) {
+				return;
+			}
+			try {
+				for (int k = 0; k < concurrentCount; ++k) {
+					selected[k].build(context);
+				}
+			} catch (Throwable e) {
+				failure = e;
+			} finally {
+				done.countDown();
+			}
+		}
+
+		/**
+		 * Waits for the concurrent participants and runs the remaining ones on
+		 * the calling thread.
+		 */
+		void complete() {
+			if (selected == null) {
+				return;
+			}
+			try {
+				if (concurrentCount != 0) {
+					join();
+					final Throwable cause = failure;
+					if (cause instanceof CoreException) {
+						throw (CoreException) cause;
+					} else if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					} else if (cause != null) {
+						throw new IllegalStateException(cause);
+					}
+				}
+				buildModule(context, selected, concurrentCount);
+			} catch (CoreException e) {
+				DLTKCore.error(
+						Messages.StandardScriptBuilder_errorBuildingModule, e);
+			} finally {
+				afterBuild(context);
+			}
+		}
+
+		void release() {
+			if (selected != null) {
+				unpin(context);
+			}
+			context.release();
+		}
+
+		/**
+		 * Prevents the concurrent participants from starting if they have not
+		 * started yet.
+		 */
+		void cancel() {
+			state.compareAndSet(PENDING, CANCELLED);
+		}
+
+		/**
+		 * Waits for the concurrent participants if they were started. Returns
+		 * whether they have run, so {@link #afterBuild(IBuildContext)} has to
+		 * be called.
+		 */
+		boolean await() {
+			if (concurrentCount == 0 || state.get() == CANCELLED) {
+				return false;
+			}
+			join();
+			return true;
+		}
+
+		/**
+		 * Waits until the concurrent participants have finished. The wait is
+		 * not interrupted, as the context must not be released while they are
+		 * running.
+		 */
+		private void join() {
+			boolean interrupted = false;
+			for (;;) {
+				try {
+					done.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	/**
 	 * Calls {@link IBuildParticipantExtension#beginBuild(int)} for all
 	 * {@link #participants}. Returns <code>true</code> if it was called for
@@ -229,27 +484,76 @@ public class StandardScriptBuilder implements IScriptBuilder {
 		}
 	}
 
-	private void buildModule(IBuildContext context) {
-		IBuildParticipant[] selected = participants;
-		for (IBuildParticipantFilter filter : filters) {
-			selected = filter.filter(selected, context);
-			if (selected == null || selected.length == 0) {
-				return;
-			}
+	private void buildModule(AbstractBuildContext context) {
+		final IBuildParticipant[] selected = selectParticipants(context);
+		if (selected == null) {
+			return;
 		}
+		pin(context);
 		try {
-			for (int k = 0; k < selected.length; ++k) {
-				selected[k].build(context);
-			}
+			buildModule(context, selected, 0);
 		} catch (CoreException e) {
 			DLTKCore.error(Messages.StandardScriptBuilder_errorBuildingModule,
 					e);
 		} finally {
-			for (IBuildParticipant participant : participants) {
-				if (participant instanceof IBuildParticipantExtension4) {
-					((IBuildParticipantExtension4) participant)
-							.afterBuild(context);
-				}
+			try {
+				afterBuild(context);
+			} finally {
+				unpin(context);
+				context.release();
+			}
+		}
+	}
+
+	/**
+	 * Keeps the cached AST of the module while it is built, so the module is
+	 * parsed once and the participants looking it up with
+	 * {@link SourceParserUtil} share the same AST.
+	 */
+	private static void pin(IBuildContext context) {
+		final ISourceModuleInfoCache cache = ModelManager.getModelManager()
+				.getSourceModuleInfoCache();
+		if (cache instanceof ISourceModuleInfoCacheExtension) {
+			((ISourceModuleInfoCacheExtension) cache).pin(context
+					.getSourceModule());
+		}
+	}
+
+	private static void unpin(IBuildContext context) {
+		final ISourceModuleInfoCache cache = ModelManager.getModelManager()
+				.getSourceModuleInfoCache();
+		if (cache instanceof ISourceModuleInfoCacheExtension) {
+			((ISourceModuleInfoCacheExtension) cache).unpin(context
+					.getSourceModule());
+		}
+	}
+
+	/**
+	 * Returns the participants selected by the {@link #filters} for the
+	 * specified module or <code>null</code> if none.
+	 */
+	private IBuildParticipant[] selectParticipants(IBuildContext context) {
+		IBuildParticipant[] selected = participants;
+		for (IBuildParticipantFilter filter : filters) {
+			selected = filter.filter(selected, context);
+			if (selected == null || selected.length == 0) {
+				return null;
+			}
+		}
+		return selected;
+	}
+
+	private static void buildModule(IBuildContext context,
+			IBuildParticipant[] selected, int start) throws CoreException {
+		for (int k = start; k < selected.length; ++k) {
+			selected[k].build(context);
+		}
+	}
+
+	private void afterBuild(IBuildContext context) {
+		for (IBuildParticipant participant : participants) {
+			if (participant instanceof IBuildParticipantExtension4) {
+				((IBuildParticipantExtension4) participant).afterBuild(context);
 			}
 		}
 	}
@@ -13,14 +13,14 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -47,46 +47,20 @@ public class State {
 	 * <li>0x16 boolean noCleanExternalFolders is always present
 	 * <li>0x17 dependencies
 	 * <li>0x18 dependencies + flags
+	 * <li>0x19 dependency graph
 	 * </ul>
 	 **/
-	public static final byte VERSION = 0x0018;
+	public static final byte VERSION = 0x0019;
 
 	Set<IPath> externalFolderLocations = new HashSet<IPath>();
 
 	boolean noCleanExternalFolders = false;
 
-	static class DependencyInfo {
-		int flags;
-
-		public DependencyInfo() {
-		}
-
-		public DependencyInfo(DependencyInfo source) {
-			this.flags = source.flags;
-		}
-
-		@Override
-		public String toString() {
-			final List<String> values = new ArrayList<String>();
-			if ((flags & IBuildState.STRUCTURAL) != 0) {
-				values.add("STRUCTURAL");
-			}
-			if ((flags & IBuildState.CONTENT) != 0) {
-				values.add("CONTENT");
-			}
-			if ((flags & IBuildState.EXPORTED) != 0) {
-				values.add("EXPORTED");
-			}
-			return String.valueOf(flags) + (!values.isEmpty() ? ":" : "")
-					+ TextUtils.join(values, '|');
-		}
-	}
-
 	/**
-	 * Full (absolute,including project) path to the set of paths, depending on
-	 * it.
+	 * Dependencies between the files, by full (absolute, including project)
+	 * paths.
 	 */
-	private final Map<IPath, Map<IPath, DependencyInfo>> dependencies = new HashMap<IPath, Map<IPath, DependencyInfo>>();
+	private DependencyGraph dependencies = new DependencyGraph();
 
 	private final Set<IPath> importProblems = new HashSet<IPath>();
 
@@ -126,8 +100,7 @@ public class State {
 		this.externalFolderLocations.clear();
 		this.externalFolderLocations.addAll(lastState.externalFolderLocations);
 		this.noCleanExternalFolders = false;
-		this.dependencies.clear();
-		this.dependencies.putAll(lastState.dependencies);
+		this.dependencies = new DependencyGraph(lastState.dependencies);
 		this.importProblems.clear();
 		this.importProblems.addAll(lastState.importProblems);
 	}
@@ -173,14 +146,7 @@ public class State {
 						.fromPortableString(folderName));
 		}
 		newState.noCleanExternalFolders = in.readBoolean();
-		final int dependencyCount = in.readInt();
-		newState.dependencies.clear();
-		for (int i = 0; i < dependencyCount; ++i) {
-			final Map<IPath, DependencyInfo> paths = new HashMap<IPath, DependencyInfo>();
-			newState.dependencies.put(Path.fromPortableString(in.readUTF()),
-					paths);
-			readDependencyPaths(in, paths);
-		}
+		newState.dependencies = DependencyGraph.read(in);
 		newState.importProblems.clear();
 		readPaths(in, newState.importProblems);
 		if (ScriptBuilder.DEBUG)
@@ -230,12 +196,7 @@ public class State {
 			out.writeUTF(path.toPortableString());
 		}
 		out.writeBoolean(this.noCleanExternalFolders);
-		out.writeInt(dependencies.size());
-		for (Map.Entry<IPath, Map<IPath, DependencyInfo>> entry : dependencies
-				.entrySet()) {
-			out.writeUTF(entry.getKey().toPortableString());
-			writeDependencyPaths(out, entry.getValue());
-		}
+		dependencies.write(out);
 		writePaths(out, importProblems);
 	}
 
@@ -255,26 +216,6 @@ public class State {
 		}
 	}
 
-	private static void readDependencyPaths(DataInputStream in,
-			Map<IPath, DependencyInfo> paths) throws IOException {
-		final int pathCount = in.readInt();
-		for (int j = 0; j < pathCount; ++j) {
-			final IPath path = Path.fromPortableString(in.readUTF());
-			final DependencyInfo depInfo = new DependencyInfo();
-			depInfo.flags = in.readInt();
-			paths.put(path, depInfo);
-		}
-	}
-
-	private void writeDependencyPaths(DataOutputStream out,
-			Map<IPath, DependencyInfo> paths) throws IOException {
-		out.writeInt(paths.size());
-		for (Map.Entry<IPath, DependencyInfo> entry : paths.entrySet()) {
-			out.writeUTF(entry.getKey().toPortableString());
-			out.writeInt(entry.getValue().flags);
-		}
-	}
-
 	/**
 	 * Returns a string representation of the receiver.
 	 */
@@ -301,17 +242,7 @@ public class State {
 	protected void recordDependency(IPath path, IPath dependency, int flags) {
 		Assert.isLegal(scriptProjectName.equals(path.segment(0)));
 		Assert.isLegal(!path.equals(dependency));
-		Map<IPath, DependencyInfo> paths = dependencies.get(dependency);
-		if (paths == null) {
-			paths = new HashMap<IPath, DependencyInfo>();
-			dependencies.put(dependency, paths);
-		}
-		DependencyInfo depInfo = paths.get(path);
-		if (depInfo == null) {
-			depInfo = new DependencyInfo();
-			paths.put(path, depInfo);
-		}
-		depInfo.flags |= flags;
+		dependencies.add(path, dependency, flags);
 	}
 
 	protected void resetDependencies() {
@@ -320,14 +251,7 @@ public class State {
 	}
 
 	protected void removeDependenciesFor(Set<IPath> paths) {
-		for (Iterator<Map.Entry<IPath, Map<IPath, DependencyInfo>>> i = dependencies
-				.entrySet().iterator(); i.hasNext();) {
-			final Map.Entry<IPath, Map<IPath, DependencyInfo>> entry = i.next();
-			if (entry.getValue().keySet().removeAll(paths)
-					&& entry.getValue().isEmpty()) {
-				i.remove();
-			}
-		}
+		dependencies.removeDependencies(paths);
 		importProblems.removeAll(paths);
 	}
 
@@ -357,16 +281,20 @@ public class State {
 			newDependencies.addAll(importProblems);
 		}
 		for (IPath path : paths) {
+			final int id = dependencies.idOf(path);
+			if (id < 0) {
+				continue;
+			}
 			final boolean structuralChange = structuralChanges.contains(path);
-			final Map<IPath, DependencyInfo> deps = dependencies.get(path);
-			if (deps != null) {
-				for (Map.Entry<IPath, DependencyInfo> entry : deps.entrySet()) {
-					if (structuralChange
-							|| ((entry.getValue().flags & IBuildState.CONTENT) != 0)) {
-						newDependencies.add(entry.getKey());
-						if ((entry.getValue().flags & IBuildState.EXPORTED) != 0) {
-							newStructuralDependencies.add(entry.getKey());
-						}
+			final int[] edges = dependencies.getDependents(id);
+			final int length = dependencies.getDependentsLength(id);
+			for (int i = 0; i < length; i += 2) {
+				final int flags = edges[i + 1];
+				if (structuralChange || (flags & IBuildState.CONTENT) != 0) {
+					final IPath dependent = dependencies.getPath(edges[i]);
+					newDependencies.add(dependent);
+					if ((flags & IBuildState.EXPORTED) != 0) {
+						newStructuralDependencies.add(dependent);
 					}
 				}
 			}
@@ -384,35 +312,67 @@ public class State {
 		if (result.isEmpty()) {
 			return Collections.emptyList();
 		}
-		final List<IPath> queue = new ArrayList<IPath>(result);
-		while (!queue.isEmpty()) {
-			final List<IPath> nextQueue = new ArrayList<IPath>();
-			for (IPath path : queue) {
-				final Map<IPath, DependencyInfo> deps = dependencies.get(path);
-				if (deps != null) {
-					for (Map.Entry<IPath, DependencyInfo> entry : deps
-							.entrySet()) {
-						if (!result.contains(entry.getKey())
-								&& ((entry.getValue().flags & IBuildState.STRUCTURAL) != 0)) {
-							nextQueue.add(entry.getKey());
-						}
+		final BitSet visited = new BitSet(dependencies.size());
+		int[] queue = new int[result.size()];
+		int queueLength = 0;
+		for (IPath path : result) {
+			final int id = dependencies.idOf(path);
+			if (id >= 0) {
+				visited.set(id);
+				queue[queueLength++] = id;
+			}
+		}
+		while (queueLength != 0) {
+			final int id = queue[--queueLength];
+			final int[] edges = dependencies.getDependents(id);
+			final int length = dependencies.getDependentsLength(id);
+			for (int i = 0; i < length; i += 2) {
+				final int dependent = edges[i];
+				if ((edges[i + 1] & IBuildState.STRUCTURAL) != 0
+						&& !visited.get(dependent)) {
+					visited.set(dependent);
+					result.add(dependencies.getPath(dependent));
+					if (queueLength == queue.length) {
+						queue = Arrays.copyOf(queue, queueLength * 2 + 1);
 					}
+					queue[queueLength++] = dependent;
 				}
 			}
-			result.addAll(nextQueue);
-			queue.clear();
-			queue.addAll(nextQueue);
 		}
 		return result;
 	}
 
 	void dumpDependencies() {
 		System.out.println("Dependencies in " + scriptProjectName + ":");
-		for (Iterator<Map.Entry<IPath, Map<IPath, DependencyInfo>>> i = dependencies
-				.entrySet().iterator(); i.hasNext();) {
-			final Map.Entry<IPath, Map<IPath, DependencyInfo>> entry = i.next();
-			System.out.println("  " + entry.getKey() + " -> "
-					+ entry.getValue());
+		for (int id = 0; id < dependencies.size(); ++id) {
+			final int[] edges = dependencies.getDependents(id);
+			final int length = dependencies.getDependentsLength(id);
+			if (length == 0) {
+				continue;
+			}
+			final StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < length; i += 2) {
+				sb.append(i == 0 ? "{" : ", ");
+				sb.append(dependencies.getPath(edges[i])).append('=');
+				sb.append(flagsToString(edges[i + 1]));
+			}
+			sb.append('}');
+			System.out.println("  " + dependencies.getPath(id) + " -> " + sb);
+		}
+	}
+
+	private static String flagsToString(int flags) {
+		final List<String> values = new ArrayList<String>();
+		if ((flags & IBuildState.STRUCTURAL) != 0) {
+			values.add("STRUCTURAL");
+		}
+		if ((flags & IBuildState.CONTENT) != 0) {
+			values.add("CONTENT");
+		}
+		if ((flags & IBuildState.EXPORTED) != 0) {
+			values.add("EXPORTED");
 		}
+		return String.valueOf(flags) + (!values.isEmpty() ? ":" : "")
+				+ TextUtils.join(values, '|');
 	}
 }
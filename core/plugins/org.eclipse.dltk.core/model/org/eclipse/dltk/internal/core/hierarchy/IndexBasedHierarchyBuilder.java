@@ -15,6 +15,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
@@ -23,6 +24,7 @@ import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
 import org.eclipse.dltk.compiler.util.HashtableOfObjectToInt;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IProjectFragment;
 import org.eclipse.dltk.core.IScriptProject;
@@ -482,7 +484,8 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder {
 	 * its occurrence) for all types which are potentially involved inside a
 	 * particular hierarchy. The match locator is not used here to narrow down
 	 * the results, the type hierarchy resolver is rather used to compute the
-	 * whole hierarchy at once.
+	 * whole hierarchy at once. When waiting until the indexes are ready the
+	 * references are read from the {@link SuperTypeReferenceCache}.
 	 *
 	 * @param type
 	 * @param scope
@@ -492,7 +495,7 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder {
 	 * @param progressMonitor
 	 */
 	public static void searchAllPossibleSubTypes(IType type,
-			IDLTKSearchScope scope, final Map binariesFromIndexMatches,
+			final IDLTKSearchScope scope, final Map binariesFromIndexMatches,
 			final IPathRequestor pathRequestor, int waitingPolicy, // WaitUntilReadyToSearch
 																	// |
 																	// ForceImmediateSearch
@@ -511,15 +514,19 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder {
 				.getIndexManager();
 
 		/* use a special collector to collect paths and queue new subtype names */
-		IndexQueryRequestor searchRequestor = new IndexQueryRequestor() {
+		class SearchRequestor extends IndexQueryRequestor {
 			public boolean acceptIndexMatch(String documentPath,
 					SearchPattern indexRecord, SearchParticipant participant,
 					AccessRuleSet access) {
 				SuperTypeReferencePattern record = (SuperTypeReferencePattern) indexRecord;
-				boolean isLocalOrAnonymous = record.enclosingTypeName == IIndexConstants.ONE_ZERO;
-				pathRequestor.acceptPath(documentPath, isLocalOrAnonymous);
-				char[] typeName = record.simpleName;
+				accept(documentPath, record.simpleName,
+						record.enclosingTypeName == IIndexConstants.ONE_ZERO);
+				return true;
+			}
 
+			void accept(String documentPath, char[] typeName,
+					boolean isLocalOrAnonymous) {
+				pathRequestor.acceptPath(documentPath, isLocalOrAnonymous);
 				if (!isLocalOrAnonymous // local or anonymous types cannot have
 										// subtypes outside the cu that define
 										// them
@@ -527,9 +534,18 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder {
 					foundSuperNames.put(typeName, typeName);
 					queue.add(typeName);
 				}
-				return true;
 			}
-		};
+		}
+		SearchRequestor searchRequestor = new SearchRequestor();
+
+		/*
+		 * the references to the names already searched for are answered by the
+		 * shared cache, which is loaded by workspace wide searches
+		 */
+		final IDLTKLanguageToolkit toolkit = scope.getLanguageToolkit();
+		final SuperTypeReferenceCache cache = toolkit != null
+				&& waitingPolicy == IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH ? ModelManager
+				.getModelManager().getSuperTypeReferenceCache() : null;
 
 		int superRefKind;
 		superRefKind = SuperTypeReferencePattern.ALL_SUPER_TYPES;
@@ -556,19 +572,27 @@ public class IndexBasedHierarchyBuilder extends HierarchyBuilder {
 					currentTypeName = null;
 				}
 
-				// search all index references to a given supertype
-				pattern.superSimpleName = currentTypeName;
-				indexManager.performConcurrentJob(job, waitingPolicy, null); // no
-																				// sub
-																				// progress
-																				// monitor
-																				// since
-																				// its
-																				// too
-																				// costly
-																				// for
-																				// deep
-																				// hierarchies
+				List<SuperTypeReferenceCache.Reference> references = null;
+				if (cache != null && currentTypeName != null) {
+					references = cache.getReferences(toolkit, new String(
+							currentTypeName), progressMonitor == null ? null
+							: new SubProgressMonitor(progressMonitor, 0));
+				}
+				if (references != null) {
+					for (SuperTypeReferenceCache.Reference reference : references) {
+						if (scope.encloses(reference.getPath())) {
+							searchRequestor.accept(reference.getPath(),
+									reference.getTypeName(),
+									reference.isLocal());
+						}
+					}
+				} else {
+					// search all index references to a given supertype, no sub
+					// progress monitor since its too costly for deep
+					// hierarchies
+					pattern.superSimpleName = currentTypeName;
+					indexManager.performConcurrentJob(job, waitingPolicy, null);
+				}
 				if (progressMonitor != null && ++ticks <= MAXTICKS) {
 					progressMonitor.worked(1);
 				}
@@ -0,0 +1,475 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.hierarchy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.ElementChangedEvent;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IElementChangedListener;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IModelElementDelta;
+import org.eclipse.dltk.core.IParent;
+import org.eclipse.dltk.core.ISearchPatternProcessor;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.search.DLTKSearchParticipant;
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.indexing.IIndexConstants;
+import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
+import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
+import org.eclipse.dltk.internal.core.search.SubTypeSearchJob;
+import org.eclipse.dltk.internal.core.search.matching.SuperTypeReferencePattern;
+
+/**
+ * Super type references of the workspace, by super type name, shared between
+ * the type hierarchies built by the {@link IndexBasedHierarchyBuilder}. The
+ * references to a super type name are loaded from the index with a single
+ * workspace wide search when first requested. The source modules changed
+ * since then are not searched again: their references are replaced by the
+ * ones read from the model when the next request is answered, so the index
+ * entries of these modules are skipped when other names are loaded.
+ * Structural changes of projects, fragments or folders clear the cache.
+ */
+public class SuperTypeReferenceCache {
+
+	/**
+	 * Maximal number of references cached per language, the references of
+	 * the language are cleared when they grow beyond.
+	 */
+	private static final int REFERENCE_LIMIT = Integer.getInteger(
+			"org.eclipse.dltk.core.hierarchy.referenceCacheLimit", 200000).intValue(); //$NON-NLS-1$
+
+	private static final boolean DEBUG = false;
+
+	/**
+	 * A type declared in a source module referencing a super type by name
+	 */
+	public static class Reference {
+		final String superName;
+		final String path;
+		final char[] typeName;
+		final boolean local;
+
+		Reference(String superName, String path, char[] typeName,
+				boolean local) {
+			this.superName = superName;
+			this.path = path;
+			this.typeName = typeName;
+			this.local = local;
+		}
+
+		/**
+		 * Returns the path of the document declaring the type
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * Returns the simple name of the type
+		 */
+		public char[] getTypeName() {
+			return typeName;
+		}
+
+		/**
+		 * Returns whether the type is a local or anonymous one
+		 */
+		public boolean isLocal() {
+			return local;
+		}
+	}
+
+	private static class ModuleReferences {
+		final List<Reference> references = new ArrayList<Reference>();
+		/**
+		 * if the references were read from the model, so they are complete
+		 */
+		boolean parsed;
+	}
+
+	private static class LanguageReferences {
+		final IDLTKLanguageToolkit toolkit;
+		final Map<String, List<Reference>> referencesByName = new HashMap<String, List<Reference>>();
+		final Map<String, ModuleReferences> referencesByModule = new HashMap<String, ModuleReferences>();
+		final Set<String> loadedNames = new HashSet<String>();
+		final Set<ISourceModule> changedModules = new LinkedHashSet<ISourceModule>();
+		int size;
+
+		LanguageReferences(IDLTKLanguageToolkit toolkit) {
+			this.toolkit = toolkit;
+		}
+
+		void add(Reference reference) {
+			ModuleReferences moduleReferences = referencesByModule
+					.get(reference.path);
+			if (moduleReferences == null) {
+				moduleReferences = new ModuleReferences();
+				referencesByModule.put(reference.path, moduleReferences);
+			}
+			moduleReferences.references.add(reference);
+			List<Reference> references = referencesByName
+					.get(reference.superName);
+			if (references == null) {
+				references = new ArrayList<Reference>(2);
+				referencesByName.put(reference.superName, references);
+			}
+			references.add(reference);
+			++size;
+		}
+
+		void setModule(String path, List<Reference> references) {
+			final ModuleReferences moduleReferences = referencesByModule
+					.remove(path);
+			if (moduleReferences != null) {
+				for (Reference reference : moduleReferences.references) {
+					final List<Reference> named = referencesByName
+							.get(reference.superName);
+					if (named != null && named.remove(reference)) {
+						--size;
+						if (named.isEmpty()) {
+							referencesByName.remove(reference.superName);
+						}
+					}
+				}
+			}
+			final ModuleReferences parsed = new ModuleReferences();
+			parsed.parsed = true;
+			referencesByModule.put(path, parsed);
+			for (Reference reference : references) {
+				add(reference);
+			}
+		}
+
+		void load(String superName, List<Reference> references) {
+			if (loadedNames.contains(superName)) {
+				return;
+			}
+			for (Reference reference : references) {
+				final ModuleReferences moduleReferences = referencesByModule
+						.get(reference.path);
+				if (moduleReferences == null || !moduleReferences.parsed) {
+					add(reference);
+				}
+			}
+			loadedNames.add(superName);
+		}
+	}
+
+	private final Map<String, LanguageReferences> languages = new HashMap<String, LanguageReferences>();
+
+	/**
+	 * Incremented whenever references are cleared, results of the searches
+	 * started before can't be loaded anymore.
+	 */
+	private long generation;
+
+	private long hits;
+	private long misses;
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	};
+
+	public void start() {
+		DLTKCore.addElementChangedListener(listener,
+				ElementChangedEvent.POST_CHANGE);
+	}
+
+	public void stop() {
+		DLTKCore.removeElementChangedListener(listener);
+		clear();
+	}
+
+	/**
+	 * Returns the references to the specified super type name in the
+	 * workspace or <code>null</code> if they could not be determined. The
+	 * callers filter the references by their search scope.
+	 * 
+	 * @param monitor
+	 *            the progress monitor of the caller, used to cancel the search
+	 *            of the references which are not loaded yet
+	 */
+	public List<Reference> getReferences(IDLTKLanguageToolkit toolkit,
+			String superName, IProgressMonitor monitor) {
+		final LanguageReferences language;
+		final long generation;
+		synchronized (this) {
+			language = getLanguage(toolkit);
+		}
+		updateChangedModules(language);
+		synchronized (this) {
+			if (language.loadedNames.contains(superName)) {
+				++hits;
+				return copyReferences(language, superName);
+			}
+			++misses;
+			generation = this.generation;
+		}
+		final List<Reference> references = search(toolkit, superName, monitor);
+		if (references == null) {
+			return null;
+		}
+		synchronized (this) {
+			if (generation != this.generation
+					|| languages.get(toolkit.getNatureId()) != language) {
+				return null;
+			}
+			language.load(superName, references);
+			final List<Reference> result = copyReferences(language, superName);
+			if (language.size > REFERENCE_LIMIT) {
+				if (DEBUG) {
+					System.out.println("[SuperTypeReferenceCache] limit " //$NON-NLS-1$
+							+ toolkit.getNatureId());
+				}
+				languages.remove(toolkit.getNatureId());
+				++this.generation;
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Returns whether the references to the specified super type name are
+	 * loaded.
+	 */
+	public synchronized boolean isLoaded(IDLTKLanguageToolkit toolkit,
+			String superName) {
+		final LanguageReferences language = languages.get(toolkit
+				.getNatureId());
+		return language != null && language.loadedNames.contains(superName);
+	}
+
+	private LanguageReferences getLanguage(IDLTKLanguageToolkit toolkit) {
+		LanguageReferences language = languages.get(toolkit.getNatureId());
+		if (language == null) {
+			language = new LanguageReferences(toolkit);
+			languages.put(toolkit.getNatureId(), language);
+		}
+		return language;
+	}
+
+	private static List<Reference> copyReferences(LanguageReferences language,
+			String superName) {
+		final List<Reference> references = language.referencesByName
+				.get(superName);
+		return references != null ? new ArrayList<Reference>(references)
+				: new ArrayList<Reference>(0);
+	}
+
+	/**
+	 * Replaces the references of the changed modules with the ones read from
+	 * the model. The model is read without holding the lock, a module changed
+	 * again meanwhile is updated by the next request.
+	 */
+	private void updateChangedModules(LanguageReferences language) {
+		final ISourceModule[] modules;
+		synchronized (this) {
+			if (language.changedModules.isEmpty()) {
+				return;
+			}
+			modules = language.changedModules
+					.toArray(new ISourceModule[language.changedModules.size()]);
+			language.changedModules.clear();
+		}
+		final ISearchPatternProcessor processor = DLTKLanguageManager
+				.getSearchPatternProcessor(language.toolkit);
+		final SuperTypeReferencePattern record = new SuperTypeReferencePattern(
+				null, null, SuperTypeReferencePattern.ALL_SUPER_TYPES,
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE,
+				language.toolkit);
+		for (ISourceModule module : modules) {
+			final String path = module.getPath().toString();
+			final List<Reference> references = new ArrayList<Reference>();
+			if (module.exists()) {
+				try {
+					collectReferences(module, path, processor, false, record,
+							references);
+				} catch (ModelException e) {
+					if (DLTKCore.DEBUG) {
+						e.printStackTrace();
+					}
+					references.clear();
+				}
+			}
+			synchronized (this) {
+				if (languages.get(language.toolkit.getNatureId()) == language) {
+					language.setModule(path, references);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Collects the references of the types declared in the specified element
+	 * the same way the source indexer records them: the types declared in
+	 * methods or fields are local and the reference is decoded from the index
+	 * key the indexer would write, so the super type names are reduced the
+	 * same way.
+	 */
+	@SuppressWarnings("deprecation")
+	private static void collectReferences(IParent parent, String path,
+			ISearchPatternProcessor processor, boolean local,
+			SuperTypeReferencePattern record, List<Reference> references)
+			throws ModelException {
+		final IModelElement[] children = parent.getChildren();
+		for (int i = 0; i < children.length; ++i) {
+			final IModelElement child = children[i];
+			switch (child.getElementType()) {
+			case IModelElement.TYPE:
+				final IType type = (IType) child;
+				final String[] superClasses = type.getSuperClasses();
+				if (superClasses != null) {
+					for (int j = 0; j < superClasses.length; ++j) {
+						String superClass = superClasses[j];
+						if (processor != null) {
+							superClass = processor.extractTypeChars(superClass);
+						}
+						record.decodeIndexKey(SuperTypeReferencePattern
+								.createIndexKey(0, null, type.getElementName(),
+										local ? IIndexConstants.ONE_ZERO_CHAR_STRINGS
+												: null, null,
+										IIndexConstants.TYPE_SUFFIX,
+										superClass.toCharArray(),
+										IIndexConstants.TYPE_SUFFIX));
+						references.add(new Reference(new String(
+								record.superSimpleName), path,
+								record.simpleName,
+								record.enclosingTypeName == IIndexConstants.ONE_ZERO));
+					}
+				}
+				collectReferences(type, path, processor, local, record,
+						references);
+				break;
+			case IModelElement.METHOD:
+			case IModelElement.FIELD:
+				collectReferences((IParent) child, path, processor, true,
+						record, references);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Searches the index for the references to the specified super type name
+	 * in the workspace, returns <code>null</code> if the search could not
+	 * complete.
+	 */
+	private static List<Reference> search(IDLTKLanguageToolkit toolkit,
+			final String superName, IProgressMonitor monitor) {
+		final List<Reference> references = new ArrayList<Reference>();
+		final IndexQueryRequestor requestor = new IndexQueryRequestor() {
+			@Override
+			public boolean acceptIndexMatch(String documentPath,
+					SearchPattern indexRecord, SearchParticipant participant,
+					AccessRuleSet access) {
+				final SuperTypeReferencePattern record = (SuperTypeReferencePattern) indexRecord;
+				references.add(new Reference(superName, documentPath,
+						record.simpleName,
+						record.enclosingTypeName == IIndexConstants.ONE_ZERO));
+				return true;
+			}
+		};
+		final SuperTypeReferencePattern pattern = new SuperTypeReferencePattern(
+				null, superName.toCharArray(),
+				SuperTypeReferencePattern.ALL_SUPER_TYPES,
+				SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE,
+				toolkit);
+		final SubTypeSearchJob job = new SubTypeSearchJob(pattern,
+				new DLTKSearchParticipant(),
+				SearchEngine.createWorkspaceScope(toolkit), requestor);
+		try {
+			if (!ModelManager.getModelManager().getIndexManager()
+					.performConcurrentJob(job,
+							IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH,
+							monitor)) {
+				return null;
+			}
+		} finally {
+			job.finished();
+		}
+		return references;
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		final IModelElement element = delta.getElement();
+		switch (element.getElementType()) {
+		case IModelElement.SOURCE_MODULE:
+			moduleChanged((ISourceModule) element);
+			break;
+		case IModelElement.SCRIPT_MODEL:
+		case IModelElement.SCRIPT_PROJECT:
+		case IModelElement.PROJECT_FRAGMENT:
+		case IModelElement.SCRIPT_FOLDER:
+			if (delta.getKind() != IModelElementDelta.CHANGED
+					|| (delta.getFlags() & ~IModelElementDelta.F_CHILDREN) != 0) {
+				clear();
+				return;
+			}
+			final IModelElementDelta[] children = delta.getAffectedChildren();
+			for (int i = 0; i < children.length; ++i) {
+				processDelta(children[i]);
+			}
+			break;
+		}
+	}
+
+	private void moduleChanged(ISourceModule module) {
+		synchronized (this) {
+			if (languages.isEmpty()) {
+				return;
+			}
+		}
+		final IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(module);
+		if (toolkit == null) {
+			return;
+		}
+		synchronized (this) {
+			final LanguageReferences language = languages.get(toolkit
+					.getNatureId());
+			if (language != null) {
+				language.changedModules.add(module);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		++generation;
+		languages.clear();
+	}
+
+	public synchronized String toString() {
+		int size = 0;
+		int names = 0;
+		for (LanguageReferences language : languages.values()) {
+			size += language.size;
+			names += language.loadedNames.size();
+		}
+		return "SuperTypeReferenceCache languages=" + languages.size() //$NON-NLS-1$
+				+ ", names=" + names + ", size=" + size + ", hits=" + hits //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ ", misses=" + misses; //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fixed size pool of daemon threads, created on first use. The threads are
+ * named after the pool and terminated after being idle for a while, so an
+ * unused pool holds no threads.
+ */
+public class DaemonThreadPool {
+
+	private static final int KEEP_ALIVE_SECONDS = 30;
+
+	private final String name;
+	private final int threads;
+	private final int priority;
+	private ExecutorService executor;
+	private int count = 0;
+
+	/**
+	 * @param name
+	 *            prefix of the names of the threads
+	 * @param threads
+	 *            maximum number of threads
+	 */
+	public DaemonThreadPool(String name, int threads) {
+		this(name, threads, Thread.NORM_PRIORITY);
+	}
+
+	/**
+	 * @param name
+	 *            prefix of the names of the threads
+	 * @param threads
+	 *            maximum number of threads
+	 * @param priority
+	 *            priority of the threads
+	 */
+	public DaemonThreadPool(String name, int threads, int priority) {
+		this.name = name;
+		this.threads = threads;
+		this.priority = priority;
+	}
+
+	/**
+	 * Returns the executor of this pool, creating it if needed.
+	 */
+	public synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final ThreadPoolExecutor pool = new ThreadPoolExecutor(threads,
+					threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+						public Thread newThread(Runnable r) {
+							final Thread thread = DaemonThreadPool.this
+									.newThread(r, name + ' ' + nextCount());
+							thread.setDaemon(true);
+							thread.setPriority(priority);
+							return thread;
+						}
+					});
+			pool.allowCoreThreadTimeOut(true);
+			executor = pool;
+		}
+		return executor;
+	}
+
+	/**
+	 * Shuts the executor down, the tasks already submitted are still executed.
+	 * A new executor is created by the next call to {@link #getExecutor()}.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	private synchronized int nextCount() {
+		return ++count;
+	}
+
+	/**
+	 * Creates the thread with the specified name, subclasses may return
+	 * subclasses of {@link Thread}.
+	 */
+	protected Thread newThread(Runnable runnable, String threadName) {
+		return new Thread(runnable, threadName);
+	}
+}
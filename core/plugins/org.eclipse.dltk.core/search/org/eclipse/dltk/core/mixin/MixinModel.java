@@ -11,12 +11,14 @@ package org.eclipse.dltk.core.mixin;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -51,11 +53,11 @@ import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.internal.core.OverflowingLRUCache;
 import org.eclipse.dltk.internal.core.mixin.IInternalMixinElement;
 import org.eclipse.dltk.internal.core.mixin.MixinCache;
+import org.eclipse.dltk.internal.core.mixin.MixinKeyIndex;
 import org.eclipse.dltk.internal.core.mixin.MixinManager;
 import org.eclipse.dltk.internal.core.util.LRUCache;
 
 public class MixinModel {
-	private static final long REQUEST_CACHE_EXPIRE_TIME = 2000;
 	private static final boolean DEBUG = false;
 	private static final boolean TRACE = false;
 
@@ -76,8 +78,28 @@ public class MixinModel {
 	private final RequestCache requestCache = new RequestCache(
 			REQUEST_CACHE_LIMIT);
 
-	// true if exists, false if doesn't
-	private Map<String, Boolean> knownKeysCache = new HashMap<String, Boolean>();
+	/**
+	 * Keys by module, answers the patterns without searching once the keys
+	 * with the same prefix were searched.
+	 */
+	private final MixinKeyIndex keyIndex = new MixinKeyIndex();
+
+	/**
+	 * Keys known to exist and keys known not to exist, read without locking.
+	 * The keys of the changed modules are removed from the former and the
+	 * latter is cleared whenever a module is changed or added, as it might
+	 * declare them now.
+	 */
+	private final Set<String> knownKeys = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> unknownKeys = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Incremented whenever modules are changed, the results computed before
+	 * can't be cached anymore.
+	 */
+	private volatile long changeCount;
 	// boolean, for the atomicity of it
 	public boolean removes = true;
 
@@ -135,11 +157,12 @@ public class MixinModel {
 		if (DLTKCore.VERBOSE) {
 			System.out.println("MixinModel.get(" + key + ')'); //$NON-NLS-1$
 		}
+		if (unknownKeys.contains(key)) {
+			return null;
+		}
+		final long changeCount = this.changeCount;
 		MixinElement element = null;
 		synchronized (this) {
-			if (knownKeysCache.get(key) == Boolean.FALSE) {
-				return null;
-			}
 			element = (MixinElement) cache.get(key);
 			if (element == null) {
 				if (!removes) {
@@ -159,14 +182,27 @@ public class MixinModel {
 		buildElementTree(element);
 		synchronized (this) {
 			if (element.isFinal() && element.sourceModules.size() > 0) {
-				knownKeysCache.put(key, Boolean.TRUE);
+				rememberKey(key, true);
 				return element;
 			}
-			knownKeysCache.put(key, Boolean.FALSE);
+			if (changeCount == this.changeCount) {
+				rememberKey(key, false);
+			}
+			removeMissing(element);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the element which key was not found, unless a module declaring
+	 * it was added meanwhile.
+	 */
+	// called with lock being held
+	private void removeMissing(MixinElement element) {
+		if (element.sourceModules.isEmpty()) {
 			cache.remove(element.key);
 			cache.resetSpaceLimit(CACHE_LIMIT, element);
 		}
-		return null;
 	}
 
 	private IDLTKSearchScope createSearchScope() {
@@ -178,7 +214,6 @@ public class MixinModel {
 	}
 
 	private static class RequestCacheEntry {
-		long expireTime;
 		String prefix = null;
 		Set<ISourceModule> modules = null;
 		Set<String> keys = null;
@@ -260,7 +295,7 @@ public class MixinModel {
 			return;
 		}
 		result.add(element);
-		knownKeysCache.put(element.key, Boolean.TRUE);
+		rememberKey(element.key, true);
 		for (MixinElement child : element.children)
 			addKeyToSet(result, child, pattern);
 	}
@@ -270,14 +305,26 @@ public class MixinModel {
 			IProgressMonitor monitor) {
 		PerformanceNode p = RuntimePerformanceMonitor.begin();
 		RequestCacheEntry entry;
+		final long changeCount;
 		synchronized (this) {
+			// entries are removed when modules change, no need to expire
 			entry = (RequestCacheEntry) requestCache.get(pattern);
-			if (entry != null && entry.expireTime >= System.currentTimeMillis())
+			if (entry != null)
 				return entry;
+			changeCount = this.changeCount;
 			entry = new RequestCacheEntry();
 			// TODO searches with clashing keys
 			// requestCache.put(pattern, entry);
 		}
+		final String prefix = MixinKeyIndex.getLiteralPrefix(pattern);
+		if (prefix.length() != 0) {
+			final RequestCacheEntry indexed = findFromIndex(pattern, prefix,
+					monitor);
+			if (indexed != null) {
+				p.done(getNature(), "Mixin model indexed items", 0);
+				return indexed;
+			}
+		}
 		Map<ISourceModule, Set<String>> keys = new HashMap<ISourceModule, Set<String>>();
 		ISourceModule[] containedModules = null;
 		try {
@@ -286,8 +333,6 @@ public class MixinModel {
 		} catch (OperationCanceledException e) {
 			return entry;
 		}
-		entry.expireTime = System.currentTimeMillis()
-				+ REQUEST_CACHE_EXPIRE_TIME;
 		entry.modules = new HashSet<ISourceModule>(
 				Arrays.asList(containedModules));
 		entry.prefix = pattern;
@@ -297,13 +342,84 @@ public class MixinModel {
 		}
 		if (!monitor.isCanceled()) {
 			synchronized (this) {
-				requestCache.put(pattern, entry);
+				if (changeCount == this.changeCount) {
+					requestCache.put(pattern, entry);
+				}
 			}
 		}
 		p.done(getNature(), "Mixin model search items", 0);
 		return entry;
 	}
 
+	/**
+	 * Answers the pattern from the {@link #keyIndex}, searching all the keys
+	 * with the same literal prefix first if they are not known yet. Returns
+	 * <code>null</code> if cancelled.
+	 */
+	// long-running operation
+	private RequestCacheEntry findFromIndex(String pattern, String prefix,
+			IProgressMonitor monitor) {
+		final Map<ISourceModule, Set<String>> keys = new HashMap<ISourceModule, Set<String>>();
+		final long generation;
+		synchronized (this) {
+			for (ISourceModule module : keyIndex.takeStaleModules()) {
+				if (module.exists()) {
+					reportModule(module);
+				}
+			}
+			if (keyIndex.isLoaded(prefix)) {
+				keyIndex.find(pattern, prefix, keys);
+				return createEntry(pattern, keys);
+			}
+			generation = keyIndex.getGeneration();
+		}
+		final Map<ISourceModule, Set<String>> prefixKeys = new HashMap<ISourceModule, Set<String>>();
+		try {
+			SearchEngine.searchMixinSources(createSearchScope(), prefix + '*',
+					toolkit, prefixKeys, monitor);
+		} catch (OperationCanceledException e) {
+			return null;
+		}
+		if (monitor.isCanceled()) {
+			return null;
+		}
+		synchronized (this) {
+			keyIndex.load(prefix, prefixKeys, generation);
+			if (keyIndex.isLoaded(prefix)) {
+				keyIndex.find(pattern, prefix, keys);
+				return createEntry(pattern, keys);
+			}
+		}
+		// changed meanwhile, filter the search results
+		final char[] patternChars = pattern.toCharArray();
+		for (Map.Entry<ISourceModule, Set<String>> entry : prefixKeys
+				.entrySet()) {
+			for (String key : entry.getValue()) {
+				if (CharOperation.match(patternChars, key.toCharArray(), true)) {
+					Set<String> moduleKeys = keys.get(entry.getKey());
+					if (moduleKeys == null) {
+						moduleKeys = new HashSet<String>();
+						keys.put(entry.getKey(), moduleKeys);
+					}
+					moduleKeys.add(key);
+				}
+			}
+		}
+		return createEntry(pattern, keys);
+	}
+
+	private static RequestCacheEntry createEntry(String pattern,
+			Map<ISourceModule, Set<String>> keys) {
+		final RequestCacheEntry entry = new RequestCacheEntry();
+		entry.modules = new HashSet<ISourceModule>(keys.keySet());
+		entry.prefix = pattern;
+		entry.keys = new HashSet<String>();
+		for (Set<String> strs : keys.values()) {
+			entry.keys.addAll(strs);
+		}
+		return entry;
+	}
+
 	/**
 	 * @deprecated
 	 */
@@ -328,6 +444,14 @@ public class MixinModel {
 
 	// long-running operation
 	public boolean keyExists(String key) {
+		if (removes) {
+			if (knownKeys.contains(key)) {
+				return true;
+			} else if (unknownKeys.contains(key)) {
+				return false;
+			}
+		}
+		final long changeCount = this.changeCount;
 		synchronized (this) {
 			// TODO: For this version we cache all information, so should be
 			// false.
@@ -338,20 +462,43 @@ public class MixinModel {
 			if (e != null && e.sourceModules.size() > 0) {
 				return true;
 			}
-			Boolean cached = knownKeysCache.get(key);
-			if (cached != null)
-				return cached;
 		}
 		boolean exists = get(key) != null;
-		synchronized (this) {
-			if (knownKeysCache.size() > KEYS_CACHE_LIMIT) {
-				knownKeysCache.clear();
-			}
-			knownKeysCache.put(key, exists);
+		if (exists || changeCount == this.changeCount) {
+			rememberKey(key, exists);
 		}
 		return exists;
 	}
 
+	/**
+	 * Remembers whether the key exists, the sets are cleared when they grow
+	 * beyond {@link #KEYS_CACHE_LIMIT}.
+	 */
+	private void rememberKey(String key, boolean exists) {
+		final Set<String> keys = exists ? knownKeys : unknownKeys;
+		if (keys.size() >= KEYS_CACHE_LIMIT) {
+			keys.clear();
+		}
+		keys.add(key);
+		(exists ? unknownKeys : knownKeys).remove(key);
+	}
+
+	private void forgetKey(String key) {
+		knownKeys.remove(key);
+		unknownKeys.remove(key);
+	}
+
+	/**
+	 * Drops the results which might be changed by the changed or added
+	 * modules.
+	 */
+	// called with lock being held
+	private void modulesChanged() {
+		++changeCount;
+		unknownKeys.clear();
+		requestCache.flush();
+	}
+
 	// long-running operation
 	private void buildElementTree(MixinElement element) {
 		// TODO: This is consistent cache stage
@@ -360,9 +507,8 @@ public class MixinModel {
 		}
 		ISourceModule[] containedModules = findModules(element.getKey());
 		if (containedModules.length == 0) {
-			synchronized (cache) {
-				cache.remove(element.key);
-				cache.resetSpaceLimit(CACHE_LIMIT, element);
+			synchronized (this) {
+				removeMissing(element);
 			}
 			return;
 		}
@@ -399,6 +545,7 @@ public class MixinModel {
 			IMixinParser mixinParser = MixinManager
 					.getMixinParser(sourceModule);
 			if (mixinParser != null) {
+				keyIndex.beginParse(sourceModule);
 				this.currentModule = sourceModule;
 				mixinParser.setRequirestor(mixinRequestor);
 				mixinParser.parserSourceModule(true, sourceModule);
@@ -514,8 +661,7 @@ public class MixinModel {
 						reportModule((ISourceModule) element);
 					}
 				}
-				knownKeysCache.clear();
-				requestCache.flush();
+				modulesChanged();
 			}
 
 			if ((delta.getFlags() & IModelElementDelta.F_CHILDREN) != 0) {
@@ -559,7 +705,7 @@ public class MixinModel {
 					}
 					// remove all resources with given project from model.
 					List<ISourceModule> toRemove = new ArrayList<ISourceModule>();
-					synchronized (this) {
+					synchronized (MixinModel.this) {
 						IProject project = (IProject) resource;
 						for (ISourceModule module : elementToMixinCache
 								.keySet()) {
@@ -578,6 +724,7 @@ public class MixinModel {
 						for (ISourceModule module : toRemove) {
 							remove(module);
 						}
+						keyIndex.clear();
 					}
 				}
 				return;
@@ -609,13 +756,15 @@ public class MixinModel {
 		if (DEBUG) {
 			log("remove " + element.getElementName()); //$NON-NLS-1$
 		}
+		if (element != null) {
+			keyIndex.removeModule(element);
+		}
 		List<MixinElement> mixinCache = elementToMixinCache.get(element);
+		modulesChanged();
 		if (mixinCache != null) {
-			removeFromRequestCache(element);
-
 			for (MixinElement mixin : mixinCache) {
 				removes = true;
-				knownKeysCache.remove(mixin.key);
+				knownKeys.remove(mixin.key);
 				mixin.bFinal = false;
 				mixin.sourceModules.remove(element);
 				mixin.sourceModuleToObject.remove(element);
@@ -644,6 +793,7 @@ public class MixinModel {
 	 */
 	protected synchronized void removeFolder(IScriptFolder folder) {
 		final IPath folderPath = folder.getPath();
+		keyIndex.removeModules(folderPath);
 		final List<ISourceModule> modulesToRemove = new ArrayList<ISourceModule>();
 		for (final ISourceModule module : elementToMixinCache.keySet()) {
 			final IPath path = module.getPath();
@@ -656,23 +806,6 @@ public class MixinModel {
 		}
 	}
 
-	// called with lock being held
-	private void removeFromRequestCache(ISourceModule element) {
-		// Clear requests cache.
-		@SuppressWarnings("unchecked")
-		Enumeration<RequestCacheEntry> enumeration = this.requestCache
-				.elements();
-		while (enumeration.hasMoreElements()) {
-			RequestCacheEntry entry = enumeration.nextElement();
-			if (entry.modules != null) {
-				if (entry.modules.contains(element)) {
-					// we can do it now
-					this.requestCache.remove(entry.prefix);
-				}
-			}
-		}
-	}
-
 	/***************************************************************************
 	 * Then getObjects are called, special initialize listener are called.
 	 * 
@@ -835,7 +968,7 @@ public class MixinModel {
 
 		public void close() {
 			synchronized (MixinModel.this) {
-				knownKeysCache.remove(key);
+				forgetKey(key);
 				removes = true;
 				this.bFinal = false;
 				for (int i = 0; i < sourceModules.size(); i++) {
@@ -862,7 +995,7 @@ public class MixinModel {
 					MixinElement parent = (MixinElement) cache.get(parentKey);
 					if (parent != null) {
 						removes = true;
-						knownKeysCache.remove(parent.key);
+						forgetKey(parent.key);
 						parent.children.remove(element);
 						parent.bFinal = false;
 						element = parent;
@@ -888,7 +1021,10 @@ public class MixinModel {
 			// System.out.println("Append mixin:" + info.key);
 			// }
 			synchronized (MixinModel.this) {
-				knownKeysCache.put(info.key, Boolean.TRUE);
+				rememberKey(info.key, true);
+				if (info.key.length() != 0) {
+					keyIndex.add(currentModule, info.key);
+				}
 				String[] list = info.key.split("\\" //$NON-NLS-1$
 						+ IMixinRequestor.MIXIN_NAME_SEPARATOR);
 				MixinElement element = getCreateEmpty(info.key);
@@ -950,13 +1086,14 @@ public class MixinModel {
 	}
 
 	public synchronized void clearKeysCache(String key) {
-		knownKeysCache.remove(key);
+		forgetKey(key);
 		requestCache.remove(key);
 		// MixinElement e = (MixinElement)this.cache.get(key);
 	}
 
 	public synchronized void clearKeysCache() {
-		knownKeysCache.clear();
+		knownKeys.clear();
+		unknownKeys.clear();
 		requestCache.flush();
 	}
 
@@ -985,9 +1122,12 @@ public class MixinModel {
 	protected synchronized void clear() {
 		cache.flush();
 		elementToMixinCache.clear();
-		knownKeysCache.clear();
+		knownKeys.clear();
+		unknownKeys.clear();
+		++changeCount;
 		modulesToReparse.clear();
 		requestCache.flush();
+		keyIndex.clear();
 	}
 
 	public String getNature() {
@@ -35,6 +35,14 @@ import org.eclipse.dltk.core.search.matching.ModuleFactory;
 import org.eclipse.dltk.internal.core.Model;
 import org.eclipse.dltk.internal.core.search.IndexSelector;
 import org.eclipse.dltk.internal.core.search.LazyDLTKSearchDocument;
+import org.eclipse.dltk.internal.core.search.matching.FieldPattern;
+import org.eclipse.dltk.internal.core.search.matching.InternalSearchPattern;
+import org.eclipse.dltk.internal.core.search.matching.MethodDeclarationPattern;
+import org.eclipse.dltk.internal.core.search.matching.MethodPattern;
+import org.eclipse.dltk.internal.core.search.matching.QualifiedTypeDeclarationPattern;
+import org.eclipse.dltk.internal.core.search.matching.SuperTypeReferencePattern;
+import org.eclipse.dltk.internal.core.search.matching.TypeDeclarationPattern;
+import org.eclipse.dltk.internal.core.search.matching.TypeReferencePattern;
 import org.eclipse.dltk.internal.core.util.Util;
 
 /**
@@ -195,6 +203,26 @@ public class DLTKSearchParticipant extends SearchParticipant {
 		return selectIndexes(query, scope);
 	}
 
+	/**
+	 * Patterns using the default {@link InternalSearchPattern#findIndexMatches}
+	 * , subclasses are not accepted as they might override it.
+	 */
+	private static final Set<Class<?>> PARALLEL_QUERY_PATTERNS = new HashSet<Class<?>>();
+	static {
+		PARALLEL_QUERY_PATTERNS.add(TypeDeclarationPattern.class);
+		PARALLEL_QUERY_PATTERNS.add(QualifiedTypeDeclarationPattern.class);
+		PARALLEL_QUERY_PATTERNS.add(TypeReferencePattern.class);
+		PARALLEL_QUERY_PATTERNS.add(SuperTypeReferencePattern.class);
+		PARALLEL_QUERY_PATTERNS.add(MethodDeclarationPattern.class);
+		PARALLEL_QUERY_PATTERNS.add(MethodPattern.class);
+		PARALLEL_QUERY_PATTERNS.add(FieldPattern.class);
+	}
+
+	@Override
+	public boolean isParallelQuerySupported(SearchPattern query) {
+		return PARALLEL_QUERY_PATTERNS.contains(query.getClass());
+	}
+
 	@Override
 	public void skipNotMixin() {
 		this.bOnlyMixin = true;
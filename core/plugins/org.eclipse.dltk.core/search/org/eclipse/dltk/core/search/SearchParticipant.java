@@ -210,6 +210,20 @@ public abstract class SearchParticipant {
 	public abstract IPath[] selectIndexes(SearchPattern query,
 			IDLTKSearchScope scope);
 
+	/**
+	 * Answers whether the indexes selected for the given search query may be
+	 * queried concurrently. The query and the reporting of the matches must be
+	 * separable, so patterns which report their matches while querying the
+	 * index must not be accepted. Returns <code>false</code> by default.
+	 * 
+	 * @param query
+	 *            the search pattern to consider
+	 * @since 5.2
+	 */
+	public boolean isParallelQuerySupported(SearchPattern query) {
+		return false;
+	}
+
 	public abstract IPath[] selectMixinIndexes(SearchPattern query,
 			IDLTKSearchScope scope);
 
@@ -18,18 +18,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 
 import org.eclipse.dltk.compiler.CharOperation;
 import org.eclipse.dltk.compiler.util.HashtableOfIntValues;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
+import org.eclipse.dltk.compiler.util.ScannerHelper;
 import org.eclipse.dltk.compiler.util.SimpleLookupTable;
 import org.eclipse.dltk.compiler.util.SimpleSet;
 import org.eclipse.dltk.core.search.SearchPattern;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.internal.core.util.Messages;
-import org.eclipse.dltk.internal.core.util.SimpleWordSet;
 import org.eclipse.dltk.internal.core.util.Util;
 
 public class DiskIndex {
@@ -63,7 +69,31 @@ public class DiskIndex {
 	private char[] cachedCategoryName;
 	char separator = Index.DEFAULT_SEPARATOR;
 
-	public static final String SIGNATURE = "DLTK INDEX VERSION 1.014"; //$NON-NLS-1$
+	private final boolean mappedRead; // whether the index file is mapped
+
+	private volatile ByteBuffer mappedBuffer; // read-only mapping of the
+	// index file, null until the first read in mapped mode
+
+	private volatile AtomicReferenceArray<String[]> mappedChunks; // chunks
+	// of document names decoded from the mapping
+
+	private volatile ConcurrentHashMap<String, HashtableOfObject> mappedCategoryTables; // category
+	// name -> HashtableOfObject(words -> int[] of document #'s or offset)
+
+	private final ConcurrentHashMap<String, WordIndex> wordIndexes; // category
+	// name -> sorted words of the category table, read along with the table
+
+	/**
+	 * Whether index files are memory-mapped for reading. Mapped indexes decode
+	 * category tables and document names straight from the mapping without
+	 * holding the index monitor, so concurrent queries do not block each
+	 * other. Disabled on Windows, where a mapped file cannot be deleted or
+	 * replaced until the mapping is garbage collected.
+	 */
+	private static final boolean MAPPED_READ = File.separatorChar != '\\'
+			&& !"false".equals(System.getProperty("org.eclipse.dltk.core.index.mapped")); //$NON-NLS-1$ //$NON-NLS-2$
+
+	public static final String SIGNATURE = "DLTK INDEX VERSION 1.015"; //$NON-NLS-1$
 
 	public final static boolean DEBUG = false;
 
@@ -102,8 +132,122 @@ public class DiskIndex {
 		}
 	}
 
+	/**
+	 * The words of a category table sorted ignoring case, along with their
+	 * order by camel case humps, so prefix and camel case queries only visit
+	 * the range of words which can match.
+	 */
+	static class WordIndex {
+
+		final char[][] words; // sorted by compareWords()
+
+		final int[] humpOrder; // positions in words sorted by humps
+
+		WordIndex(char[][] words, int[] humpOrder) {
+			this.words = words;
+			this.humpOrder = humpOrder;
+		}
+
+		/**
+		 * Returns the [start, end) range of the words starting with the given
+		 * prefix ignoring case.
+		 */
+		int[] prefixRange(char[] prefix) {
+			int low = 0;
+			int high = this.words.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (comparePrefix(this.words[mid], prefix, false) < 0)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			int start = low;
+			high = this.words.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (comparePrefix(this.words[mid], prefix, false) <= 0)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return new int[] { start, low };
+		}
+
+		/**
+		 * Returns the [start, end) range of {@link #humpOrder} for the words
+		 * whose humps start with the given ones.
+		 */
+		int[] humpRange(char[] humps) {
+			int low = 0;
+			int high = this.humpOrder.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (comparePrefix(humps(this.words[this.humpOrder[mid]]),
+						humps, true) < 0)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			int start = low;
+			high = this.humpOrder.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (comparePrefix(humps(this.words[this.humpOrder[mid]]),
+						humps, true) <= 0)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return new int[] { start, low };
+		}
+	}
+
+	/**
+	 * Input stream reading from its own view of the mapped index file.
+	 */
+	static class MappedInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		MappedInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		public int read() {
+			return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+		}
+
+		public int read(byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			int remaining = this.buffer.remaining();
+			if (remaining == 0)
+				return -1;
+			if (len > remaining)
+				len = remaining;
+			this.buffer.get(b, off, len);
+			return len;
+		}
+
+		public long skip(long n) {
+			int count = (int) Math.min(Math.max(n, 0), this.buffer.remaining());
+			this.buffer.position(this.buffer.position() + count);
+			return count;
+		}
+
+		public int available() {
+			return this.buffer.remaining();
+		}
+	}
+
 	DiskIndex(String fileName) {
+		this(fileName, MAPPED_READ);
+	}
+
+	DiskIndex(String fileName, boolean mappedRead) {
 		this.fileName = fileName;
+		this.mappedRead = mappedRead;
 
 		// clear cached items
 		this.headerInfoOffset = -1;
@@ -116,6 +260,82 @@ public class DiskIndex {
 		this.categoryTables = null;
 		this.cachedCategoryName = null;
 		this.categoryOffsets = null;
+		this.wordIndexes = new ConcurrentHashMap<String, WordIndex>();
+	}
+
+	/**
+	 * Compares words ignoring case first, so the words starting with a given
+	 * prefix in any case are contiguous.
+	 */
+	static int compareWords(char[] word1, char[] word2) {
+		int length = Math.min(word1.length, word2.length);
+		for (int i = 0; i < length; i++) {
+			char c1 = Character.toLowerCase(word1[i]);
+			char c2 = Character.toLowerCase(word2[i]);
+			if (c1 != c2)
+				return c1 - c2;
+		}
+		if (word1.length != word2.length)
+			return word1.length - word2.length;
+		for (int i = 0; i < length; i++)
+			if (word1[i] != word2[i])
+				return word1[i] - word2[i];
+		return 0;
+	}
+
+	/**
+	 * Returns 0 if the word starts with the prefix, otherwise the order of the
+	 * word relative to the words starting with it.
+	 */
+	static int comparePrefix(char[] word, char[] prefix, boolean caseSensitive) {
+		int length = Math.min(word.length, prefix.length);
+		for (int i = 0; i < length; i++) {
+			char c1 = word[i];
+			char c2 = prefix[i];
+			if (!caseSensitive) {
+				c1 = Character.toLowerCase(c1);
+				c2 = Character.toLowerCase(c2);
+			}
+			if (c1 != c2)
+				return c1 - c2;
+		}
+		return word.length < prefix.length ? -1 : 0;
+	}
+
+	/**
+	 * Returns the first character of the word followed by every character
+	 * {@link CharOperation#camelCaseMatch(char[], char[])} treats as the start
+	 * of a hump. The humps of a matching pattern are a prefix of the humps of
+	 * the word.
+	 */
+	static char[] humps(char[] word) {
+		int length = word.length;
+		if (length == 0)
+			return word;
+		char[] humps = new char[length];
+		int count = 0;
+		humps[count++] = word[0];
+		for (int i = 1; i < length; i++) {
+			char c = word[i];
+			if (c < ScannerHelper.MAX_OBVIOUS) {
+				if ((ScannerHelper.OBVIOUS_IDENT_CHAR_NATURES[c] & (ScannerHelper.C_LOWER_LETTER
+						| ScannerHelper.C_SPECIAL | ScannerHelper.C_DIGIT)) == 0)
+					humps[count++] = c;
+			} else if (!Character.isJavaIdentifierPart(c)
+					|| Character.isUpperCase(c)) {
+				humps[count++] = c;
+			}
+		}
+		if (count < length)
+			System.arraycopy(humps, 0, humps = new char[count], 0, count);
+		return humps;
+	}
+
+	private static char[] literalPrefix(char[] pattern) {
+		for (int i = 0, length = pattern.length; i < length; i++)
+			if (pattern[i] == '*' || pattern[i] == '?')
+				return CharOperation.subarray(pattern, 0, i);
+		return pattern;
 	}
 
 	SimpleSet addDocumentNames(String substring, MemoryIndex memoryIndex)
@@ -227,7 +447,16 @@ public class DiskIndex {
 							categories[i], false);
 					if (wordsToDocNumbers != null) {
 						char[][] words = wordsToDocNumbers.keyTable;
-						for (int j = 0, m = words.length; j < m; j++) {
+						int start = 0;
+						int end = words.length;
+						WordIndex wordIndex = getWordIndex(categories[i]);
+						if (wordIndex != null) {
+							words = wordIndex.words;
+							int[] range = wordIndex.prefixRange(key);
+							start = range[0];
+							end = range[1];
+						}
+						for (int j = start; j < end; j++) {
 							char[] word = words[j];
 							if (word != null && key[0] == word[0]
 									&& CharOperation.prefixEquals(key, word))
@@ -275,7 +504,12 @@ public class DiskIndex {
 				for (int i = 0, l = categories.length; i < l; i++) {
 					HashtableOfObject wordsToDocNumbers = readCategoryTable(
 							categories[i], false);
-					if (wordsToDocNumbers != null) {
+					WordIndex wordIndex = wordsToDocNumbers != null ? getWordIndex(categories[i])
+							: null;
+					if (wordIndex != null) {
+						results = addMatchingWords(results, key, matchRule,
+								wordIndex, wordsToDocNumbers, memoryIndex);
+					} else if (wordsToDocNumbers != null) {
 						char[][] words = wordsToDocNumbers.keyTable;
 						for (int j = 0, m = words.length; j < m; j++) {
 							char[] word = words[j];
@@ -295,7 +529,44 @@ public class DiskIndex {
 		return results;
 	}
 
+	private HashtableOfObject addMatchingWords(HashtableOfObject results,
+			char[] key, int matchRule, WordIndex wordIndex,
+			HashtableOfObject wordsToDocNumbers, MemoryIndex memoryIndex)
+			throws IOException {
+		// exact, prefix & pattern matches start with the literal prefix of the
+		// key in any case, camel case matches start with the humps of the key
+		char[][] words = wordIndex.words;
+		char[] prefix = (matchRule & SearchPattern.R_PATTERN_MATCH) != 0 ? literalPrefix(key)
+				: key;
+		int start = 0;
+		int end = words.length;
+		if (prefix.length > 0) {
+			int[] range = wordIndex.prefixRange(prefix);
+			start = range[0];
+			end = range[1];
+		}
+		for (int j = start; j < end; j++)
+			if (Index.isMatch(key, words[j], matchRule))
+				results = addQueryResult(results, words[j], wordsToDocNumbers,
+						memoryIndex);
+		if ((matchRule & SearchPattern.R_CAMELCASE_MATCH) != 0
+				&& (start > 0 || end < words.length) && key.length > 0) {
+			int[] humpOrder = wordIndex.humpOrder;
+			int[] range = wordIndex.humpRange(humps(key));
+			for (int j = range[0]; j < range[1]; j++) {
+				int position = humpOrder[j];
+				if ((position < start || position >= end)
+						&& Index.isMatch(key, words[position], matchRule))
+					results = addQueryResult(results, words[position],
+							wordsToDocNumbers, memoryIndex);
+			}
+		}
+		return results;
+	}
+
 	private void cacheDocumentNames() throws IOException {
+		if (getMappedBuffer() != null)
+			return; // names are decoded on demand from the mapping
 		// will need all document names so get them now
 		this.cachedChunks = new String[this.numberOfChunks][];
 		DataInputStream stream = new DataInputStream(new BufferedInputStream(
@@ -439,37 +710,36 @@ public class DiskIndex {
 		return newDocNames;
 	}
 
-	private void copyQueryResults(HashtableOfObject categoryToWords,
-			int newPosition) {
-		char[][] categoryNames = categoryToWords.keyTable;
-		Object[] wordSets = categoryToWords.valueTable;
-		for (int i = 0, l = categoryNames.length; i < l; i++) {
-			char[] categoryName = categoryNames[i];
-			if (categoryName != null) {
-				SimpleWordSet wordSet = (SimpleWordSet) wordSets[i];
-				HashtableOfObject wordsToDocs = (HashtableOfObject) this.categoryTables
+	private void copyQueryResults(MemoryIndex memoryIndex,
+			MemoryIndex.Document document, int newPosition) {
+		// entries are sorted by category, so each category table is looked up
+		// once per document
+		int size = document.compact();
+		long[] entries = document.entries;
+		int categoryId = -1;
+		HashtableOfObject wordsToDocs = null;
+		for (int i = 0; i < size; i++) {
+			long entry = entries[i];
+			if (MemoryIndex.Document.categoryId(entry) != categoryId) {
+				categoryId = MemoryIndex.Document.categoryId(entry);
+				char[] categoryName = memoryIndex.categories[categoryId];
+				wordsToDocs = (HashtableOfObject) this.categoryTables
 						.get(categoryName);
 				if (wordsToDocs == null)
 					this.categoryTables.put(categoryName,
-							wordsToDocs = new HashtableOfObject(
-									wordSet.elementSize));
-
-				char[][] words = wordSet.words;
-				for (int j = 0, m = words.length; j < m; j++) {
-					char[] word = words[j];
-					if (word != null) {
-						Object o = wordsToDocs.get(word);
-						if (o == null) {
-							wordsToDocs.put(word, new int[] { newPosition });
-						} else if (o instanceof IntList) {
-							((IntList) o).add(newPosition);
-						} else {
-							IntList list = new IntList((int[]) o);
-							list.add(newPosition);
-							wordsToDocs.put(word, list);
-						}
-					}
-				}
+							wordsToDocs = new HashtableOfObject(size - i));
+			}
+			char[] word = memoryIndex.words[MemoryIndex.Document
+					.wordId(entry)];
+			Object o = wordsToDocs.get(word);
+			if (o == null) {
+				wordsToDocs.put(word, new int[] { newPosition });
+			} else if (o instanceof IntList) {
+				((IntList) o).add(newPosition);
+			} else {
+				IntList list = new IntList((int[]) o);
+				list.add(newPosition);
+				wordsToDocs.put(word, list);
 			}
 		}
 	}
@@ -579,7 +849,8 @@ public class DiskIndex {
 			nextWord: for (int i = 0, l = oldWords.length; i < l; i++) {
 				char[] oldWord = oldWords[i];
 				if (oldWord != null) {
-					int[] oldDocNumbers = (int[]) oldArrayOffsets[i];
+					int[] oldDocNumbers = onDisk
+							.readDocumentNumbers(oldArrayOffsets[i]);
 					int length = oldDocNumbers.length;
 					int[] mappedNumbers = new int[length];
 					int count = 0;
@@ -614,14 +885,33 @@ public class DiskIndex {
 					}
 				}
 			}
-			onDisk.categoryTables.put(categoryName, null); // flush cached
-			// table
+			synchronized (onDisk) {
+				// queries may still be reading onDisk during a background merge
+				if (onDisk.categoryTables != null)
+					onDisk.categoryTables.put(categoryName, null); // flush
+				// cached table
+			}
 		}
 		writeCategoryTable(categoryName, wordsToDocs, stream);
 	}
 
 	DiskIndex mergeWith(MemoryIndex memoryIndex) throws IOException {
 		// assume write lock is held
+		return replaceWith(writeMerged(memoryIndex));
+	}
+
+	/**
+	 * Writes this index merged with the given memory index into a temporary
+	 * file. This index and its file are left untouched so queries can still
+	 * be answered from it while the merge runs, the result must be installed
+	 * with {@link #replaceWith(DiskIndex)}.
+	 * 
+	 * @return this index if there is nothing to merge, <code>null</code> if
+	 *         the merged index is empty or the new index otherwise
+	 */
+	DiskIndex writeMerged(MemoryIndex memoryIndex) throws IOException {
+		// assume the memory index is not changed concurrently, i.e. at least
+		// the read lock is held
 		// compute & write out new docNames
 		String[] docNames = readAllDocumentNames();
 		int previousLength = docNames.length;
@@ -644,12 +934,11 @@ public class DiskIndex {
 			// deleted documents that had never been saved
 
 			// index is now empty since all the saved documents were removed
-			DiskIndex newDiskIndex = new DiskIndex(this.fileName);
-			newDiskIndex.initialize(false);
-			return newDiskIndex;
+			return null;
 		}
 
-		DiskIndex newDiskIndex = new DiskIndex(this.fileName + ".tmp"); //$NON-NLS-1$
+		DiskIndex newDiskIndex = new DiskIndex(this.fileName + ".tmp", //$NON-NLS-1$
+				this.mappedRead);
 		File newIndexFile = newDiskIndex.getIndexFile();
 		try {
 			newDiskIndex.initializeFrom(this, newIndexFile);
@@ -668,12 +957,10 @@ public class DiskIndex {
 					Object[] integerPositions = indexedDocuments.valueTable;
 					for (int i = 0, l = names.length; i < l; i++)
 						if (names[i] != null)
-							newDiskIndex
-									.copyQueryResults(
-											(HashtableOfObject) memoryIndex.docsToReferences
-													.get(names[i]),
-											((Integer) integerPositions[i])
-													.intValue());
+							newDiskIndex.copyQueryResults(memoryIndex,
+									(MemoryIndex.Document) memoryIndex.docsToReferences
+											.get(names[i]),
+									((Integer) integerPositions[i]).intValue());
 				}
 				indexedDocuments = null; // free up the space
 
@@ -689,8 +976,33 @@ public class DiskIndex {
 				stream.close();
 			}
 			newDiskIndex.writeOffsetToHeader(offsetToHeader);
+		} catch (IOException e) {
+			deleteTempIndex(newDiskIndex);
+			throw e;
+		}
+		return newDiskIndex;
+	}
 
-			// rename file by deleting previous index file & renaming temp one
+	/**
+	 * Replaces this index by the result of {@link #writeMerged(MemoryIndex)}.
+	 * 
+	 * @return the index to use from now on
+	 */
+	DiskIndex replaceWith(DiskIndex merged) throws IOException {
+		// assume write lock is held
+		if (merged == this)
+			return this;
+		releaseMappedBuffer();
+		if (merged == null) {
+			DiskIndex newDiskIndex = new DiskIndex(this.fileName,
+					this.mappedRead);
+			newDiskIndex.initialize(false);
+			return newDiskIndex;
+		}
+
+		// rename file by deleting previous index file & renaming temp one
+		File newIndexFile = merged.getIndexFile();
+		try {
 			File old = getIndexFile();
 			if (old.exists() && !old.delete()) {
 				if (DEBUG)
@@ -707,45 +1019,113 @@ public class DiskIndex {
 						"Failed to rename index file " + this.fileName); //$NON-NLS-1$
 			}
 		} catch (IOException e) {
-			if (newIndexFile.exists() && !newIndexFile.delete())
-				if (DEBUG)
-					System.out
-							.println("mergeWith - Failed to delete temp index " + newDiskIndex.fileName); //$NON-NLS-1$
+			deleteTempIndex(merged);
 			throw e;
 		}
 
-		newDiskIndex.fileName = this.fileName;
-		return newDiskIndex;
+		merged.fileName = this.fileName;
+		return merged;
 	}
 
-	private synchronized String[] readAllDocumentNames() throws IOException {
+	/**
+	 * Deletes the file written by {@link #writeMerged(MemoryIndex)} when the
+	 * result is not installed.
+	 */
+	void discard(DiskIndex merged) {
+		if (merged != null && merged != this)
+			deleteTempIndex(merged);
+	}
+
+	private static void deleteTempIndex(DiskIndex newDiskIndex) {
+		File newIndexFile = newDiskIndex.getIndexFile();
+		if (newIndexFile.exists() && !newIndexFile.delete())
+			if (DEBUG)
+				System.out
+						.println("mergeWith - Failed to delete temp index " + newDiskIndex.fileName); //$NON-NLS-1$
+	}
+
+	private String[] readAllDocumentNames() throws IOException {
 		if (this.numberOfChunks <= 0)
 			return new String[0];
 
-		DataInputStream stream = new DataInputStream(new BufferedInputStream(
-				new FileInputStream(getIndexFile()),
-				this.numberOfChunks > 5 ? 4096 : 2048));
-		try {
-			stream.skip(this.chunkOffsets[0]);
-			int lastIndex = this.numberOfChunks - 1;
-			String[] docNames = new String[lastIndex * CHUNK_SIZE
-					+ sizeOfLastChunk];
-			for (int i = 0; i < this.numberOfChunks; i++)
-				readChunk(docNames, stream, i * CHUNK_SIZE,
-						i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
-			return docNames;
-		} finally {
-			stream.close();
+		ByteBuffer buffer = getMappedBuffer();
+		if (buffer != null)
+			return readAllDocumentNames(openMappedStream(buffer,
+					this.chunkOffsets[0]));
+
+		synchronized (this) {
+			DataInputStream stream = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(getIndexFile()),
+							this.numberOfChunks > 5 ? 4096 : 2048));
+			try {
+				stream.skip(this.chunkOffsets[0]);
+				return readAllDocumentNames(stream);
+			} finally {
+				stream.close();
+			}
 		}
 	}
 
-	private synchronized HashtableOfObject readCategoryTable(
-			char[] categoryName, boolean readDocNumbers) throws IOException {
+	private String[] readAllDocumentNames(DataInputStream stream)
+			throws IOException {
+		int lastIndex = this.numberOfChunks - 1;
+		String[] docNames = new String[lastIndex * CHUNK_SIZE
+				+ sizeOfLastChunk];
+		for (int i = 0; i < this.numberOfChunks; i++)
+			readChunk(docNames, stream, i * CHUNK_SIZE,
+					i < lastIndex ? CHUNK_SIZE : sizeOfLastChunk);
+		return docNames;
+	}
+
+	private HashtableOfObject readCategoryTable(char[] categoryName,
+			boolean readDocNumbers) throws IOException {
 		// result will be null if categoryName is unknown
 		int offset = this.categoryOffsets.get(categoryName);
 		if (offset == HashtableOfIntValues.NO_VALUE)
 			return null;
 
+		ByteBuffer buffer = getMappedBuffer();
+		if (buffer == null)
+			return readCategoryTableFromFile(categoryName, offset,
+					readDocNumbers);
+
+		// large document arrays are left as offsets whatever readDocNumbers
+		// says, readDocumentNumbers() resolves them from the mapping
+		ConcurrentHashMap<String, HashtableOfObject> tables = this.mappedCategoryTables;
+		String name = new String(categoryName);
+		HashtableOfObject categoryTable = tables.get(name);
+		if (categoryTable != null)
+			return categoryTable;
+
+		DataInputStream stream = openMappedStream(buffer, offset);
+		int size = stream.readInt();
+		categoryTable = new HashtableOfObject(size);
+		char[][] sortedWords = new char[size][];
+		int largeArraySize = 256;
+		for (int i = 0; i < size; i++) {
+			char[] word = sortedWords[i] = Util.readUTF(stream);
+			int arrayOffset = stream.readInt();
+			// see readCategoryTableFromFile() for the meaning of arrayOffset
+			if (arrayOffset <= 0)
+				categoryTable.put(word, new int[] { -arrayOffset });
+			else if (arrayOffset < largeArraySize)
+				categoryTable.put(word, readDocumentArray(stream, arrayOffset));
+			else
+				categoryTable.put(word, new Integer(stream.readInt()));
+		}
+		this.wordIndexes.put(name, new WordIndex(sortedWords, readHumpOrder(
+				stream, size)));
+		HashtableOfObject existing = tables.putIfAbsent(name, categoryTable);
+		if (existing != null)
+			return existing;
+		if (categoryTable.elementSize < 10000)
+			this.cachedCategoryName = categoryName;
+		return categoryTable;
+	}
+
+	private synchronized HashtableOfObject readCategoryTableFromFile(
+			char[] categoryName, int offset, boolean readDocNumbers)
+			throws IOException {
 		if (this.categoryTables == null) {
 			this.categoryTables = new HashtableOfObject(3);
 		} else {
@@ -795,9 +1175,10 @@ public class DiskIndex {
 						.println("--------------------   END   --------------------"); //$NON-NLS-1$
 				throw oom;
 			}
+			char[][] sortedWords = new char[size][];
 			int largeArraySize = 256;
 			for (int i = 0; i < size; i++) {
-				char[] word = Util.readUTF(stream);
+				char[] word = sortedWords[i] = Util.readUTF(stream);
 				int arrayOffset = stream.readInt();
 				// if arrayOffset is:
 				// <= 0 then the array size == 1 with the value -> -arrayOffset
@@ -834,6 +1215,8 @@ public class DiskIndex {
 					// file
 				}
 			}
+			this.wordIndexes.put(new String(categoryName), new WordIndex(
+					sortedWords, readHumpOrder(stream, size)));
 			this.categoryTables.put(categoryName, categoryTable);
 			// cache the table as long as its not too big
 			// in practise, some tables can be greater than 500K when the
@@ -888,6 +1271,18 @@ public class DiskIndex {
 		}
 	}
 
+	private int[] readHumpOrder(DataInputStream stream, int size)
+			throws IOException {
+		int[] humpOrder = new int[size];
+		for (int i = 0; i < size; i++)
+			humpOrder[i] = stream.readInt();
+		return humpOrder;
+	}
+
+	private WordIndex getWordIndex(char[] categoryName) {
+		return this.wordIndexes.get(new String(categoryName));
+	}
+
 	private int[] readDocumentArray(DataInputStream stream, int arraySize)
 			throws IOException {
 		int[] result = new int[arraySize];
@@ -908,7 +1303,27 @@ public class DiskIndex {
 		return result;
 	}
 
-	synchronized String readDocumentName(int docNumber) throws IOException {
+	String readDocumentName(int docNumber) throws IOException {
+		ByteBuffer buffer = getMappedBuffer();
+		if (buffer == null)
+			return readDocumentNameFromFile(docNumber);
+
+		int chunkNumber = docNumber / CHUNK_SIZE;
+		AtomicReferenceArray<String[]> chunks = this.mappedChunks;
+		String[] chunk = chunks.get(chunkNumber);
+		if (chunk == null) {
+			int numberOfNames = chunkNumber == this.numberOfChunks - 1 ? this.sizeOfLastChunk
+					: CHUNK_SIZE;
+			chunk = new String[numberOfNames];
+			readChunk(chunk, openMappedStream(buffer,
+					this.chunkOffsets[chunkNumber]), 0, numberOfNames);
+			chunks.set(chunkNumber, chunk);
+		}
+		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
+	}
+
+	private synchronized String readDocumentNameFromFile(int docNumber)
+			throws IOException {
 		if (this.cachedChunks == null)
 			this.cachedChunks = new String[this.numberOfChunks][];
 
@@ -939,23 +1354,75 @@ public class DiskIndex {
 		return chunk[docNumber - (chunkNumber * CHUNK_SIZE)];
 	}
 
-	synchronized int[] readDocumentNumbers(Object arrayOffset)
-			throws IOException {
+	int[] readDocumentNumbers(Object arrayOffset) throws IOException {
 		// arrayOffset is either a cached array of docNumbers or an Integer
 		// offset in the file
 		if (arrayOffset instanceof int[])
 			return (int[]) arrayOffset;
 
+		int offset = ((Integer) arrayOffset).intValue();
+		ByteBuffer buffer = getMappedBuffer();
+		if (buffer != null) {
+			DataInputStream stream = openMappedStream(buffer, offset);
+			return readDocumentArray(stream, stream.readInt());
+		}
+		return readDocumentNumbersFromFile(offset);
+	}
+
+	private synchronized int[] readDocumentNumbersFromFile(int offset)
+			throws IOException {
 		DataInputStream stream = new DataInputStream(new BufferedInputStream(
 				new FileInputStream(getIndexFile()), 2048));
 		try {
-			stream.skip(((Integer) arrayOffset).intValue());
+			stream.skip(offset);
 			return readDocumentArray(stream, stream.readInt());
 		} finally {
 			stream.close();
 		}
 	}
 
+	/**
+	 * Returns the read-only mapping of the index file, mapping it on first use,
+	 * or <code>null</code> if the index is read through streams.
+	 */
+	private ByteBuffer getMappedBuffer() throws IOException {
+		ByteBuffer buffer = this.mappedBuffer;
+		if (buffer != null || !this.mappedRead || this.headerInfoOffset <= 0)
+			return buffer;
+		synchronized (this) {
+			buffer = this.mappedBuffer;
+			if (buffer == null) {
+				RandomAccessFile file = new RandomAccessFile(this.fileName, "r"); //$NON-NLS-1$
+				try {
+					FileChannel channel = file.getChannel();
+					buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+							channel.size());
+				} finally {
+					file.close();
+				}
+				this.mappedChunks = new AtomicReferenceArray<String[]>(Math
+						.max(this.numberOfChunks, 0));
+				this.mappedCategoryTables = new ConcurrentHashMap<String, HashtableOfObject>();
+				this.mappedBuffer = buffer;
+			}
+			return buffer;
+		}
+	}
+
+	private static DataInputStream openMappedStream(ByteBuffer buffer,
+			int offset) {
+		ByteBuffer view = buffer.duplicate(); // own position per reader
+		view.position(offset);
+		return new DataInputStream(new MappedInputStream(view));
+	}
+
+	private synchronized void releaseMappedBuffer() {
+		// must own the write lock of the monitor
+		this.mappedBuffer = null;
+		this.mappedChunks = null;
+		this.mappedCategoryTables = null;
+	}
+
 	private void readHeaderInfo(RandomAccessFile file) throws IOException {
 		file.seek(this.headerInfoOffset);
 
@@ -991,6 +1458,24 @@ public class DiskIndex {
 			// clear cached items
 			this.cacheUserCount = -1;
 			this.cachedChunks = null;
+			String cachedName = this.cachedCategoryName == null ? null
+					: new String(this.cachedCategoryName);
+			this.wordIndexes.keySet().retainAll(
+					cachedName == null ? Collections.<String> emptySet()
+							: Collections.singleton(cachedName));
+			if (this.mappedBuffer != null) {
+				this.mappedChunks = new AtomicReferenceArray<String[]>(Math
+						.max(this.numberOfChunks, 0));
+				ConcurrentHashMap<String, HashtableOfObject> tables = new ConcurrentHashMap<String, HashtableOfObject>();
+				if (this.cachedCategoryName != null) {
+					String name = new String(this.cachedCategoryName);
+					HashtableOfObject cachedTable = this.mappedCategoryTables
+							.get(name);
+					if (cachedTable != null)
+						tables.put(name, cachedTable);
+				}
+				this.mappedCategoryTables = tables;
+			}
 			if (this.categoryTables != null) {
 				if (this.cachedCategoryName == null) {
 					this.categoryTables = null;
@@ -1117,10 +1602,12 @@ public class DiskIndex {
 		// start of the
 		// table
 		this.categoryTables.put(categoryName, null); // flush cached table
-		stream.writeInt(wordsToDocs.elementSize);
-		char[][] words = wordsToDocs.keyTable;
+		// the words are written sorted by compareWords(), followed by their
+		// positions sorted by humps
+		char[][] words = sortWords(wordsToDocs);
+		stream.writeInt(words.length);
 		for (int i = 0, l = words.length; i < l; i++) {
-			Object o = values[i];
+			Object o = wordsToDocs.get(words[i]);
 			if (o != null) {
 				Util.writeUTF(stream, words[i]);
 				if (o instanceof int[]) {
@@ -1145,6 +1632,53 @@ public class DiskIndex {
 				}
 			}
 		}
+		writeHumpOrder(words, stream);
+	}
+
+	private char[][] sortWords(HashtableOfObject wordsToDocs) {
+		char[][] words = new char[wordsToDocs.elementSize][];
+		int count = 0;
+		char[][] keys = wordsToDocs.keyTable;
+		Object[] values = wordsToDocs.valueTable;
+		for (int i = 0, l = keys.length; i < l; i++)
+			if (keys[i] != null && values[i] != null)
+				words[count++] = keys[i];
+		if (count < words.length)
+			System.arraycopy(words, 0, words = new char[count][], 0, count);
+		Util.sort(words, new Util.Comparer() {
+			public int compare(Object a, Object b) {
+				return compareWords((char[]) a, (char[]) b);
+			}
+		});
+		return words;
+	}
+
+	private void writeHumpOrder(char[][] sortedWords, DataOutputStream stream)
+			throws IOException {
+		int length = sortedWords.length;
+		final char[][] humps = new char[length][];
+		Integer[] positions = new Integer[length];
+		for (int i = 0; i < length; i++) {
+			humps[i] = humps(sortedWords[i]);
+			positions[i] = new Integer(i);
+		}
+		Util.sort(positions, new Util.Comparer() {
+			public int compare(Object a, Object b) {
+				int position1 = ((Integer) a).intValue();
+				int position2 = ((Integer) b).intValue();
+				char[] humps1 = humps[position1];
+				char[] humps2 = humps[position2];
+				int length1 = humps1.length;
+				int length2 = humps2.length;
+				for (int i = 0, l = Math.min(length1, length2); i < l; i++)
+					if (humps1[i] != humps2[i])
+						return humps1[i] - humps2[i];
+				return length1 != length2 ? length1 - length2 : position1
+						- position2;
+			}
+		});
+		for (int i = 0; i < length; i++)
+			stream.writeInt(positions[i].intValue());
 	}
 
 	private void writeDocumentNumbers(int[] documentNumbers,
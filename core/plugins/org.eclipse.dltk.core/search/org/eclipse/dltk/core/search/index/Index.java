@@ -47,6 +47,13 @@ public class Index {
 
 	protected MemoryIndex memoryIndex;
 
+	/**
+	 * Whether queries are allowed to run while {@link #save()} merges the
+	 * memory index into a new disk index file.
+	 */
+	private static final boolean BACKGROUND_MERGE = !Boolean
+			.getBoolean("org.eclipse.dltk.core.index.noBackgroundMerge"); //$NON-NLS-1$
+
 	/**
 	 * Mask used on match rule for indexing.
 	 */
@@ -104,11 +111,30 @@ public class Index {
 
 	public Index(String fileName, String containerPath,
 			boolean reuseExistingFile) throws IOException {
+		this(fileName, containerPath, reuseExistingFile, new DiskIndex(
+				fileName));
+	}
+
+	/**
+	 * Creates an index which file is read through streams, or memory-mapped
+	 * if <code>mappedRead</code> is <code>true</code>, whatever the platform
+	 * default is.
+	 * 
+	 * @since 5.2
+	 */
+	public Index(String fileName, String containerPath,
+			boolean reuseExistingFile, boolean mappedRead) throws IOException {
+		this(fileName, containerPath, reuseExistingFile, new DiskIndex(
+				fileName, mappedRead));
+	}
+
+	private Index(String fileName, String containerPath,
+			boolean reuseExistingFile, DiskIndex diskIndex) throws IOException {
 		this.containerPath = containerPath;
 		this.monitor = new ReadWriteMonitor();
 
 		this.memoryIndex = new MemoryIndex();
-		this.diskIndex = new DiskIndex(fileName);
+		this.diskIndex = diskIndex;
 		this.diskIndex.initialize(reuseExistingFile);
 		if (reuseExistingFile)
 			this.separator = this.diskIndex.separator;
@@ -210,6 +236,8 @@ public class Index {
 
 	public void save() throws IOException {
 		// must own the write lock of the monitor
+		// the merged index is only installed if the index is still in use, see
+		// IndexManager#discard(Index)
 		if (!hasChanged())
 			return;
 
@@ -218,7 +246,31 @@ public class Index {
 		}
 		// int numberOfChanges = this.memoryIndex.docsToReferences.elementSize;
 		this.diskIndex.separator = this.separator;
-		this.diskIndex = this.diskIndex.mergeWith(this.memoryIndex);
+		// the index manager discards an index by clearing its monitor, keep
+		// the one whose write lock is held by the caller
+		final ReadWriteMonitor monitor = this.monitor;
+		if (monitor == null)
+			return;
+		// while the merged file is written the memory index can't change as
+		// writers are still excluded, but readers go on with the current
+		// disk & memory indexes; the write lock is only needed to swap them
+		DiskIndex merged;
+		if (BACKGROUND_MERGE)
+			monitor.exitWriteEnterRead();
+		try {
+			merged = this.diskIndex.writeMerged(this.memoryIndex);
+		} finally {
+			if (BACKGROUND_MERGE)
+				monitor.exitReadWaitEnterWrite();
+		}
+		synchronized (this) {
+			if (this.monitor != monitor) {
+				// removed or recreated meanwhile, the file is not ours anymore
+				this.diskIndex.discard(merged);
+				return;
+			}
+			this.diskIndex = this.diskIndex.replaceWith(merged);
+		}
 		this.memoryIndex = new MemoryIndex();
 		// if (numberOfChanges > 1000)
 		// System.gc(); // reclaim space if the MemoryIndex was very BIG
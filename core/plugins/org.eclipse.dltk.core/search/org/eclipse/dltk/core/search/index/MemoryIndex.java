@@ -9,36 +9,113 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.search.index;
 
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
 import org.eclipse.dltk.compiler.CharOperation;
+import org.eclipse.dltk.compiler.util.HashtableOfIntValues;
 import org.eclipse.dltk.compiler.util.HashtableOfObject;
 import org.eclipse.dltk.compiler.util.SimpleLookupTable;
 import org.eclipse.dltk.compiler.util.SimpleSet;
 import org.eclipse.dltk.core.search.SearchPattern;
 import org.eclipse.dltk.core.search.indexing.IIndexConstants;
-import org.eclipse.dltk.internal.core.util.SimpleWordSet;
 
 public class MemoryIndex {
 
 	public int NUM_CHANGES = 500; // number of separate document changes...
 	// used to decide when to merge
 
-	SimpleLookupTable docsToReferences; // document paths ->
-	// HashtableOfObject(category names ->
-	// set of words)
+	SimpleLookupTable docsToReferences; // document paths -> Document
 
-	SimpleWordSet allWords; // save space by locally interning the referenced
-	// words, since an indexer can generate numerous
-	// duplicates
+	// save space by locally interning the referenced words and categories,
+	// since an indexer can generate numerous duplicates; documents only keep
+	// their ids
+	HashtableOfIntValues wordIds;
+	char[][] words;
+	HashtableOfIntValues categoryIds;
+	char[][] categories;
 
 	String lastDocumentName;
 
-	HashtableOfObject lastReferenceTable;
+	Document lastDocument;
+
+	/**
+	 * Entries of a document, each entry is a category id in the high and a
+	 * word id in the low 32 bits. Once the document is complete the entries are
+	 * sorted and unique, so the words of a category form a contiguous range.
+	 */
+	static final class Document {
+		long[] entries = new long[8];
+		int size;
+		boolean compact = true;
+
+		synchronized void add(int categoryId, int wordId) {
+			long entry = ((long) categoryId << 32) | wordId;
+			if (this.size > 0) {
+				long last = this.entries[this.size - 1];
+				if (entry == last)
+					return;
+				if (entry < last)
+					this.compact = false;
+			}
+			if (this.size == this.entries.length)
+				this.entries = Arrays.copyOf(this.entries, this.size * 2);
+			this.entries[this.size++] = entry;
+		}
+
+		/**
+		 * Sorts the entries and removes the duplicates, returns the number of
+		 * entries.
+		 */
+		synchronized int compact() {
+			if (!this.compact) {
+				Arrays.sort(this.entries, 0, this.size);
+				int count = 1;
+				for (int i = 1; i < this.size; i++)
+					if (this.entries[i] != this.entries[count - 1])
+						this.entries[count++] = this.entries[i];
+				this.size = count;
+				this.compact = true;
+			}
+			if (this.entries.length > this.size)
+				this.entries = Arrays.copyOf(this.entries, this.size);
+			return this.size;
+		}
+
+		/**
+		 * Returns the index of the first entry of the category, the entries
+		 * must be compact.
+		 */
+		int start(int categoryId) {
+			int index = Arrays.binarySearch(this.entries, 0, this.size,
+					(long) categoryId << 32);
+			return index < 0 ? -index - 1 : index;
+		}
+
+		/**
+		 * Answers whether the document contains the word in the category, the
+		 * entries must be compact.
+		 */
+		boolean includes(int categoryId, int wordId) {
+			return Arrays.binarySearch(this.entries, 0, this.size,
+					((long) categoryId << 32) | wordId) >= 0;
+		}
+
+		static int categoryId(long entry) {
+			return (int) (entry >>> 32);
+		}
+
+		static int wordId(long entry) {
+			return (int) entry;
+		}
+	}
 
 	MemoryIndex() {
 		this.docsToReferences = new SimpleLookupTable(7);
-		this.allWords = new SimpleWordSet(7);
+		this.wordIds = new HashtableOfIntValues(7);
+		this.words = new char[7][];
+		this.categoryIds = new HashtableOfIntValues(7);
+		this.categories = new char[7][];
 	}
 
 	void addDocumentNames(String substring, SimpleSet results) {
@@ -59,26 +136,65 @@ public class MemoryIndex {
 	}
 
 	void addIndexEntry(char[] category, char[] key, String documentName) {
-		HashtableOfObject referenceTable;
+		Document document;
 		if (documentName.equals(this.lastDocumentName))
-			referenceTable = this.lastReferenceTable;
+			document = this.lastDocument;
 		else {
+			if (this.lastDocument != null)
+				this.lastDocument.compact();
 			// assumed a document was removed before its reindexed
-			referenceTable = (HashtableOfObject) this.docsToReferences
-					.get(documentName);
-			if (referenceTable == null)
+			document = (Document) this.docsToReferences.get(documentName);
+			if (document == null)
 				this.docsToReferences.put(documentName,
-						referenceTable = new HashtableOfObject(3));
+						document = new Document());
 			this.lastDocumentName = documentName;
-			this.lastReferenceTable = referenceTable;
+			this.lastDocument = document;
 		}
+		document.add(categoryId(category), wordId(key));
+	}
 
-		SimpleWordSet existingWords = (SimpleWordSet) referenceTable
-				.get(category);
-		if (existingWords == null)
-			referenceTable.put(category, existingWords = new SimpleWordSet(1));
+	private int categoryId(char[] category) {
+		int id = this.categoryIds.get(category);
+		if (id == HashtableOfIntValues.NO_VALUE) {
+			id = this.categoryIds.elementSize;
+			if (id == this.categories.length)
+				this.categories = grow(this.categories);
+			this.categories[id] = category;
+			this.categoryIds.put(category, id);
+		}
+		return id;
+	}
 
-		existingWords.add(this.allWords.add(key));
+	private int wordId(char[] word) {
+		int id = this.wordIds.get(word);
+		if (id == HashtableOfIntValues.NO_VALUE) {
+			id = this.wordIds.elementSize;
+			if (id == this.words.length)
+				this.words = grow(this.words);
+			this.words[id] = word;
+			this.wordIds.put(word, id);
+		}
+		return id;
+	}
+
+	private static char[][] grow(char[][] array) {
+		char[][] result = new char[array.length * 2][];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/**
+	 * Returns the ids of the given categories, unknown categories are skipped.
+	 */
+	private int[] categoryIds(char[][] categoryNames) {
+		int[] ids = new int[categoryNames.length];
+		int count = 0;
+		for (int i = 0; i < categoryNames.length; i++) {
+			int id = this.categoryIds.get(categoryNames[i]);
+			if (id != HashtableOfIntValues.NO_VALUE)
+				ids[count++] = id;
+		}
+		return count == ids.length ? ids : Arrays.copyOf(ids, count);
 	}
 
 	HashtableOfObject addQueryResults(char[][] categories, char[] key,
@@ -86,17 +202,22 @@ public class MemoryIndex {
 		// assumed the disk index already skipped over documents which have been
 		// added/changed/deleted
 		// results maps a word -> EntryResult
+		int[] ids = categoryIds(categories);
+		if (ids.length == 0)
+			return results;
 		Object[] paths = this.docsToReferences.keyTable;
-		Object[] referenceTables = this.docsToReferences.valueTable;
+		Object[] documents = this.docsToReferences.valueTable;
 		if (matchRule == (SearchPattern.R_EXACT_MATCH | SearchPattern.R_CASE_SENSITIVE)
 				&& key != null) {
-			nextPath: for (int i = 0, l = referenceTables.length; i < l; i++) {
-				HashtableOfObject categoryToWords = (HashtableOfObject) referenceTables[i];
-				if (categoryToWords != null) {
-					for (int j = 0, m = categories.length; j < m; j++) {
-						SimpleWordSet wordSet = (SimpleWordSet) categoryToWords
-								.get(categories[j]);
-						if (wordSet != null && wordSet.includes(key)) {
+			int wordId = this.wordIds.get(key);
+			if (wordId == HashtableOfIntValues.NO_VALUE)
+				return results;
+			nextPath: for (int i = 0, l = documents.length; i < l; i++) {
+				Document document = (Document) documents[i];
+				if (document != null) {
+					document.compact();
+					for (int j = 0, m = ids.length; j < m; j++) {
+						if (document.includes(ids[j], wordId)) {
 							if (results == null)
 								results = new HashtableOfObject(13);
 							EntryResult result = (EntryResult) results.get(key);
@@ -109,76 +230,40 @@ public class MemoryIndex {
 					}
 				}
 			}
-		} else if ((matchRule & SearchPattern.R_REGEXP_MATCH) != 0) {
-			Pattern regexpPattern = Pattern
+			return results;
+		}
+
+		// every word is matched once, whatever number of documents it is in
+		Pattern regexpPattern = null;
+		if ((matchRule & SearchPattern.R_REGEXP_MATCH) != 0)
+			regexpPattern = Pattern
 					.compile(
 							new String(key),
 							(matchRule & SearchPattern.R_CASE_SENSITIVE) == 0 ? Pattern.CASE_INSENSITIVE
 									: 0);
-			for (int i = 0, l = referenceTables.length; i < l; i++) {
-				HashtableOfObject categoryToWords = (HashtableOfObject) referenceTables[i];
-				if (categoryToWords != null) {
-					for (int j = 0, m = categories.length; j < m; j++) {
-						SimpleWordSet wordSet = (SimpleWordSet) categoryToWords
-								.get(categories[j]);
-						if (wordSet != null) {
-							char[][] words = wordSet.words;
-							for (int k = 0, n = words.length; k < n; k++) {
-								char[] word = words[k];
-								if (word != null) {
-									char decodedWord[];
-									int sep = CharOperation.indexOf(
-											IIndexConstants.SEPARATOR, word);
-									if (sep > 0) {
-										decodedWord = CharOperation.subarray(
-												word, 0, sep);
-									} else {
-										decodedWord = word;
-									}
-									if (regexpPattern.matcher(
-											new String(decodedWord)).matches()) {
-										if (results == null)
-											results = new HashtableOfObject(13);
-										EntryResult result = (EntryResult) results
-												.get(word);
-										if (result == null)
-											results.put(word,
-													result = new EntryResult(
-															word, null));
-										result
-												.addDocumentName((String) paths[i]);
-									}
-								}
-							}
-						}
-					}
-				}
-			}
-		} else {
-			for (int i = 0, l = referenceTables.length; i < l; i++) {
-				HashtableOfObject categoryToWords = (HashtableOfObject) referenceTables[i];
-				if (categoryToWords != null) {
-					for (int j = 0, m = categories.length; j < m; j++) {
-						SimpleWordSet wordSet = (SimpleWordSet) categoryToWords
-								.get(categories[j]);
-						if (wordSet != null) {
-							char[][] words = wordSet.words;
-							for (int k = 0, n = words.length; k < n; k++) {
-								char[] word = words[k];
-								if (word != null
-										&& Index.isMatch(key, word, matchRule)) {
-									if (results == null)
-										results = new HashtableOfObject(13);
-									EntryResult result = (EntryResult) results
-											.get(word);
-									if (result == null)
-										results.put(word,
-												result = new EntryResult(word,
-														null));
-									result.addDocumentName((String) paths[i]);
-								}
-							}
-						}
+		byte[] matches = new byte[this.wordIds.elementSize];
+		for (int i = 0, l = documents.length; i < l; i++) {
+			Document document = (Document) documents[i];
+			if (document == null)
+				continue;
+			int size = document.compact();
+			long[] entries = document.entries;
+			for (int j = 0, m = ids.length; j < m; j++) {
+				for (int k = document.start(ids[j]); k < size
+						&& Document.categoryId(entries[k]) == ids[j]; k++) {
+					int wordId = Document.wordId(entries[k]);
+					if (matches[wordId] == 0)
+						matches[wordId] = isMatch(this.words[wordId], key,
+								matchRule, regexpPattern) ? MATCH : NO_MATCH;
+					if (matches[wordId] == MATCH) {
+						char[] word = this.words[wordId];
+						if (results == null)
+							results = new HashtableOfObject(13);
+						EntryResult result = (EntryResult) results.get(word);
+						if (result == null)
+							results.put(word, result = new EntryResult(word,
+									null));
+						result.addDocumentName((String) paths[i]);
 					}
 				}
 			}
@@ -186,6 +271,23 @@ public class MemoryIndex {
 		return results;
 	}
 
+	private static final byte MATCH = 1;
+	private static final byte NO_MATCH = 2;
+
+	private static boolean isMatch(char[] word, char[] key, int matchRule,
+			Pattern regexpPattern) {
+		if (regexpPattern == null)
+			return Index.isMatch(key, word, matchRule);
+		char decodedWord[];
+		int sep = CharOperation.indexOf(IIndexConstants.SEPARATOR, word);
+		if (sep > 0) {
+			decodedWord = CharOperation.subarray(word, 0, sep);
+		} else {
+			decodedWord = word;
+		}
+		return regexpPattern.matcher(new String(decodedWord)).matches();
+	}
+
 	boolean hasChanged() {
 		return this.docsToReferences.elementSize > 0;
 	}
@@ -193,7 +295,7 @@ public class MemoryIndex {
 	void remove(String documentName) {
 		if (documentName.equals(this.lastDocumentName)) {
 			this.lastDocumentName = null;
-			this.lastReferenceTable = null;
+			this.lastDocument = null;
 		}
 		this.docsToReferences.put(documentName, null);
 	}
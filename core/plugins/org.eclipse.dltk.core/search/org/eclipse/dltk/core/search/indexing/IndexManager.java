@@ -486,7 +486,7 @@ public class IndexManager extends JobManager implements IIndexConstants {
 		String indexLocation = this.computeIndexLocation(containerPath);
 		Object o = this.indexes.get(indexLocation);
 		if (o instanceof Index) {
-			((Index) o).monitor = null;
+			discard((Index) o);
 			this.indexes.remove(indexLocation);
 		}
 		this.updateIndexState(indexLocation, UNKNOWN_STATE);
@@ -602,6 +602,9 @@ public class IndexManager extends JobManager implements IIndexConstants {
 			String indexLocation = this.computeIndexLocation(containerPath);
 			Index index = (Index) this.indexes.get(indexLocation);
 			ReadWriteMonitor monitor = index == null ? null : index.monitor;
+			if (index != null) {
+				discard(index);
+			}
 			if (VERBOSE) {
 				Util
 						.verbose("-> recreating index: " + indexLocation + " for path: " + containerPathString); //$NON-NLS-1$ //$NON-NLS-2$
@@ -647,17 +650,16 @@ public class IndexManager extends JobManager implements IIndexConstants {
 			Util.verbose("removing index " + containerPath); //$NON-NLS-1$
 		}
 		String indexLocation = this.computeIndexLocation(containerPath);
+		final Object o = this.indexes.remove(indexLocation);
+		if (o instanceof Index) {
+			discard((Index) o);
+		}
 		File indexFile = new File(indexLocation);
 		if (indexFile.exists()) {
 			indexFile.delete();
 		}
-		final Object o = this.indexes.remove(indexLocation);
-		if (o instanceof Index) {
-			final Index index = (Index) o;
-			index.monitor = null;
-			if (index.isRebuildable()) {
-				this.updateIndexState(indexLocation, null);
-			}
+		if (o instanceof Index && ((Index) o).isRebuildable()) {
+			this.updateIndexState(indexLocation, null);
 		}
 	}
 
@@ -677,7 +679,7 @@ public class IndexManager extends JobManager implements IIndexConstants {
 			if (path.isPrefixOf(indexPath)) {
 				Index index = (Index) this.indexes.get(indexLocation);
 				if (index != null) {
-					index.monitor = null;
+					discard(index);
 				}
 				if (locations == null) {
 					locations = new String[max];
@@ -752,6 +754,12 @@ public class IndexManager extends JobManager implements IIndexConstants {
 	public synchronized void reset() {
 		super.reset();
 		if (this.indexes != null) {
+			for (Iterator i = this.indexes.values().iterator(); i.hasNext();) {
+				final Object o = i.next();
+				if (o instanceof Index) {
+					discard((Index) o);
+				}
+			}
 			this.indexes = new HashMap(5);
 			this.indexStates = null;
 		}
@@ -759,8 +767,20 @@ public class IndexManager extends JobManager implements IIndexConstants {
 		this.scriptPluginLocation = null;
 	}
 
-	public synchronized void saveIndex(Index index) throws IOException {
+	/**
+	 * Marks the index as no longer used: jobs which acquired it skip it and
+	 * {@link Index#save()} does not install the merged file it is writing.
+	 */
+	private static void discard(Index index) {
+		synchronized (index) {
+			index.monitor = null;
+		}
+	}
+
+	public void saveIndex(Index index) throws IOException {
 		// must have permission to write from the write monitor
+		// the manager is not locked while merging, so that the other indexes
+		// remain available
 		if (index.hasChanged()) {
 			if (VERBOSE) {
 				Util.verbose("-> saving index " + index.getIndexFile()); //$NON-NLS-1$
@@ -774,11 +794,14 @@ public class IndexManager extends JobManager implements IIndexConstants {
 		// avoid bugs such as
 		// https://bugs.eclipse.org/bugs/show_bug.cgi?id=62267
 		String indexLocation = index.getIndexFile().getPath();
-		if (this.jobEnd > this.jobStart) {
-			Object containerPath = this.indexLocations
-					.keyForValue(indexLocation);
-			if (containerPath != null) {
-				synchronized (this) {
+		synchronized (this) {
+			if (this.indexes.get(indexLocation) != index) {
+				return; // removed or recreated while saving
+			}
+			if (this.jobEnd > this.jobStart) {
+				Object containerPath = this.indexLocations
+						.keyForValue(indexLocation);
+				if (containerPath != null) {
 					for (int i = this.jobEnd; i > this.jobStart; i--) { // skip
 						// the
 						// current
@@ -793,8 +816,8 @@ public class IndexManager extends JobManager implements IIndexConstants {
 					}
 				}
 			}
+			this.updateIndexState(indexLocation, SAVED_STATE);
 		}
-		this.updateIndexState(indexLocation, SAVED_STATE);
 	}
 
 	/**
@@ -21,6 +21,12 @@ public class ReadWriteMonitor {
 	 */
 	private int status = 0;
 
+	/**
+	 * Whether a reader waits in {@link #exitReadWaitEnterWrite()} for the
+	 * other readers to leave.
+	 */
+	private boolean upgrading = false;
+
 	/**
 	 * Concurrent reading is allowed Blocking only when already writing.
 	 */
@@ -55,7 +61,7 @@ public class ReadWriteMonitor {
 	 */
 	public synchronized void exitRead() {
 
-		if (--status == 0)
+		if (--status == 0 || (status == 1 && upgrading))
 			notifyAll();
 	}
 
@@ -100,6 +106,30 @@ public class ReadWriteMonitor {
 		this.enterRead();
 	}
 
+	/**
+	 * Atomic exitRead/enterWrite for the reader which switched from writing
+	 * with {@link #exitWriteEnterRead()}: blocks until all the other readers
+	 * are done. As no writer can enter meanwhile, only the thread which
+	 * downgraded its write access may call this method.
+	 * 
+	 * @since 5.2
+	 */
+	public synchronized void exitReadWaitEnterWrite() {
+		upgrading = true;
+		try {
+			while (status != 1) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		} finally {
+			upgrading = false;
+		}
+		status = -1;
+	}
+
 	public String toString() {
 		StringBuffer buffer = new StringBuffer();
 		if (status == 0) {
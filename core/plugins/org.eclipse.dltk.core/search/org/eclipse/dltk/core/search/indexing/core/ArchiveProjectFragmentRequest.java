@@ -40,8 +40,10 @@ import org.eclipse.dltk.core.search.indexing.IIndexConstants;
 import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
+import org.eclipse.dltk.internal.core.search.processing.IParallelJob;
 
-public class ArchiveProjectFragmentRequest extends IndexRequest {
+public class ArchiveProjectFragmentRequest extends IndexRequest implements
+		IParallelJob {
 
 	protected final IProjectFragment fragment;
 	protected final IDLTKLanguageToolkit toolkit;
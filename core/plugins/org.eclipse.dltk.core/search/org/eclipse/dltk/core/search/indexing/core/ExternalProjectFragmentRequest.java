@@ -36,8 +36,10 @@ import org.eclipse.dltk.core.search.indexing.IProjectIndexer;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.internal.core.BuiltinSourceModule;
 import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.processing.IParallelJob;
 
-public class ExternalProjectFragmentRequest extends IndexRequest {
+public class ExternalProjectFragmentRequest extends IndexRequest implements
+		IParallelJob {
 
 	protected final IProjectFragment fragment;
 	protected final IDLTKLanguageToolkit toolkit;
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.mixin;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.compiler.CharOperation;
+import org.eclipse.dltk.core.ISourceModule;
+
+/**
+ * Keys of the mixin elements and the modules declaring them, sorted by key,
+ * so the keys matching a pattern are found without searching the mixin index.
+ * The patterns starting with a loaded prefix are answered: the keys starting
+ * with the prefix were loaded from the mixin index with a single search and
+ * the keys of the modules parsed since then are reported by the mixin parser,
+ * which replaces the indexed keys of the module.
+ * <p>
+ * Not thread-safe, the callers synchronize the access.
+ * </p>
+ */
+public class MixinKeyIndex {
+
+	/**
+	 * Maximal number of (key, module) pairs, the index is cleared when it
+	 * grows beyond.
+	 */
+	private static final int KEY_LIMIT = Integer.getInteger(
+			"org.eclipse.dltk.core.mixin.keyIndexLimit", 200000).intValue(); //$NON-NLS-1$
+
+	private static class ModuleKeys {
+		final Set<String> keys = new HashSet<String>();
+		/**
+		 * if the keys were reported by the parser, so they are complete
+		 */
+		boolean parsed;
+	}
+
+	private final TreeMap<String, Set<ISourceModule>> modulesByKey = new TreeMap<String, Set<ISourceModule>>();
+	private final Map<ISourceModule, ModuleKeys> keysByModule = new HashMap<ISourceModule, ModuleKeys>();
+	private final Set<String> loadedPrefixes = new HashSet<String>();
+	private final Set<ISourceModule> staleModules = new HashSet<ISourceModule>();
+	private int size;
+
+	/**
+	 * Incremented whenever keys are removed, results of the searches started
+	 * before can't be loaded anymore.
+	 */
+	private long generation;
+
+	/**
+	 * Returns the part of the pattern before the first wildcard
+	 */
+	public static String getLiteralPrefix(String pattern) {
+		for (int i = 0; i < pattern.length(); ++i) {
+			final char c = pattern.charAt(i);
+			if (c == '*' || c == '?') {
+				return pattern.substring(0, i);
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Returns whether all the keys starting with the specified prefix are
+	 * known
+	 */
+	public boolean isLoaded(String prefix) {
+		for (int i = prefix.length(); i > 0; --i) {
+			if (loadedPrefixes.contains(prefix.substring(0, i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Loads the results of the search for the keys starting with the
+	 * specified prefix. The keys of the parsed modules are already complete,
+	 * so they are skipped.
+	 *
+	 * @param generation
+	 *            the value of {@link #getGeneration()} when the search
+	 *            started, nothing is loaded if keys were removed meanwhile
+	 */
+	public void load(String prefix, Map<ISourceModule, Set<String>> keys,
+			long generation) {
+		if (generation != this.generation) {
+			return;
+		}
+		for (Map.Entry<ISourceModule, Set<String>> entry : keys.entrySet()) {
+			final ISourceModule module = entry.getKey();
+			final ModuleKeys moduleKeys = keysByModule.get(module);
+			if (moduleKeys != null && moduleKeys.parsed) {
+				continue;
+			}
+			for (String key : entry.getValue()) {
+				add(module, key);
+			}
+		}
+		loadedPrefixes.add(prefix);
+		if (size > KEY_LIMIT) {
+			clear();
+		}
+	}
+
+	/**
+	 * Called before the module is parsed, the keys reported for it replace
+	 * the ones known before.
+	 */
+	public void beginParse(ISourceModule module) {
+		remove(module);
+		staleModules.remove(module);
+		final ModuleKeys moduleKeys = new ModuleKeys();
+		moduleKeys.parsed = true;
+		keysByModule.put(module, moduleKeys);
+	}
+
+	/**
+	 * Records that the specified module declares the key
+	 */
+	public void add(ISourceModule module, String key) {
+		ModuleKeys moduleKeys = keysByModule.get(module);
+		if (moduleKeys == null) {
+			moduleKeys = new ModuleKeys();
+			keysByModule.put(module, moduleKeys);
+		}
+		if (!moduleKeys.keys.add(key)) {
+			return;
+		}
+		Set<ISourceModule> modules = modulesByKey.get(key);
+		if (modules == null) {
+			modules = new HashSet<ISourceModule>(2);
+			modulesByKey.put(key, modules);
+		}
+		modules.add(module);
+		++size;
+	}
+
+	/**
+	 * Removes the keys of the specified module, which was changed or removed.
+	 * The module is reparsed by the next query if it still exists, see
+	 * {@link #takeStaleModules()}, even if no keys were known for it as it
+	 * may declare new ones.
+	 */
+	public void removeModule(ISourceModule module) {
+		remove(module);
+		staleModules.add(module);
+		++generation;
+	}
+
+	/**
+	 * Removes the keys of the modules in the specified folder
+	 */
+	public void removeModules(IPath folderPath) {
+		for (Iterator<ISourceModule> i = keysByModule.keySet().iterator(); i
+				.hasNext();) {
+			final ISourceModule module = i.next();
+			if (folderPath.isPrefixOf(module.getPath())) {
+				removeKeys(module, keysByModule.get(module));
+				i.remove();
+				++generation;
+			}
+		}
+	}
+
+	private boolean remove(ISourceModule module) {
+		final ModuleKeys moduleKeys = keysByModule.remove(module);
+		if (moduleKeys == null) {
+			return false;
+		}
+		removeKeys(module, moduleKeys);
+		++generation;
+		return true;
+	}
+
+	private void removeKeys(ISourceModule module, ModuleKeys moduleKeys) {
+		for (String key : moduleKeys.keys) {
+			final Set<ISourceModule> modules = modulesByKey.get(key);
+			if (modules != null && modules.remove(module)) {
+				--size;
+				if (modules.isEmpty()) {
+					modulesByKey.remove(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the modules which keys were removed since the last call and
+	 * should be parsed again
+	 */
+	public Set<ISourceModule> takeStaleModules() {
+		if (staleModules.isEmpty()) {
+			return staleModules;
+		}
+		final Set<ISourceModule> result = new HashSet<ISourceModule>(
+				staleModules);
+		staleModules.clear();
+		return result;
+	}
+
+	/**
+	 * Adds the keys matching the pattern, which should start with a loaded
+	 * prefix, to the result by module.
+	 */
+	public void find(String pattern, String prefix,
+			Map<ISourceModule, Set<String>> result) {
+		if (prefix.length() == pattern.length()) {
+			final Set<ISourceModule> modules = modulesByKey.get(pattern);
+			if (modules != null) {
+				addKey(result, pattern, modules);
+			}
+			return;
+		}
+		final char[] patternChars = pattern.toCharArray();
+		for (Map.Entry<String, Set<ISourceModule>> entry : modulesByKey
+				.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+			final String key = entry.getKey();
+			if (CharOperation.match(patternChars, key.toCharArray(), true)) {
+				addKey(result, key, entry.getValue());
+			}
+		}
+	}
+
+	private static void addKey(Map<ISourceModule, Set<String>> result,
+			String key, Set<ISourceModule> modules) {
+		for (ISourceModule module : modules) {
+			Set<String> keys = result.get(module);
+			if (keys == null) {
+				keys = new HashSet<String>();
+				result.put(module, keys);
+			}
+			keys.add(key);
+		}
+	}
+
+	public void clear() {
+		modulesByKey.clear();
+		keysByModule.clear();
+		loadedPrefixes.clear();
+		staleModules.clear();
+		size = 0;
+		++generation;
+	}
+
+	@Override
+	public String toString() {
+		return "MixinKeyIndex keys=" + modulesByKey.size() + ", modules=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ keysByModule.size() + ", prefixes=" + loadedPrefixes.size(); //$NON-NLS-1$
+	}
+}
@@ -62,6 +62,14 @@ public class DLTKSearchScope extends AbstractSearchScope {
 	private boolean[] isPkgPath; // in the case of packages, matches must be
 	// direct children of the folder
 	protected AccessRuleSet[] pathRestrictions;
+	/*
+	 * Full paths of the entries (container and relative path) and the entry
+	 * indexes + 1 by the hash of their full path, built on demand, so the
+	 * entries enclosing a workspace path are found by hashing its prefixes
+	 * instead of comparing it with every entry.
+	 */
+	private String[] fullPaths;
+	private volatile int[] fullPathTable;
 	private int pathsCount;
 	private int threshold;
 
@@ -426,6 +434,9 @@ public class DLTKSearchScope extends AbstractSearchScope {
 		this.relativePaths[index] = relativePath;
 		this.containerPaths[index] = containerPath;
 		this.isPkgPath[index] = isPackage;
+		this.fullPaths[index] = relativePath.length() == 0 ? containerPath
+				: (containerPath + '/' + relativePath);
+		this.fullPathTable = null;
 		if (this.pathRestrictions != null)
 			this.pathRestrictions[index] = access;
 		else if (access != null) {
@@ -442,10 +453,8 @@ public class DLTKSearchScope extends AbstractSearchScope {
 		int separatorIndex = resourcePathString.indexOf(FILE_ENTRY_SEPARATOR);
 		if (separatorIndex != -1) {
 			// internal or external zip (case 3, 4, or 5)
-			String zipPath = resourcePathString.substring(0, separatorIndex);
-			String relativePath = resourcePathString
-					.substring(separatorIndex + 1);
-			return indexOf(zipPath, relativePath) >= 0;
+			return indexOf(resourcePathString, separatorIndex,
+					resourcePathString, separatorIndex + 1) >= 0;
 		}
 		// resource in workspace (case 1 or 2)
 		return indexOf(resourcePathString) >= 0;
@@ -460,20 +469,60 @@ public class DLTKSearchScope extends AbstractSearchScope {
 	 *            /P/src/pkg
 	 */
 	private int indexOf(String fullPath) {
-		// cannot guess the index of the container path
-		// fallback to sequentially looking at all known paths
-		for (int i = 0, length = this.relativePaths.length; i < length; i++) {
-			String currentRelativePath = this.relativePaths[i];
-			if (currentRelativePath == null)
-				continue;
-
-			String currentContainerPath = containerPaths[i];
-			String currentFullPath = currentRelativePath.length() == 0 ? currentContainerPath
-					: (currentContainerPath + '/' + currentRelativePath);
-			if (encloses(currentFullPath, fullPath, i))
-				return i;
+		// cannot guess the index of the container path, look up the entries
+		// equal to each of the prefixes of the path ending before a separator
+		final int[] table = getFullPathTable();
+		final int mask = table.length - 1;
+		final int end = trimEnd(fullPath, 0, fullPath.length());
+		final int lastSeparator = fullPath.lastIndexOf('/', end - 1);
+		int result = -1;
+		int hash = 0;
+		for (int i = 0; i <= end; ++i) {
+			if (i == end || fullPath.charAt(i) == '/') {
+				int k = mix(hash) & mask, slot;
+				while ((slot = table[k]) != 0) {
+					final int index = slot - 1;
+					final String currentFullPath = this.fullPaths[index];
+					// packages only enclose their direct children
+					if (currentFullPath.length() == i
+							&& (result == -1 || index < result)
+							&& fullPath.regionMatches(0, currentFullPath, 0, i)
+							&& (i == end || i == 0 || !this.isPkgPath[index]
+									|| lastSeparator == i)) {
+						result = index;
+					}
+					k = (k + 1) & mask;
+				}
+			}
+			if (i < end) {
+				hash = 31 * hash + fullPath.charAt(i);
+			}
 		}
-		return -1;
+		return result;
+	}
+
+	private int[] getFullPathTable() {
+		int[] table = this.fullPathTable;
+		if (table == null) {
+			final int length = this.relativePaths.length;
+			table = new int[Integer.highestOneBit(length) * 4];
+			final int mask = table.length - 1;
+			for (int i = 0; i < length; i++) {
+				if (this.relativePaths[i] != null) {
+					int k = mix(this.fullPaths[i].hashCode()) & mask;
+					while (table[k] != 0) {
+						k = (k + 1) & mask;
+					}
+					table[k] = i + 1;
+				}
+			}
+			this.fullPathTable = table;
+		}
+		return table;
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
 	}
 
 	/**
@@ -485,18 +534,36 @@ public class DLTKSearchScope extends AbstractSearchScope {
 	 *            x/y/Z.class 2. x/y 3. X.java 4. (empty)
 	 */
 	private int indexOf(String containerPath, String relativePath) {
-		// normalize containerPath and relativePath
-		containerPath = normalize(containerPath);
-		relativePath = normalize(relativePath);
+		return indexOf(containerPath, containerPath.length(), relativePath, 0);
+	}
+
+	/**
+	 * Returns paths list index of the path or -1 if not found, the container
+	 * path ends at <code>containerEnd</code> and the relative path starts at
+	 * <code>relativeStart</code>, so both can be parts of the same string.
+	 */
+	private int indexOf(String containerPath, int containerEnd,
+			String relativePath, int relativeStart) {
+		// ignore trailing slashes
+		containerEnd = trimEnd(containerPath, 0, containerEnd);
+		final int relativeEnd = trimEnd(relativePath, relativeStart,
+				relativePath.length());
 
 		// use the hash to get faster comparison
-		int length = this.containerPaths.length, index = (containerPath
-				.hashCode() & 0x7FFFFFFF) % length;
+		int hash = 0;
+		for (int i = 0; i < containerEnd; ++i) {
+			hash = 31 * hash + containerPath.charAt(i);
+		}
+		int length = this.containerPaths.length, index = (hash & 0x7FFFFFFF)
+				% length;
 		String currentContainerPath;
 		while ((currentContainerPath = this.containerPaths[index]) != null) {
-			if (currentContainerPath.equals(containerPath)) {
+			if (currentContainerPath.length() == containerEnd
+					&& currentContainerPath.regionMatches(0, containerPath, 0,
+							containerEnd)) {
 				String currentRelativePath = this.relativePaths[index];
-				if (encloses(currentRelativePath, relativePath, index))
+				if (encloses(currentRelativePath, relativePath, relativeStart,
+						relativeEnd, index))
 					return index;
 			}
 			if (++index == length) {
@@ -507,13 +574,12 @@ public class DLTKSearchScope extends AbstractSearchScope {
 	}
 
 	/*
-	 * Returns whether the enclosing path encloses the given path (or is equal
-	 * to it)
+	 * Returns whether the enclosing path encloses the part of the given path
+	 * from start to end (or is equal to it)
 	 */
-	private boolean encloses(String enclosingPath, String path, int index) {
-		// normalize given path as it can come from outside
-		path = normalize(path); // new Path(normalize(path)).toString();
-		int pathLength = path.length();
+	private boolean encloses(String enclosingPath, String path, int start,
+			int end, int index) {
+		int pathLength = end - start;
 		int enclosingLength = enclosingPath.length();
 		if (pathLength < enclosingLength) {
 			return false;
@@ -521,24 +587,32 @@ public class DLTKSearchScope extends AbstractSearchScope {
 		if (enclosingLength == 0) {
 			return true;
 		}
+		if (!path.regionMatches(start, enclosingPath, 0, enclosingLength)) {
+			return false;
+		}
 		if (pathLength == enclosingLength) {
-			return path.equals(enclosingPath);
+			return true;
 		}
 		if (!this.isPkgPath[index]) {
-			return path.startsWith(enclosingPath)
-					&& path.charAt(enclosingLength) == '/';
+			return path.charAt(start + enclosingLength) == '/';
 		} else {
 			// if looking at a package, this scope encloses the given path
 			// if the given path is a direct child of the folder
-			// or if the given path path is the folder path (see bug 13919
-			// Declaration for package not found if scope is not project)
-			if (path.startsWith(enclosingPath)
-					&& ((enclosingPath.length() == path.lastIndexOf('/')) || (enclosingPath
-							.length() == path.length()))) {
-				return true;
-			}
+			// (see bug 13919 Declaration for package not found if scope is
+			// not project)
+			return path.lastIndexOf('/', end - 1) == start + enclosingLength;
 		}
-		return false;
+	}
+
+	/*
+	 * Returns the end of the given part of the path without the trailing
+	 * slashes
+	 */
+	private static int trimEnd(String path, int start, int end) {
+		while (end > start && path.charAt(end - 1) == '/') {
+			--end;
+		}
+		return end;
 	}
 
 	/*
@@ -644,6 +718,8 @@ public class DLTKSearchScope extends AbstractSearchScope {
 		this.containerPaths = new String[extraRoom];
 		this.projectIndexes = new int[extraRoom];
 		this.isPkgPath = new boolean[extraRoom];
+		this.fullPaths = new String[extraRoom];
+		this.fullPathTable = null;
 		this.pathRestrictions = null; // null to optimize case where no access
 		// rules are used
 
@@ -720,10 +796,8 @@ public class DLTKSearchScope extends AbstractSearchScope {
 				.startsWith(IBuildpathEntry.BUILDPATH_SPECIAL);
 		if (isZIPFile) {
 			// internal or external jar (case 3, 4, or 5)
-			String zipPath = resourcePathString.substring(0, separatorIndex);
-			String relativePath = resourcePathString
-					.substring(separatorIndex + 1);
-			index = indexOf(zipPath, relativePath);
+			index = indexOf(resourcePathString, separatorIndex,
+					resourcePathString, separatorIndex + 1);
 		} else {
 			// resource in workspace (case 1 or 2)
 			index = indexOf(resourcePathString);
@@ -803,6 +877,8 @@ public class DLTKSearchScope extends AbstractSearchScope {
 		this.projectPaths = newScope.projectPaths;
 		this.projectIndexes = newScope.projectIndexes;
 		this.isPkgPath = newScope.isPkgPath;
+		this.fullPaths = newScope.fullPaths;
+		this.fullPathTable = null;
 		this.pathRestrictions = newScope.pathRestrictions;
 		this.threshold = newScope.threshold;
 	}
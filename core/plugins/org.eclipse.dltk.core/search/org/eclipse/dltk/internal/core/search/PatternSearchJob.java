@@ -10,6 +10,12 @@
 package org.eclipse.dltk.internal.core.search;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -17,17 +23,60 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.dltk.core.search.IDLTKSearchScope;
 import org.eclipse.dltk.core.search.SearchParticipant;
 import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
 import org.eclipse.dltk.core.search.index.Index;
 import org.eclipse.dltk.core.search.indexing.IndexManager;
 import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
 import org.eclipse.dltk.core.search.matching.MatchLocator;
 import org.eclipse.dltk.internal.core.ModelManager;
+import org.eclipse.dltk.internal.core.search.matching.InternalSearchPattern;
+import org.eclipse.dltk.internal.core.search.matching.InternalSearchPattern.IndexMatches;
 import org.eclipse.dltk.internal.core.search.processing.IJob;
 import org.eclipse.dltk.internal.core.search.processing.JobManager;
+import org.eclipse.dltk.internal.core.util.DaemonThreadPool;
 
 
 public class PatternSearchJob implements IJob {
 
+	/**
+	 * Maximum number of threads querying indexes concurrently, the indexes are
+	 * queried one at a time on the calling thread if less than 2, which is
+	 * the default.
+	 */
+	private static final int PARALLEL_QUERY_THREADS = Integer.getInteger(
+			"org.eclipse.dltk.core.search.parallelQueryThreads", 1).intValue(); //$NON-NLS-1$
+
+	private static int parallelQueryThreads = PARALLEL_QUERY_THREADS;
+
+	private static DaemonThreadPool queryExecutor = null;
+
+	/**
+	 * Sets the maximum number of threads querying indexes concurrently,
+	 * overriding the system property. Used by the tests, returns the previous
+	 * value.
+	 */
+	public static synchronized int setParallelQueryThreads(int threads) {
+		final int previous = parallelQueryThreads;
+		if (threads != previous) {
+			parallelQueryThreads = threads;
+			// the idle threads of the previous pool time out
+			queryExecutor = null;
+		}
+		return previous;
+	}
+
+	private static synchronized int getParallelQueryThreads() {
+		return parallelQueryThreads;
+	}
+
+	private static synchronized ExecutorService getQueryExecutor() {
+		if (queryExecutor == null) {
+			queryExecutor = new DaemonThreadPool(
+					"DLTK Index Query", parallelQueryThreads); //$NON-NLS-1$
+		}
+		return queryExecutor.getExecutor();
+	}
+
 	protected SearchPattern pattern;
 
 	protected IDLTKSearchScope scope;
@@ -73,12 +122,16 @@ public class PatternSearchJob implements IJob {
 			int max = indexes.length;
 			if (progressMonitor != null)
 				progressMonitor.beginTask("", max); //$NON-NLS-1$
-			for (int i = 0; i < max; i++) {
-				isComplete &= search(indexes[i], progressMonitor);
-				if (progressMonitor != null) {
-					if (progressMonitor.isCanceled())
-						throw new OperationCanceledException();
-					progressMonitor.worked(1);
+			if (canSearchInParallel(indexes)) {
+				isComplete = searchInParallel(indexes, progressMonitor);
+			} else {
+				for (int i = 0; i < max; i++) {
+					isComplete &= search(indexes[i], progressMonitor);
+					if (progressMonitor != null) {
+						if (progressMonitor.isCanceled())
+							throw new OperationCanceledException();
+						progressMonitor.worked(1);
+					}
 				}
 			}
 			if (JobManager.VERBOSE)
@@ -158,6 +211,110 @@ public class PatternSearchJob implements IJob {
 		}
 	}
 
+	/**
+	 * Answers whether the given indexes could be queried concurrently, the
+	 * participant must support it for the pattern, see
+	 * {@link SearchParticipant#isParallelQuerySupported(SearchPattern)}.
+	 */
+	protected boolean canSearchInParallel(Index[] indexes) {
+		return getParallelQueryThreads() >= 2 && indexes.length >= 2
+				&& this.pattern != null
+				&& this.participant.isParallelQuerySupported(this.pattern);
+	}
+
+	/**
+	 * Queries the indexes concurrently, then reports the matches of each index
+	 * in order on the calling thread, so the requestor sees the same sequence
+	 * as with a sequential search. The matches are copied by the queries, so
+	 * each index is only read locked while it is queried.
+	 */
+	protected boolean searchInParallel(Index[] indexes,
+			final IProgressMonitor progressMonitor) {
+		long start = System.currentTimeMillis();
+		ExecutorService executor = getQueryExecutor();
+		List<Future<IndexMatches>> queries = new ArrayList<Future<IndexMatches>>(
+				indexes.length);
+		for (int i = 0; i < indexes.length; i++) {
+			final Index index = indexes[i];
+			queries.add(executor.submit(new Callable<IndexMatches>() {
+				public IndexMatches call() throws Exception {
+					return query(index, progressMonitor);
+				}
+			}));
+		}
+		boolean isComplete = COMPLETE;
+		try {
+			for (Future<IndexMatches> query : queries) {
+				IndexMatches matches;
+				try {
+					matches = query.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new OperationCanceledException();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof IOException) {
+						if (cause instanceof java.io.EOFException)
+							cause.printStackTrace();
+						isComplete = FAILED;
+						continue;
+					}
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new RuntimeException(cause);
+				}
+				if (matches != null) {
+					((InternalSearchPattern) this.pattern).acceptIndexMatches(
+							matches, this.requestor, this.participant,
+							this.scope, progressMonitor);
+				}
+				if (progressMonitor != null) {
+					if (progressMonitor.isCanceled())
+						throw new OperationCanceledException();
+					progressMonitor.worked(1);
+				}
+			}
+		} finally {
+			// the started queries release their indexes themselves
+			for (Future<IndexMatches> query : queries) {
+				query.cancel(false);
+			}
+			executionTime += System.currentTimeMillis() - start;
+		}
+		return isComplete;
+	}
+
+	/**
+	 * Queries the index on a worker thread and copies the matches, the index
+	 * is released before returning.
+	 */
+	IndexMatches query(Index index, IProgressMonitor progressMonitor)
+			throws IOException {
+		if (progressMonitor != null && progressMonitor.isCanceled())
+			return null;
+		if (this.participant.isSkipped(index))
+			return null;
+		ReadWriteMonitor monitor = index.monitor;
+		if (monitor == null)
+			return null; // index got deleted since acquired
+		monitor.enterRead();
+		try {
+			index.startQuery();
+			try {
+				InternalSearchPattern pattern = (InternalSearchPattern) this.pattern;
+				EntryResult[] entries = pattern.queryIn(index);
+				return entries != null ? pattern.copyIndexMatches(index,
+						entries) : null;
+			} finally {
+				index.stopQuery();
+			}
+		} finally {
+			monitor.exitRead();
+		}
+	}
+
 	public String toString() {
 		return "searching " + pattern.toString(); //$NON-NLS-1$
 	}
@@ -33,6 +33,10 @@ public class SubTypeSearchJob extends PatternSearchJob {
 				((Index) values[i]).stopQuery();
 	}
 
+	protected boolean canSearchInParallel(Index[] indexes) {
+		return false; // indexes are kept started across executions
+	}
+
 	public boolean search(Index index, IProgressMonitor progressMonitor) {
 		if (index == null)
 			return COMPLETE;
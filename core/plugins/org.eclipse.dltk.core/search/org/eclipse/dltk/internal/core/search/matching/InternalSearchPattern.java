@@ -10,6 +10,8 @@
 package org.eclipse.dltk.internal.core.search.matching;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -100,28 +102,103 @@ public abstract class InternalSearchPattern {
 			if (entries == null)
 				return;
 
-			final SearchPattern decodedResult = pattern.getBlankPattern();
-			final String containerPath = index.getContainerPath();
-			final char separator = index.separator;
-			for (int i = 0, l = entries.length; i < l; i++) {
-				if (monitor != null && monitor.isCanceled())
-					throw new OperationCanceledException();
-
-				EntryResult entry = entries[i];
-				decodedResult.decodeIndexKey(entry.getWord());
-				if (pattern.matchesDecodedKey(decodedResult)) {
-					// TODO (kent) some clients may not need the document names
-					String[] names = entry.getDocumentNames(index);
-					for (int j = 0, n = names.length; j < n; j++)
-						acceptMatch(names[j], containerPath, separator,
-								decodedResult, requestor, participant, scope);
-				}
-			}
+			acceptIndexMatches(index, entries, requestor, participant, scope,
+					monitor);
 		} finally {
 			index.stopQuery();
 		}
 	}
 
+	/**
+	 * Reports the documents of the given entries (as returned by
+	 * {@link #queryIn(Index)}) whose decoded keys match this pattern. Assumes
+	 * the sender has opened the index and will close when finished.
+	 */
+	public void acceptIndexMatches(Index index, EntryResult[] entries,
+			IndexQueryRequestor requestor, SearchParticipant participant,
+			IDLTKSearchScope scope, IProgressMonitor monitor)
+			throws IOException {
+		SearchPattern pattern = currentPattern();
+		final SearchPattern decodedResult = pattern.getBlankPattern();
+		final String containerPath = index.getContainerPath();
+		final char separator = index.separator;
+		for (int i = 0, l = entries.length; i < l; i++) {
+			if (monitor != null && monitor.isCanceled())
+				throw new OperationCanceledException();
+
+			EntryResult entry = entries[i];
+			decodedResult.decodeIndexKey(entry.getWord());
+			if (pattern.matchesDecodedKey(decodedResult)) {
+				// TODO (kent) some clients may not need the document names
+				String[] names = entry.getDocumentNames(index);
+				for (int j = 0, n = names.length; j < n; j++)
+					acceptMatch(names[j], containerPath, separator,
+							decodedResult, requestor, participant, scope);
+			}
+		}
+	}
+
+	/**
+	 * Matches of an index copied by
+	 * {@link InternalSearchPattern#copyIndexMatches(Index, EntryResult[])},
+	 * which can be reported after the index is released.
+	 */
+	public static class IndexMatches {
+		final String containerPath;
+		final char separator;
+		final List<SearchPattern> records = new ArrayList<SearchPattern>();
+		final List<String[]> documentNames = new ArrayList<String[]>();
+
+		IndexMatches(String containerPath, char separator) {
+			this.containerPath = containerPath;
+			this.separator = separator;
+		}
+	}
+
+	/**
+	 * Decodes the given entries (as returned by {@link #queryIn(Index)})
+	 * whose keys match this pattern and copies them with their document
+	 * names. Assumes the sender has opened the index and will close when
+	 * finished.
+	 */
+	public IndexMatches copyIndexMatches(Index index, EntryResult[] entries)
+			throws IOException {
+		SearchPattern pattern = currentPattern();
+		IndexMatches matches = new IndexMatches(index.getContainerPath(),
+				index.separator);
+		SearchPattern decodedResult = pattern.getBlankPattern();
+		for (int i = 0, l = entries.length; i < l; i++) {
+			EntryResult entry = entries[i];
+			decodedResult.decodeIndexKey(entry.getWord());
+			if (pattern.matchesDecodedKey(decodedResult)) {
+				matches.records.add(decodedResult);
+				matches.documentNames.add(entry.getDocumentNames(index));
+				decodedResult = pattern.getBlankPattern();
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Reports the documents of the matches copied by
+	 * {@link #copyIndexMatches(Index, EntryResult[])}.
+	 */
+	public void acceptIndexMatches(IndexMatches matches,
+			IndexQueryRequestor requestor, SearchParticipant participant,
+			IDLTKSearchScope scope, IProgressMonitor monitor) {
+		for (int i = 0, l = matches.records.size(); i < l; i++) {
+			if (monitor != null && monitor.isCanceled())
+				throw new OperationCanceledException();
+
+			SearchPattern record = matches.records.get(i);
+			String[] names = matches.documentNames.get(i);
+			for (int j = 0, n = names.length; j < n; j++)
+				acceptMatch(names[j], matches.containerPath,
+						matches.separator, record, requestor, participant,
+						scope);
+		}
+	}
+
 	public boolean isPolymorphicSearch() {
 		return false;
 	}
@@ -0,0 +1,19 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.internal.core.search.processing;
+
+/**
+ * A job which may be executed by a worker thread while the {@link JobManager}
+ * moves on to the next jobs, e.g. indexing of a container into its own index.
+ * Such jobs must serialize their modifications of shared state themselves,
+ * typically by holding the write lock of the index they update. Other jobs are
+ * only started once all the parallel jobs requested before them have
+ * completed.
+ */
+public interface IParallelJob extends IJob {
+}
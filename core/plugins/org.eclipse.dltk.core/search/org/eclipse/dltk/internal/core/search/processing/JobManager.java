@@ -9,6 +9,8 @@
  *******************************************************************************/
 package org.eclipse.dltk.internal.core.search.processing;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -18,6 +20,7 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.internal.core.util.DaemonThreadPool;
 import org.eclipse.dltk.internal.core.util.Messages;
 import org.eclipse.dltk.internal.core.util.Util;
 import org.eclipse.osgi.util.NLS;
@@ -38,6 +41,14 @@ public abstract class JobManager implements Runnable {
 	protected Thread processingThread;
 	protected Job progressJob;
 
+	/* default of getParallelJobs() */
+	private static final int PARALLEL_JOBS = Integer.getInteger(
+			"org.eclipse.dltk.core.indexer.parallelJobs", 1).intValue(); //$NON-NLS-1$
+
+	/* parallel jobs being executed by the workers */
+	private final List<IJob> parallelJobs = new ArrayList<IJob>();
+	private DaemonThreadPool workers;
+
 	/*
 	 * counter indicating whether job execution is enabled or not, disabled if
 	 * <= 0 it cannot go beyond 1
@@ -63,7 +74,8 @@ public abstract class JobManager implements Runnable {
 	public synchronized int awaitingJobsCount() {
 		// pretend busy in case concurrent job attempts performing before
 		// activated
-		return this.activated ? this.jobEnd - this.jobStart + 1 : 1;
+		return this.activated ? this.jobEnd - this.jobStart + 1
+				+ this.parallelJobs.size() : 1;
 	}
 
 	/**
@@ -115,6 +127,7 @@ public abstract class JobManager implements Runnable {
 					}
 				}
 			}
+			discardParallelJobs(jobFamily);
 
 			// flush and compact awaiting jobs
 			int loc = -1;
@@ -154,6 +167,100 @@ public abstract class JobManager implements Runnable {
 		// (context must be synchronized)
 	}
 
+	/**
+	 * Cancels the parallel jobs of the given family (all of them if null) and
+	 * waits until they have finished.
+	 */
+	private synchronized void discardParallelJobs(String jobFamily) {
+		for (IJob job : this.parallelJobs) {
+			if (jobFamily == null || job.belongsTo(jobFamily)) {
+				if (VERBOSE)
+					Util.verbose("-> cancelling parallel job - " + job); //$NON-NLS-1$
+				job.cancel();
+			}
+		}
+		boolean running = true;
+		while (running) {
+			running = false;
+			for (IJob job : this.parallelJobs) {
+				if (jobFamily == null || job.belongsTo(jobFamily)) {
+					running = true;
+					break;
+				}
+			}
+			if (running) {
+				try {
+					this.wait(50);
+				} catch (InterruptedException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the maximum number of {@link IParallelJob}s executed
+	 * concurrently, they are executed on the processing thread like the others
+	 * if less than 2.
+	 */
+	protected int getParallelJobs() {
+		return PARALLEL_JOBS;
+	}
+
+	/**
+	 * Waits until all the parallel jobs have finished, then marks the current
+	 * job as executing unless it was discarded meanwhile.
+	 * 
+	 * @return whether the job is still the current one and is to be executed
+	 */
+	private synchronized boolean startAfterParallelJobs(IJob job)
+			throws InterruptedException {
+		while (!this.parallelJobs.isEmpty())
+			this.wait();
+		if (currentJob() != job)
+			return false; // discarded or disabled meanwhile
+		this.executing = true;
+		return true;
+	}
+
+	/**
+	 * Hands the current job over to a worker, once one is available, and
+	 * advances to the next job.
+	 */
+	private void executeInParallel(final IJob job) throws InterruptedException {
+		synchronized (this) {
+			while (this.parallelJobs.size() >= getParallelJobs())
+				this.wait();
+			if (currentJob() != job)
+				return; // discarded or disabled meanwhile
+			if (this.workers == null) {
+				this.workers = new DaemonThreadPool(processName() + " Worker", //$NON-NLS-1$
+						getParallelJobs(), Thread.NORM_PRIORITY - 1);
+			}
+			this.parallelJobs.add(job);
+			moveToNextJob();
+			this.workers.getExecutor().execute(new Runnable() {
+				public void run() {
+					try {
+						job.execute(null);
+					} catch (RuntimeException e) {
+						Util.log(e, "Background Indexer Worker Error"); //$NON-NLS-1$
+					} catch (Error e) {
+						Util.log(e, "Background Indexer Worker Error"); //$NON-NLS-1$
+						throw e;
+					} finally {
+						if (VERBOSE)
+							Util.verbose("FINISHED parallel job - " + job); //$NON-NLS-1$
+						synchronized (JobManager.this) {
+							JobManager.this.parallelJobs.remove(job);
+							JobManager.this.notifyAll();
+						}
+					}
+				}
+			});
+		}
+	}
+
 	public synchronized boolean isJobWaiting(IJob request) {
 		for (int i = this.jobEnd; i > this.jobStart; i--)
 			// don't check job at jobStart, as it may have already started
@@ -463,9 +570,16 @@ public abstract class JobManager implements Runnable {
 						Util.verbose(awaitingJobsCount() + " awaiting jobs"); //$NON-NLS-1$
 						Util.verbose("STARTING background job - " + job); //$NON-NLS-1$
 					}
+					showProgress();
+					if (getParallelJobs() > 1 && job instanceof IParallelJob) {
+						executeInParallel(job);
+						continue;
+					}
+					// preserve the order of the jobs requested after the
+					// parallel ones
+					if (!startAfterParallelJobs(job))
+						continue;
 					try {
-						this.executing = true;
-						showProgress();
 						/* boolean status = */job.execute(null);
 						// if (status == FAILED) request(job);
 					} finally {
@@ -560,6 +674,12 @@ public abstract class JobManager implements Runnable {
 		} catch (InterruptedException e) {
 			// ignore
 		}
+		synchronized (this) {
+			if (this.workers != null) {
+				this.workers.shutdown();
+				this.workers = null;
+			}
+		}
 	}
 
 	@Override
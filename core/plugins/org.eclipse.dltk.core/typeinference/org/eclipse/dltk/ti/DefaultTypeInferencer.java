@@ -10,6 +10,7 @@
 package org.eclipse.dltk.ti;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -18,6 +19,7 @@ import java.util.Set;
 
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.internal.core.ModelManager;
 import org.eclipse.dltk.ti.goals.AbstractTypeGoal;
 import org.eclipse.dltk.ti.goals.FieldReferencesGoal;
 import org.eclipse.dltk.ti.goals.FieldReferencesGoalEvaluator;
@@ -195,6 +197,12 @@ public class DefaultTypeInferencer implements ITypeInferencer {
 		engine = new GoalEngine(new MapBasedEvaluatorFactory());
 		this.userFactory = userFactory;
 		initStdGoals();
+		if (GoalResultCache.isEnabled()) {
+			// evaluators depend on the registered classes and the user factory
+			engine.setResultCache(ModelManager.getModelManager()
+					.getGoalResultCache(), Arrays.asList(getClass(),
+					userFactory != null ? userFactory.getClass() : null));
+		}
 	}
 
 	public void registerEvaluator(Class goalClass, Class evaluatorClass) {
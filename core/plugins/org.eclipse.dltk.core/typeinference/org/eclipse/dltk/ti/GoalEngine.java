@@ -14,10 +14,15 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.dltk.internal.core.util.DaemonThreadPool;
 import org.eclipse.dltk.ti.goals.GoalEvaluator;
 import org.eclipse.dltk.ti.goals.IGoal;
+import org.eclipse.dltk.ti.statistics.EvaluationProfiler;
+import org.eclipse.dltk.ti.statistics.GoalEvaluationStep;
 import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
 
 /**
@@ -26,6 +31,11 @@ import org.eclipse.dltk.ti.statistics.IEvaluationStatisticsRequestor;
  * allows pruning: before evaluating every goal(except root goal) could be
  * pruned by provided prunner.
  * 
+ * The evaluators of independent goals can be initialized concurrently by
+ * setting the <code>org.eclipse.dltk.core.ti.evaluationThreads</code> system
+ * property to the number of threads (the evaluators must be thread safe then),
+ * the goal states are still managed on the calling thread only.
+ * 
  * This class isn't thread safe.
  */
 public class GoalEngine {
@@ -38,12 +48,79 @@ public class GoalEngine {
 
 	private IEvaluationStatisticsRequestor statisticsRequestor;
 
+	/**
+	 * Number of threads initializing the evaluators of the independent goals
+	 * concurrently, all the goals are evaluated on the calling thread if less
+	 * than 2. The evaluators must be thread safe to use it.
+	 */
+	private static final int EVALUATION_THREADS = Integer.getInteger(
+			"org.eclipse.dltk.core.ti.evaluationThreads", 0).intValue(); //$NON-NLS-1$
+
+	private static int evaluationThreads = EVALUATION_THREADS;
+
+	private static DaemonThreadPool evaluationExecutor = null;
+
+	/**
+	 * Sets the number of threads initializing the evaluators concurrently,
+	 * overriding the system property. Used by the tests, returns the previous
+	 * value.
+	 * 
+	 * @since 5.2
+	 */
+	public static synchronized int setEvaluationThreads(int threads) {
+		final int previous = evaluationThreads;
+		if (threads != previous) {
+			evaluationThreads = threads;
+			// the idle threads of the previous pool time out
+			evaluationExecutor = null;
+		}
+		return previous;
+	}
+
+	private static synchronized int getEvaluationThreads() {
+		return evaluationThreads;
+	}
+
+	private static synchronized ExecutorService getEvaluationExecutor() {
+		if (evaluationExecutor == null) {
+			evaluationExecutor = new DaemonThreadPool(
+					"DLTK Type Inference", evaluationThreads) { //$NON-NLS-1$
+				@Override
+				protected Thread newThread(Runnable runnable, String threadName) {
+					return new EvaluationThread(runnable, threadName);
+				}
+			};
+		}
+		return evaluationExecutor.getExecutor();
+	}
+
+	/**
+	 * goals which evaluators are being initialized on the pool -> the pairs
+	 * to process when it is done
+	 */
+	private final HashMap<IGoal, List<WorkingPair>> goalsInProgress = new HashMap<IGoal, List<WorkingPair>>();
+	private final LinkedBlockingQueue<EvaluatorTask> completedTasks = new LinkedBlockingQueue<EvaluatorTask>();
+
+	/**
+	 * whether the current evaluation is recorded by the
+	 * {@link EvaluationProfiler}
+	 */
+	private boolean profiling;
+
+	private GoalResultCache resultCache;
+	private Object resultCacheDomain;
+	private long resultCacheGeneration;
+
 	private static class EvaluatorState {
 		public long timeCreated;
 		public int totalSubgoals;
 		public int successfulSubgoals;
 		public int subgoalsLeft;
 		public List<IGoal> subgoals = new ArrayList<IGoal>();
+		/**
+		 * none of the subgoals was pruned or recursive
+		 */
+		public boolean complete = true;
 
 		public EvaluatorState(int subgoalsLeft) {
 			this.subgoalsLeft = subgoalsLeft;
@@ -64,16 +141,94 @@ public class GoalEngine {
 
 	}
 
+	private static class EvaluationThread extends Thread {
+		EvaluationThread(Runnable target, String name) {
+			super(target, name);
+		}
+	}
+
+	/**
+	 * Initializes the evaluator, and if it has no subgoals produces its result
+	 * as well.
+	 */
+	private class EvaluatorTask implements Runnable {
+		final WorkingPair pair;
+		final GoalEvaluator evaluator;
+		IGoal[] newGoals;
+		/**
+		 * in nanoseconds
+		 */
+		long initTime;
+		boolean produced;
+		Object result;
+		/**
+		 * in nanoseconds
+		 */
+		long produceTime;
+		Throwable error;
+
+		EvaluatorTask(WorkingPair pair, GoalEvaluator evaluator) {
+			this.pair = pair;
+			this.evaluator = evaluator;
+		}
+
+		void init() {
+			long time = System.nanoTime();
+			newGoals = evaluator.init();
+			if (newGoals == null) {
+				newGoals = IGoal.NO_GOALS;
+			}
+			initTime = System.nanoTime() - time;
+		}
+
+		void produceResult() {
+			long time = System.nanoTime();
+			result = evaluator.produceResult();
+			produceTime = System.nanoTime() - time;
+			produced = true;
+		}
+
+		public void run() {
+			try {
+				init();
+				if (newGoals.length == 0) {
+					produceResult();
+				}
+			} catch (Throwable e) {
+				error = e;
+			} finally {
+				completedTasks.add(this);
+			}
+		}
+	}
+
 	private static class GoalEvaluationState {
 		public GoalEvaluator creator;
 		public GoalState state;
 		public Object result;
+		public boolean complete = true;
 	}
 
 	public GoalEngine(IGoalEvaluatorFactory evaluatorFactory) {
 		this.evaluatorFactory = evaluatorFactory;
 	}
 
+	/**
+	 * Lets the results of the evaluated goals be shared with the other
+	 * evaluations using the same cache and domain.
+	 * 
+	 * @param cache
+	 *            the cache or <code>null</code> to disable caching
+	 * @param domain
+	 *            identifies the evaluators produced by the factory of this
+	 *            engine
+	 * @since 5.2
+	 */
+	public void setResultCache(GoalResultCache cache, Object domain) {
+		this.resultCache = cache;
+		this.resultCacheDomain = domain;
+	}
+
 	private void storeGoal(IGoal goal, GoalState state, Object result,
 			GoalEvaluator creator) {
 		GoalEvaluationState es = new GoalEvaluationState();
@@ -102,12 +257,20 @@ public class GoalEngine {
 
 		if (state == GoalState.WAITING) {
 			state = GoalState.RECURSIVE;
+			if (profiling) {
+				EvaluationProfiler.updateGoal(subGoal, state);
+			}
 		}
 
-		t = System.currentTimeMillis();
+		t = System.nanoTime();
 		IGoal[] newGoals = evaluator.subGoalDone(subGoal, result, state);
+		t = System.nanoTime() - t;
+		if (profiling) {
+			EvaluationProfiler.updateStep(evaluator,
+					GoalEvaluationStep.DEFAULT, t);
+		}
 		statisticsRequestor.evaluatorReceivedResult(evaluator, subGoal,
-				newGoals, System.currentTimeMillis() - t);
+				newGoals, t / 1000000);
 		if (newGoals == null) {
 			newGoals = IGoal.NO_GOALS;
 		}
@@ -115,6 +278,9 @@ public class GoalEngine {
 			workingQueue.add(new WorkingPair(newGoals[i], evaluator));
 		}
 		EvaluatorState ev = getEvaluatorState(evaluator);
+		if (state != GoalState.DONE || !subGoalState.complete) {
+			ev.complete = false;
+		}
 		ev.subgoalsLeft--;
 		ev.subgoalsLeft += newGoals.length;
 		ev.totalSubgoals += newGoals.length;
@@ -123,14 +289,23 @@ public class GoalEngine {
 			ev.successfulSubgoals++;
 		}
 		if (ev.subgoalsLeft == 0) {
-			t = System.currentTimeMillis();
+			t = System.nanoTime();
 			Object newRes = evaluator.produceResult();
+			t = System.nanoTime() - t;
+			if (profiling) {
+				EvaluationProfiler.updateStep(evaluator,
+						GoalEvaluationStep.RESULT, t);
+			}
 			statisticsRequestor.evaluatorProducedResult(evaluator, result,
-					System.currentTimeMillis() - t);
+					t / 1000000);
 			GoalEvaluationState st = goalStates.get(evaluator.getGoal());
 			Assert.isNotNull(st);
 			st.state = GoalState.DONE;
 			st.result = newRes;
+			st.complete = ev.complete;
+			if (st.complete) {
+				cacheResult(evaluator.getGoal(), newRes);
+			}
 			if (st.creator != null) {
 				notifyEvaluator(st.creator, evaluator.getGoal());
 			}
@@ -154,8 +329,6 @@ public class GoalEngine {
 
 	public Object evaluateGoal(IGoal rootGoal, IPruner pruner,
 			IEvaluationStatisticsRequestor statisticsRequestor) {
-		long time = 0;
-
 		if (statisticsRequestor == null) {
 			statisticsRequestor = new IEvaluationStatisticsRequestor() {
 				public void evaluationStarted(IGoal rootGoal) {
@@ -184,74 +357,97 @@ public class GoalEngine {
 		}
 		this.statisticsRequestor = statisticsRequestor;
 		reset();
+		profiling = EvaluationProfiler.startEvaluation();
+		if (resultCache != null) {
+			resultCacheGeneration = resultCache.getGeneration();
+		}
 		if (pruner != null) {
 			pruner.init();
 		}
+		// nested evaluations started by the evaluators are not dispatched,
+		// so the pool threads never wait for each other
+		final boolean parallel = getEvaluationThreads() > 1
+				&& !(Thread.currentThread() instanceof EvaluationThread);
+		final ExecutorService executor = parallel ? getEvaluationExecutor()
+				: null;
+		int pending = 0;
 		workingQueue.add(new WorkingPair(rootGoal, null));
 		statisticsRequestor.evaluationStarted(rootGoal);
-		while (!workingQueue.isEmpty()) {
-			WorkingPair pair = workingQueue.getFirst();
-			workingQueue.removeFirst();
-			if (DEBUG) {
-				System.out.println(pair.goal);
-			}
-			GoalEvaluationState state = goalStates.get(pair.goal);
-			if (state != null && pair.creator != null) {
-				notifyEvaluator(pair.creator, pair.goal);
-			} else {
-				boolean prune = false;
-				if (pruner != null && pair.creator != null) {
-					prune = pruner.prune(pair.goal,
-							getEvaluatorStatistics(pair.creator));
+		try {
+			while (!workingQueue.isEmpty() || pending != 0) {
+				if (pending != 0) {
+					EvaluatorTask done = workingQueue.isEmpty() ? takeCompletedTask()
+							: completedTasks.poll();
+					if (done != null) {
+						--pending;
+						evaluatorInitialized(done);
+						continue;
+					}
 				}
-				if (prune) {
-					storeGoal(pair.goal, GoalState.PRUNED, null, pair.creator);
+				WorkingPair pair = workingQueue.getFirst();
+				workingQueue.removeFirst();
+				if (DEBUG) {
+					System.out.println(pair.goal);
+				}
+				GoalEvaluationState state = goalStates.get(pair.goal);
+				if (state != null && pair.creator != null) {
 					notifyEvaluator(pair.creator, pair.goal);
-				} else {
-					GoalEvaluator evaluator = evaluatorFactory
-							.createEvaluator(pair.goal);
-					Assert.isNotNull(evaluator);
-					if (DEBUG) {
-						System.out.println(" evaluator=" + evaluator); //$NON-NLS-1$
-					}
-					statisticsRequestor.goalEvaluatorAssigned(pair.goal,
-							evaluator);
-					time = System.currentTimeMillis();
-					IGoal[] newGoals = evaluator.init();
-					if (newGoals == null) {
-						newGoals = IGoal.NO_GOALS;
+				} else if ((state = getCachedResult(pair.goal)) != null) {
+					goalStates.put(pair.goal, state);
+					statisticsRequestor.goalStateChanged(pair.goal,
+							state.state, null);
+					if (pair.creator != null) {
+						notifyEvaluator(pair.creator, pair.goal);
 					}
-					if (DEBUG) {
-						for (IGoal n : newGoals) {
-							System.out.println("- " + n); //$NON-NLS-1$
-						}
+				} else if (goalsInProgress.containsKey(pair.goal)) {
+					// processed as soon as the evaluator is initialized
+					goalsInProgress.get(pair.goal).add(pair);
+				} else {
+					boolean prune = false;
+					if (pruner != null && pair.creator != null) {
+						prune = pruner.prune(pair.goal,
+								getEvaluatorStatistics(pair.creator));
 					}
-					statisticsRequestor.evaluatorInitialized(evaluator,
-							newGoals, System.currentTimeMillis() - time);
-					if (newGoals.length > 0) {
-						for (int i = 0; i < newGoals.length; i++) {
-							workingQueue.add(new WorkingPair(newGoals[i],
-									evaluator));
+					if (prune) {
+						if (profiling) {
+							EvaluationProfiler.updateGoal(pair.goal,
+									GoalState.PRUNED);
 						}
-						EvaluatorState evaluatorState = new EvaluatorState(
-								newGoals.length);
-						evaluatorState.subgoals.addAll(Arrays.asList(newGoals));
-						putEvaluatorState(evaluator, evaluatorState);
-						storeGoal(pair.goal, GoalState.WAITING, null,
+						storeGoal(pair.goal, GoalState.PRUNED, null,
 								pair.creator);
+						notifyEvaluator(pair.creator, pair.goal);
 					} else {
-						time = System.currentTimeMillis();
-						Object result = evaluator.produceResult();
-						statisticsRequestor.evaluatorProducedResult(evaluator,
-								result, System.currentTimeMillis() - time);
-						storeGoal(pair.goal, GoalState.DONE, result,
-								pair.creator);
-						if (pair.creator != null) {
-							notifyEvaluator(pair.creator, pair.goal);
+						GoalEvaluator evaluator = evaluatorFactory
+								.createEvaluator(pair.goal);
+						Assert.isNotNull(evaluator);
+						if (DEBUG) {
+							System.out.println(" evaluator=" + evaluator); //$NON-NLS-1$
+						}
+						if (profiling) {
+							EvaluationProfiler.updateGoal(pair.goal,
+									GoalState.WAITING);
+						}
+						statisticsRequestor.goalEvaluatorAssigned(pair.goal,
+								evaluator);
+						EvaluatorTask task = new EvaluatorTask(pair, evaluator);
+						if (parallel
+								&& (pending != 0 || !workingQueue.isEmpty())) {
+							goalsInProgress.put(pair.goal,
+									new ArrayList<WorkingPair>(1));
+							executor.execute(task);
+							++pending;
+						} else {
+							task.init();
+							evaluatorInitialized(task);
 						}
 					}
 				}
 			}
+		} finally {
+			// evaluation failed, wait for the evaluators still running
+			for (; pending != 0; --pending) {
+				takeCompletedTask();
+			}
 		}
 		GoalEvaluationState s = goalStates.get(rootGoal);
 
@@ -259,8 +455,101 @@ public class GoalEngine {
 		return s.result;
 	}
 
+	private void evaluatorInitialized(EvaluatorTask task) {
+		if (task.error instanceof RuntimeException) {
+			throw (RuntimeException) task.error;
+		} else if (task.error instanceof Error) {
+			throw (Error) task.error;
+		}
+		final WorkingPair pair = task.pair;
+		final GoalEvaluator evaluator = task.evaluator;
+		final IGoal[] newGoals = task.newGoals;
+		if (DEBUG) {
+			for (IGoal n : newGoals) {
+				System.out.println("- " + n); //$NON-NLS-1$
+			}
+		}
+		if (profiling) {
+			EvaluationProfiler.updateStep(evaluator, GoalEvaluationStep.INIT,
+					task.initTime);
+		}
+		statisticsRequestor.evaluatorInitialized(evaluator, newGoals,
+				task.initTime / 1000000);
+		if (newGoals.length > 0) {
+			for (int i = 0; i < newGoals.length; i++) {
+				workingQueue.add(new WorkingPair(newGoals[i], evaluator));
+			}
+			EvaluatorState evaluatorState = new EvaluatorState(newGoals.length);
+			evaluatorState.subgoals.addAll(Arrays.asList(newGoals));
+			putEvaluatorState(evaluator, evaluatorState);
+			storeGoal(pair.goal, GoalState.WAITING, null, pair.creator);
+		} else {
+			if (!task.produced) {
+				task.produceResult();
+			}
+			if (profiling) {
+				EvaluationProfiler.updateStep(evaluator,
+						GoalEvaluationStep.RESULT, task.produceTime);
+			}
+			statisticsRequestor.evaluatorProducedResult(evaluator,
+					task.result, task.produceTime / 1000000);
+			storeGoal(pair.goal, GoalState.DONE, task.result, pair.creator);
+			cacheResult(pair.goal, task.result);
+			if (pair.creator != null) {
+				notifyEvaluator(pair.creator, pair.goal);
+			}
+		}
+		final List<WorkingPair> waiting = goalsInProgress.remove(pair.goal);
+		if (waiting != null) {
+			workingQueue.addAll(0, waiting);
+		}
+	}
+
+	private EvaluatorTask takeCompletedTask() {
+		boolean interrupted = false;
+		try {
+			for (;;) {
+				try {
+					return completedTasks.take();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private GoalEvaluationState getCachedResult(IGoal goal) {
+		if (resultCache == null) {
+			return null;
+		}
+		final Object result = resultCache.get(resultCacheDomain, goal);
+		if (profiling) {
+			EvaluationProfiler.updateCache(goal, result != null);
+		}
+		if (result == null) {
+			return null;
+		}
+		GoalEvaluationState es = new GoalEvaluationState();
+		es.result = result;
+		es.state = GoalState.DONE;
+		return es;
+	}
+
+	private void cacheResult(IGoal goal, Object result) {
+		if (resultCache != null) {
+			resultCache.put(resultCacheDomain, goal, result,
+					resultCacheGeneration);
+		}
+	}
+
 	private void reset() {
 		workingQueue.clear();
+		goalsInProgress.clear();
+		completedTasks.clear();
 		goalStates.clear();
 		evaluatorStates.clear();
 	}
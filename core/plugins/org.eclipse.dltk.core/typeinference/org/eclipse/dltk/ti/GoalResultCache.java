@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.ti;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ElementChangedEvent;
+import org.eclipse.dltk.core.IElementChangedListener;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IModelElementDelta;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.ti.goals.IGoal;
+
+/**
+ * Results of the goals evaluated by the {@link GoalEngine}, shared between
+ * evaluations. The results are kept per project and dropped when the project
+ * or one of the projects on its buildpath changes. Goals are only cached when
+ * their context is a {@link ISourceModuleContext}, the AST the context refers
+ * to is part of the key, so that the results computed for an older version of
+ * the source module are not returned.
+ * 
+ * <p>
+ * As the cached goals and results keep their ASTs reachable, the cache is
+ * disabled unless its size is specified with the
+ * <code>org.eclipse.dltk.core.ti.goalCacheSize</code> system property.
+ * </p>
+ *
+ * @since 5.2
+ */
+public class GoalResultCache {
+
+	/**
+	 * Maximal number of goal results cached per project, <code>0</code>
+	 * disables the cache.
+	 */
+	private static final int CACHE_SIZE = Integer.getInteger(
+			"org.eclipse.dltk.core.ti.goalCacheSize", 0).intValue(); //$NON-NLS-1$
+
+	private static final boolean DEBUG = false;
+
+	private static class Key {
+		final Object domain;
+		final IGoal goal;
+		final ModuleDeclaration rootNode;
+
+		Key(Object domain, IGoal goal, ModuleDeclaration rootNode) {
+			this.domain = domain;
+			this.goal = goal;
+			this.rootNode = rootNode;
+		}
+
+		public int hashCode() {
+			return goal.hashCode();
+		}
+
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return rootNode == other.rootNode && domain.equals(other.domain)
+					&& goal.equals(other.goal);
+		}
+	}
+
+	/**
+	 * Results of a project, accessed while synchronized on it
+	 */
+	@SuppressWarnings("serial")
+	private static class ProjectCache extends LinkedHashMap<Key, Object> {
+		private final int size;
+
+		ProjectCache(int size) {
+			super(16, 0.75f, true);
+			this.size = size;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+			return size() > size;
+		}
+	}
+
+	private final int size;
+
+	private final ConcurrentMap<IScriptProject, ProjectCache> projects = new ConcurrentHashMap<IScriptProject, ProjectCache>();
+
+	/**
+	 * Incremented whenever results are dropped, results computed before can't
+	 * be stored anymore.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private final IElementChangedListener listener = new IElementChangedListener() {
+		public void elementChanged(ElementChangedEvent event) {
+			processDelta(event.getDelta());
+		}
+	};
+
+	/**
+	 * Returns whether the goal results are cached, i.e. whether the
+	 * <code>org.eclipse.dltk.core.ti.goalCacheSize</code> system property is
+	 * set.
+	 */
+	public static boolean isEnabled() {
+		return CACHE_SIZE > 0;
+	}
+
+	public GoalResultCache() {
+		this(CACHE_SIZE);
+	}
+
+	/**
+	 * @param size
+	 *            maximal number of goal results cached per project,
+	 *            <code>0</code> disables the cache
+	 */
+	public GoalResultCache(int size) {
+		this.size = size;
+	}
+
+	public void start() {
+		DLTKCore.addElementChangedListener(listener,
+				ElementChangedEvent.POST_CHANGE
+						| ElementChangedEvent.POST_RECONCILE);
+	}
+
+	public void stop() {
+		DLTKCore.removeElementChangedListener(listener);
+		clear();
+	}
+
+	/**
+	 * Returns the cached result of the specified goal or <code>null</code>
+	 *
+	 * @param domain
+	 *            identifies the evaluators which produced the results
+	 */
+	public Object get(Object domain, IGoal goal) {
+		final ISourceModuleContext context = getContext(goal);
+		if (context == null) {
+			return null;
+		}
+		final ProjectCache cache = projects.get(context.getSourceModule()
+				.getScriptProject());
+		Object result = null;
+		if (cache != null) {
+			final Key key = new Key(domain, goal, context.getRootNode());
+			synchronized (cache) {
+				result = cache.get(key);
+			}
+		}
+		if (result != null) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the value to pass to {@link #put(Object, IGoal, Object, long)}
+	 * for the results of the evaluation started now.
+	 */
+	public long getGeneration() {
+		return generation.get();
+	}
+
+	/**
+	 * Remembers the result of the specified goal. Callers should only store
+	 * results which do not depend on the pruned or recursive goals.
+	 *
+	 * @param domain
+	 *            identifies the evaluators which produced the results
+	 * @param generation
+	 *            the value of {@link #getGeneration()} when the evaluation
+	 *            started
+	 */
+	public void put(Object domain, IGoal goal, Object result, long generation) {
+		final ISourceModuleContext context = getContext(goal);
+		if (context == null || result == null || size <= 0
+				|| generation != this.generation.get()) {
+			return;
+		}
+		final IScriptProject project = context.getSourceModule()
+				.getScriptProject();
+		ProjectCache cache = projects.get(project);
+		if (cache == null) {
+			final ProjectCache newCache = new ProjectCache(size);
+			cache = projects.putIfAbsent(project, newCache);
+			if (cache == null) {
+				cache = newCache;
+			}
+		}
+		final Key key = new Key(domain, goal, context.getRootNode());
+		synchronized (cache) {
+			cache.put(key, result);
+		}
+		// the results are dropped after incrementing the generation, remove
+		// the result if that happened concurrently
+		if (generation != this.generation.get()) {
+			synchronized (cache) {
+				cache.remove(key);
+			}
+		}
+	}
+
+	private static ISourceModuleContext getContext(IGoal goal) {
+		final IContext context = goal.getContext();
+		if (context instanceof ISourceModuleContext) {
+			final ISourceModuleContext c = (ISourceModuleContext) context;
+			final ISourceModule module = c.getSourceModule();
+			if (module != null && module.getScriptProject() != null) {
+				return c;
+			}
+		}
+		return null;
+	}
+
+	private void processDelta(IModelElementDelta delta) {
+		final IModelElement element = delta.getElement();
+		if (element.getElementType() == IModelElement.SCRIPT_MODEL) {
+			if ((delta.getFlags() & ~IModelElementDelta.F_CHILDREN) != 0) {
+				clear();
+				return;
+			}
+			final IModelElementDelta[] children = delta.getAffectedChildren();
+			for (int i = 0; i < children.length; ++i) {
+				processDelta(children[i]);
+			}
+		} else {
+			final IScriptProject project = element.getScriptProject();
+			if (project != null) {
+				projectChanged(project);
+			} else {
+				clear();
+			}
+		}
+	}
+
+	/**
+	 * Drops the results of the specified project and of the projects which
+	 * have it on their buildpath.
+	 */
+	private void projectChanged(IScriptProject changed) {
+		generation.incrementAndGet();
+		for (Iterator<IScriptProject> i = projects.keySet().iterator(); i
+				.hasNext();) {
+			final IScriptProject project = i.next();
+			if (project.equals(changed) || project.isOnBuildpath(changed)) {
+				if (DEBUG) {
+					System.out.println("[GoalResultCache] drop " //$NON-NLS-1$
+							+ project.getElementName());
+				}
+				i.remove();
+			}
+		}
+	}
+
+	public void clear() {
+		generation.incrementAndGet();
+		projects.clear();
+	}
+
+	public String toString() {
+		int count = 0;
+		for (ProjectCache cache : projects.values()) {
+			synchronized (cache) {
+				count += cache.size();
+			}
+		}
+		return "GoalResultCache projects=" + projects.size() + ", size=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ count + ", hits=" + hits + ", misses=" + misses; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+}
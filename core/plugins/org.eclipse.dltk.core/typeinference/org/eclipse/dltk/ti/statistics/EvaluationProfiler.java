@@ -0,0 +1,364 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.ti.statistics;
+
+import static org.eclipse.core.runtime.Platform.getDebugOption;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+
+/**
+ * Aggregated profile of the goal evaluations performed by the
+ * {@link GoalEngine}: the time spent in each step of the evaluators, by
+ * evaluator class, and the number of evaluated, pruned, recursive and cached
+ * goals, by goal class. Only one of {@link #getSampleInterval()} evaluations
+ * is profiled, nothing is recorded unless the profiler is active.
+ *
+ * @since 5.2
+ */
+public class EvaluationProfiler {
+
+	/**
+	 * Number of histogram buckets, the bucket <code>i</code> counts the steps
+	 * which took from 2<sup>i-1</sup> to 2<sup>i</sup> microseconds, the first
+	 * one the steps shorter than a microsecond and the last one all the longer
+	 * steps.
+	 */
+	public static final int BUCKETS = 24;
+
+	private static volatile boolean active = Boolean.valueOf(
+			getDebugOption("org.eclipse.dltk.core/typeInferencing/profile")) //$NON-NLS-1$
+			.booleanValue();
+
+	private static volatile int sampleInterval = 1;
+
+	static {
+		final String interval = getDebugOption("org.eclipse.dltk.core/typeInferencing/profileSampleInterval"); //$NON-NLS-1$
+		if (interval != null) {
+			try {
+				setSampleInterval(Integer.parseInt(interval.trim()));
+			} catch (NumberFormatException e) {
+				// ignore
+			}
+		}
+	}
+
+	public static boolean isActive() {
+		return active;
+	}
+
+	public static void setActive(boolean value) {
+		active = value;
+	}
+
+	public static int getSampleInterval() {
+		return sampleInterval;
+	}
+
+	/**
+	 * Profiles one of <code>interval</code> evaluations
+	 */
+	public static void setSampleInterval(int interval) {
+		sampleInterval = Math.max(1, interval);
+	}
+
+	public static class TimingEntry {
+		long count;
+		long time;
+		long maxTime;
+		final long[] histogram = new long[BUCKETS];
+
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the total time in nanoseconds
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * Returns the longest time in nanoseconds
+		 */
+		public long getMaxTime() {
+			return maxTime;
+		}
+
+		/**
+		 * Returns the step counts per duration, see {@link #BUCKETS}
+		 */
+		public long[] getHistogram() {
+			return histogram.clone();
+		}
+	}
+
+	public static class GoalEntry {
+		long evaluated;
+		long pruned;
+		long recursive;
+		long cacheHits;
+		long cacheMisses;
+
+		public long getEvaluated() {
+			return evaluated;
+		}
+
+		public long getPruned() {
+			return pruned;
+		}
+
+		public long getRecursive() {
+			return recursive;
+		}
+
+		public long getCacheHits() {
+			return cacheHits;
+		}
+
+		public long getCacheMisses() {
+			return cacheMisses;
+		}
+	}
+
+	/**
+	 * Copy of the profile at some point in time
+	 */
+	public static class Snapshot {
+		long evaluations;
+		long sampled;
+		final Map<String, TimingEntry> timings = new TreeMap<String, TimingEntry>();
+		final Map<String, GoalEntry> goals = new TreeMap<String, GoalEntry>();
+
+		/**
+		 * Returns the total number of evaluations started
+		 */
+		public long getEvaluations() {
+			return evaluations;
+		}
+
+		/**
+		 * Returns the number of the profiled evaluations
+		 */
+		public long getSampledEvaluations() {
+			return sampled;
+		}
+
+		/**
+		 * Returns the timings by evaluator class name and step, e.g.
+		 * <code>FieldReferencesGoalEvaluator#init</code>
+		 */
+		public Map<String, TimingEntry> getTimings() {
+			return timings;
+		}
+
+		/**
+		 * Returns the counters by goal class name
+		 */
+		public Map<String, GoalEntry> getGoals() {
+			return goals;
+		}
+
+		/**
+		 * Exports the snapshot as tab separated text
+		 */
+		public String export() {
+			final StringBuilder sb = new StringBuilder();
+			sb.append("evaluations\t").append(evaluations).append('\n'); //$NON-NLS-1$
+			sb.append("sampled\t").append(sampled).append('\n'); //$NON-NLS-1$
+			sb.append("\nstep\tcount\ttotal ms\tmax ms\thistogram (us, log2)\n"); //$NON-NLS-1$
+			for (Map.Entry<String, TimingEntry> entry : timings.entrySet()) {
+				final TimingEntry t = entry.getValue();
+				sb.append(entry.getKey()).append('\t').append(t.count);
+				sb.append('\t').append(t.time / 1000000);
+				sb.append('\t').append(t.maxTime / 1000000).append('\t');
+				int last = BUCKETS - 1;
+				while (last > 0 && t.histogram[last] == 0) {
+					--last;
+				}
+				for (int i = 0; i <= last; ++i) {
+					if (i != 0) {
+						sb.append(' ');
+					}
+					sb.append(t.histogram[i]);
+				}
+				sb.append('\n');
+			}
+			sb.append("\ngoal\tevaluated\tpruned\trecursive\tcache hits\tcache misses\n"); //$NON-NLS-1$
+			for (Map.Entry<String, GoalEntry> entry : goals.entrySet()) {
+				final GoalEntry g = entry.getValue();
+				sb.append(entry.getKey()).append('\t').append(g.evaluated);
+				sb.append('\t').append(g.pruned);
+				sb.append('\t').append(g.recursive);
+				sb.append('\t').append(g.cacheHits);
+				sb.append('\t').append(g.cacheMisses).append('\n');
+			}
+			return sb.toString();
+		}
+
+		@Override
+		public String toString() {
+			return export();
+		}
+	}
+
+	private static class Timing {
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong time = new AtomicLong();
+		final AtomicLong maxTime = new AtomicLong();
+		final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+		void add(long nanos) {
+			count.incrementAndGet();
+			time.addAndGet(nanos);
+			for (long max; nanos > (max = maxTime.get());) {
+				if (maxTime.compareAndSet(max, nanos)) {
+					break;
+				}
+			}
+			final long micros = nanos / 1000;
+			final int bucket = 64 - Long.numberOfLeadingZeros(micros);
+			histogram.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		}
+	}
+
+	private static class GoalCounters {
+		final AtomicLong evaluated = new AtomicLong();
+		final AtomicLong pruned = new AtomicLong();
+		final AtomicLong recursive = new AtomicLong();
+		final AtomicLong cacheHits = new AtomicLong();
+		final AtomicLong cacheMisses = new AtomicLong();
+	}
+
+	private static final String[] STEP_NAMES = { "#init", "#subGoalDone", //$NON-NLS-1$ //$NON-NLS-2$
+			"#produceResult" }; //$NON-NLS-1$
+
+	private static final AtomicLong evaluations = new AtomicLong();
+	private static final AtomicLong sampled = new AtomicLong();
+	private static final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<String, Timing>();
+	private static final ConcurrentMap<String, GoalCounters> goals = new ConcurrentHashMap<String, GoalCounters>();
+
+	/**
+	 * Returns whether the evaluation which starts now should be profiled.
+	 *
+	 * @noreference This method is not intended to be referenced by clients.
+	 */
+	public static boolean startEvaluation() {
+		if (!active) {
+			return false;
+		}
+		if (evaluations.incrementAndGet() % sampleInterval != 0) {
+			return false;
+		}
+		sampled.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @param step
+	 *            one of {@link GoalEvaluationStep#INIT},
+	 *            {@link GoalEvaluationStep#DEFAULT} (subgoal done) or
+	 *            {@link GoalEvaluationStep#RESULT}
+	 * @noreference This method is not intended to be referenced by clients.
+	 */
+	public static void updateStep(GoalEvaluator evaluator, int step, long nanos) {
+		final String key = evaluator.getClass().getName() + STEP_NAMES[step];
+		Timing timing = timings.get(key);
+		if (timing == null) {
+			final Timing newTiming = new Timing();
+			timing = timings.putIfAbsent(key, newTiming);
+			if (timing == null) {
+				timing = newTiming;
+			}
+		}
+		timing.add(nanos);
+	}
+
+	/**
+	 * @param state
+	 *            {@link GoalState#WAITING} when an evaluator is assigned to the
+	 *            goal, {@link GoalState#PRUNED} or {@link GoalState#RECURSIVE}
+	 * @noreference This method is not intended to be referenced by clients.
+	 */
+	public static void updateGoal(IGoal goal, GoalState state) {
+		final GoalCounters counters = getGoalCounters(goal);
+		if (state == GoalState.PRUNED) {
+			counters.pruned.incrementAndGet();
+		} else if (state == GoalState.RECURSIVE) {
+			counters.recursive.incrementAndGet();
+		} else {
+			counters.evaluated.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @noreference This method is not intended to be referenced by clients.
+	 */
+	public static void updateCache(IGoal goal, boolean hit) {
+		final GoalCounters counters = getGoalCounters(goal);
+		(hit ? counters.cacheHits : counters.cacheMisses).incrementAndGet();
+	}
+
+	private static GoalCounters getGoalCounters(IGoal goal) {
+		final String key = goal.getClass().getName();
+		GoalCounters counters = goals.get(key);
+		if (counters == null) {
+			final GoalCounters newCounters = new GoalCounters();
+			counters = goals.putIfAbsent(key, newCounters);
+			if (counters == null) {
+				counters = newCounters;
+			}
+		}
+		return counters;
+	}
+
+	public static Snapshot getSnapshot() {
+		final Snapshot snapshot = new Snapshot();
+		snapshot.evaluations = evaluations.get();
+		snapshot.sampled = sampled.get();
+		for (Map.Entry<String, Timing> entry : timings.entrySet()) {
+			final Timing timing = entry.getValue();
+			final TimingEntry copy = new TimingEntry();
+			copy.count = timing.count.get();
+			copy.time = timing.time.get();
+			copy.maxTime = timing.maxTime.get();
+			for (int i = 0; i < BUCKETS; ++i) {
+				copy.histogram[i] = timing.histogram.get(i);
+			}
+			snapshot.timings.put(entry.getKey(), copy);
+		}
+		for (Map.Entry<String, GoalCounters> entry : goals.entrySet()) {
+			final GoalCounters counters = entry.getValue();
+			final GoalEntry copy = new GoalEntry();
+			copy.evaluated = counters.evaluated.get();
+			copy.pruned = counters.pruned.get();
+			copy.recursive = counters.recursive.get();
+			copy.cacheHits = counters.cacheHits.get();
+			copy.cacheMisses = counters.cacheMisses.get();
+			snapshot.goals.put(entry.getKey(), copy);
+		}
+		return snapshot;
+	}
+
+	public static void clear() {
+		evaluations.set(0);
+		sampled.set(0);
+		timings.clear();
+		goals.clear();
+	}
+}
@@ -14,9 +14,15 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 
 import org.eclipse.dltk.core.tests.builder.BuildParticipantManagerTests;
+import org.eclipse.dltk.core.tests.builder.ParallelBuildTests;
+import org.eclipse.dltk.core.tests.builder.StateTests;
 import org.eclipse.dltk.core.tests.buildpath.BuildpathTests;
 import org.eclipse.dltk.core.tests.buildpath.SetContainerEventsTest;
 import org.eclipse.dltk.core.tests.cache.CacheTests;
+import org.eclipse.dltk.core.tests.cache.ElementCacheTests;
+import org.eclipse.dltk.core.tests.cache.GoalResultCacheTests;
+import org.eclipse.dltk.core.tests.cache.SuperTypeReferenceCacheTests;
+import org.eclipse.dltk.core.tests.cache.PersistentASTCacheTest;
 import org.eclipse.dltk.core.tests.cache.SourceModuleInfoCacheTest;
 import org.eclipse.dltk.core.tests.compiler.CompilerCharOperationTests;
 import org.eclipse.dltk.core.tests.compiler.CompilerUtilTests;
@@ -31,9 +37,17 @@ import org.eclipse.dltk.core.tests.model.NamespaceTests;
 import org.eclipse.dltk.core.tests.model.WorkingCopyTests;
 import org.eclipse.dltk.core.tests.parser.SourceParserTests;
 import org.eclipse.dltk.core.tests.search.Bug387751Test;
+import org.eclipse.dltk.core.tests.search.ContainerFingerprintTests;
+import org.eclipse.dltk.core.tests.search.PatternSearchJobTests;
+import org.eclipse.dltk.core.tests.search.SourceModulesRequestTests;
+import org.eclipse.dltk.core.tests.search.DLTKSearchScopeTests;
+import org.eclipse.dltk.core.tests.search.IndexTests;
+import org.eclipse.dltk.core.tests.search.JobManagerTests;
+import org.eclipse.dltk.core.tests.ti.GoalEngineTests;
 import org.eclipse.dltk.core.tests.util.CharacterStackTests;
 import org.eclipse.dltk.core.tests.utils.CharOperationTests;
 import org.eclipse.dltk.core.tests.utils.IntListTests;
+import org.eclipse.dltk.core.tests.utils.RuntimePerformanceMonitorTests;
 import org.eclipse.dltk.core.tests.utils.InternalCoreUtilTest;
 import org.eclipse.dltk.core.tests.utils.TextUtilsTest;
 
@@ -43,6 +57,8 @@ public class AllTests {
 		TestSuite suite = new TestSuite("org.eclipse.dltk.core.tests.model");
 		// $JUnit-BEGIN$
 		suite.addTest(new TestSuite(BuildParticipantManagerTests.class));
+		suite.addTest(new JUnit4TestAdapter(ParallelBuildTests.class));
+		suite.addTest(new JUnit4TestAdapter(StateTests.class));
 		suite.addTest(BuildpathTests.suite());
 
 		suite.addTest(new TestSuite(CacheTests.class));
@@ -50,12 +66,14 @@ public class AllTests {
 		suite.addTest(new TestSuite(CompilerUtilTests.class));
 		suite.addTest(new TestSuite(CompilerCharOperationTests.class));
 		suite.addTestSuite(IntListTests.class);
+		suite.addTest(new JUnit4TestAdapter(RuntimePerformanceMonitorTests.class));
 
 		suite.addTest(CoreDDPTests.suite());
 
 		suite.addTest(EnvironmentResolverTests.suite());
 		suite.addTest(InterpreterConfigTests.suite());
 
+		suite.addTest(new TestSuite(IndexTests.class));
 		suite.addTest(new TestSuite(MixinIndexTests.class));
 		suite.addTest(new TestSuite(MixinModelTests.class));
 
@@ -72,7 +90,17 @@ public class AllTests {
 		suite.addTest(new TestSuite(InternalCoreUtilTest.class));
 		suite.addTest(TextUtilsTest.suite());
 		suite.addTest(new JUnit4TestAdapter(Bug387751Test.class));
+		suite.addTest(new JUnit4TestAdapter(DLTKSearchScopeTests.class));
+		suite.addTest(new JUnit4TestAdapter(JobManagerTests.class));
+		suite.addTest(new JUnit4TestAdapter(ContainerFingerprintTests.class));
+		suite.addTest(new JUnit4TestAdapter(SourceModulesRequestTests.class));
+		suite.addTest(new JUnit4TestAdapter(PatternSearchJobTests.class));
 		suite.addTest(new JUnit4TestAdapter(SourceModuleInfoCacheTest.class));
+		suite.addTest(new JUnit4TestAdapter(ElementCacheTests.class));
+		suite.addTest(new JUnit4TestAdapter(GoalResultCacheTests.class));
+		suite.addTest(new JUnit4TestAdapter(GoalEngineTests.class));
+		suite.addTest(new JUnit4TestAdapter(SuperTypeReferenceCacheTests.class));
+		suite.addTest(new JUnit4TestAdapter(PersistentASTCacheTest.class));
 		suite.addTest(new JUnit4TestAdapter(SetContainerEventsTest.class));
 		// $JUnit-END$
 		return suite;
@@ -12,12 +12,18 @@
 package org.eclipse.dltk.core.tests;
 
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.mixin.IMixinParser;
 import org.eclipse.dltk.core.mixin.IMixinRequestor;
 import org.eclipse.dltk.core.mixin.IMixinRequestor.ElementInfo;
 
 public class TestMixinParser implements IMixinParser {
 
+	/**
+	 * Lines starting with this prefix declare the key that follows
+	 */
+	public static final String MIXIN_KEY = "mixin:";
+
 	private IMixinRequestor requestor;
 
 	public void parserSourceModule(boolean signature, ISourceModule module) {
@@ -28,6 +34,16 @@ public class TestMixinParser implements IMixinParser {
 		}
 		requestor.reportElement(key("Module"));
 		requestor.reportElement(key("Module{gamma"));
+		try {
+			for (String line : module.getSource().split("\n")) {
+				if (line.startsWith(MIXIN_KEY)) {
+					requestor.reportElement(key(line.substring(
+							MIXIN_KEY.length()).trim()));
+				}
+			}
+		} catch (ModelException e) {
+			// ignore
+		}
 	}
 
 	private ElementInfo key(String key) {
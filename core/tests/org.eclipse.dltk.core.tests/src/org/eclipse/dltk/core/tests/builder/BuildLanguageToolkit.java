@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.builder;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.dltk.core.AbstractLanguageToolkit;
+import org.eclipse.dltk.core.IModelStatus;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+
+/**
+ * Language of the build tests, it has its own parser and build participants
+ * so the other tests are not affected by them.
+ */
+public class BuildLanguageToolkit extends AbstractLanguageToolkit {
+
+	public static final String NATURE = "org.eclipse.dltk.core.tests.buildnature";
+
+	@Override
+	public IStatus validateSourceModule(IResource resource) {
+		if (resource.getName().endsWith(".build")) {
+			return IModelStatus.VERIFIED_OK;
+		}
+		return new Status(IStatus.ERROR, ModelTestsPlugin.PLUGIN_NAME,
+				"Not a build test module");
+	}
+
+	public String getNatureId() {
+		return NATURE;
+	}
+
+	public String getLanguageName() {
+		return "Build Test";
+	}
+
+	public String getLanguageContentType() {
+		return "org.eclipse.dltk.core.tests.buildContentType";
+	}
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.builder;
+
+import static org.eclipse.dltk.core.tests.builder.TestBuildParticipantFactory.AFTER_BUILD;
+import static org.eclipse.dltk.core.tests.builder.TestBuildParticipantFactory.BUILT;
+import static org.eclipse.dltk.core.tests.builder.TestBuildParticipantFactory.PARSED;
+import static org.eclipse.dltk.core.tests.builder.TestBuildParticipantFactory.PROBLEM;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.builder.StandardScriptBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Builds the modules of the build test language with its thread-safe parser
+ * and test participants, sequentially and concurrently.
+ */
+public class ParallelBuildTests extends Assert {
+
+	private static final int MODULES = 50;
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "builder");
+
+	private int parallelThreads;
+
+	@Before
+	public void createModules() throws CoreException {
+		parallelThreads = StandardScriptBuilder.setParallelThreads(0);
+		project.getWorkspace().run(new IWorkspaceRunnable() {
+			public void run(IProgressMonitor monitor) throws CoreException {
+				for (int i = 0; i < MODULES; ++i) {
+					project.writeFile("src/m" + i + ".build", "public class M"
+							+ i + " {\n}\n");
+				}
+			}
+		}, null);
+		TestBuildParticipantFactory.reset();
+	}
+
+	@After
+	public void restoreParallelThreads() {
+		StandardScriptBuilder.setParallelThreads(parallelThreads);
+	}
+
+	private void fullBuild() throws CoreException {
+		project.get().build(IncrementalProjectBuilder.FULL_BUILD, null);
+		assertEquals(MODULES + 1, BUILT.size());
+		for (int i = 0; i < MODULES; ++i) {
+			final String name = "m" + i + ".build";
+			assertTrue(name, BUILT.containsKey(name));
+			assertTrue(name, PARSED.containsKey(name));
+			assertTrue(name, AFTER_BUILD.containsKey(name));
+			assertProblemMarker(project.getFile("src/" + name));
+		}
+		assertTrue(PARSED.containsKey("a.build"));
+		assertTrue(AFTER_BUILD.containsKey("a.build"));
+		assertProblemMarker(project.getFile("src/a.build"));
+	}
+
+	private static void assertProblemMarker(IFile file) throws CoreException {
+		final IMarker[] markers = file.findMarkers(
+				DefaultProblem.MARKER_TYPE_PROBLEM, true, IResource.DEPTH_ZERO);
+		assertEquals(file.getName(), 1, markers.length);
+		assertEquals(PROBLEM, markers[0].getAttribute(IMarker.MESSAGE));
+	}
+
+	private static boolean isBuiltOnWorkerThreads() {
+		for (String thread : BUILT.values()) {
+			if (thread.startsWith("DLTK Build Worker")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void sequentialBuild() throws CoreException {
+		fullBuild();
+		assertFalse(isBuiltOnWorkerThreads());
+	}
+
+	@Test
+	public void concurrentBuild() throws CoreException {
+		StandardScriptBuilder.setParallelThreads(2);
+		fullBuild();
+		assertTrue("Modules built on the worker threads",
+				isBuiltOnWorkerThreads());
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.builder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.builder.IBuildState;
+import org.eclipse.dltk.internal.core.builder.ScriptBuilder;
+import org.eclipse.dltk.internal.core.builder.State;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StateTests extends Assert {
+
+	private static final IProject PROJECT = ResourcesPlugin.getWorkspace()
+			.getRoot().getProject("state");
+
+	private static final IPath A = new Path("/state/src/a.txt");
+	private static final IPath B = new Path("/state/src/b.txt");
+	private static final IPath C = new Path("/state/src/folder/c.txt");
+	private static final IPath D = new Path("/state/src/folder/d.txt");
+	private static final IPath EXTERNAL = new Path("/other/src/e.txt");
+
+	private static class TestState extends State {
+		TestState() {
+			super(PROJECT);
+		}
+
+		void add(IPath path, IPath dependency, int flags) {
+			recordDependency(path, dependency, flags);
+		}
+
+		void remove(IPath... paths) {
+			removeDependenciesFor(new HashSet<IPath>(Arrays.asList(paths)));
+		}
+
+		Set<IPath> dependentsOf(IPath path) {
+			final Set<IPath> result = new HashSet<IPath>();
+			findDependenciesOf(Collections.singleton(path),
+					Collections.singleton(path), false, result,
+					new HashSet<IPath>());
+			return result;
+		}
+	}
+
+	private static byte[] write(State state) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		ScriptBuilder.writeState(state, out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static State read(byte[] bytes) throws IOException {
+		return ScriptBuilder.readState(PROJECT, new DataInputStream(
+				new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Returns the written state without the header (version, project name,
+	 * build number and build time)
+	 */
+	private static byte[] withoutHeader(byte[] bytes) throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+		in.readByte();
+		in.readUTF();
+		in.readInt();
+		in.readLong();
+		final byte[] result = new byte[in.available()];
+		in.readFully(result);
+		return result;
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		final TestState state = new TestState();
+		state.add(A, B, IBuildState.STRUCTURAL);
+		state.add(A, C, IBuildState.CONTENT | IBuildState.EXPORTED);
+		state.add(C, B, IBuildState.STRUCTURAL);
+		state.add(D, C, IBuildState.CONTENT);
+		state.add(D, EXTERNAL, IBuildState.STRUCTURAL);
+		assertEquals(new HashSet<IPath>(Arrays.asList(A, C)),
+				state.dependentsOf(B));
+
+		final byte[] bytes = write(state);
+		final State restored = read(bytes);
+		assertNotNull(restored);
+		assertArrayEquals(bytes, write(restored));
+		assertFalse(Arrays.equals(withoutHeader(bytes),
+				withoutHeader(write(new TestState()))));
+	}
+
+	@Test
+	public void flagsMerged() throws IOException {
+		final TestState state = new TestState();
+		state.add(A, B, IBuildState.STRUCTURAL);
+		state.add(A, B, IBuildState.CONTENT);
+		final TestState expected = new TestState();
+		expected.add(A, B, IBuildState.STRUCTURAL | IBuildState.CONTENT);
+		assertArrayEquals(withoutHeader(write(expected)),
+				withoutHeader(write(state)));
+		assertArrayEquals(withoutHeader(write(expected)),
+				withoutHeader(write(read(write(state)))));
+	}
+
+	@Test
+	public void removedPathsNotWritten() throws IOException {
+		final TestState state = new TestState();
+		state.add(A, B, IBuildState.STRUCTURAL);
+		state.add(C, D, IBuildState.CONTENT);
+		state.add(D, B, IBuildState.STRUCTURAL);
+		state.remove(C, D);
+		assertTrue(state.dependentsOf(D).isEmpty());
+		assertEquals(Collections.singleton(A), state.dependentsOf(B));
+
+		final TestState expected = new TestState();
+		expected.add(A, B, IBuildState.STRUCTURAL);
+		assertArrayEquals(withoutHeader(write(expected)),
+				withoutHeader(write(state)));
+		assertArrayEquals(withoutHeader(write(expected)),
+				withoutHeader(write(read(write(state)))));
+	}
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.builder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.builder.IBuildContext;
+import org.eclipse.dltk.core.builder.IBuildParticipant;
+import org.eclipse.dltk.core.builder.IBuildParticipantExtension4;
+import org.eclipse.dltk.core.builder.IBuildParticipantExtension5;
+import org.eclipse.dltk.core.builder.IBuildParticipantFactory;
+
+/**
+ * Thread-safe build participant of the build test language, records the
+ * modules it builds and reports a {@link #PROBLEM} in each of them.
+ */
+public class TestBuildParticipantFactory implements IBuildParticipantFactory {
+
+	/**
+	 * Message of the problem reported in every built module
+	 */
+	public static final String PROBLEM = "Built by the test participant";
+
+	/**
+	 * Names of the built modules, mapped to the names of the threads which
+	 * built them
+	 */
+	public static final Map<String, String> BUILT = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Names of the modules which AST was available when they were built
+	 */
+	public static final Map<String, Boolean> PARSED = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * Names of the modules for which afterBuild() was called
+	 */
+	public static final Map<String, Boolean> AFTER_BUILD = new ConcurrentHashMap<String, Boolean>();
+
+	public static void reset() {
+		BUILT.clear();
+		PARSED.clear();
+		AFTER_BUILD.clear();
+	}
+
+	public IBuildParticipant createBuildParticipant(IScriptProject project)
+			throws CoreException {
+		return new TestBuildParticipant();
+	}
+
+	private static class TestBuildParticipant implements
+			IBuildParticipantExtension4, IBuildParticipantExtension5 {
+
+		public boolean isThreadSafe() {
+			return true;
+		}
+
+		public void build(IBuildContext context) throws CoreException {
+			final String name = context.getSourceModule().getElementName();
+			BUILT.put(name, Thread.currentThread().getName());
+			context.getProblemReporter().reportProblem(
+					new DefaultProblem(PROBLEM, 0, null, ProblemSeverity.ERROR,
+							0, 1, 1));
+			if (context.get(IBuildContext.ATTR_MODULE_DECLARATION) != null) {
+				PARSED.put(name, Boolean.TRUE);
+			}
+		}
+
+		public void notifyDependents(IBuildParticipant[] dependents) {
+		}
+
+		public void afterBuild(IBuildContext context) {
+			AFTER_BUILD.put(context.getSourceModule().getElementName(),
+					Boolean.TRUE);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.dltk.core.AbstractLanguageToolkit;
+import org.eclipse.dltk.core.IModelStatus;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+
+/**
+ * Language of the AST cache tests, the core AST cache is only
+ * registered for it so the ASTs of the other tests are not cached.
+ */
+public class ASTCacheLanguageToolkit extends AbstractLanguageToolkit {
+
+	public static final String NATURE = "org.eclipse.dltk.core.tests.astcachenature";
+
+	@Override
+	public IStatus validateSourceModule(IResource resource) {
+		if (resource.getName().endsWith(".ast")) {
+			return IModelStatus.VERIFIED_OK;
+		}
+		return new Status(IStatus.ERROR, ModelTestsPlugin.PLUGIN_NAME,
+				"Not an AST cache test module");
+	}
+
+	public String getNatureId() {
+		return NATURE;
+	}
+
+	public String getLanguageName() {
+		return "AST Cache Test";
+	}
+
+	public String getLanguageContentType() {
+		return "org.eclipse.dltk.core.tests.astCacheContentType";
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.dltk.core.IBuffer;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.ElementCache;
+import org.eclipse.dltk.internal.core.ModelCache;
+import org.eclipse.dltk.internal.core.OpenableElementInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ElementCache#shed(double)} and the footprints set by
+ * {@link ModelCache}.
+ */
+public class ElementCacheTests extends Assert {
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "cache");
+
+	private static class TestModelCache extends ModelCache {
+		@Override
+		public void updateFootprint(IModelElement openedElement,
+				Map newElements) {
+			super.updateFootprint(openedElement, newElements);
+		}
+	}
+
+	private static OpenableElementInfo createInfo(int footprint) {
+		final OpenableElementInfo info = new OpenableElementInfo();
+		info.setCacheFootprint(footprint);
+		return info;
+	}
+
+	private ISourceModule getModule(int index) {
+		return project.getSourceModule("src/folder1/m" + index + ".txt");
+	}
+
+	@Test
+	public void shed() throws ModelException {
+		final ISourceModule a = project.getSourceModule("src/folder1/a.txt");
+		final ISourceModule b = project.getSourceModule("src/folder1/b.txt");
+		final ISourceModule workingCopy = a.getWorkingCopy(null);
+		final IBuffer buffer = b.getBuffer();
+		try {
+			buffer.append("//unsaved\n");
+			assertTrue(b.hasUnsavedChanges());
+
+			final ElementCache cache = new ElementCache(100);
+			// the least recently used ones
+			cache.put(workingCopy, createInfo(1));
+			cache.put(b, createInfo(1));
+			for (int i = 0; i < 10; ++i) {
+				cache.put(getModule(i), createInfo(2));
+			}
+			assertEquals(22, cache.getCurrentSpace());
+
+			final int freed = cache.shed(0.5);
+			assertEquals(22 - cache.getCurrentSpace(), freed);
+			assertTrue(cache.getCurrentSpace() <= 11);
+			assertEquals("the 6 least recently used modules are closed", 12,
+					freed);
+			assertEquals(100, cache.getSpaceLimit());
+			assertNotNull("the working copy is kept", cache.peek(workingCopy));
+			assertNotNull("the unsaved module is kept", cache.peek(b));
+			for (int i = 0; i < 6; ++i) {
+				assertNull(cache.peek(getModule(i)));
+			}
+			for (int i = 6; i < 10; ++i) {
+				assertNotNull(cache.peek(getModule(i)));
+			}
+		} finally {
+			buffer.close();
+			workingCopy.discardWorkingCopy();
+		}
+	}
+
+	/**
+	 * The elements read since the last modification are closed last.
+	 */
+	@Test
+	public void shedAccessed() {
+		final ElementCache cache = new ElementCache(100);
+		for (int i = 0; i < 4; ++i) {
+			cache.put(getModule(i), createInfo(1));
+		}
+		assertNotNull(cache.get(getModule(0)));
+		assertEquals(2, cache.shed(0.5));
+		assertNotNull(cache.peek(getModule(0)));
+		assertNull(cache.peek(getModule(1)));
+		assertNull(cache.peek(getModule(2)));
+		assertNotNull(cache.peek(getModule(3)));
+	}
+
+	@Test
+	public void updateFootprint() {
+		final TestModelCache cache = new TestModelCache();
+		final ISourceModule module = getModule(0);
+		final int childrenPerOpenable = ModelCache.DEFAULT_CHILDREN_SIZE
+				/ ModelCache.DEFAULT_OPENABLE_SIZE;
+		final Map<IModelElement, Object> elements = new HashMap<IModelElement, Object>();
+		final OpenableElementInfo info = new OpenableElementInfo();
+		elements.put(module, info);
+		cache.updateFootprint(module, elements);
+		assertEquals(1, info.getCacheFootprint());
+
+		for (int i = 0; i < 2 * childrenPerOpenable + 1; ++i) {
+			elements.put(module.getType("T" + i), new Object());
+		}
+		// the children of the other modules are not counted
+		elements.put(getModule(1).getType("T"), new Object());
+		cache.updateFootprint(module, elements);
+		assertEquals(3, info.getCacheFootprint());
+
+		final ElementCache elementCache = new ElementCache(100);
+		elementCache.put(module, info);
+		assertEquals(3, elementCache.getCurrentSpace());
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.ti.BasicContext;
+import org.eclipse.dltk.ti.GoalResultCache;
+import org.eclipse.dltk.ti.goals.ExpressionTypeGoal;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class GoalResultCacheTests extends Assert {
+
+	private static final String DOMAIN = "domain";
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "cache");
+
+	private GoalResultCache cache;
+	private ISourceModule module;
+	private ModuleDeclaration rootNode;
+
+	@Before
+	public void setUp() {
+		cache = new GoalResultCache(10);
+		cache.start();
+		module = project.getSourceModule("src/folder1/a.txt");
+		assertNotNull(module);
+		rootNode = new ModuleDeclaration(0);
+	}
+
+	@After
+	public void tearDown() {
+		cache.stop();
+	}
+
+	private static IGoal createGoal(ISourceModule module,
+			ModuleDeclaration rootNode) {
+		return new ExpressionTypeGoal(new BasicContext(module, rootNode),
+				rootNode);
+	}
+
+	@Test
+	public void hit() {
+		cache.put(DOMAIN, createGoal(module, rootNode), "result",
+				cache.getGeneration());
+		assertEquals("result", cache.get(DOMAIN, createGoal(module, rootNode)));
+		assertNull(cache.get("other", createGoal(module, rootNode)));
+		assertNull("results of an older AST are not returned", cache.get(
+				DOMAIN, new ExpressionTypeGoal(new BasicContext(module,
+						new ModuleDeclaration(0)), rootNode)));
+	}
+
+	@Test
+	public void size() {
+		final List<IGoal> goals = new ArrayList<IGoal>();
+		for (int i = 0; i < 11; ++i) {
+			final IGoal goal = new ExpressionTypeGoal(new BasicContext(module,
+					rootNode), new ModuleDeclaration(i));
+			goals.add(goal);
+			cache.put(DOMAIN, goal, Integer.valueOf(i), cache.getGeneration());
+		}
+		assertNull("the eldest result is dropped",
+				cache.get(DOMAIN, goals.get(0)));
+		for (int i = 1; i < 11; ++i) {
+			assertEquals(Integer.valueOf(i), cache.get(DOMAIN, goals.get(i)));
+		}
+	}
+
+	@Test
+	public void disabled() {
+		final GoalResultCache disabled = new GoalResultCache(0);
+		disabled.put(DOMAIN, createGoal(module, rootNode), "result",
+				disabled.getGeneration());
+		assertNull(disabled.get(DOMAIN, createGoal(module, rootNode)));
+	}
+
+	@Test
+	public void generation() {
+		final long generation = cache.getGeneration();
+		cache.clear();
+		assertTrue(generation != cache.getGeneration());
+		cache.put(DOMAIN, createGoal(module, rootNode), "result", generation);
+		assertNull("the result computed before clear() is not stored",
+				cache.get(DOMAIN, createGoal(module, rootNode)));
+	}
+
+	@Test
+	public void moduleChanged() throws CoreException {
+		final long generation = cache.getGeneration();
+		cache.put(DOMAIN, createGoal(module, rootNode), "result", generation);
+		assertEquals("result", cache.get(DOMAIN, createGoal(module, rootNode)));
+		final IFile file = (IFile) module.getResource();
+		file.setContents(new ByteArrayInputStream(
+				(project.getFileContentsAsString(file) + "//change\n")
+						.getBytes()), IResource.NONE, null);
+		assertNull(cache.get(DOMAIN, createGoal(module, rootNode)));
+		assertTrue(generation != cache.getGeneration());
+		cache.put(DOMAIN, createGoal(module, rootNode), "result", generation);
+		assertNull("the result computed before the change is not stored",
+				cache.get(DOMAIN, createGoal(module, rootNode)));
+	}
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import static org.eclipse.dltk.core.SourceParserUtil.getCache;
+
+import java.io.ByteArrayInputStream;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.ast.declarations.Argument;
+import org.eclipse.dltk.ast.declarations.MethodDeclaration;
+import org.eclipse.dltk.ast.declarations.ModuleDeclaration;
+import org.eclipse.dltk.ast.declarations.TypeDeclaration;
+import org.eclipse.dltk.ast.expressions.CallArgumentsList;
+import org.eclipse.dltk.ast.expressions.CallExpression;
+import org.eclipse.dltk.ast.expressions.StringLiteral;
+import org.eclipse.dltk.ast.parser.ASTCacheManager;
+import org.eclipse.dltk.ast.parser.IASTCache;
+import org.eclipse.dltk.ast.parser.IASTCache.ASTCacheEntry;
+import org.eclipse.dltk.ast.references.SimpleReference;
+import org.eclipse.dltk.ast.statements.Block;
+import org.eclipse.dltk.compiler.problem.DefaultProblem;
+import org.eclipse.dltk.compiler.problem.IProblem;
+import org.eclipse.dltk.compiler.problem.ProblemCollector;
+import org.eclipse.dltk.compiler.problem.ProblemSeverity;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.SourceParserUtil;
+import org.eclipse.dltk.core.caching.CoreASTCache;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class PersistentASTCacheTest extends Assert {
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "cache");
+
+	@Rule
+	public final ProjectSetup astProject = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "astcache");
+
+	private final CoreASTCache cache = new CoreASTCache();
+
+	private static class SizedCache extends CoreASTCache {
+		private final int maxSize;
+
+		SizedCache(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected int getMaxSize() {
+			return maxSize;
+		}
+
+		long size() {
+			return getTotalSize();
+		}
+	}
+
+	@Before
+	public void clearCache() {
+		getCache().clear();
+	}
+
+	private ISourceModule getModule() {
+		return getModule("folder1/a.txt");
+	}
+
+	private ISourceModule getModule(String path) {
+		final ISourceModule module = project.getSourceModule("src/" + path);
+		assertNotNull(module);
+		assertTrue(module.exists());
+		return module;
+	}
+
+	/**
+	 * Returns the size of the entry of the specified module
+	 */
+	private static int getEntrySize(ISourceModule module) {
+		final SizedCache unlimited = new SizedCache(Integer.MAX_VALUE);
+		unlimited.storeModule(module, createModule(), null);
+		assertTrue(unlimited.size() > 0);
+		return (int) unlimited.size();
+	}
+
+	private static ModuleDeclaration createModule() {
+		final ModuleDeclaration module = new ModuleDeclaration(100);
+		final TypeDeclaration type = new TypeDeclaration("A", 6, 7, 0, 90);
+		type.setModifiers(TypeDeclaration.AccPublic);
+		type.setComments("/** A */");
+		type.addSuperClass(new SimpleReference(16, 17, "B"));
+		final MethodDeclaration method = new MethodDeclaration("foo", 25, 28,
+				20, 80);
+		method.setDeclaringTypeName("A");
+		method.addArgument(new Argument(new SimpleReference(29, 30, "x"), 29,
+				new StringLiteral(31, 34, "\"x\""), 0));
+		final CallArgumentsList arguments = new CallArgumentsList(45, 50);
+		arguments.addNode(new SimpleReference(46, 47, "x"));
+		method.acceptBody(new Block(40, 80), false);
+		method.getBody().addStatement(
+				new CallExpression(40, 50, null, new SimpleReference(40, 44,
+						"bar"), arguments));
+		final Block body = new Block(10, 90);
+		body.addStatement(method);
+		type.setBody(10, body, 90);
+		module.addStatement(type);
+		module.addStatement(new CallExpression(91, 99, new SimpleReference(
+				91, 92, "A"), "foo", CallArgumentsList.EMPTY));
+		return module;
+	}
+
+	@Test
+	public void roundTrip() {
+		final ISourceModule module = getModule();
+		final ProblemCollector problems = new ProblemCollector();
+		problems.reportProblem(new DefaultProblem("error", 0, null,
+				ProblemSeverity.ERROR, 1, 2, 3));
+		problems.reportTask("TODO", 4, 1, 5, 6);
+		cache.storeModule(module, createModule(), problems);
+
+		final ASTCacheEntry entry = cache.restoreModule(module);
+		assertNotNull(entry);
+		assertNotNull(entry.problems);
+		assertEquals(2, entry.problems.getProblems().size());
+		final IProblem problem = entry.problems.getProblems().get(0);
+		assertEquals("error", problem.getMessage());
+		assertEquals(ProblemSeverity.ERROR, problem.getSeverity());
+		assertEquals(1, problem.getSourceStart());
+		assertEquals(2, problem.getSourceEnd());
+		assertEquals(3, problem.getSourceLineNumber());
+		final IProblem task = entry.problems.getProblems().get(1);
+		assertEquals("TODO", task.getMessage());
+		assertEquals(4, task.getSourceLineNumber());
+
+		final ModuleDeclaration restored = (ModuleDeclaration) entry.module;
+		assertEquals(ModuleDeclaration.class, restored.getClass());
+		assertEquals(100, restored.sourceEnd());
+		assertEquals(2, restored.getStatements().size());
+		final TypeDeclaration type = restored.getTypes()[0];
+		assertEquals("A", type.getName());
+		assertEquals(6, type.getNameStart());
+		assertEquals(7, type.getNameEnd());
+		assertEquals(0, type.sourceStart());
+		assertEquals(90, type.sourceEnd());
+		assertEquals(TypeDeclaration.AccPublic, type.getModifiers());
+		assertEquals("/** A */", type.getComments());
+		assertEquals(10, type.getBodyStart());
+		assertEquals(90, type.getBodyEnd());
+		assertEquals(1, type.getSuperClassNames().size());
+		assertEquals("B", type.getSuperClassNames().get(0));
+
+		final MethodDeclaration method = type.getMethods()[0];
+		assertEquals("foo", method.getName());
+		assertEquals(25, method.getNameStart());
+		assertEquals(80, method.sourceEnd());
+		assertEquals("A", method.getDeclaringTypeName());
+		assertEquals(1, method.getArguments().size());
+		final Argument argument = (Argument) method.getArguments().get(0);
+		assertEquals("x", argument.getName());
+		assertEquals("\"x\"",
+				((StringLiteral) argument.getInitialization()).getValue());
+		final CallExpression call = (CallExpression) method.getStatements()
+				.get(0);
+		assertEquals("bar", call.getName());
+		assertNull(call.getReceiver());
+		assertEquals(45, call.getArgs().sourceStart());
+		assertEquals("x", ((SimpleReference) call.getArgs().getChilds().get(0))
+				.getName());
+
+		final CallExpression moduleCall = (CallExpression) restored
+				.getStatements().get(1);
+		assertEquals("A", ((SimpleReference) moduleCall.getReceiver())
+				.getName());
+		assertSame(CallArgumentsList.EMPTY, moduleCall.getArgs());
+	}
+
+	@Test
+	public void moduleModify() throws CoreException {
+		final ISourceModule module = getModule();
+		cache.storeModule(module, createModule(), null);
+		assertNotNull(cache.restoreModule(module));
+
+		final IFile file = (IFile) module.getResource();
+		final String contents = project.getFileContentsAsString(file);
+		file.setContents(
+				new ByteArrayInputStream((contents + "//change\n").getBytes()),
+				IResource.NONE, null);
+		assertNull(cache.restoreModule(module));
+	}
+
+	@Test
+	public void unsupportedNode() {
+		final ISourceModule module = getModule();
+		final ModuleDeclaration declaration = createModule();
+		declaration.addStatement(new SimpleReference(0, 1, "x") {
+		});
+		cache.storeModule(module, declaration, null);
+		assertNull(cache.restoreModule(module));
+	}
+
+	@Test
+	public void workingCopy() throws CoreException {
+		final ISourceModule module = getModule();
+		final ISourceModule workingCopy = module.getWorkingCopy(null);
+		try {
+			cache.storeModule(workingCopy, createModule(), null);
+			assertNull(cache.restoreModule(workingCopy));
+		} finally {
+			workingCopy.discardWorkingCopy();
+		}
+	}
+
+	@Test
+	public void maxSize() {
+		final ISourceModule a = getModule("folder1/a.txt");
+		final ISourceModule b = getModule("folder1/b.txt");
+		final int size = getEntrySize(a);
+		final SizedCache sized = new SizedCache(size + size / 2);
+		sized.storeModule(a, createModule(), null);
+		assertNotNull(sized.restoreModule(a));
+		sized.storeModule(b, createModule(), null);
+		assertTrue(sized.size() <= size + size / 2);
+		assertNull("the eldest entry is removed", sized.restoreModule(a));
+		assertNotNull(sized.restoreModule(b));
+	}
+
+	@Test
+	public void leastRecentlyUsed() throws CoreException {
+		project.writeFile("src/folder1/c.txt", "public class C {\n}\n");
+		final ISourceModule a = getModule("folder1/a.txt");
+		final ISourceModule b = getModule("folder1/b.txt");
+		final ISourceModule c = getModule("folder1/c.txt");
+		final int size = getEntrySize(a);
+		final SizedCache sized = new SizedCache(size * 2 + size / 2);
+		sized.storeModule(a, createModule(), null);
+		sized.storeModule(b, createModule(), null);
+		assertNotNull(sized.restoreModule(a));
+		sized.storeModule(c, createModule(), null);
+		assertNull("the least recently used entry is removed",
+				sized.restoreModule(b));
+		assertNotNull(sized.restoreModule(a));
+		assertNotNull(sized.restoreModule(c));
+	}
+
+	@Test
+	public void registered() {
+		final IASTCache[] providers = ASTCacheManager
+				.getProviders(ASTCacheLanguageToolkit.NATURE);
+		assertNotNull(providers);
+		IASTCache provider = null;
+		for (IASTCache p : providers) {
+			if (p instanceof CoreASTCache) {
+				provider = p;
+			}
+		}
+		assertNotNull(provider);
+		final ISourceModule module = astProject.getSourceModule("src/a.ast");
+		assertTrue(module.exists());
+		assertNotNull(SourceParserUtil.parse(module, null));
+		assertNotNull(provider.restoreModule(module));
+		assertNull(
+				"not registered for the other languages",
+				ASTCacheManager.getProviders(ModelTestsPlugin.TEST_NATURE));
+	}
+}
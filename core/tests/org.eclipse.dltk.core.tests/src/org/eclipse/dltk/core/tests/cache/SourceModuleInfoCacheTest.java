@@ -15,8 +15,10 @@ import static org.eclipse.dltk.core.SourceParserUtil.getCache;
 import static org.hamcrest.CoreMatchers.not;
 
 import java.io.ByteArrayInputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IResource;
@@ -26,10 +28,12 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.dltk.core.IModelElement;
 import org.eclipse.dltk.core.IScriptFolder;
 import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ISourceModuleInfoCache.ISourceModuleInfo;
 import org.eclipse.dltk.core.ModelException;
 import org.eclipse.dltk.core.SourceParserUtil;
 import org.eclipse.dltk.core.tests.ProjectSetup;
 import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.SourceModuleInfoCache;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -201,4 +205,93 @@ public class SourceModuleInfoCacheTest extends Assert {
 		assertThat(modules.get(0), not(IS_CACHED));
 	}
 
+	private List<ISourceModule> createHandles(int count) {
+		final IScriptFolder folder = project.getScriptFolder("src", "folder1");
+		final List<ISourceModule> modules = new ArrayList<ISourceModule>();
+		for (int i = 0; i < count; ++i) {
+			modules.add(folder.getSourceModule("h" + i + ".txt"));
+		}
+		return modules;
+	}
+
+	@Test
+	public void evictionOrder() {
+		final SourceModuleInfoCache cache = new SourceModuleInfoCache(10, 4);
+		final List<ISourceModule> modules = createHandles(11);
+		final List<ISourceModuleInfo> infos = new ArrayList<ISourceModuleInfo>();
+		for (ISourceModule module : modules.subList(0, 10)) {
+			infos.add(cache.get(module));
+		}
+		assertEquals(10, cache.size());
+		// m0 becomes the most recently used one
+		assertSame(infos.get(0), cache.get(modules.get(0)));
+		infos.add(cache.get(modules.get(10)));
+		// the least recently used tenth is removed with the extra entry
+		assertEquals(9, cache.size());
+		for (int i = 0; i < modules.size(); ++i) {
+			if (i != 1 && i != 2) {
+				assertSame(modules.get(i).getElementName(), infos.get(i),
+						cache.get(modules.get(i)));
+			}
+		}
+		assertEquals(9, cache.size());
+	}
+
+	@Test
+	public void pinned() {
+		final SourceModuleInfoCache cache = new SourceModuleInfoCache(10, 4);
+		final List<ISourceModule> modules = createHandles(20);
+		final ISourceModule first = modules.get(0);
+		cache.pin(first);
+		cache.pin(first);
+		final ISourceModuleInfo info = cache.get(first);
+		for (ISourceModule module : modules.subList(1, 15)) {
+			cache.get(module);
+		}
+		assertSame(info, cache.get(first));
+		cache.unpin(first);
+		for (ISourceModule module : modules.subList(1, 15)) {
+			cache.get(module);
+		}
+		assertSame("still pinned once", info, cache.get(first));
+		cache.unpin(first);
+		for (ISourceModule module : modules) {
+			cache.get(module);
+		}
+		assertNotSame(info, cache.get(first));
+		// unbalanced calls are ignored
+		cache.unpin(first);
+	}
+
+	@Test
+	public void removeReleasesInfo() throws InterruptedException {
+		final SourceModuleInfoCache cache = new SourceModuleInfoCache(10, 4);
+		final ISourceModule module = createHandles(1).get(0);
+		final WeakReference<ISourceModuleInfo> ref = new WeakReference<ISourceModuleInfo>(
+				cache.get(module));
+		cache.remove(module);
+		assertEquals(0, cache.size());
+		for (int i = 0; i < 10 && ref.get() != null; ++i) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull("the info is no longer referenced by the cache",
+				ref.get());
+	}
+
+	@Test
+	public void statistics() {
+		final SourceModuleInfoCache cache = new SourceModuleInfoCache(10, 4);
+		final ISourceModule module = createHandles(1).get(0);
+		ISourceModuleInfo info = cache.get(module);
+		assertNull(info.get("key"));
+		info.put("key", "value");
+		info = cache.get(module);
+		assertEquals("value", info.get("key"));
+		assertEquals("value", info.get("key"));
+		final Map<String, long[]> statistics = cache.getStatistics();
+		assertArrayEquals(new long[] { 1, 1 }, statistics.get(null));
+		assertArrayEquals(new long[] { 2, 1 }, statistics.get("key"));
+	}
+
 }
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.cache;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IType;
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.IPathRequestor;
+import org.eclipse.dltk.internal.core.hierarchy.IndexBasedHierarchyBuilder;
+import org.eclipse.dltk.internal.core.hierarchy.SuperTypeReferenceCache;
+import org.eclipse.dltk.internal.core.hierarchy.SuperTypeReferenceCache.Reference;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class SuperTypeReferenceCacheTests extends Assert {
+
+	private static final String A = "/hierarchy/src/a.txt";
+	private static final String B = "/hierarchy/src2/b.txt";
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "hierarchy");
+
+	private SuperTypeReferenceCache cache;
+	private IDLTKLanguageToolkit toolkit;
+
+	@Before
+	public void setUp() {
+		cache = new SuperTypeReferenceCache();
+		cache.start();
+		toolkit = DLTKLanguageManager.getLanguageToolkit(project
+				.getScriptProject());
+	}
+
+	@After
+	public void tearDown() {
+		cache.stop();
+	}
+
+	private static Set<String> describe(List<Reference> references) {
+		assertNotNull(references);
+		final Set<String> result = new HashSet<String>();
+		for (Reference reference : references) {
+			result.add(reference.getPath() + "#"
+					+ new String(reference.getTypeName())
+					+ (reference.isLocal() ? " local" : ""));
+		}
+		return result;
+	}
+
+	private static Set<String> set(String... values) {
+		return new HashSet<String>(Arrays.asList(values));
+	}
+
+	/**
+	 * Returns the references as loaded from the index by a new cache
+	 */
+	private Set<String> indexed(String superName) {
+		final SuperTypeReferenceCache fresh = new SuperTypeReferenceCache();
+		return describe(fresh.getReferences(toolkit, superName, null));
+	}
+
+	private void setContents(String path, String contents)
+			throws CoreException {
+		final IFile file = project.getFile(path);
+		file.setContents(new ByteArrayInputStream(contents.getBytes()),
+				IResource.NONE, null);
+	}
+
+	@Test
+	public void load() {
+		assertFalse(cache.isLoaded(toolkit, "Base"));
+		final Set<String> expected = set(A + "#A", A + "#Inner", A
+				+ "#InMethod local", A + "#InField local", B + "#B");
+		assertEquals(expected,
+				describe(cache.getReferences(toolkit, "Base", null)));
+		assertTrue(cache.isLoaded(toolkit, "Base"));
+		assertEquals(expected,
+				describe(cache.getReferences(toolkit, "Base", null)));
+		assertTrue(describe(cache.getReferences(toolkit, "A", null))
+				.isEmpty());
+	}
+
+	/**
+	 * The references of the changed modules are read from the model, they
+	 * must be the same as the ones the indexer records.
+	 */
+	@Test
+	public void moduleChanged() throws CoreException {
+		cache.getReferences(toolkit, "Base", null);
+		setContents("src/a.txt", "# parseme!\n" //
+				+ "enterType A Base\n" //
+				+ "exitType\n" //
+				+ "enterField g\n" //
+				+ "enterType InField2 Base\n" //
+				+ "exitType\n" //
+				+ "exitField\n");
+		setContents("src2/b.txt", "# parseme!\n" //
+				+ "enterType B2 q.Outer$Base\n" //
+				+ "exitType\n");
+		final Set<String> expected = set(A + "#A", A + "#InField2 local", B
+				+ "#B2");
+		assertEquals(expected,
+				describe(cache.getReferences(toolkit, "Base", null)));
+		assertEquals(expected, indexed("Base"));
+	}
+
+	@Test
+	public void moduleRemoved() throws CoreException {
+		cache.getReferences(toolkit, "Base", null);
+		project.getFile("src2/b.txt").delete(true, null);
+		final Set<String> expected = set(A + "#A", A + "#Inner", A
+				+ "#InMethod local", A + "#InField local");
+		assertEquals(expected,
+				describe(cache.getReferences(toolkit, "Base", null)));
+		assertEquals(expected, indexed("Base"));
+	}
+
+	@Test
+	public void buildpathChanged() throws CoreException {
+		cache.getReferences(toolkit, "Base", null);
+		assertTrue(cache.isLoaded(toolkit, "Base"));
+		project.getScriptProject().setRawBuildpath(
+				new IBuildpathEntry[] { DLTKCore.newSourceEntry(project.get()
+						.getFullPath().append("src")) }, null);
+		assertFalse(cache.isLoaded(toolkit, "Base"));
+		assertFalse(describe(cache.getReferences(toolkit, "Base", null))
+				.contains(B + "#B"));
+	}
+
+	private static Set<String> searchSubTypes(IType type,
+			IDLTKSearchScope scope) {
+		final Set<String> paths = new HashSet<String>();
+		IndexBasedHierarchyBuilder.searchAllPossibleSubTypes(type, scope,
+				null, new IPathRequestor() {
+					public void acceptPath(String path,
+							boolean containsLocalTypes) {
+						paths.add(path);
+					}
+				}, IDLTKSearchConstants.WAIT_UNTIL_READY_TO_SEARCH, null);
+		return paths;
+	}
+
+	/**
+	 * The cached references are shared by all the scopes, the hierarchy
+	 * builder only accepts the ones its scope encloses.
+	 */
+	@Test
+	public void scope() throws CoreException {
+		final IType base = project.getSourceModule("src", "base.txt").getType(
+				"Base");
+		assertTrue(base.exists());
+		final IDLTKSearchScope src = SearchEngine.createSearchScope(project
+				.getProjectFragment("src"));
+		final IDLTKSearchScope all = SearchEngine.createSearchScope(project
+				.getScriptProject());
+		for (int i = 0; i < 2; ++i) {
+			assertEquals(set(A), searchSubTypes(base, src));
+			assertEquals(set(A, B), searchSubTypes(base, all));
+		}
+	}
+}
@@ -47,6 +47,16 @@ public class MixinIndexTests extends TestCase {
 		super.tearDown();
 	}
 
+	private void save() throws IOException {
+		// Index.save() requires the write lock
+		index.monitor.enterWrite();
+		try {
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
 	public void testQuery() throws IOException {
 		index.addIndexEntry(IIndexConstants.MIXIN, "key1".toCharArray(), "A");
 		index.addIndexEntry(IIndexConstants.MIXIN, "key1".toCharArray(), "B");
@@ -94,7 +104,7 @@ public class MixinIndexTests extends TestCase {
 	public void testDocumentsWithoutKeys() throws IOException {
 		index.addDocumentName("A");
 		assertTrue(index.hasChanged());
-		index.save();
+		save();
 		index = createIndex(false);
 		String[] docNames = index.queryDocumentNames(null);
 		assertEquals(1, docNames.length);
@@ -104,7 +114,7 @@ public class MixinIndexTests extends TestCase {
 	public void testDocumentsWithoutKeysHasChanged() throws IOException {
 		index.addDocumentName("A");
 		assertTrue(index.hasChanged());
-		index.save();
+		save();
 		assertFalse(index.hasChanged());
 		index.addDocumentName("A");
 		assertFalse(index.hasChanged());
@@ -11,12 +11,21 @@
  *******************************************************************************/
 package org.eclipse.dltk.core.tests.mixin;
 
+import java.io.ByteArrayInputStream;
+
 import junit.framework.TestCase;
 
+import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.ISourceModule;
 import org.eclipse.dltk.core.mixin.IMixinElement;
 import org.eclipse.dltk.core.mixin.MixinModel;
 import org.eclipse.dltk.core.search.index.MixinIndex;
+import org.eclipse.dltk.core.tests.TestMixinParser;
 import org.eclipse.dltk.core.tests.model.AbstractModelTests;
 import org.eclipse.dltk.core.tests.model.TestLanguageToolkit;
 
@@ -74,4 +83,116 @@ public class MixinModelTests extends AbstractModelTests {
 			model.stop();
 		}
 	}
+
+	/**
+	 * A module without keys changed to declare a key under a prefix which is
+	 * already loaded should be parsed again.
+	 */
+	public void testChangedModuleWithoutKeys() throws Throwable {
+		MixinModel model = new MixinModel(TestLanguageToolkit.getDefault());
+		IFile file = project.getFile("X2.txt");
+		String contents = ((ISourceModule) DLTKCore.create(file)).getSource();
+		try {
+			TestCase.assertEquals(3, model.find("{foo*").length);
+			file.setContents(new ByteArrayInputStream((contents + "\n"
+					+ TestMixinParser.MIXIN_KEY + "{foo{$c\n").getBytes()),
+					IResource.FORCE, null);
+			waitUntilIndexesReady();
+			TestCase.assertEquals(4, model.find("{foo*").length);
+		} finally {
+			file.setContents(new ByteArrayInputStream(contents.getBytes()),
+					IResource.FORCE, null);
+			waitUntilIndexesReady();
+			model.stop();
+		}
+	}
+
+	private IFile createFile(String name, String key) throws CoreException {
+		final IFile file = project.getFile(name);
+		file.create(new ByteArrayInputStream((TestMixinParser.MIXIN_KEY + key
+				+ "\n").getBytes()), true, null);
+		return file;
+	}
+
+	private static void assertFound(MixinModel model, String key) {
+		final IMixinElement[] results = model.find(key);
+		TestCase.assertEquals(1, results.length);
+		TestCase.assertEquals(1, results[0].getSourceModules().length);
+	}
+
+	/**
+	 * The cached miss is dropped once a module declaring the key is added.
+	 */
+	public void testAddedModule() throws Throwable {
+		MixinModel model = new MixinModel(TestLanguageToolkit.getDefault());
+		IFile file = null;
+		try {
+			TestCase.assertFalse(model.keyExists("{added"));
+			TestCase.assertNull(model.get("{added"));
+			TestCase.assertEquals(0, model.find("{added").length);
+			file = createFile("Added.txt", "{added");
+			TestCase.assertTrue(model.keyExists("{added"));
+			assertFound(model, "{added");
+		} finally {
+			if (file != null) {
+				file.delete(true, null);
+			}
+			waitUntilIndexesReady();
+			model.stop();
+		}
+	}
+
+	public void testRemovedModule() throws Throwable {
+		MixinModel model = new MixinModel(TestLanguageToolkit.getDefault());
+		IFile file = createFile("Removed.txt", "{removed");
+		try {
+			waitUntilIndexesReady();
+			TestCase.assertTrue(model.keyExists("{removed"));
+			assertFound(model, "{removed");
+			file.delete(true, null);
+			TestCase.assertFalse(model.keyExists("{removed"));
+			TestCase.assertEquals(0, model.find("{removed").length);
+		} finally {
+			if (file.exists()) {
+				file.delete(true, null);
+			}
+			waitUntilIndexesReady();
+			model.stop();
+		}
+	}
+
+	/**
+	 * A module declaring the key is added while the key is looked up: the
+	 * miss computed before must not be remembered.
+	 */
+	public void testModuleAddedDuringLookup() throws Throwable {
+		final IFile file = project.getFile("Race.txt");
+		MixinModel model = new MixinModel(TestLanguageToolkit.getDefault()) {
+			@Override
+			public ISourceModule[] findModules(String key,
+					IProgressMonitor monitor) {
+				final ISourceModule[] modules = super.findModules(key, monitor);
+				if (key.equals("{race") && !file.exists()) {
+					try {
+						createFile(file.getName(), key);
+					} catch (CoreException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				return modules;
+			}
+		};
+		try {
+			TestCase.assertFalse(model.keyExists("{race"));
+			TestCase.assertTrue(file.exists());
+			TestCase.assertTrue(model.keyExists("{race"));
+			assertFound(model, "{race");
+		} finally {
+			if (file.exists()) {
+				file.delete(true, null);
+			}
+			waitUntilIndexesReady();
+			model.stop();
+		}
+	}
 }
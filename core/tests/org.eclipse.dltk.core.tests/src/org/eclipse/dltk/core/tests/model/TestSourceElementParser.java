@@ -64,6 +64,11 @@ public class TestSourceElementParser implements ISourceElementParser {
 					ti.declarationStart = currentLineOffset;
 					ti.nameSourceStart = currentLineOffset;
 					ti.nameSourceEnd = currentLineOffset + line.length();
+					if (split.length > 2) {
+						ti.superclasses = new String[split.length - 2];
+						System.arraycopy(split, 2, ti.superclasses, 0,
+								ti.superclasses.length);
+					}
 					requestor.enterType(ti);
 				} else if (cmd.equals("enterMethod")) {
 					ISourceElementRequestor.MethodInfo mi = new ISourceElementRequestor.MethodInfo();
@@ -72,10 +77,19 @@ public class TestSourceElementParser implements ISourceElementParser {
 					mi.nameSourceStart = currentLineOffset;
 					mi.nameSourceEnd = currentLineOffset + line.length();
 					requestor.enterMethod(mi);
+				} else if (cmd.equals("enterField")) {
+					ISourceElementRequestor.FieldInfo fi = new ISourceElementRequestor.FieldInfo();
+					fi.name = arg;
+					fi.declarationStart = currentLineOffset;
+					fi.nameSourceStart = currentLineOffset;
+					fi.nameSourceEnd = currentLineOffset + line.length();
+					requestor.enterField(fi);
 				} else if (cmd.equals("exitType")) {
 					requestor.exitType(currentLineOffset + line.length());
 				} else if (cmd.equals("exitMethod")) {
 					requestor.exitMethod(currentLineOffset + line.length());
+				} else if (cmd.equals("exitField")) {
+					requestor.exitField(currentLineOffset + line.length());
 				}
 			}
 			currentLineOffset += line.length() + 1;
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IProjectFragment;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.index2.IFingerprintIndexer;
+import org.eclipse.dltk.core.index2.IIndexer;
+import org.eclipse.dltk.core.index2.ProjectIndexer2;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.internal.environment.LocalEnvironment;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.index2.AbstractIndexRequest;
+import org.eclipse.dltk.internal.core.index2.ExternalProjectFragmentRequest;
+import org.eclipse.dltk.internal.core.index2.SourceModulesRequest;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the container fingerprints stored by the
+ * {@link IFingerprintIndexer}s.
+ */
+public class ContainerFingerprintTests extends Assert {
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "cache");
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private static class TestIndexer implements IFingerprintIndexer {
+		final Map<IPath, String> fingerprints = new HashMap<IPath, String>();
+		final Set<String> indexed = new HashSet<String>();
+		String failing;
+		boolean failed;
+
+		public void indexDocument(ISourceModule sourceModule) {
+			final String path = sourceModule.getPath().toString();
+			indexed.add(path);
+			if (path.equals(failing)) {
+				failed = true;
+			}
+		}
+
+		public void removeContainer(IPath containerPath) {
+			fingerprints.remove(containerPath);
+		}
+
+		public void removeDocument(IPath containerPath, String relativePath) {
+		}
+
+		public Map<String, Long> getDocuments(IPath containerPath) {
+			return Collections.emptyMap();
+		}
+
+		public ISearchEngine createSearchEngine() {
+			return null;
+		}
+
+		public void beginBulkLoad() {
+			failed = false;
+		}
+
+		public boolean endBulkLoad() {
+			return !failed;
+		}
+
+		public String getContainerFingerprint(IPath containerPath) {
+			return fingerprints.get(containerPath);
+		}
+
+		public void setContainerFingerprint(IPath containerPath,
+				String fingerprint) {
+			fingerprints.put(containerPath, fingerprint);
+		}
+	}
+
+	/**
+	 * Updates the {@link TestIndexer} and collects the requests instead of
+	 * scheduling them
+	 */
+	private static class TestProjectIndexer extends ProjectIndexer2 {
+		final TestIndexer indexer = new TestIndexer();
+		final List<AbstractIndexRequest> requests = new ArrayList<AbstractIndexRequest>();
+
+		@Override
+		public IIndexer getIndexer() {
+			return indexer;
+		}
+
+		@Override
+		public void request(AbstractIndexRequest request) {
+			requests.add(request);
+		}
+	}
+
+	private File createArchive(int entries) throws IOException {
+		final File zip = new File(temp.getRoot(), "fingerprint.zip");
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+				zip));
+		try {
+			for (int i = 0; i < entries; ++i) {
+				out.putNextEntry(new ZipEntry("X" + i + ".txt"));
+				out.write("x\n".getBytes());
+			}
+		} finally {
+			out.close();
+		}
+		return zip;
+	}
+
+	private IProjectFragment addArchive(File zip) throws ModelException {
+		final IScriptProject scriptProject = project.getScriptProject();
+		final List<IBuildpathEntry> buildpath = new ArrayList<IBuildpathEntry>();
+		buildpath.add(DLTKCore.newExtLibraryEntry(EnvironmentPathUtils
+				.getFullPath(LocalEnvironment.getInstance(),
+						new Path(zip.getAbsolutePath()))));
+		Collections.addAll(buildpath, scriptProject.getRawBuildpath());
+		scriptProject.setRawBuildpath(
+				buildpath.toArray(new IBuildpathEntry[buildpath.size()]), null);
+		for (IProjectFragment fragment : scriptProject.getProjectFragments()) {
+			if (fragment.isArchive() && fragment.isExternal()) {
+				return fragment;
+			}
+		}
+		fail("No external archive");
+		return null;
+	}
+
+	/**
+	 * Runs the request for the fragment, returns the request to index its
+	 * documents or <code>null</code> if the fragment is not changed.
+	 */
+	private static AbstractIndexRequest requestFragment(
+			TestProjectIndexer indexer, IProjectFragment fragment) {
+		indexer.requests.clear();
+		new ExternalProjectFragmentRequest(indexer, fragment, null)
+				.execute(null);
+		assertTrue(indexer.requests.size() <= 1);
+		return indexer.requests.isEmpty() ? null : indexer.requests.get(0);
+	}
+
+	@Test
+	public void unchangedArchive() throws Exception {
+		final File zip = createArchive(1);
+		final IProjectFragment fragment = addArchive(zip);
+		final TestProjectIndexer indexer = new TestProjectIndexer();
+		final AbstractIndexRequest request = requestFragment(indexer, fragment);
+		assertNotNull(request);
+		request.execute(null);
+		assertNotNull(indexer.indexer.getContainerFingerprint(fragment
+				.getPath()));
+
+		assertNull("the unchanged archive is skipped",
+				requestFragment(indexer, fragment));
+
+		createArchive(2);
+		assertTrue(zip.setLastModified(zip.lastModified() + 2000));
+		assertNotNull("the changed archive is indexed",
+				requestFragment(indexer, fragment));
+	}
+
+	@Test
+	public void failedDocument() {
+		final ISourceModule a = project.getSourceModule("src/folder1/a.txt");
+		final ISourceModule b = project.getSourceModule("src/folder1/b.txt");
+		final Set<ISourceModule> modules = new HashSet<ISourceModule>();
+		modules.add(a);
+		modules.add(b);
+		final IPath containerPath = project.getScriptProject().getPath();
+		final TestProjectIndexer indexer = new TestProjectIndexer();
+		indexer.indexer.failing = a.getPath().toString();
+		new SourceModulesRequest(indexer, containerPath, modules, null, false,
+				"fingerprint").execute(null);
+		assertTrue(indexer.indexer.indexed.contains(a.getPath().toString()));
+		assertTrue(indexer.indexer.indexed.contains(b.getPath().toString()));
+		assertNull("no fingerprint after a failed document",
+				indexer.indexer.getContainerFingerprint(containerPath));
+
+		indexer.indexer.failing = null;
+		new SourceModulesRequest(indexer, containerPath, modules, null, false,
+				"fingerprint").execute(null);
+		assertEquals("fingerprint",
+				indexer.indexer.getContainerFingerprint(containerPath));
+	}
+}
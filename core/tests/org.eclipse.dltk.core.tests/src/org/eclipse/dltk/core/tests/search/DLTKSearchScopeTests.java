@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.DLTKCore;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IBuildpathEntry;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.IProjectFragment;
+import org.eclipse.dltk.core.IScriptProject;
+import org.eclipse.dltk.core.ModelException;
+import org.eclipse.dltk.core.environment.EnvironmentPathUtils;
+import org.eclipse.dltk.core.internal.environment.LocalEnvironment;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.search.DLTKSearchScope;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link DLTKSearchScope#encloses(String)} with the workspace paths
+ * and the <code>archive|entry</code> paths.
+ */
+public class DLTKSearchScopeTests extends Assert {
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "scope");
+
+	@Rule
+	public final TemporaryFolder temp = new TemporaryFolder();
+
+	private IDLTKSearchScope createScope(IModelElement... elements) {
+		return SearchEngine.createSearchScope(elements, DLTKLanguageManager
+				.getLanguageToolkit(project.getScriptProject()));
+	}
+
+	private IProjectFragment getArchive(boolean external)
+			throws ModelException {
+		for (IProjectFragment fragment : project.getScriptProject()
+				.getProjectFragments()) {
+			if (fragment.isArchive() && fragment.isExternal() == external) {
+				return fragment;
+			}
+		}
+		fail("No " + (external ? "external" : "internal") + " archive");
+		return null;
+	}
+
+	@Test
+	public void nestedFolders() throws ModelException {
+		final IDLTKSearchScope folder = createScope(project.getScriptFolder(
+				"src", "a/b"));
+		assertTrue(folder.encloses("/scope/src/a/b"));
+		assertTrue(folder.encloses("/scope/src/a/b/x.txt"));
+		assertFalse(folder.encloses("/scope/src/a/b/c/y.txt"));
+		assertFalse(folder.encloses("/scope/src/a/x.txt"));
+		assertFalse(folder.encloses("/scope/src/a"));
+
+		final IDLTKSearchScope fragment = createScope(project
+				.getProjectFragment("src"));
+		assertTrue(fragment.encloses("/scope/src"));
+		assertTrue(fragment.encloses("/scope/src/a/b/x.txt"));
+		assertTrue(fragment.encloses("/scope/src/a/b/c/y.txt"));
+		assertFalse(fragment.encloses("/scope/x.txt"));
+
+		final IDLTKSearchScope both = createScope(
+				project.getScriptFolder("src", "a/b"),
+				project.getProjectFragment("src"));
+		assertTrue(both.encloses("/scope/src/a/b/x.txt"));
+		assertTrue(both.encloses("/scope/src/a/b/c/y.txt"));
+	}
+
+	@Test
+	public void siblingWithSamePrefix() throws ModelException {
+		final IDLTKSearchScope src = createScope(project
+				.getProjectFragment("src"));
+		assertTrue(src.encloses("/scope/src/"));
+		assertFalse(src.encloses("/scope/src2"));
+		assertFalse(src.encloses("/scope/src2/z.txt"));
+		assertFalse(src.encloses("/scope/srcz.txt"));
+
+		final IDLTKSearchScope src2 = createScope(project
+				.getProjectFragment("src2"));
+		assertTrue(src2.encloses("/scope/src2/z.txt"));
+		assertFalse(src2.encloses("/scope/src/a/b/x.txt"));
+		assertFalse(src2.encloses("/scope/src"));
+	}
+
+	@Test
+	public void internalArchive() throws ModelException {
+		final IProjectFragment archive = getArchive(false);
+		final String path = archive.getPath().toString();
+		assertEquals("/scope/files.zip", path);
+		final IDLTKSearchScope scope = SearchEngine.createSearchScope(project
+				.getScriptProject());
+		assertTrue(scope.encloses(path + "|X.txt"));
+		assertTrue(scope.encloses(path + "|src1/X.txt"));
+		assertFalse(scope.encloses(path + "2|X.txt"));
+		assertFalse(scope.encloses("/scope/files.zi|X.txt"));
+		assertEquals(archive,
+				((DLTKSearchScope) scope).projectFragment(path + "|X.txt"));
+	}
+
+	@Test
+	public void externalArchive() throws IOException, CoreException {
+		final File zip = new File(temp.getRoot(), "external.zip");
+		final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+				zip));
+		try {
+			out.putNextEntry(new ZipEntry("X.txt"));
+			out.write("x\n".getBytes());
+			out.putNextEntry(new ZipEntry("lib/Y.txt"));
+			out.write("y\n".getBytes());
+		} finally {
+			out.close();
+		}
+		addBuildpathEntry(project.getScriptProject(),
+				DLTKCore.newExtLibraryEntry(EnvironmentPathUtils.getFullPath(
+						LocalEnvironment.getInstance(),
+						new Path(zip.getAbsolutePath()))));
+
+		final IProjectFragment archive = getArchive(true);
+		final String path = archive.getPath().toString();
+		final IDLTKSearchScope scope = createScope(archive);
+		assertTrue(scope.encloses(path + "|X.txt"));
+		assertTrue(scope.encloses(path + "|lib/Y.txt"));
+		assertFalse(scope.encloses(path + "2|X.txt"));
+		assertFalse(scope.encloses("/scope/files.zip|X.txt"));
+
+		final IDLTKSearchScope projectScope = SearchEngine
+				.createSearchScope(project.getScriptProject());
+		assertTrue(projectScope.encloses(path + "|lib/Y.txt"));
+		assertTrue(projectScope.encloses("/scope/files.zip|X.txt"));
+		assertTrue(projectScope.encloses("/scope/src2/z.txt"));
+	}
+
+	@Test
+	public void archiveSeparator() {
+		final IDLTKSearchScope scope = SearchEngine.createSearchScope(project
+				.getScriptProject());
+		assertTrue(scope.encloses("/scope/files.zip/|X.txt"));
+		assertTrue(scope.encloses("/scope/files.zip|"));
+		assertTrue(scope.encloses("/scope|src/a/b/x.txt"));
+		assertTrue(scope.encloses("/scope|src2/z.txt"));
+		assertFalse(scope.encloses("/scope|src2x/z.txt"));
+		assertFalse(scope.encloses("/scope/src|a/b/x.txt"));
+		assertFalse(scope.encloses("|X.txt"));
+	}
+
+	private void addBuildpathEntry(IScriptProject scriptProject,
+			IBuildpathEntry entry) throws ModelException {
+		final List<IBuildpathEntry> buildpath = new ArrayList<IBuildpathEntry>();
+		buildpath.add(entry);
+		Collections.addAll(buildpath, scriptProject.getRawBuildpath());
+		scriptProject.setRawBuildpath(
+				buildpath.toArray(new IBuildpathEntry[buildpath.size()]), null);
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.EntryResult;
+import org.eclipse.dltk.core.search.index.Index;
+import org.eclipse.dltk.core.search.indexing.IIndexConstants;
+import org.eclipse.dltk.core.search.indexing.IndexManager;
+import org.eclipse.dltk.core.search.indexing.ReadWriteMonitor;
+import org.eclipse.dltk.internal.core.ModelManager;
+
+/**
+ * Tests for the {@link Index} class, queries are run against the saved disk
+ * index.
+ */
+public class IndexTests extends TestCase {
+
+	private static final char[][] CATEGORIES = { IIndexConstants.TYPE_DECL };
+
+	private File file;
+	private Index index;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("test", ".index");
+		index = new Index(file.getPath(), file.getPath(), false);
+		String[] words = { "NullPointerException", "NoPermissionException",
+				"NumberFormatException", "nullValue", "Object", "ObjectStream",
+				"IOException" };
+		for (int i = 0; i < words.length; i++)
+			index.addIndexEntry(IIndexConstants.TYPE_DECL, words[i]
+					.toCharArray(), "doc" + i);
+		save();
+	}
+
+	protected void tearDown() throws Exception {
+		index = null;
+		file.delete();
+		super.tearDown();
+	}
+
+	private void save() throws IOException {
+		save(index);
+	}
+
+	private static void save(Index index) throws IOException {
+		// Index.save() requires the write lock
+		index.monitor.enterWrite();
+		try {
+			index.save();
+		} finally {
+			index.monitor.exitWrite();
+		}
+	}
+
+	private String[] query(String key, int matchRule) throws IOException {
+		EntryResult[] results = index.query(CATEGORIES, key.toCharArray(),
+				matchRule);
+		if (results == null)
+			return new String[0];
+		String[] words = new String[results.length];
+		for (int i = 0; i < results.length; i++)
+			words[i] = new String(results[i].getWord());
+		Arrays.sort(words);
+		return words;
+	}
+
+	public void testExactMatch() throws IOException {
+		assertEquals(Arrays.asList("Object"), Arrays.asList(query("object",
+				SearchPattern.R_EXACT_MATCH)));
+		assertEquals(0, query("object", SearchPattern.R_EXACT_MATCH
+				| SearchPattern.R_CASE_SENSITIVE).length);
+	}
+
+	public void testPrefixMatch() throws IOException {
+		assertEquals(Arrays.asList("NullPointerException", "nullValue"), Arrays
+				.asList(query("null", SearchPattern.R_PREFIX_MATCH)));
+		assertEquals(Arrays.asList("Object", "ObjectStream"), Arrays
+				.asList(query("Obj", SearchPattern.R_PREFIX_MATCH
+						| SearchPattern.R_CASE_SENSITIVE)));
+	}
+
+	public void testPatternMatch() throws IOException {
+		assertEquals(Arrays.asList("NullPointerException", "NumberFormatException"),
+				Arrays.asList(query("nu*exception",
+						SearchPattern.R_PATTERN_MATCH)));
+		assertEquals(7, query("*", SearchPattern.R_PATTERN_MATCH).length);
+	}
+
+	public void testCamelCaseMatch() throws IOException {
+		assertEquals(Arrays.asList("NoPermissionException",
+				"NullPointerException"), Arrays.asList(query("NPE",
+				SearchPattern.R_CAMELCASE_MATCH)));
+		assertEquals(Arrays.asList("NullPointerException"), Arrays
+				.asList(query("NuPoEx", SearchPattern.R_CAMELCASE_MATCH)));
+		assertEquals(Arrays.asList("Object", "ObjectStream"), Arrays
+				.asList(query("obj", SearchPattern.R_CAMELCASE_MATCH
+						| SearchPattern.R_PREFIX_MATCH)));
+	}
+
+	public void testReopen() throws IOException {
+		index = new Index(file.getPath(), file.getPath(), true);
+		assertEquals(Arrays.asList("NumberFormatException"), Arrays
+				.asList(query("NFE", SearchPattern.R_CAMELCASE_MATCH)));
+	}
+
+	private static void fill(Index index, int from, int to) {
+		for (int i = from; i < to; i++) {
+			index.addIndexEntry(IIndexConstants.TYPE_DECL, ("Type" + i)
+					.toCharArray(), "folder" + i % 3 + "/doc" + i);
+			index.addIndexEntry(IIndexConstants.METHOD_DECL, ("method" + i
+					% 10).toCharArray(), "folder" + i % 3 + "/doc" + i);
+		}
+	}
+
+	/**
+	 * Returns the sorted document names by word
+	 */
+	private static Map<String, String> queryDocuments(Index index,
+			String key, int matchRule) throws IOException {
+		final Map<String, String> result = new HashMap<String, String>();
+		final EntryResult[] entries = index.query(new char[][] {
+				IIndexConstants.TYPE_DECL, IIndexConstants.METHOD_DECL },
+				key.toCharArray(), matchRule);
+		if (entries != null) {
+			for (EntryResult entry : entries) {
+				final String[] names = entry.getDocumentNames(index);
+				Arrays.sort(names);
+				result.put(new String(entry.getWord()), Arrays.asList(names)
+						.toString());
+			}
+		}
+		return result;
+	}
+
+	private static void assertSameResults(Index mapped, Index streamed)
+			throws IOException {
+		final String[] keys = { "Type12", "type1", "method3", "*", "t*9",
+				"T" };
+		final int[] rules = { SearchPattern.R_EXACT_MATCH,
+				SearchPattern.R_PREFIX_MATCH, SearchPattern.R_EXACT_MATCH,
+				SearchPattern.R_PATTERN_MATCH, SearchPattern.R_PATTERN_MATCH,
+				SearchPattern.R_CAMELCASE_MATCH };
+		for (int i = 0; i < keys.length; i++) {
+			final Map<String, String> expected = queryDocuments(streamed,
+					keys[i], rules[i]);
+			assertFalse(keys[i], expected.isEmpty());
+			assertEquals(keys[i], expected, queryDocuments(mapped, keys[i],
+					rules[i]));
+		}
+		final String[] expected = streamed.queryDocumentNames("folder1");
+		final String[] actual = mapped.queryDocumentNames("folder1");
+		assertNotNull(expected);
+		assertNotNull(actual);
+		Arrays.sort(expected);
+		Arrays.sort(actual);
+		assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+	}
+
+	/**
+	 * The same index file is read through a mapping and through streams, the
+	 * results must be the same, also once the mapped index is saved again.
+	 */
+	public void testMappedRead() throws IOException {
+		final File mappedFile = File.createTempFile("mapped", ".index");
+		final String path = mappedFile.getPath();
+		try {
+			final Index mapped = new Index(path, path, false, true);
+			// several chunks of document names
+			fill(mapped, 0, 250);
+			save(mapped);
+			assertSameResults(mapped, new Index(path, path, true, false));
+
+			mapped.remove("folder1/doc1");
+			fill(mapped, 250, 300);
+			save(mapped);
+			assertSameResults(mapped, new Index(path, path, true, false));
+			assertFalse(String.valueOf(
+					queryDocuments(mapped, "Type1", SearchPattern.R_EXACT_MATCH)
+							.get("Type1")).contains("doc1"));
+		} finally {
+			mappedFile.delete();
+		}
+	}
+
+	/**
+	 * The index is removed by the index manager while {@link Index#save()}
+	 * merges it: the merged file must not be installed and the index must not
+	 * be registered again.
+	 */
+	public void testSaveWhileRemoved() throws Exception {
+		final IndexManager manager = ModelManager.getModelManager()
+				.getIndexManager();
+		final File dir = new File(file.getPath() + ".dir");
+		assertTrue(dir.mkdir());
+		final String location = new File(dir, "removed.index").getPath();
+		final Index removed = manager.getIndex(new Path("/indexTestsRemoved"),
+				location, false, true);
+		assertNotNull(removed);
+		removed.addIndexEntry(IIndexConstants.TYPE_DECL,
+				"Removed".toCharArray(), "doc");
+		final ReadWriteMonitor monitor = removed.monitor;
+		final CountDownLatch writing = new CountDownLatch(1);
+		final FutureTask<Object> save = new FutureTask<Object>(new Runnable() {
+			public void run() {
+				monitor.enterWrite();
+				writing.countDown();
+				try {
+					manager.saveIndex(removed);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				} finally {
+					monitor.exitWrite();
+				}
+			}
+		}, null);
+		new Thread(save, "IndexTests save").start();
+		try {
+			writing.await();
+			// granted once save() released the write lock for the merge, and
+			// keeps it from taking the write lock back
+			monitor.enterRead();
+			try {
+				manager.removeIndexPath(new Path(dir.getPath()));
+				assertNull(removed.monitor);
+			} finally {
+				monitor.exitRead();
+			}
+			save.get();
+		} finally {
+			assertFalse(new File(location).exists());
+			assertFalse(new File(location + ".tmp").exists());
+			assertNull(manager.getIndex(location));
+			dir.delete();
+		}
+	}
+}
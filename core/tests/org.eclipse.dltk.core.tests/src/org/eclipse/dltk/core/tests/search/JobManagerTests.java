@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.internal.core.search.processing.IJob;
+import org.eclipse.dltk.internal.core.search.processing.IParallelJob;
+import org.eclipse.dltk.internal.core.search.processing.JobManager;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link JobManager} executing {@link IParallelJob}s on its
+ * workers.
+ */
+public class JobManagerTests extends Assert {
+
+	private static final long TIMEOUT = 10;
+
+	private static class TestJobManager extends JobManager {
+		@Override
+		public String processName() {
+			return "JobManagerTests";
+		}
+
+		@Override
+		protected int getParallelJobs() {
+			return 2;
+		}
+
+		boolean isWaiting() {
+			final Thread thread = this.processingThread;
+			return thread != null && thread.getState() == Thread.State.WAITING;
+		}
+	}
+
+	private static class TestJob implements IJob {
+		final String family;
+		final CountDownLatch executed = new CountDownLatch(1);
+
+		TestJob(String family) {
+			this.family = family;
+		}
+
+		public boolean belongsTo(String jobFamily) {
+			return family.equals(jobFamily);
+		}
+
+		public void cancel() {
+		}
+
+		public void ensureReadyToRun() {
+		}
+
+		public boolean execute(IProgressMonitor progress) {
+			executed.countDown();
+			return COMPLETE;
+		}
+
+		boolean isExecuted() {
+			return executed.getCount() == 0;
+		}
+
+		@Override
+		public String toString() {
+			return "TestJob " + family;
+		}
+	}
+
+	/**
+	 * Parallel job running until it is cancelled.
+	 */
+	private static class BlockingJob extends TestJob implements IParallelJob {
+		final CountDownLatch cancelled = new CountDownLatch(1);
+
+		BlockingJob(String family) {
+			super(family);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled.countDown();
+		}
+
+		@Override
+		public boolean execute(IProgressMonitor progress) {
+			super.execute(progress);
+			try {
+				cancelled.await(TIMEOUT, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			return COMPLETE;
+		}
+	}
+
+	private TestJobManager manager;
+
+	@Before
+	public void setUp() {
+		manager = new TestJobManager();
+		manager.activateProcessing();
+		manager.reset();
+	}
+
+	@After
+	public void tearDown() {
+		manager.shutdown();
+	}
+
+	private void waitUntilIdle() throws InterruptedException {
+		final long end = System.currentTimeMillis() + TIMEOUT * 1000;
+		while (manager.awaitingJobsCount() != 0) {
+			assertTrue(System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+	}
+
+	@Test
+	public void parallelJobs() throws InterruptedException {
+		final BlockingJob first = new BlockingJob("a");
+		final BlockingJob second = new BlockingJob("a");
+		manager.request(first);
+		manager.request(second);
+		assertTrue(first.executed.await(TIMEOUT, TimeUnit.SECONDS));
+		assertTrue(second.executed.await(TIMEOUT, TimeUnit.SECONDS));
+		first.cancel();
+		second.cancel();
+		waitUntilIdle();
+	}
+
+	@Test
+	public void sequentialJobWaitsForParallelJobs()
+			throws InterruptedException {
+		final BlockingJob parallel = new BlockingJob("a");
+		final TestJob sequential = new TestJob("a");
+		manager.request(parallel);
+		assertTrue(parallel.executed.await(TIMEOUT, TimeUnit.SECONDS));
+		manager.request(sequential);
+		assertFalse(sequential.executed.await(200, TimeUnit.MILLISECONDS));
+		parallel.cancel();
+		assertTrue(sequential.executed.await(TIMEOUT, TimeUnit.SECONDS));
+		waitUntilIdle();
+	}
+
+	/**
+	 * The sequential job waiting for the parallel ones is discarded: it must
+	 * not be executed and the job requested next must not be lost.
+	 */
+	@Test
+	public void discardWhileParallelJobsRun() throws InterruptedException {
+		final BlockingJob parallel = new BlockingJob("a");
+		final TestJob discarded = new TestJob("a");
+		manager.request(parallel);
+		assertTrue(parallel.executed.await(TIMEOUT, TimeUnit.SECONDS));
+		manager.request(discarded);
+		// past the delay after waking up, the processing thread then waits
+		// for the parallel job before executing the discarded one
+		Thread.sleep(600);
+		final long end = System.currentTimeMillis() + TIMEOUT * 1000;
+		while (!manager.isWaiting()) {
+			assertTrue(System.currentTimeMillis() < end);
+			Thread.sleep(10);
+		}
+		// cancels the parallel job and waits until it has finished
+		manager.discardJobs("a");
+		final TestJob next = new TestJob("b");
+		manager.request(next);
+		assertTrue(next.executed.await(TIMEOUT, TimeUnit.SECONDS));
+		waitUntilIdle();
+		assertFalse(discarded.isExecuted());
+	}
+}
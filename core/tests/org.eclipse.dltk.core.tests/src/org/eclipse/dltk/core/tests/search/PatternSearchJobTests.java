@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.dltk.core.DLTKLanguageManager;
+import org.eclipse.dltk.core.IDLTKLanguageToolkit;
+import org.eclipse.dltk.core.IModelElement;
+import org.eclipse.dltk.core.search.IDLTKSearchConstants;
+import org.eclipse.dltk.core.search.IDLTKSearchScope;
+import org.eclipse.dltk.core.search.SearchEngine;
+import org.eclipse.dltk.core.search.SearchParticipant;
+import org.eclipse.dltk.core.search.SearchPattern;
+import org.eclipse.dltk.core.search.index.Index;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.compiler.env.AccessRuleSet;
+import org.eclipse.dltk.internal.core.search.IndexQueryRequestor;
+import org.eclipse.dltk.internal.core.search.PatternSearchJob;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the parallel index queries of the {@link PatternSearchJob}.
+ */
+public class PatternSearchJobTests extends Assert {
+
+	@Rule
+	public final ProjectSetup hierarchy = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "hierarchy",
+			ProjectSetup.Option.WAIT_INDEXES_READY);
+
+	@Rule
+	public final ProjectSetup bug387751 = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "bug387751",
+			ProjectSetup.Option.WAIT_INDEXES_READY);
+
+	private static class TestSearchJob extends PatternSearchJob {
+		int parallelSearches;
+
+		TestSearchJob(SearchPattern pattern, SearchParticipant participant,
+				IDLTKSearchScope scope, IndexQueryRequestor requestor) {
+			super(pattern, participant, scope, requestor);
+		}
+
+		@Override
+		protected boolean searchInParallel(Index[] indexes,
+				IProgressMonitor progressMonitor) {
+			++parallelSearches;
+			return super.searchInParallel(indexes, progressMonitor);
+		}
+	}
+
+	/**
+	 * Searches the type declarations of both projects with the specified
+	 * number of query threads, returns the reported matches in order.
+	 */
+	private List<String> search(int threads, boolean parallel) {
+		final IDLTKLanguageToolkit toolkit = DLTKLanguageManager
+				.getLanguageToolkit(hierarchy.getScriptProject());
+		final SearchPattern pattern = SearchPattern.createPattern("*",
+				IDLTKSearchConstants.TYPE, IDLTKSearchConstants.DECLARATIONS,
+				SearchPattern.R_PATTERN_MATCH, toolkit);
+		final IDLTKSearchScope scope = SearchEngine.createSearchScope(
+				new IModelElement[] { hierarchy.getScriptProject(),
+						bug387751.getScriptProject() }, toolkit);
+		final List<String> matches = new ArrayList<String>();
+		final TestSearchJob job = new TestSearchJob(pattern,
+				SearchEngine.getDefaultSearchParticipant(), scope,
+				new IndexQueryRequestor() {
+					@Override
+					public boolean acceptIndexMatch(String documentPath,
+							SearchPattern indexRecord,
+							SearchParticipant participant, AccessRuleSet access) {
+						matches.add(documentPath + " " + indexRecord);
+						return true;
+					}
+				});
+		final int previous = PatternSearchJob.setParallelQueryThreads(threads);
+		try {
+			final Index[] indexes = job.getIndexes(null);
+			assertTrue(indexes.length >= 2);
+			assertTrue(job.execute(null));
+			assertEquals(parallel ? 1 : 0, job.parallelSearches);
+			for (Index index : indexes) {
+				assertTrue("the index is released",
+						index.monitor.toString().startsWith("Monitor idle"));
+			}
+		} finally {
+			PatternSearchJob.setParallelQueryThreads(previous);
+		}
+		return matches;
+	}
+
+	@Test
+	public void searchInParallel() {
+		final List<String> sequential = search(1, false);
+		assertFalse(sequential.isEmpty());
+		assertEquals("the matches are reported in the same order",
+				sequential, search(4, true));
+	}
+
+	@Test
+	public void repeatedSearches() {
+		final List<String> expected = search(4, true);
+		for (int i = 0; i < 10; ++i) {
+			assertEquals(expected, search(2, true));
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.dltk.core.ISourceModule;
+import org.eclipse.dltk.core.index2.IBulkIndexer;
+import org.eclipse.dltk.core.index2.IIndexer;
+import org.eclipse.dltk.core.index2.ProjectIndexer2;
+import org.eclipse.dltk.core.index2.search.ISearchEngine;
+import org.eclipse.dltk.core.tests.ProjectSetup;
+import org.eclipse.dltk.core.tests.model.ModelTestsPlugin;
+import org.eclipse.dltk.internal.core.index2.AbstractIndexRequest;
+import org.eclipse.dltk.internal.core.index2.SourceModulesRequest;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the bulk load of the {@link SourceModulesRequest}.
+ */
+public class SourceModulesRequestTests extends Assert {
+
+	/**
+	 * Number of modules above the default bulk load threshold
+	 */
+	private static final int MANY = 64;
+
+	private static final String REMOVED = "removed/gone.txt";
+
+	@Rule
+	public final ProjectSetup project = new ProjectSetup(
+			ModelTestsPlugin.WORKSPACE, "cache");
+
+	private static class TestIndexer implements IBulkIndexer {
+		final Map<String, Long> documents = new HashMap<String, Long>();
+		final List<String> bulkRemoved = new ArrayList<String>();
+		int bulkLoads;
+		int indexed;
+		int bulkIndexed;
+		boolean inBulkLoad;
+
+		public void indexDocument(ISourceModule sourceModule) {
+			++indexed;
+			if (inBulkLoad) {
+				++bulkIndexed;
+			}
+		}
+
+		public void removeContainer(IPath containerPath) {
+		}
+
+		public void removeDocument(IPath containerPath, String relativePath) {
+			if (inBulkLoad) {
+				bulkRemoved.add(relativePath);
+			}
+		}
+
+		public Map<String, Long> getDocuments(IPath containerPath) {
+			return documents;
+		}
+
+		public ISearchEngine createSearchEngine() {
+			return null;
+		}
+
+		public void beginBulkLoad() {
+			assertFalse("bulk loads are not nested", inBulkLoad);
+			inBulkLoad = true;
+			++bulkLoads;
+		}
+
+		public boolean endBulkLoad() {
+			assertTrue(inBulkLoad);
+			inBulkLoad = false;
+			return true;
+		}
+	}
+
+	private static class TestProjectIndexer extends ProjectIndexer2 {
+		final TestIndexer indexer = new TestIndexer();
+
+		@Override
+		public IIndexer getIndexer() {
+			return indexer;
+		}
+
+		@Override
+		public void request(AbstractIndexRequest request) {
+		}
+	}
+
+	private Set<ISourceModule> createModules(int count) {
+		final Set<ISourceModule> modules = new HashSet<ISourceModule>();
+		for (int i = 0; i < count; ++i) {
+			modules.add(project.getSourceModule("src/folder1/m" + i + ".txt"));
+		}
+		return modules;
+	}
+
+	private TestIndexer execute(Set<ISourceModule> modules, boolean bulkLoad) {
+		final TestProjectIndexer indexer = new TestProjectIndexer();
+		indexer.indexer.documents.put(REMOVED, Long.valueOf(0));
+		new SourceModulesRequest(indexer, project.getScriptProject()
+				.getPath(), modules, null, bulkLoad, null).execute(null);
+		assertFalse(indexer.indexer.inBulkLoad);
+		assertEquals(modules.size(), indexer.indexer.indexed);
+		return indexer.indexer;
+	}
+
+	@Test
+	public void bulkLoad() {
+		final TestIndexer indexer = execute(createModules(MANY), true);
+		assertEquals(1, indexer.bulkLoads);
+		assertEquals(MANY, indexer.bulkIndexed);
+		assertEquals("removed within the bulk load",
+				Collections.singletonList(REMOVED), indexer.bulkRemoved);
+	}
+
+	@Test
+	public void belowThreshold() {
+		final TestIndexer indexer = execute(createModules(2), true);
+		assertEquals("few documents are indexed one by one", 0,
+				indexer.bulkLoads);
+	}
+
+	@Test
+	public void notRequested() {
+		final TestIndexer indexer = execute(createModules(MANY), false);
+		assertEquals(0, indexer.bulkLoads);
+	}
+}
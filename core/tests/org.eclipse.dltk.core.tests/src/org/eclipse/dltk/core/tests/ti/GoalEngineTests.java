@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.ti;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.dltk.ti.GoalEngine;
+import org.eclipse.dltk.ti.GoalState;
+import org.eclipse.dltk.ti.IContext;
+import org.eclipse.dltk.ti.IGoalEvaluatorFactory;
+import org.eclipse.dltk.ti.goals.GoalEvaluator;
+import org.eclipse.dltk.ti.goals.IGoal;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the evaluators initialized concurrently by the {@link GoalEngine}.
+ */
+public class GoalEngineTests extends Assert {
+
+	private static final int THREADS = 4;
+
+	private static final int CHILDREN = 4;
+
+	private static final int LEAVES = 3;
+
+	private int previousThreads;
+
+	@Before
+	public void setUp() {
+		previousThreads = GoalEngine.setEvaluationThreads(0);
+	}
+
+	@After
+	public void tearDown() {
+		GoalEngine.setEvaluationThreads(previousThreads);
+	}
+
+	/**
+	 * The goals with the same name are equal, the goals named
+	 * <code>child*</code> have {@link #LEAVES} own leaves and a shared one
+	 */
+	private static class TestGoal implements IGoal {
+		final String name;
+
+		TestGoal(String name) {
+			this.name = name;
+		}
+
+		public IContext getContext() {
+			return null;
+		}
+
+		@Override
+		public int hashCode() {
+			return name.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof TestGoal && name.equals(((TestGoal) obj).name);
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static class TestEvaluatorFactory implements IGoalEvaluatorFactory {
+		final Set<String> threads = Collections
+				.synchronizedSet(new HashSet<String>());
+		final AtomicInteger evaluators = new AtomicInteger();
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		String failing;
+
+		public GoalEvaluator createEvaluator(IGoal goal) {
+			evaluators.incrementAndGet();
+			return new TestEvaluator(this, goal);
+		}
+
+		IGoal[] createSubgoals(String name) {
+			if (name.equals("root")) {
+				final IGoal[] children = new IGoal[CHILDREN];
+				for (int i = 0; i < CHILDREN; ++i) {
+					children[i] = new TestGoal("child" + i);
+				}
+				return children;
+			} else if (name.startsWith("child")) {
+				final IGoal[] leaves = new IGoal[LEAVES + 1];
+				for (int i = 0; i < LEAVES; ++i) {
+					leaves[i] = new TestGoal(name + "/leaf" + i);
+				}
+				leaves[LEAVES] = new TestGoal("shared");
+				return leaves;
+			} else {
+				return IGoal.NO_GOALS;
+			}
+		}
+	}
+
+	/**
+	 * Produces the number of the leaves below the goal
+	 */
+	private static class TestEvaluator extends GoalEvaluator {
+		private final TestEvaluatorFactory factory;
+		private int leaves;
+
+		TestEvaluator(TestEvaluatorFactory factory, IGoal goal) {
+			super(goal);
+			this.factory = factory;
+		}
+
+		@Override
+		public IGoal[] init() {
+			final int running = factory.running.incrementAndGet();
+			try {
+				for (;;) {
+					final int max = factory.maxRunning.get();
+					if (running <= max
+							|| factory.maxRunning.compareAndSet(max, running)) {
+						break;
+					}
+				}
+				factory.threads.add(Thread.currentThread().getName());
+				final String name = goal.toString();
+				if (name.equals(factory.failing)) {
+					throw new IllegalStateException(name);
+				}
+				final IGoal[] subgoals = factory.createSubgoals(name);
+				if (subgoals.length == 0) {
+					leaves = 1;
+					try {
+						Thread.sleep(20);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return subgoals;
+			} finally {
+				factory.running.decrementAndGet();
+			}
+		}
+
+		@Override
+		public IGoal[] subGoalDone(IGoal subgoal, Object result,
+				GoalState state) {
+			assertEquals(GoalState.DONE, state);
+			leaves += ((Integer) result).intValue();
+			return IGoal.NO_GOALS;
+		}
+
+		@Override
+		public Object produceResult() {
+			return Integer.valueOf(leaves);
+		}
+	}
+
+	private static Object evaluate(TestEvaluatorFactory factory) {
+		return new GoalEngine(factory).evaluateGoal(new TestGoal("root"), null);
+	}
+
+	private static int expectedLeaves() {
+		return CHILDREN * (LEAVES + 1);
+	}
+
+	private static int expectedEvaluators() {
+		// the shared leaf is evaluated once
+		return 1 + CHILDREN + CHILDREN * LEAVES + 1;
+	}
+
+	@Test
+	public void sequential() {
+		final TestEvaluatorFactory factory = new TestEvaluatorFactory();
+		assertEquals(Integer.valueOf(expectedLeaves()), evaluate(factory));
+		assertEquals(expectedEvaluators(), factory.evaluators.get());
+		assertEquals(Collections.singleton(Thread.currentThread().getName()),
+				factory.threads);
+		assertEquals(1, factory.maxRunning.get());
+	}
+
+	@Test
+	public void parallel() {
+		GoalEngine.setEvaluationThreads(THREADS);
+		final TestEvaluatorFactory factory = new TestEvaluatorFactory();
+		assertEquals(Integer.valueOf(expectedLeaves()), evaluate(factory));
+		assertEquals("the goals are evaluated once", expectedEvaluators(),
+				factory.evaluators.get());
+		assertTrue("the evaluators are initialized on the pool",
+				factory.threads.size() > 1);
+		assertTrue(factory.maxRunning.get() > 1);
+		assertTrue(factory.maxRunning.get() <= THREADS + 1);
+	}
+
+	@Test
+	public void repeatedParallel() {
+		GoalEngine.setEvaluationThreads(THREADS);
+		for (int i = 0; i < 20; ++i) {
+			final TestEvaluatorFactory factory = new TestEvaluatorFactory();
+			assertEquals(Integer.valueOf(expectedLeaves()), evaluate(factory));
+			assertEquals(expectedEvaluators(), factory.evaluators.get());
+		}
+	}
+
+	/**
+	 * The error of an evaluator initialized on the pool is thrown by the
+	 * evaluation, after the other evaluators are done.
+	 */
+	@Test
+	public void parallelFailure() {
+		GoalEngine.setEvaluationThreads(THREADS);
+		final TestEvaluatorFactory factory = new TestEvaluatorFactory();
+		factory.failing = "child2/leaf1";
+		try {
+			evaluate(factory);
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+			assertEquals(factory.failing, e.getMessage());
+		}
+		assertEquals(0, factory.running.get());
+
+		factory.failing = null;
+		assertEquals("the pool threads are usable after the failure",
+				Integer.valueOf(expectedLeaves()), evaluate(factory));
+	}
+
+	/**
+	 * The evaluations started by the evaluators on the pool are not
+	 * dispatched, so the pool threads never wait for each other.
+	 */
+	@Test
+	public void nestedEvaluation() {
+		GoalEngine.setEvaluationThreads(THREADS);
+		final AtomicInteger pooled = new AtomicInteger();
+		final TestEvaluatorFactory factory = new TestEvaluatorFactory() {
+			@Override
+			public GoalEvaluator createEvaluator(IGoal goal) {
+				if (!goal.toString().startsWith("child")) {
+					return super.createEvaluator(goal);
+				}
+				evaluators.incrementAndGet();
+				return new TestEvaluator(this, goal) {
+					@Override
+					public IGoal[] init() {
+						final String thread = Thread.currentThread().getName();
+						if (!thread.startsWith("DLTK Type Inference")) {
+							return IGoal.NO_GOALS;
+						}
+						pooled.incrementAndGet();
+						final TestEvaluatorFactory nested = new TestEvaluatorFactory();
+						assertEquals(Integer.valueOf(expectedLeaves()),
+								evaluate(nested));
+						assertEquals(expectedEvaluators(),
+								nested.evaluators.get());
+						assertEquals("the nested evaluators run on the thread",
+								Collections.singleton(thread), nested.threads);
+						return IGoal.NO_GOALS;
+					}
+				};
+			}
+		};
+		assertEquals(Integer.valueOf(0), evaluate(factory));
+		assertTrue(pooled.get() > 0);
+	}
+}
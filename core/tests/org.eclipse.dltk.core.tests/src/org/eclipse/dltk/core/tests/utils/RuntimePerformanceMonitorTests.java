@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2016 Zend Technologies and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.dltk.core.tests.utils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.dltk.core.RuntimePerformanceMonitor;
+import org.eclipse.dltk.core.RuntimePerformanceMonitor.DataEntry;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RuntimePerformanceMonitorTests extends Assert {
+
+	private static final String LANGUAGE = "RuntimePerformanceMonitorTests";
+
+	private static DataEntry getEntry(
+			Map<String, Map<String, DataEntry>> data, String kind) {
+		final Map<String, DataEntry> entries = data.get(LANGUAGE);
+		return entries != null ? entries.get(kind) : null;
+	}
+
+	/**
+	 * Each update recorded while the data is taken away concurrently is
+	 * counted once, in one of the snapshots.
+	 */
+	@Test
+	public void snapshotAndClear() throws InterruptedException {
+		final String kind = "snapshot";
+		final int threads = 4;
+		final int updates = 100000;
+		final CountDownLatch done = new CountDownLatch(threads);
+		for (int t = 0; t < threads; ++t) {
+			new Thread("RuntimePerformanceMonitorTests " + t) {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < updates; ++i) {
+							RuntimePerformanceMonitor.updateData(LANGUAGE,
+									kind, i % 4, 2);
+						}
+					} finally {
+						done.countDown();
+					}
+				}
+			}.start();
+		}
+		long count = 0;
+		long total = 0;
+		long time = 0;
+		final long[] histogram = new long[RuntimePerformanceMonitor.BUCKETS];
+		boolean finished;
+		do {
+			finished = done.getCount() == 0;
+			final DataEntry entry = getEntry(
+					RuntimePerformanceMonitor.snapshotAndClear(), kind);
+			if (entry != null) {
+				count += entry.getCount();
+				total += entry.getTotal();
+				time += entry.getTime();
+				final long[] h = entry.getHistogram();
+				for (int i = 0; i < h.length; ++i) {
+					histogram[i] += h[i];
+				}
+			}
+			if (!finished) {
+				Thread.sleep(1);
+			}
+		} while (!finished);
+		final long operations = (long) threads * updates;
+		assertEquals(operations, count);
+		assertEquals(2 * operations, total);
+		assertEquals((0 + 1 + 2 + 3) * operations / 4, time);
+		assertEquals(operations / 4, histogram[0]);
+		assertEquals(operations / 4, histogram[1]);
+		assertEquals(operations / 2, histogram[2]);
+		assertEquals(0, getEntry(RuntimePerformanceMonitor.getAllEntries(),
+				kind).getCount());
+	}
+
+	@Test
+	public void percentile() {
+		final String kind = "percentile";
+		RuntimePerformanceMonitor.snapshotAndClear();
+		for (int i = 0; i < 50; ++i) {
+			RuntimePerformanceMonitor.updateData(LANGUAGE, kind, 3, 0);
+		}
+		for (int i = 0; i < 40; ++i) {
+			RuntimePerformanceMonitor.updateData(LANGUAGE, kind, 10, 0);
+		}
+		for (int i = 0; i < 10; ++i) {
+			RuntimePerformanceMonitor.updateData(LANGUAGE, kind, 1000, 0);
+		}
+		final DataEntry entry = RuntimePerformanceMonitor.getEntries(LANGUAGE)
+				.get(kind);
+		assertEquals(100, entry.getCount());
+		assertEquals(1000, entry.getMaxTime());
+		assertEquals(0, entry.getPercentile(0));
+		// upper bounds of the buckets, capped by the longest time
+		assertEquals(3, entry.getPercentile(50));
+		assertEquals(15, entry.getPercentile(90));
+		assertEquals(1000, entry.getPercentile(99));
+		assertEquals(1000, entry.getPercentile(100));
+
+		RuntimePerformanceMonitor.snapshotAndClear();
+		final DataEntry empty = RuntimePerformanceMonitor.getEntries(LANGUAGE)
+				.get(kind);
+		assertEquals(0, empty.getCount());
+		assertEquals(0, empty.getPercentile(50));
+	}
+
+	@Test
+	public void export() {
+		RuntimePerformanceMonitor.snapshotAndClear();
+		RuntimePerformanceMonitor.updateData(LANGUAGE, "b", 5, 7);
+		RuntimePerformanceMonitor.updateData(LANGUAGE, "b", 5, 7);
+		RuntimePerformanceMonitor.updateData(LANGUAGE, "a", 0, 1);
+		final String[] lines = RuntimePerformanceMonitor.export(
+				Collections.singletonMap(LANGUAGE,
+						RuntimePerformanceMonitor.snapshotAndClear().get(
+								LANGUAGE))).split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith("language\tkind\tcount\t"));
+		assertEquals(LANGUAGE + "\ta\t1\t0\t1\t0\t0\t0\t0\t1", lines[1]);
+		assertEquals(LANGUAGE + "\tb\t2\t10\t14\t5\t5\t5\t5\t0 0 0 2",
+				lines[2]);
+	}
+}